@@ -6,9 +6,26 @@ plugins {
 group = "com.hibana"
 version = "1.0.0"
 
+// Opt-in build that can run blocking API calls on virtual threads; needs a JDK 21:
+//   ./gradlew build -PvirtualThreads
+val virtualThreads = providers.gradleProperty("virtualThreads").isPresent
+
 java {
-    sourceCompatibility = JavaVersion.VERSION_11
-    targetCompatibility = JavaVersion.VERSION_11
+    if (virtualThreads) {
+        toolchain {
+            languageVersion.set(JavaLanguageVersion.of(21))
+        }
+    } else {
+        sourceCompatibility = JavaVersion.VERSION_17
+        targetCompatibility = JavaVersion.VERSION_17
+    }
+}
+
+sourceSets {
+    main {
+        // Thread factories: platform threads only (java17) or virtual threads (java21)
+        java.srcDir(if (virtualThreads) "src/main/java21" else "src/main/java17")
+    }
 }
 
 repositories {
@@ -24,6 +41,9 @@ dependencies {
 
     // JSON parsing
     implementation("com.google.code.gson:gson:2.10.1")
+
+    // In-process mock API for the offline examples
+    implementation(project(":mock-server"))
 }
 
 tasks.withType<JavaCompile> {
@@ -32,4 +52,7 @@ tasks.withType<JavaCompile> {
 
 application {
     mainClass.set("com.hibana.samples.Example01_SimpleChat")
+    if (virtualThreads) {
+        applicationDefaultJvmArgs = listOf("-Dhibana.threads=virtual")
+    }
 }
@@ -0,0 +1,35 @@
+plugins {
+    java
+    application
+}
+
+group = "com.hibana"
+version = "1.0.0"
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    // Netty for the non-blocking HTTP server
+    implementation("io.netty:netty-codec-http:4.1.115.Final")
+
+    // OkHttp for the shared upstream connection pool
+    implementation("com.squareup.okhttp3:okhttp:4.12.0")
+
+    // JSON parsing
+    implementation("com.google.code.gson:gson:2.10.1")
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+}
+
+application {
+    mainClass.set("com.hibana.gateway.GatewayServer")
+}
@@ -0,0 +1,83 @@
+package com.hibana.gateway;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Gateway settings, read from environment variables with defaults that
+ * suit a single host in front of several sample JVMs.
+ *
+ * <pre>
+ * GATEWAY_PORT                  listen port (8080)
+ * GATEWAY_UPSTREAM              Hibana base URL (https://api-ai.hibanacloud.com/v1)
+ * GATEWAY_API_KEY               key used when a caller sends no Authorization header
+ * GATEWAY_UPSTREAM_CONNECTIONS  max concurrent buffered upstream requests (256)
+ * GATEWAY_UPSTREAM_STREAMS      max concurrent streamed upstream requests (1024)
+ * GATEWAY_CACHE_ENTRIES         response cache size in entries (10000)
+ * GATEWAY_CACHE_MB              response cache size in megabytes (256)
+ * GATEWAY_CHAT_TTL_SECONDS      lifetime of cached chat completions (600)
+ * GATEWAY_RATE_PER_KEY          sustained requests per second per API key (20)
+ * GATEWAY_BURST_PER_KEY         burst size per API key (40)
+ * </pre>
+ */
+public final class GatewayConfig {
+
+    final int port;
+    final String upstreamBaseUrl;
+    final String defaultApiKey;
+    final int upstreamConnections;
+    final int upstreamStreams;
+    final int cacheEntries;
+    final long cacheBytes;
+    final Duration chatTtl;
+    final Duration modelsTtl;
+    final Duration balanceTtl;
+    final double ratePerKey;
+    final int burstPerKey;
+
+    private GatewayConfig(Map<String, String> env) {
+        this.port = intValue(env, "GATEWAY_PORT", 8080);
+        this.upstreamBaseUrl = stripTrailingSlash(env.getOrDefault("GATEWAY_UPSTREAM", "https://api-ai.hibanacloud.com/v1"));
+        this.defaultApiKey = env.get("GATEWAY_API_KEY");
+        this.upstreamConnections = intValue(env, "GATEWAY_UPSTREAM_CONNECTIONS", 256);
+        this.upstreamStreams = intValue(env, "GATEWAY_UPSTREAM_STREAMS", 1024);
+        this.cacheEntries = intValue(env, "GATEWAY_CACHE_ENTRIES", 10_000);
+        this.cacheBytes = intValue(env, "GATEWAY_CACHE_MB", 256) * 1024L * 1024L;
+        this.chatTtl = Duration.ofSeconds(intValue(env, "GATEWAY_CHAT_TTL_SECONDS", 600));
+        this.modelsTtl = Duration.ofMinutes(5);
+        this.balanceTtl = Duration.ofSeconds(5);
+        this.ratePerKey = Double.parseDouble(env.getOrDefault("GATEWAY_RATE_PER_KEY", "20"));
+        this.burstPerKey = intValue(env, "GATEWAY_BURST_PER_KEY", 40);
+    }
+
+    public static GatewayConfig fromEnvironment() {
+        return new GatewayConfig(System.getenv());
+    }
+
+    public static GatewayConfig from(Map<String, String> values) {
+        return new GatewayConfig(values);
+    }
+
+    private static int intValue(Map<String, String> env, String name, int defaultValue) {
+        String value = env.get(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer, got '" + value + "'");
+        }
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("port=%d upstream=%s connections=%d streams=%d cache=%d entries/%d MB chatTtl=%ds rate=%.1f/s burst=%d",
+                port, upstreamBaseUrl, upstreamConnections, upstreamStreams, cacheEntries, cacheBytes / (1024 * 1024),
+                chatTtl.getSeconds(), ratePerKey, burstPerKey);
+    }
+}
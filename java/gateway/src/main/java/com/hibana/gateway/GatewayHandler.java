@@ -0,0 +1,379 @@
+package com.hibana.gateway;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
+
+/**
+ * Routes gateway requests. Runs on the Netty event loop and never blocks it:
+ * upstream calls complete on OkHttp threads, which write the response back
+ * to the channel. Streams are relayed on the upstream's streaming
+ * dispatcher, so they never hold the threads buffered calls complete on.
+ *
+ * <ul>
+ *   <li>{@code POST /v1/chat/completions} - streamed straight through when
+ *       {@code stream} is true; otherwise cached and coalesced when the
+ *       request is deterministic ({@code temperature} 0) or the caller sends
+ *       {@code X-Gateway-Cache: on}.</li>
+ *   <li>{@code GET /v1/models[/id]} - cached for a few minutes.</li>
+ *   <li>{@code POST /v1/images/generations} - forwarded.</li>
+ *   <li>{@code GET /v1/user/balance} - cached for a few seconds per key.</li>
+ *   <li>{@code GET /gateway/stats} - gateway counters.</li>
+ * </ul>
+ *
+ * {@code Cache-Control: no-cache} always bypasses the cache. Every response
+ * carries {@code X-Gateway-Cache: HIT|MISS|COALESCED|BYPASS}.
+ */
+@ChannelHandler.Sharable
+final class GatewayHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final String CACHE_HEADER = "X-Gateway-Cache";
+    private static final int STREAM_CHUNK_SIZE = 8192;
+
+    private final GatewayConfig config;
+    private final Upstream upstream;
+    private final ResponseCache cache;
+    private final SingleFlight<UpstreamResponse> flights = new SingleFlight<>();
+    private final KeyRateLimiter limiter;
+    private final GatewayStats stats = new GatewayStats();
+    private final Gson gson = new Gson();
+
+    GatewayHandler(GatewayConfig config, Upstream upstream) {
+        this.config = config;
+        this.upstream = upstream;
+        this.cache = new ResponseCache(config.cacheEntries, config.cacheBytes);
+        this.limiter = new KeyRateLimiter(config.ratePerKey, config.burstPerKey);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        stats.requests.increment();
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpMethod method = request.method();
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        String path = query >= 0 ? uri.substring(0, query) : uri;
+
+        if (path.equals("/gateway/stats") && method.equals(HttpMethod.GET)) {
+            sendJson(ctx, keepAlive, HttpResponseStatus.OK, stats.toJson(cache, flights, upstream, limiter));
+            return;
+        }
+        if (!path.startsWith("/v1/")) {
+            sendError(ctx, keepAlive, HttpResponseStatus.NOT_FOUND, "Unknown path " + path, "invalid_request_error", null);
+            return;
+        }
+
+        HttpHeaders headers = request.headers();
+        String authorization = headers.get(HttpHeaderNames.AUTHORIZATION);
+        if (authorization == null && config.defaultApiKey != null) {
+            authorization = "Bearer " + config.defaultApiKey;
+        }
+        if (authorization == null) {
+            sendError(ctx, keepAlive, HttpResponseStatus.UNAUTHORIZED, "Missing Authorization header", "invalid_request_error", null);
+            return;
+        }
+
+        String keyId = sha256(authorization.getBytes(StandardCharsets.UTF_8));
+        long retryAfter = limiter.tryAcquire(keyId);
+        if (retryAfter > 0) {
+            stats.rateLimited.increment();
+            sendError(ctx, keepAlive, HttpResponseStatus.TOO_MANY_REQUESTS,
+                    "Gateway rate limit exceeded for this API key", "rate_limit_error", String.valueOf(retryAfter));
+            return;
+        }
+
+        // The upstream base URL already ends in /v1
+        String upstreamUri = uri.substring(3);
+        boolean noCache = "no-cache".equalsIgnoreCase(headers.get(HttpHeaderNames.CACHE_CONTROL));
+        byte[] body = method.equals(HttpMethod.POST) ? ByteBufUtil.getBytes(request.content()) : null;
+
+        if (path.equals("/v1/chat/completions") && method.equals(HttpMethod.POST)) {
+            chatCompletion(ctx, keepAlive, upstreamUri, body, authorization, keyId,
+                    !noCache && "on".equalsIgnoreCase(headers.get(CACHE_HEADER)), noCache);
+        } else if ((path.equals("/v1/models") || path.startsWith("/v1/models/")) && method.equals(HttpMethod.GET)) {
+            cached(ctx, keepAlive, upstreamUri, null, null, authorization, keyId, config.modelsTtl, noCache);
+        } else if (path.equals("/v1/images/generations") && method.equals(HttpMethod.POST)) {
+            forward(ctx, keepAlive, upstreamUri, body, authorization);
+        } else if (path.equals("/v1/user/balance") && method.equals(HttpMethod.GET)) {
+            cached(ctx, keepAlive, upstreamUri, null, null, authorization, keyId, config.balanceTtl, noCache);
+        } else {
+            sendError(ctx, keepAlive, HttpResponseStatus.NOT_FOUND,
+                    "The gateway does not serve " + method + " " + path, "invalid_request_error", null);
+        }
+    }
+
+    private void chatCompletion(ChannelHandlerContext ctx, boolean keepAlive, String uri, byte[] body,
+                                String authorization, String keyId, boolean forceCache, boolean noCache) {
+        JsonObject params;
+        try {
+            JsonElement parsed = JsonParser.parseString(new String(body, StandardCharsets.UTF_8));
+            if (!parsed.isJsonObject()) {
+                throw new JsonParseException("expected a JSON object");
+            }
+            params = parsed.getAsJsonObject();
+        } catch (JsonParseException e) {
+            sendError(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST,
+                    "Request body is not valid JSON: " + e.getMessage(), "invalid_request_error", null);
+            return;
+        }
+
+        // Checked here, since a wrong type would otherwise throw on the event loop
+        JsonElement stream = params.get("stream");
+        JsonElement temperature = params.get("temperature");
+        if (!isNullOr(stream, JsonPrimitive::isBoolean)) {
+            sendError(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST, "'stream' must be a boolean",
+                    "invalid_request_error", null);
+            return;
+        }
+        if (!isNullOr(temperature, JsonPrimitive::isNumber)) {
+            sendError(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST, "'temperature' must be a number",
+                    "invalid_request_error", null);
+            return;
+        }
+
+        if (stream != null && !stream.isJsonNull() && stream.getAsBoolean()) {
+            stream(ctx, keepAlive, uri, body, authorization);
+            return;
+        }
+
+        boolean deterministic = temperature != null && !temperature.isJsonNull() && temperature.getAsDouble() == 0.0;
+        if (deterministic || forceCache) {
+            // Re-serialize so that formatting differences do not split the cache
+            byte[] canonical = gson.toJson(params).getBytes(StandardCharsets.UTF_8);
+            cached(ctx, keepAlive, uri, body, canonical, authorization, keyId, config.chatTtl, noCache);
+        } else {
+            forward(ctx, keepAlive, uri, body, authorization);
+        }
+    }
+
+    /**
+     * Whether a request parameter is absent, JSON null, or a primitive of the expected kind.
+     */
+    private static boolean isNullOr(JsonElement value, Predicate<JsonPrimitive> kind) {
+        if (value == null || value.isJsonNull()) {
+            return true;
+        }
+        return value.isJsonPrimitive() && kind.test(value.getAsJsonPrimitive());
+    }
+
+    private void cached(ChannelHandlerContext ctx, boolean keepAlive, String uri, byte[] body, byte[] keyBody,
+                        String authorization, String keyId, Duration ttl, boolean noCache) {
+        String cacheKey = keyId + ' ' + uri + (keyBody != null ? ' ' + sha256(keyBody) : "");
+
+        if (!noCache) {
+            UpstreamResponse hit = cache.get(cacheKey);
+            if (hit != null) {
+                stats.cacheHits.increment();
+                send(ctx, keepAlive, hit, "HIT");
+                return;
+            }
+        }
+
+        SingleFlight.Flight<UpstreamResponse> flight = flights.execute(cacheKey, () -> {
+            stats.upstreamCalls.increment();
+            return upstream.send(uri, body, authorization).thenApply(response -> {
+                if (response.isSuccessful()) {
+                    cache.put(cacheKey, response, ttl);
+                }
+                return response;
+            });
+        });
+        if (flight.shared) {
+            stats.coalesced.increment();
+        }
+
+        flight.result.whenComplete((response, error) -> {
+            if (error != null) {
+                upstreamFailed(ctx, keepAlive, error);
+            } else {
+                send(ctx, keepAlive, response, flight.shared ? "COALESCED" : "MISS");
+            }
+        });
+    }
+
+    private void forward(ChannelHandlerContext ctx, boolean keepAlive, String uri, byte[] body, String authorization) {
+        stats.upstreamCalls.increment();
+        upstream.send(uri, body, authorization).whenComplete((response, error) -> {
+            if (error != null) {
+                upstreamFailed(ctx, keepAlive, error);
+            } else {
+                send(ctx, keepAlive, response, "BYPASS");
+            }
+        });
+    }
+
+    private void stream(ChannelHandlerContext ctx, boolean keepAlive, String uri, byte[] body, String authorization) {
+        stats.streams.increment();
+        stats.upstreamCalls.increment();
+
+        Call call = upstream.newStreamCall(uri, body, authorization);
+        ctx.channel().closeFuture().addListener(f -> call.cancel());
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!call.isCanceled()) {
+                    upstreamFailed(ctx, keepAlive, e);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody responseBody = response.body()) {
+                    if (!response.isSuccessful()) {
+                        MediaType type = responseBody.contentType();
+                        send(ctx, keepAlive, new UpstreamResponse(response.code(),
+                                type != null ? type.toString() : "application/json",
+                                response.header("Retry-After"), responseBody.bytes()), "BYPASS");
+                        return;
+                    }
+
+                    HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                    head.headers()
+                            .set(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                            .set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE)
+                            .set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED)
+                            .set(CACHE_HEADER, "BYPASS");
+                    HttpUtil.setKeepAlive(head, keepAlive);
+                    ctx.writeAndFlush(head);
+
+                    // Relay bytes as they arrive; wait for the client when its socket buffer is full
+                    InputStream in = responseBody.byteStream();
+                    byte[] buffer = new byte[STREAM_CHUNK_SIZE];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (!ctx.channel().isActive()) {
+                            call.cancel();
+                            return;
+                        }
+                        ChannelFuture written = ctx.writeAndFlush(new DefaultHttpContent(Unpooled.copiedBuffer(buffer, 0, read)));
+                        if (!ctx.channel().isWritable()) {
+                            written.awaitUninterruptibly();
+                        }
+                    }
+
+                    ChannelFuture end = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+                    if (!keepAlive) {
+                        end.addListener(ChannelFutureListener.CLOSE);
+                    }
+                } catch (IOException e) {
+                    // Headers are already sent, so the only way to signal the failure is to drop the connection
+                    if (!call.isCanceled()) {
+                        stats.upstreamErrors.increment();
+                        ctx.close();
+                    }
+                }
+            }
+        });
+    }
+
+    private void upstreamFailed(ChannelHandlerContext ctx, boolean keepAlive, Throwable error) {
+        stats.upstreamErrors.increment();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        sendError(ctx, keepAlive, HttpResponseStatus.BAD_GATEWAY,
+                "Upstream request failed: " + cause.getMessage(), "api_error", null);
+    }
+
+    private void send(ChannelHandlerContext ctx, boolean keepAlive, UpstreamResponse upstreamResponse, String cacheStatus) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+                HttpResponseStatus.valueOf(upstreamResponse.status), Unpooled.wrappedBuffer(upstreamResponse.body));
+        response.headers()
+                .set(HttpHeaderNames.CONTENT_TYPE, upstreamResponse.contentType)
+                .set(CACHE_HEADER, cacheStatus);
+        if (upstreamResponse.retryAfter != null) {
+            response.headers().set(HttpHeaderNames.RETRY_AFTER, upstreamResponse.retryAfter);
+        }
+        write(ctx, keepAlive, response);
+    }
+
+    private void sendError(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status,
+                           String message, String type, String retryAfter) {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty("type", type);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+
+        FullHttpResponse response = jsonResponse(status, body);
+        if (retryAfter != null) {
+            response.headers().set(HttpHeaderNames.RETRY_AFTER, retryAfter);
+        }
+        write(ctx, keepAlive, response);
+    }
+
+    private void sendJson(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status, JsonObject body) {
+        write(ctx, keepAlive, jsonResponse(status, body));
+    }
+
+    private FullHttpResponse jsonResponse(HttpResponseStatus status, JsonObject body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.wrappedBuffer(gson.toJson(body).getBytes(StandardCharsets.UTF_8)));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        return response;
+    }
+
+    private static void write(ChannelHandlerContext ctx, boolean keepAlive, FullHttpResponse response) {
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
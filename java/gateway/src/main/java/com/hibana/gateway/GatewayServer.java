@@ -0,0 +1,91 @@
+package com.hibana.gateway;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Local OpenAI-compatible gateway in front of Hibana.
+ *
+ * Point any sample at it by changing BASE_URL to {@code http://localhost:8080/v1};
+ * all JVMs on the host then share one upstream connection pool, one response
+ * cache and one set of per-key rate limits. See {@link GatewayConfig} for the
+ * environment variables it reads.
+ */
+public final class GatewayServer implements AutoCloseable {
+
+    private static final int MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+
+    private final GatewayConfig config;
+    private final Upstream upstream;
+    private final EventLoopGroup boss = new NioEventLoopGroup(1);
+    private final EventLoopGroup workers = new NioEventLoopGroup();
+    private Channel channel;
+
+    public GatewayServer(GatewayConfig config) {
+        this.config = config;
+        this.upstream = new Upstream(config);
+    }
+
+    /**
+     * Bind the listen port. Use port 0 in the config to pick a free port.
+     */
+    public GatewayServer start() throws InterruptedException {
+        GatewayHandler handler = new GatewayHandler(config, upstream);
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(boss, workers)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 1024)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline()
+                                .addLast(new HttpServerCodec())
+                                .addLast(new HttpObjectAggregator(MAX_REQUEST_BYTES))
+                                .addLast(handler);
+                    }
+                });
+
+        channel = bootstrap.bind(config.port).sync().channel();
+        return this;
+    }
+
+    public int port() {
+        return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    public void awaitShutdown() throws InterruptedException {
+        channel.closeFuture().sync();
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+        boss.shutdownGracefully();
+        workers.shutdownGracefully();
+        upstream.shutdown();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        GatewayConfig config = GatewayConfig.fromEnvironment();
+        GatewayServer server = new GatewayServer(config).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        System.out.println("Hibana gateway listening on http://localhost:" + server.port() + "/v1");
+        System.out.println("  " + config);
+        server.awaitShutdown();
+    }
+}
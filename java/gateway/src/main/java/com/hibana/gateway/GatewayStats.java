@@ -0,0 +1,36 @@
+package com.hibana.gateway;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters served at {@code GET /gateway/stats}.
+ */
+final class GatewayStats {
+
+    final LongAdder requests = new LongAdder();
+    final LongAdder cacheHits = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder upstreamCalls = new LongAdder();
+    final LongAdder upstreamErrors = new LongAdder();
+    final LongAdder rateLimited = new LongAdder();
+    final LongAdder streams = new LongAdder();
+
+    JsonObject toJson(ResponseCache cache, SingleFlight<?> flights, Upstream upstream, KeyRateLimiter limiter) {
+        JsonObject json = new JsonObject();
+        json.addProperty("requests", requests.sum());
+        json.addProperty("cache_hits", cacheHits.sum());
+        json.addProperty("coalesced", coalesced.sum());
+        json.addProperty("upstream_calls", upstreamCalls.sum());
+        json.addProperty("upstream_errors", upstreamErrors.sum());
+        json.addProperty("rate_limited", rateLimited.sum());
+        json.addProperty("streams", streams.sum());
+        json.addProperty("cache_entries", cache.size());
+        json.addProperty("cache_bytes", cache.totalBytes());
+        json.addProperty("in_flight", flights.inFlight());
+        json.addProperty("upstream_connections", upstream.connectionCount());
+        json.addProperty("rate_limited_keys", limiter.trackedKeys());
+        return json;
+    }
+}
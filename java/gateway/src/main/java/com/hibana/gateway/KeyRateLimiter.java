@@ -0,0 +1,104 @@
+package com.hibana.gateway;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per API key. Rejected requests get the number of seconds
+ * until a token is available, which the gateway returns as Retry-After.
+ *
+ * A bucket left alone until it has refilled is no different from a new
+ * one, so such buckets are dropped by a sweep that runs at most once per
+ * refill time (and at least a second apart). Buckets are only kept for
+ * keys seen within about two refill times, so clients sending made-up
+ * keys cannot grow the map beyond what their request rate allows.
+ */
+final class KeyRateLimiter {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final long refillNanos;
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime());
+
+    KeyRateLimiter(double permitsPerSecond, int burst) {
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.refillNanos = tokensPerNano > 0
+                ? Math.max(TimeUnit.SECONDS.toNanos(1), (long) Math.ceil(this.burst / tokensPerNano))
+                : 0;
+    }
+
+    /**
+     * @return 0 if the request may proceed, otherwise seconds to wait
+     */
+    long tryAcquire(String apiKey) {
+        if (tokensPerNano <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long sweepAt = nextSweepNanos.get();
+        if (now - sweepAt >= 0 && nextSweepNanos.compareAndSet(sweepAt, now + refillNanos)) {
+            sweep(now);
+        }
+        while (true) {
+            long wait = buckets.computeIfAbsent(apiKey, k -> new Bucket(burst)).tryAcquire();
+            if (wait >= 0) {
+                return wait;
+            }
+            // Swept between the lookup and the acquire; take the new one
+        }
+    }
+
+    /**
+     * Keys with a bucket, reported in the gateway stats.
+     */
+    int trackedKeys() {
+        return buckets.size();
+    }
+
+    private void sweep(long now) {
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            entry.getValue().removeIfRefilled(entry.getKey(), now);
+        }
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private boolean removed;
+
+        Bucket(double tokens) {
+            this.tokens = tokens;
+        }
+
+        /**
+         * @return 0 if a token was taken, seconds to wait if none is left,
+         *         or -1 if this bucket has been swept
+         */
+        synchronized long tryAcquire() {
+            if (removed) {
+                return -1;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            double nanosUntilToken = (1 - tokens) / tokensPerNano;
+            return Math.max(1, (long) Math.ceil(nanosUntilToken / TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        synchronized void removeIfRefilled(String apiKey, long now) {
+            if (tokens + (now - lastRefillNanos) * tokensPerNano >= burst) {
+                removed = true;
+                buckets.remove(apiKey, this);
+            }
+        }
+    }
+}
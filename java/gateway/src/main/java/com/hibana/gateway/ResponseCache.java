@@ -0,0 +1,75 @@
+package com.hibana.gateway;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of upstream responses with a per-entry TTL, bounded both by
+ * entry count and by total body size.
+ */
+final class ResponseCache {
+
+    private static final class Entry {
+        final UpstreamResponse response;
+        final long expiresAtNanos;
+
+        Entry(UpstreamResponse response, long expiresAtNanos) {
+            this.response = response;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    ResponseCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    synchronized UpstreamResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos >= 0) {
+            remove(key);
+            return null;
+        }
+        return entry.response;
+    }
+
+    synchronized void put(String key, UpstreamResponse response, Duration ttl) {
+        if (response.body.length > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry(response, System.nanoTime() + ttl.toNanos()));
+        totalBytes += response.body.length;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && eldest.hasNext()) {
+            totalBytes -= eldest.next().getValue().response.body.length;
+            eldest.remove();
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            totalBytes -= old.response.body.length;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.hibana.gateway;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical requests into one upstream call. The first
+ * caller for a key starts the call; everyone arriving before it completes
+ * shares its result.
+ */
+final class SingleFlight<V> {
+
+    private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @return the shared result, and whether this caller joined an existing call
+     */
+    Flight<V> execute(String key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return new Flight<>(existing, true);
+        }
+
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(value);
+            }
+        });
+        return new Flight<>(mine, false);
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    static final class Flight<V> {
+        final CompletableFuture<V> result;
+        final boolean shared;
+
+        Flight(CompletableFuture<V> result, boolean shared) {
+            this.result = result;
+            this.shared = shared;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.hibana.gateway;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards requests to Hibana over a single shared OkHttp connection pool,
+ * so every caller of the gateway reuses the same warm connections.
+ *
+ * Streamed calls go through a dispatcher of their own. Relaying a stream
+ * holds a dispatcher thread and slot until the model finishes, so sharing
+ * one would let a few long streams starve buffered requests.
+ */
+final class Upstream {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final OkHttpClient http;
+    private final OkHttpClient streaming;
+    private final String baseUrl;
+
+    Upstream(GatewayConfig config) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(config.upstreamConnections);
+        dispatcher.setMaxRequestsPerHost(config.upstreamConnections);
+
+        this.http = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Math.max(8, config.upstreamConnections / 4), 5, TimeUnit.MINUTES))
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(120, TimeUnit.SECONDS)
+                .build();
+
+        Dispatcher streamDispatcher = new Dispatcher();
+        streamDispatcher.setMaxRequests(config.upstreamStreams);
+        streamDispatcher.setMaxRequestsPerHost(config.upstreamStreams);
+        // Same connection pool, so streams and buffered calls share warm connections
+        this.streaming = http.newBuilder()
+                .dispatcher(streamDispatcher)
+                .build();
+        this.baseUrl = config.upstreamBaseUrl;
+    }
+
+    /**
+     * Send a request and buffer the whole response.
+     *
+     * @param path path below the upstream base URL, e.g. {@code /chat/completions}
+     * @param body request body, or null for GET
+     */
+    CompletableFuture<UpstreamResponse> send(String path, byte[] body, String authorization) {
+        CompletableFuture<UpstreamResponse> result = new CompletableFuture<>();
+        newCall(path, body, authorization).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody responseBody = response.body()) {
+                    MediaType type = responseBody.contentType();
+                    result.complete(new UpstreamResponse(
+                            response.code(),
+                            type != null ? type.toString() : "application/json",
+                            response.header("Retry-After"),
+                            responseBody.bytes()));
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Create a call whose response the caller reads incrementally (SSE), on
+     * the streaming dispatcher.
+     */
+    Call newStreamCall(String path, byte[] body, String authorization) {
+        return streaming.newCall(request(path, body, authorization));
+    }
+
+    private Call newCall(String path, byte[] body, String authorization) {
+        return http.newCall(request(path, body, authorization));
+    }
+
+    private Request request(String path, byte[] body, String authorization) {
+        Request.Builder request = new Request.Builder().url(baseUrl + path);
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        if (body != null) {
+            request.post(RequestBody.create(body, JSON));
+        }
+        return request.build();
+    }
+
+    int connectionCount() {
+        return http.connectionPool().connectionCount();
+    }
+
+    void shutdown() {
+        http.dispatcher().executorService().shutdown();
+        streaming.dispatcher().executorService().shutdown();
+        http.connectionPool().evictAll();
+    }
+}
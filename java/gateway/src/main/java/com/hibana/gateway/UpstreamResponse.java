@@ -0,0 +1,24 @@
+package com.hibana.gateway;
+
+/**
+ * A fully buffered upstream response. Immutable so that one instance can be
+ * cached and handed to every coalesced caller.
+ */
+final class UpstreamResponse {
+
+    final int status;
+    final String contentType;
+    final String retryAfter;
+    final byte[] body;
+
+    UpstreamResponse(int status, String contentType, String retryAfter, byte[] body) {
+        this.status = status;
+        this.contentType = contentType;
+        this.retryAfter = retryAfter;
+        this.body = body;
+    }
+
+    boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+}
@@ -0,0 +1,165 @@
+package com.hibana.loadgen;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends chat completion requests to the system under test and reports
+ * each outcome to a {@link LoadRecorder}.
+ */
+final class ChatTarget {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    private final OkHttpClient http;
+    private final String url;
+    private final String apiKey;
+    private final LoadRecorder recorder;
+
+    ChatTarget(String baseUrl, String apiKey, int maxConnections, long timeoutSeconds, LoadRecorder recorder) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConnections);
+        dispatcher.setMaxRequestsPerHost(maxConnections);
+
+        this.http = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxConnections, 1, TimeUnit.MINUTES))
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .callTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .build();
+        this.url = (baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl) + "/chat/completions";
+        this.apiKey = apiKey;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Send without blocking. Latency is measured from {@code intendedStartNanos},
+     * not from when the request actually went out, so any queueing in the
+     * generator itself shows up in the results.
+     */
+    void sendAsync(PromptMix.Entry entry, long intendedStartNanos) {
+        newCall(entry).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                recorder.recordFailure(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                handle(entry, intendedStartNanos, response);
+            }
+        });
+    }
+
+    /**
+     * Send and wait for the complete response (closed-loop mode).
+     */
+    void sendBlocking(PromptMix.Entry entry) {
+        long start = System.nanoTime();
+        try {
+            handle(entry, start, newCall(entry).execute());
+        } catch (IOException e) {
+            recorder.recordFailure(e);
+        }
+    }
+
+    private Call newCall(PromptMix.Entry entry) {
+        return http.newCall(new Request.Builder()
+                .url(url)
+                .header("Authorization", "Bearer " + apiKey)
+                .post(RequestBody.create(entry.body, JSON))
+                .build());
+    }
+
+    private void handle(PromptMix.Entry entry, long startNanos, Response response) {
+        try (ResponseBody body = response.body()) {
+            if (!response.isSuccessful()) {
+                body.string();  // drain so the connection can be reused
+                recorder.recordError(response.code());
+                return;
+            }
+            if (entry.stream) {
+                readStream(entry, startNanos, body.source());
+            } else {
+                JsonObject json = JsonParser.parseString(body.string()).getAsJsonObject();
+                recorder.recordSuccess(entry.name, startNanos, -1, completionTokens(json));
+            }
+        } catch (IOException | RuntimeException e) {
+            recorder.recordFailure(e);
+        }
+    }
+
+    private void readStream(PromptMix.Entry entry, long startNanos, BufferedSource source) throws IOException {
+        long firstTokenNanos = -1;
+        long chunks = 0;
+        long usageTokens = -1;
+        boolean done = false;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data: ")) {
+                continue;
+            }
+            String data = line.substring(6).trim();
+            if (data.equals("[DONE]")) {
+                done = true;
+                break;
+            }
+            JsonObject chunk = JsonParser.parseString(data).getAsJsonObject();
+            if (chunk.has("usage") && chunk.get("usage").isJsonObject()) {
+                usageTokens = completionTokens(chunk);
+            }
+            if (hasContent(chunk)) {
+                if (firstTokenNanos < 0) {
+                    firstTokenNanos = System.nanoTime() - startNanos;
+                }
+                chunks++;
+            }
+        }
+        if (!done) {
+            throw new IOException("stream ended before [DONE]");
+        }
+        recorder.recordSuccess(entry.name, startNanos, firstTokenNanos, usageTokens >= 0 ? usageTokens : chunks);
+    }
+
+    private static boolean hasContent(JsonObject chunk) {
+        if (!chunk.has("choices") || chunk.getAsJsonArray("choices").size() == 0) {
+            return false;
+        }
+        JsonObject choice = chunk.getAsJsonArray("choices").get(0).getAsJsonObject();
+        if (!choice.has("delta") || !choice.get("delta").isJsonObject()) {
+            return false;
+        }
+        JsonObject delta = choice.getAsJsonObject("delta");
+        return delta.has("content") && !delta.get("content").isJsonNull() && !delta.get("content").getAsString().isEmpty();
+    }
+
+    private static long completionTokens(JsonObject json) {
+        if (json.has("usage") && json.get("usage").isJsonObject()) {
+            JsonObject usage = json.getAsJsonObject("usage");
+            if (usage.has("completion_tokens")) {
+                return usage.get("completion_tokens").getAsLong();
+            }
+        }
+        return 0;
+    }
+
+    void shutdown() {
+        http.dispatcher().executorService().shutdown();
+        http.connectionPool().evictAll();
+    }
+}
@@ -0,0 +1,281 @@
+package com.hibana.loadgen;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the chat completions path.
+ *
+ * <ul>
+ *   <li><b>open</b> loop: requests start at a fixed arrival rate whether or not
+ *       earlier ones have finished. Latency is measured from each request's
+ *       scheduled start, so a slow server cannot hide its queueing by slowing
+ *       the generator down (coordinated omission).</li>
+ *   <li><b>closed</b> loop: a fixed number of workers, each sending its next
+ *       request as soon as the previous one completes.</li>
+ * </ul>
+ *
+ * <pre>
+ * ./gradlew :loadgen:run --args="--target http://localhost:8090/v1 --mode open \
+ *     --schedule 10s@5,60s@50 --prompts prompts/sample-mix.jsonl --csv run.csv"
+ * </pre>
+ *
+ * Options:
+ * <pre>
+ * --target URL          base URL (default http://localhost:8090/v1, the mock server)
+ * --key KEY             API key (default $HIBANA_API_KEY, or "loadgen")
+ * --mode open|closed    default open
+ * --schedule SPEC       stages, see {@link LoadSchedule} (default 10s@10,30s@10)
+ * --prompts FILE        JSONL prompt mix, see {@link PromptMix}
+ * --model ID            model for the built-in prompt when --prompts is not given
+ * --arrivals uniform|poisson   spacing of open-loop arrivals (default uniform)
+ * --max-in-flight N     open loop: drop arrivals beyond this many outstanding (default 10000)
+ * --timeout SECONDS     per-request timeout (default 120)
+ * --csv FILE            also write the per-second report as CSV
+ * --seed N              seed for prompt selection and Poisson arrivals (default 1)
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private final LoadSchedule schedule;
+    private final PromptMix mix;
+    private final boolean openLoop;
+    private final boolean poisson;
+    private final int maxInFlight;
+    private final long seed;
+    private final LoadRecorder recorder = new LoadRecorder();
+    private final ChatTarget target;
+
+    private LoadGenerator(Options options) throws IOException {
+        this.schedule = LoadSchedule.parse(options.schedule);
+        this.mix = options.prompts != null ? PromptMix.load(Paths.get(options.prompts)) : PromptMix.single(options.model);
+        this.openLoop = options.mode.equals("open");
+        this.poisson = options.arrivals.equals("poisson");
+        this.maxInFlight = options.maxInFlight;
+        this.seed = options.seed;
+        int connections = openLoop ? maxInFlight : (int) Math.ceil(schedule.peak());
+        this.target = new ChatTarget(options.target, options.key, connections, options.timeoutSeconds, recorder);
+    }
+
+    private void run(PrintWriter csv, long timeoutSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "loadgen-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (csv != null) {
+            csv.println("second,target,sent,ok,errors,p50_ms,p90_ms,p99_ms,max_ms,ttft_p50_ms,ttft_p99_ms,tokens,in_flight");
+        }
+        reporter.scheduleAtFixedRate(() -> report(start, csv), 1, 1, TimeUnit.SECONDS);
+
+        if (openLoop) {
+            runOpenLoop(start);
+        } else {
+            runClosedLoop(start);
+        }
+
+        // Let outstanding requests finish so their latency is counted
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (recorder.inFlight() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+
+        reporter.shutdown();
+        reporter.awaitTermination(5, TimeUnit.SECONDS);
+        report(start, csv);
+        target.shutdown();
+
+        long elapsed = System.nanoTime() - start;
+        System.out.println();
+        System.out.println("=".repeat(60));
+        System.out.printf("Summary (%s loop, %.1f s)%n", openLoop ? "open" : "closed", elapsed / 1e9);
+        System.out.println("=".repeat(60));
+        System.out.print(recorder.summary(elapsed));
+    }
+
+    /**
+     * Walks the schedule in 1 ms ticks, accumulating the arrivals owed at the
+     * current rate. Uniform arrivals fire at every whole request; Poisson
+     * arrivals fire after exponentially distributed amounts, which gives a
+     * Poisson process even while the rate is ramping.
+     */
+    private void runOpenLoop(long start) {
+        Random random = new Random(seed);
+        long tick = TimeUnit.MILLISECONDS.toNanos(1);
+        double owed = 0;
+        double threshold = nextThreshold(random);
+
+        for (long t = 0; t < schedule.totalNanos(); t += tick) {
+            owed += schedule.levelAt(t) / 1000.0;
+            if (owed < threshold) {
+                continue;
+            }
+            long intended = start + t;
+            sleepUntil(intended);
+            while (owed >= threshold) {
+                owed -= threshold;
+                threshold = nextThreshold(random);
+                PromptMix.Entry entry = mix.pick(random);
+                if (recorder.inFlight() >= maxInFlight) {
+                    recorder.recordDropped();
+                } else {
+                    recorder.recordSent();
+                    target.sendAsync(entry, intended);
+                }
+            }
+        }
+    }
+
+    private double nextThreshold(Random random) {
+        return poisson ? -Math.log(1.0 - random.nextDouble()) : 1.0;
+    }
+
+    private void runClosedLoop(long start) throws InterruptedException {
+        int workers = (int) Math.ceil(schedule.peak());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed + index);
+                long elapsed;
+                while ((elapsed = System.nanoTime() - start) < schedule.totalNanos()) {
+                    // Worker i only runs while the schedule calls for more than i concurrent requests
+                    if (index < Math.round(schedule.levelAt(elapsed))) {
+                        recorder.recordSent();
+                        target.sendBlocking(mix.pick(random));
+                    } else {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                    }
+                }
+            }, "loadgen-worker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void report(long start, PrintWriter csv) {
+        long elapsed = System.nanoTime() - start;
+        LoadRecorder.Interval interval = recorder.nextInterval(elapsed);
+        long second = Math.round(elapsed / 1e9);
+        double level = schedule.levelAt(elapsed);
+
+        System.out.printf("%5ds  target %6.1f  sent %5d  ok %5d  err %4d %-14s latency %s  ttft %s  %6.0f tok/s  in-flight %d%n",
+                second, level, interval.sent, interval.succeeded, interval.errorCount(),
+                LoadRecorder.describeErrors(interval.errors),
+                shortPercentiles(interval.latency), shortPercentiles(interval.ttft),
+                (double) interval.tokens, interval.inFlight);
+
+        if (csv != null) {
+            csv.printf("%d,%.1f,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d%n",
+                    second, level, interval.sent, interval.succeeded, interval.errorCount(),
+                    ms(interval.latency.getValueAtPercentile(50)), ms(interval.latency.getValueAtPercentile(90)),
+                    ms(interval.latency.getValueAtPercentile(99)), ms(interval.latency.getMaxValue()),
+                    ms(interval.ttft.getValueAtPercentile(50)), ms(interval.ttft.getValueAtPercentile(99)),
+                    interval.tokens, interval.inFlight);
+            csv.flush();
+        }
+    }
+
+    private static String shortPercentiles(org.HdrHistogram.Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return String.format("%-15s", "-");
+        }
+        return String.format("p50 %5.0f p99 %5.0f", ms(histogram.getValueAtPercentile(50)), ms(histogram.getValueAtPercentile(99)));
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static void sleepUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static final class Options {
+        String target = "http://localhost:8090/v1";
+        String key = System.getenv().getOrDefault("HIBANA_API_KEY", "loadgen");
+        String mode = "open";
+        String schedule = "10s@10,30s@10";
+        String prompts;
+        String model = "gpt-5-nano";
+        String arrivals = "uniform";
+        int maxInFlight = 10_000;
+        long timeoutSeconds = 120;
+        String csv;
+        long seed = 1;
+
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--target": options.target = value; break;
+                    case "--key": options.key = value; break;
+                    case "--mode": options.mode = value; break;
+                    case "--schedule": options.schedule = value; break;
+                    case "--prompts": options.prompts = value; break;
+                    case "--model": options.model = value; break;
+                    case "--arrivals": options.arrivals = value; break;
+                    case "--max-in-flight": options.maxInFlight = Integer.parseInt(value); break;
+                    case "--timeout": options.timeoutSeconds = Long.parseLong(value); break;
+                    case "--csv": options.csv = value; break;
+                    case "--seed": options.seed = Long.parseLong(value); break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+                if (value == null) {
+                    throw new IllegalArgumentException(args[i] + " needs a value");
+                }
+                i++;
+            }
+            if (!options.mode.equals("open") && !options.mode.equals("closed")) {
+                throw new IllegalArgumentException("--mode must be open or closed");
+            }
+            if (!options.arrivals.equals("uniform") && !options.arrivals.equals("poisson")) {
+                throw new IllegalArgumentException("--arrivals must be uniform or poisson");
+            }
+            return options;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println("See the LoadGenerator class documentation for options.");
+            System.exit(2);
+            return;
+        }
+
+        LoadGenerator generator = new LoadGenerator(options);
+        System.out.printf("Target %s, %s loop, schedule %s, %d prompt(s)%n%n",
+                options.target, options.mode, options.schedule, generator.mix.size());
+
+        if (options.csv != null) {
+            try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(options.csv), StandardCharsets.UTF_8))) {
+                generator.run(csv, options.timeoutSeconds);
+            }
+        } else {
+            generator.run(null, options.timeoutSeconds);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.hibana.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe collection of request outcomes, read out once per interval.
+ * Latencies are kept in microseconds in HdrHistogram recorders, so reading
+ * an interval never blocks the threads recording into it.
+ */
+final class LoadRecorder {
+
+    /** Pseudo status for transport failures (timeouts, resets). */
+    static final int TRANSPORT_ERROR = 0;
+    /** Pseudo status for requests the generator dropped because too many were in flight. */
+    static final int DROPPED = -1;
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Recorder latency = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final Recorder ttft = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final ConcurrentMap<String, Recorder> latencyByName = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final ConcurrentMap<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    private volatile String lastFailure;
+
+    private final Histogram totalLatency = new Histogram(MAX_LATENCY_MICROS, 3);
+    private final Histogram totalTtft = new Histogram(MAX_LATENCY_MICROS, 3);
+    private final Map<String, Histogram> totalByName = new TreeMap<>();
+    private final Map<Integer, Long> totalErrors = new TreeMap<>();
+    private long totalSent;
+    private long totalSucceeded;
+    private long totalTokens;
+
+    void recordSent() {
+        sent.increment();
+        inFlight.incrementAndGet();
+    }
+
+    void recordSuccess(String name, long startNanos, long ttftNanos, long completionTokens) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        latency.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+        latencyByName.computeIfAbsent(name, n -> new Recorder(MAX_LATENCY_MICROS, 3))
+                .recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+        if (ttftNanos >= 0) {
+            ttft.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(ttftNanos), MAX_LATENCY_MICROS));
+        }
+        succeeded.increment();
+        tokens.add(completionTokens);
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @param status HTTP status, or {@link #TRANSPORT_ERROR}
+     */
+    void recordError(int status) {
+        errors.computeIfAbsent(status, s -> new LongAdder()).increment();
+        inFlight.decrementAndGet();
+    }
+
+    void recordFailure(Throwable error) {
+        lastFailure = error.toString();
+        recordError(TRANSPORT_ERROR);
+    }
+
+    void recordDropped() {
+        sent.increment();
+        errors.computeIfAbsent(DROPPED, s -> new LongAdder()).increment();
+    }
+
+    long inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Take the counts since the previous call and fold them into the run totals.
+     */
+    synchronized Interval nextInterval(long elapsedNanos) {
+        Histogram intervalLatency = latency.getIntervalHistogram();
+        Histogram intervalTtft = ttft.getIntervalHistogram();
+
+        Interval interval = new Interval(elapsedNanos, sent.sumThenReset(), succeeded.sumThenReset(),
+                tokens.sumThenReset(), inFlight.get(), intervalLatency, intervalTtft);
+        for (Map.Entry<Integer, LongAdder> error : errors.entrySet()) {
+            long count = error.getValue().sumThenReset();
+            if (count > 0) {
+                interval.errors.put(error.getKey(), count);
+            }
+        }
+
+        totalLatency.add(intervalLatency);
+        totalTtft.add(intervalTtft);
+        for (Map.Entry<String, Recorder> named : latencyByName.entrySet()) {
+            totalByName.computeIfAbsent(named.getKey(), n -> new Histogram(MAX_LATENCY_MICROS, 3))
+                    .add(named.getValue().getIntervalHistogram());
+        }
+        interval.errors.forEach((status, count) -> totalErrors.merge(status, count, Long::sum));
+        totalSent += interval.sent;
+        totalSucceeded += interval.succeeded;
+        totalTokens += interval.tokens;
+        return interval;
+    }
+
+    synchronized String summary(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Requests: %,d sent, %,d ok, %,d errors%s%n",
+                totalSent, totalSucceeded, totalErrors.values().stream().mapToLong(Long::longValue).sum(),
+                totalErrors.isEmpty() ? "" : " " + describeErrors(totalErrors)));
+        out.append(String.format("Throughput: %.1f ok/s, %.0f tokens/s%n",
+                totalSucceeded / seconds, totalTokens / seconds));
+        if (lastFailure != null) {
+            out.append("Last transport error: ").append(lastFailure).append('\n');
+        }
+        out.append("Latency:    ").append(percentiles(totalLatency)).append('\n');
+        if (totalTtft.getTotalCount() > 0) {
+            out.append("TTFT:       ").append(percentiles(totalTtft)).append('\n');
+        }
+        if (totalByName.size() > 1) {
+            for (Map.Entry<String, Histogram> named : totalByName.entrySet()) {
+                out.append(String.format("  %-18s %,7d ok  %s%n", named.getKey(),
+                        named.getValue().getTotalCount(), percentiles(named.getValue())));
+            }
+        }
+        return out.toString();
+    }
+
+    static String percentiles(Histogram histogram) {
+        if (histogram.getTotalCount() == 0) {
+            return "-";
+        }
+        return String.format("p50 %s  p90 %s  p99 %s  p99.9 %s  max %s",
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+
+    static String describeErrors(Map<Integer, Long> errors) {
+        if (errors.isEmpty()) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder("(");
+        for (Map.Entry<Integer, Long> error : errors.entrySet()) {
+            if (out.length() > 1) {
+                out.append(' ');
+            }
+            String label = error.getKey() == TRANSPORT_ERROR ? "io"
+                    : error.getKey() == DROPPED ? "dropped" : String.valueOf(error.getKey());
+            out.append(label).append(':').append(error.getValue());
+        }
+        return out.append(')').toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.0fms", micros / 1000.0);
+    }
+
+    /**
+     * Counts for one reporting interval.
+     */
+    static final class Interval {
+        final long elapsedNanos;
+        final long sent;
+        final long succeeded;
+        final long tokens;
+        final long inFlight;
+        final Histogram latency;
+        final Histogram ttft;
+        final Map<Integer, Long> errors = new TreeMap<>();
+
+        Interval(long elapsedNanos, long sent, long succeeded, long tokens, long inFlight,
+                 Histogram latency, Histogram ttft) {
+            this.elapsedNanos = elapsedNanos;
+            this.sent = sent;
+            this.succeeded = succeeded;
+            this.tokens = tokens;
+            this.inFlight = inFlight;
+            this.latency = latency;
+            this.ttft = ttft;
+        }
+
+        long errorCount() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.hibana.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load level over time, as a list of stages. Each stage ramps linearly
+ * from the previous level to its target over its duration.
+ *
+ * <pre>
+ * "30s@50"               ramp from 0 to 50 over 30 s
+ * "10s@20,60s@20,30s@80" ramp to 20, hold 20 for a minute, ramp to 80
+ * </pre>
+ *
+ * The level is requests per second in open-loop mode and concurrent
+ * requests in closed-loop mode. A stage written with {@code =} instead of
+ * {@code @} jumps to its target immediately ("60s=20").
+ */
+final class LoadSchedule {
+
+    private static final class Stage {
+        final long durationNanos;
+        final double target;
+        final boolean step;
+
+        Stage(long durationNanos, double target, boolean step) {
+            this.durationNanos = durationNanos;
+            this.target = target;
+            this.step = step;
+        }
+    }
+
+    private final List<Stage> stages;
+    private final long totalNanos;
+    private final double peak;
+
+    private LoadSchedule(List<Stage> stages) {
+        this.stages = stages;
+        long total = 0;
+        double max = 0;
+        for (Stage stage : stages) {
+            total += stage.durationNanos;
+            max = Math.max(max, stage.target);
+        }
+        this.totalNanos = total;
+        this.peak = max;
+    }
+
+    static LoadSchedule parse(String spec) {
+        List<Stage> stages = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            int at = part.indexOf('@');
+            int eq = part.indexOf('=');
+            int sep = at >= 0 ? at : eq;
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Bad stage '" + part + "', expected e.g. 30s@50");
+            }
+            stages.add(new Stage(parseDuration(part.substring(0, sep)),
+                    Double.parseDouble(part.substring(sep + 1)), at < 0));
+        }
+        return new LoadSchedule(stages);
+    }
+
+    private static long parseDuration(String text) {
+        text = text.trim();
+        if (text.endsWith("ms")) {
+            return TimeUnit.MILLISECONDS.toNanos(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("m")) {
+            return TimeUnit.MINUTES.toNanos(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("s")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return TimeUnit.SECONDS.toNanos(Long.parseLong(text));
+    }
+
+    /**
+     * Level at the given time since the start of the run; 0 once the schedule is over.
+     */
+    double levelAt(long elapsedNanos) {
+        double previous = 0;
+        long stageStart = 0;
+        for (Stage stage : stages) {
+            if (elapsedNanos < stageStart + stage.durationNanos) {
+                if (stage.step) {
+                    return stage.target;
+                }
+                double progress = (double) (elapsedNanos - stageStart) / stage.durationNanos;
+                return previous + (stage.target - previous) * progress;
+            }
+            previous = stage.target;
+            stageStart += stage.durationNanos;
+        }
+        return 0;
+    }
+
+    long totalNanos() {
+        return totalNanos;
+    }
+
+    double peak() {
+        return peak;
+    }
+}
@@ -0,0 +1,102 @@
+package com.hibana.loadgen;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Weighted mix of chat completion requests, read from JSONL. Each line is a
+ * request body with an optional {@code weight} (default 1) and
+ * {@code name} (default: the model), both removed before sending:
+ *
+ * <pre>
+ * {"name": "short", "weight": 6, "model": "gpt-5-nano", "max_tokens": 100, "messages": [...]}
+ * {"name": "stream", "weight": 2, "model": "gpt-5-nano", "stream": true, "messages": [...]}
+ * </pre>
+ */
+final class PromptMix {
+
+    static final class Entry {
+        final String name;
+        final byte[] body;
+        final boolean stream;
+
+        Entry(String name, byte[] body, boolean stream) {
+            this.name = name;
+            this.body = body;
+            this.stream = stream;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Double> cumulativeWeights = new ArrayList<>();
+    private double totalWeight;
+
+    static PromptMix load(Path file) throws IOException {
+        PromptMix mix = new PromptMix();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                try {
+                    mix.add(JsonParser.parseString(line).getAsJsonObject());
+                } catch (RuntimeException e) {
+                    throw new IOException(file + ":" + number + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        if (mix.entries.isEmpty()) {
+            throw new IOException(file + " contains no requests");
+        }
+        return mix;
+    }
+
+    /**
+     * A single short prompt, for quick runs without a mix file.
+     */
+    static PromptMix single(String model) {
+        PromptMix mix = new PromptMix();
+        mix.add(JsonParser.parseString("{\"model\": \"" + model + "\", \"max_tokens\": 100, "
+                + "\"messages\": [{\"role\": \"user\", \"content\": \"Say hello in one sentence.\"}]}").getAsJsonObject());
+        return mix;
+    }
+
+    private void add(JsonObject request) {
+        double weight = request.has("weight") ? request.remove("weight").getAsDouble() : 1.0;
+        String name = request.has("name") ? request.remove("name").getAsString()
+                : request.has("model") ? request.get("model").getAsString() : "request";
+        boolean stream = request.has("stream") && request.get("stream").getAsBoolean();
+        if (weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+        entries.add(new Entry(name, request.toString().getBytes(StandardCharsets.UTF_8), stream));
+        cumulativeWeights.add(totalWeight);
+    }
+
+    Entry pick(Random random) {
+        double point = random.nextDouble() * totalWeight;
+        for (int i = 0; i < entries.size(); i++) {
+            if (point < cumulativeWeights.get(i)) {
+                return entries.get(i);
+            }
+        }
+        return entries.get(entries.size() - 1);
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,74 @@
+package com.hibana.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic filler text. The same seed always yields the same tokens,
+ * so identical requests get identical answers across runs.
+ */
+final class CompletionText {
+
+    private static final String[] WORDS = {
+            "the", "model", "returns", "a", "short", "answer", "about", "latency", "and", "throughput",
+            "requests", "are", "served", "from", "cache", "when", "possible", "tokens", "stream", "back",
+            "to", "the", "client", "in", "small", "chunks", "while", "the", "server", "keeps",
+            "connections", "open", "for", "reuse", "each", "response", "includes", "usage", "so", "cost",
+            "can", "be", "tracked", "per", "call", "retries", "should", "honour", "the", "retry",
+            "after", "header", "under", "load", "queues", "grow", "and", "tail", "latency", "rises"
+    };
+
+    private static final int MIN_SENTENCE_WORDS = 6;
+    /** After the minimum, each word ends the sentence with probability 1 / SENTENCE_ODDS. */
+    private static final int SENTENCE_ODDS = 6;
+    /** Each new sentence starts a paragraph with probability 1 / PARAGRAPH_ODDS. */
+    private static final int PARAGRAPH_ODDS = 3;
+
+    private CompletionText() {
+    }
+
+    /**
+     * The text is split into sentences of at least {@link #MIN_SENTENCE_WORDS}
+     * words and, outside JSON mode, into paragraphs separated by blank lines.
+     *
+     * @param count number of tokens; each token after the first starts with a space or a paragraph break
+     * @param json  wrap the text in a small JSON object, for JSON mode requests
+     */
+    static List<String> tokens(long seed, int count, boolean json) {
+        Random random = new Random(seed);
+        List<String> tokens = new ArrayList<>(count);
+        int sentenceWords = 0;
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            String token;
+            if (i == 0) {
+                token = capitalize(word);
+            } else if (sentenceWords == 0) {
+                boolean paragraph = !json && random.nextInt(PARAGRAPH_ODDS) == 0;
+                token = (paragraph ? "\n\n" : " ") + capitalize(word);
+            } else {
+                token = " " + word;
+            }
+            sentenceWords++;
+            if (i < count - 1 && sentenceWords >= MIN_SENTENCE_WORDS && random.nextInt(SENTENCE_ODDS) == 0) {
+                token += ".";
+                sentenceWords = 0;
+            }
+            tokens.add(token);
+        }
+        if (json && !tokens.isEmpty()) {
+            tokens.set(0, "{\"answer\": \"" + tokens.get(0));
+            int last = tokens.size() - 1;
+            tokens.set(last, tokens.get(last) + "\"}");
+        } else if (!tokens.isEmpty()) {
+            int last = tokens.size() - 1;
+            tokens.set(last, tokens.get(last) + ".");
+        }
+        return tokens;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
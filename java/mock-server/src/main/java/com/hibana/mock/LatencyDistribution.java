@@ -0,0 +1,92 @@
+package com.hibana.mock;
+
+import java.util.SplittableRandom;
+
+/**
+ * A latency distribution from the mock script, in milliseconds.
+ *
+ * <pre>
+ * {"type": "fixed",     "ms": 200}
+ * {"type": "uniform",   "min_ms": 100, "max_ms": 400}
+ * {"type": "normal",    "mean_ms": 300, "stddev_ms": 50}
+ * {"type": "lognormal", "median_ms": 300, "p99_ms": 1500}
+ * </pre>
+ *
+ * Log-normal is the usual choice for time to first token: most requests are
+ * close to the median with a long tail.
+ */
+public final class LatencyDistribution {
+
+    /** z-score of the 99th percentile of a standard normal distribution. */
+    private static final double Z_99 = 2.3263;
+
+    private String type = "fixed";
+    private double ms;
+    private double minMs;
+    private double maxMs;
+    private double meanMs;
+    private double stddevMs;
+    private double medianMs;
+    private double p99Ms;
+
+    public static LatencyDistribution fixed(double ms) {
+        LatencyDistribution distribution = new LatencyDistribution();
+        distribution.ms = ms;
+        return distribution;
+    }
+
+    public static LatencyDistribution logNormal(double medianMs, double p99Ms) {
+        LatencyDistribution distribution = new LatencyDistribution();
+        distribution.type = "lognormal";
+        distribution.medianMs = medianMs;
+        distribution.p99Ms = p99Ms;
+        return distribution;
+    }
+
+    /**
+     * Draw one latency, never negative.
+     */
+    public long sampleMillis(SplittableRandom random) {
+        double value;
+        switch (type) {
+            case "fixed":
+                value = ms;
+                break;
+            case "uniform":
+                value = minMs + random.nextDouble() * (maxMs - minMs);
+                break;
+            case "normal":
+                value = meanMs + gaussian(random) * stddevMs;
+                break;
+            case "lognormal":
+                double mu = Math.log(medianMs);
+                double sigma = (Math.log(p99Ms) - mu) / Z_99;
+                value = Math.exp(mu + gaussian(random) * sigma);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution type: " + type);
+        }
+        return Math.max(0, Math.round(value));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Box-Muller; SplittableRandom has no nextGaussian before Java 17
+        double u1 = 1.0 - random.nextDouble();
+        double u2 = random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case "uniform":
+                return String.format("uniform(%.0f-%.0f ms)", minMs, maxMs);
+            case "normal":
+                return String.format("normal(%.0f±%.0f ms)", meanMs, stddevMs);
+            case "lognormal":
+                return String.format("lognormal(p50 %.0f ms, p99 %.0f ms)", medianMs, p99Ms);
+            default:
+                return String.format("%.0f ms", ms);
+        }
+    }
+}
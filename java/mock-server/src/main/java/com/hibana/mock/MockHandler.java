@@ -0,0 +1,590 @@
+package com.hibana.mock;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves the mock endpoints. All waiting is done with event-loop timers, so
+ * thousands of slow streams cost no threads.
+ *
+ * Timing and faults for the n-th request are drawn from {@code seed + n},
+ * so a run with the same script and the same request order is reproducible.
+ * Completion text is derived from the request itself (model, messages and
+ * {@code seed}), so identical requests get identical answers. A request
+ * can force a fault with the {@code X-Mock-Fault} header: {@code 429}, any
+ * 5xx status, or {@code abort} (cut a stream half way).
+ *
+ * Chat completions in progress are counted per model. A model with a
+ * capacity slows new requests down by {@code load / capacity} once it is
+ * exceeded and rejects them with 429 above twice the capacity.
+ */
+@ChannelHandler.Sharable
+final class MockHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final String FAULT_HEADER = "X-Mock-Fault";
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private final MockScript script;
+    private final Map<String, Integer> capacities;
+    private final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+    private final Gson gson = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+    private final AtomicLong sequence = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis() / 1000;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder abortedStreams = new LongAdder();
+    private final LongAdder cancelledStreams = new LongAdder();
+    private final LongAdder streamedTokens = new LongAdder();
+
+    /**
+     * @param capacities capacity overrides by model, which may change while running
+     */
+    MockHandler(MockScript script, Map<String, Integer> capacities) {
+        this.script = script;
+        this.capacities = capacities;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        requests.increment();
+        boolean keepAlive = HttpUtil.isKeepAlive(request);
+        HttpMethod method = request.method();
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        String path = query >= 0 ? uri.substring(0, query) : uri;
+
+        if (path.startsWith("/files/") && method.equals(HttpMethod.GET)) {
+            sendImageFile(ctx, keepAlive, path.substring("/files/".length()));
+            return;
+        }
+        if (path.equals("/mock/stats") && method.equals(HttpMethod.GET)) {
+            sendStats(ctx, keepAlive);
+            return;
+        }
+        if (!request.headers().contains(HttpHeaderNames.AUTHORIZATION)) {
+            sendError(ctx, keepAlive, HttpResponseStatus.UNAUTHORIZED,
+                    "You didn't provide an API key.", "invalid_request_error", "invalid_api_key");
+            return;
+        }
+
+        // Compressed bodies are inflated before this handler unless the server rejects them
+        String encoding = request.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+        if (encoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase(encoding)) {
+            sendError(ctx, keepAlive, HttpResponseStatus.UNSUPPORTED_MEDIA_TYPE,
+                    "Content-Encoding " + encoding + " is not supported.", "invalid_request_error", null);
+            return;
+        }
+
+        long n = sequence.incrementAndGet();
+        SplittableRandom random = new SplittableRandom(script.seed() * 1_000_003L + n);
+        String forcedFault = request.headers().get(FAULT_HEADER);
+
+        if (path.equals("/v1/models") && method.equals(HttpMethod.GET)) {
+            sendJson(ctx, keepAlive, HttpResponseStatus.OK, modelList());
+        } else if (path.startsWith("/v1/models/") && method.equals(HttpMethod.GET)) {
+            String id = path.substring("/v1/models/".length());
+            if (script.models().containsKey(id)) {
+                sendJson(ctx, keepAlive, HttpResponseStatus.OK, model(id));
+            } else {
+                sendModelNotFound(ctx, keepAlive, id);
+            }
+        } else if (path.equals("/v1/user/balance") && method.equals(HttpMethod.GET)) {
+            JsonObject balance = new JsonObject();
+            balance.addProperty("balance", script.balance());
+            balance.addProperty("currency", script.currency());
+            sendJson(ctx, keepAlive, HttpResponseStatus.OK, balance);
+        } else if (path.equals("/v1/chat/completions") && method.equals(HttpMethod.POST)) {
+            JsonObject body = parseBody(ctx, keepAlive, request);
+            if (body != null) {
+                chatCompletion(ctx, keepAlive, body, random, forcedFault, n);
+            }
+        } else if (path.equals("/v1/images/generations") && method.equals(HttpMethod.POST)) {
+            JsonObject body = parseBody(ctx, keepAlive, request);
+            if (body != null) {
+                String host = request.headers().get(HttpHeaderNames.HOST, "localhost");
+                imageGeneration(ctx, keepAlive, body, random, forcedFault, n, host);
+            }
+        } else {
+            sendError(ctx, keepAlive, HttpResponseStatus.NOT_FOUND,
+                    "Unknown endpoint " + method + " " + path, "invalid_request_error", null);
+        }
+    }
+
+    // ---------------------------------------------------------------- chat
+
+    private void chatCompletion(ChannelHandlerContext ctx, boolean keepAlive, JsonObject body,
+                                SplittableRandom random, String forcedFault, long n) {
+        String model = body.has("model") ? body.get("model").getAsString() : "";
+        MockScript.Profile profile = script.profile(model);
+        if (profile == null) {
+            sendModelNotFound(ctx, keepAlive, model);
+            return;
+        }
+        if (injectFault(ctx, keepAlive, profile, random, forcedFault)) {
+            return;
+        }
+
+        int capacity = capacities.getOrDefault(model, profile.capacity);
+        AtomicInteger running = active.computeIfAbsent(model, m -> new AtomicInteger());
+        int load = running.incrementAndGet();
+        if (capacity > 0 && load > 2 * capacity) {
+            running.decrementAndGet();
+            sendRateLimited(ctx, keepAlive, profile, "The model is overloaded. Please try again later.");
+            return;
+        }
+        // Over capacity the model's throughput is shared, so every phase slows down
+        double slowdown = capacity > 0 ? Math.max(1.0, (double) load / capacity) : 1.0;
+        Runnable release = running::decrementAndGet;
+
+        JsonElement messages = body.has("messages") ? body.get("messages") : new JsonArray();
+        String prompt = messages.toString();
+        // A request seed picks a different sample, as it does upstream
+        long sample = body.has("seed") ? body.get("seed").getAsLong() * 0x9E3779B97F4A7C15L : 0;
+        Random content = new Random(script.seed() ^ sample ^ (31L * model.hashCode() + prompt.hashCode()));
+
+        int wanted = profile.outputTokens.min
+                + content.nextInt(Math.max(1, profile.outputTokens.max - profile.outputTokens.min + 1));
+        int limit = maxTokens(body);
+        int count = Math.max(1, Math.min(wanted, limit));
+        String finishReason = wanted > limit ? "length" : "stop";
+        boolean json = body.has("response_format")
+                && "json_object".equals(body.getAsJsonObject("response_format").get("type").getAsString());
+        List<String> tokens = CompletionText.tokens(content.nextLong(), count, json);
+
+        Completion completion = new Completion("chatcmpl-mock-" + n, model, tokens, finishReason,
+                Math.max(1, prompt.length() / 4));
+
+        long ttftMillis = (long) (profile.ttft.sampleMillis(random) * slowdown);
+        long intervalNanos = (long) (slowdown * TimeUnit.SECONDS.toNanos(1) / Math.max(1.0, profile.tokensPerSecond));
+        boolean stream = body.has("stream") && body.get("stream").getAsBoolean();
+
+        if (stream) {
+            boolean includeUsage = body.has("stream_options")
+                    && body.getAsJsonObject("stream_options").has("include_usage")
+                    && body.getAsJsonObject("stream_options").get("include_usage").getAsBoolean();
+            boolean abort = "abort".equalsIgnoreCase(forcedFault)
+                    || (forcedFault == null && random.nextDouble() < profile.streamAbortRatio);
+            int abortAt = abort ? 1 + random.nextInt(Math.max(1, tokens.size() - 1)) : -1;
+            ctx.executor().schedule(new StreamWriter(ctx, keepAlive, completion, intervalNanos, includeUsage, abortAt,
+                    release), ttftMillis, TimeUnit.MILLISECONDS);
+        } else {
+            long totalNanos = TimeUnit.MILLISECONDS.toNanos(ttftMillis) + intervalNanos * tokens.size();
+            ctx.executor().schedule(() -> {
+                release.run();
+                sendJson(ctx, keepAlive, HttpResponseStatus.OK, completion.toJson());
+            }, totalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static int maxTokens(JsonObject body) {
+        if (body.has("max_completion_tokens")) {
+            return body.get("max_completion_tokens").getAsInt();
+        }
+        if (body.has("max_tokens")) {
+            return body.get("max_tokens").getAsInt();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private final class Completion {
+        final String id;
+        final String model;
+        final List<String> tokens;
+        final String finishReason;
+        final int promptTokens;
+        final long created = System.currentTimeMillis() / 1000;
+
+        Completion(String id, String model, List<String> tokens, String finishReason, int promptTokens) {
+            this.id = id;
+            this.model = model;
+            this.tokens = tokens;
+            this.finishReason = finishReason;
+            this.promptTokens = promptTokens;
+        }
+
+        JsonObject toJson() {
+            JsonObject message = new JsonObject();
+            message.addProperty("role", "assistant");
+            message.addProperty("content", String.join("", tokens));
+
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", 0);
+            choice.add("message", message);
+            choice.addProperty("finish_reason", finishReason);
+
+            JsonObject response = envelope("chat.completion");
+            response.add("choices", single(choice));
+            response.add("usage", usage());
+            return response;
+        }
+
+        JsonObject chunk(JsonObject delta, String finish) {
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", 0);
+            choice.add("delta", delta);
+            choice.add("finish_reason", finish == null ? null : gson.toJsonTree(finish));
+
+            JsonObject chunk = envelope("chat.completion.chunk");
+            chunk.add("choices", single(choice));
+            return chunk;
+        }
+
+        JsonObject usageChunk() {
+            JsonObject chunk = envelope("chat.completion.chunk");
+            chunk.add("choices", new JsonArray());
+            chunk.add("usage", usage());
+            return chunk;
+        }
+
+        private JsonObject envelope(String object) {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", id);
+            json.addProperty("object", object);
+            json.addProperty("created", created);
+            json.addProperty("model", model);
+            return json;
+        }
+
+        private JsonObject usage() {
+            JsonObject usage = new JsonObject();
+            usage.addProperty("prompt_tokens", promptTokens);
+            usage.addProperty("completion_tokens", tokens.size());
+            usage.addProperty("total_tokens", promptTokens + tokens.size());
+            return usage;
+        }
+    }
+
+    /**
+     * Writes every token that is due, then reschedules itself for the next one.
+     * Catching up in batches keeps the token rate right even when the timer
+     * fires late.
+     */
+    private final class StreamWriter implements Runnable {
+        private final ChannelHandlerContext ctx;
+        private final boolean keepAlive;
+        private final Completion completion;
+        private final long intervalNanos;
+        private final boolean includeUsage;
+        private final int abortAt;
+        private final Runnable onFinish;
+        private long startNanos;
+        private int next;
+
+        StreamWriter(ChannelHandlerContext ctx, boolean keepAlive, Completion completion,
+                     long intervalNanos, boolean includeUsage, int abortAt, Runnable onFinish) {
+            this.ctx = ctx;
+            this.keepAlive = keepAlive;
+            this.completion = completion;
+            this.intervalNanos = intervalNanos;
+            this.includeUsage = includeUsage;
+            this.abortAt = abortAt;
+            this.onFinish = onFinish;
+        }
+
+        @Override
+        public void run() {
+            if (!ctx.channel().isActive()) {
+                // The client hung up; stop generating
+                onFinish.run();
+                if (startNanos != 0) {
+                    cancelledStreams.increment();
+                }
+                return;
+            }
+            long now = System.nanoTime();
+            if (startNanos == 0) {
+                startNanos = now;
+                HttpResponse head = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+                head.headers()
+                        .set(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                        .set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE)
+                        .set(HttpHeaderNames.TRANSFER_ENCODING, HttpHeaderValues.CHUNKED);
+                HttpUtil.setKeepAlive(head, keepAlive);
+                ctx.write(head);
+
+                JsonObject role = new JsonObject();
+                role.addProperty("role", "assistant");
+                role.addProperty("content", "");
+                writeEvent(completion.chunk(role, null));
+            }
+
+            List<String> tokens = completion.tokens;
+            int due = (int) Math.min(tokens.size(), (now - startNanos) / intervalNanos + 1);
+            while (next < due) {
+                if (next == abortAt) {
+                    onFinish.run();
+                    abortedStreams.increment();
+                    ctx.flush();
+                    ctx.close();
+                    return;
+                }
+                JsonObject delta = new JsonObject();
+                delta.addProperty("content", tokens.get(next++));
+                writeEvent(completion.chunk(delta, null));
+                streamedTokens.increment();
+            }
+
+            if (next < tokens.size()) {
+                ctx.flush();
+                long wait = startNanos + next * intervalNanos - System.nanoTime();
+                ctx.executor().schedule(this, Math.max(0, wait), TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            onFinish.run();
+            writeEvent(completion.chunk(new JsonObject(), completion.finishReason));
+            if (includeUsage) {
+                writeEvent(completion.usageChunk());
+            }
+            ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer("data: [DONE]\n\n", StandardCharsets.UTF_8)));
+            ChannelFuture end = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (!keepAlive) {
+                end.addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        private void writeEvent(JsonObject event) {
+            ctx.write(new DefaultHttpContent(Unpooled.copiedBuffer("data: " + gson.toJson(event) + "\n\n", StandardCharsets.UTF_8)));
+        }
+    }
+
+    // -------------------------------------------------------------- images
+
+    private void imageGeneration(ChannelHandlerContext ctx, boolean keepAlive, JsonObject body,
+                                 SplittableRandom random, String forcedFault, long n, String host) {
+        String model = body.has("model") ? body.get("model").getAsString() : "dall-e-3";
+        MockScript.Profile profile = script.profile(model);
+        if (profile == null) {
+            sendModelNotFound(ctx, keepAlive, model);
+            return;
+        }
+        if (injectFault(ctx, keepAlive, profile, random, forcedFault)) {
+            return;
+        }
+
+        int count = body.has("n") ? body.get("n").getAsInt() : 1;
+        boolean base64 = body.has("response_format") && "b64_json".equals(body.get("response_format").getAsString());
+        String prompt = body.has("prompt") ? body.get("prompt").getAsString() : "";
+
+        JsonArray data = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            String name = "img-" + n + "-" + i + ".png";
+            JsonObject image = new JsonObject();
+            if (base64) {
+                image.addProperty("b64_json", Base64.getEncoder().encodeToString(imageBytes(name)));
+            } else {
+                image.addProperty("url", "http://" + host + "/files/" + name);
+            }
+            image.addProperty("revised_prompt", prompt);
+            data.add(image);
+        }
+        JsonObject response = new JsonObject();
+        response.addProperty("created", System.currentTimeMillis() / 1000);
+        response.add("data", data);
+
+        ctx.executor().schedule(() -> sendJson(ctx, keepAlive, HttpResponseStatus.OK, response),
+                profile.ttft.sampleMillis(random), TimeUnit.MILLISECONDS);
+    }
+
+    private void sendImageFile(ChannelHandlerContext ctx, boolean keepAlive, String name) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.wrappedBuffer(imageBytes(name)));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, "image/png");
+        write(ctx, keepAlive, response);
+    }
+
+    private byte[] imageBytes(String name) {
+        byte[] bytes = new byte[Math.max(PNG_SIGNATURE.length, script.imageBytes())];
+        new Random(script.seed() ^ name.hashCode()).nextBytes(bytes);
+        System.arraycopy(PNG_SIGNATURE, 0, bytes, 0, PNG_SIGNATURE.length);
+        return bytes;
+    }
+
+    // -------------------------------------------------------------- faults
+
+    /**
+     * @return true if an error response was sent instead of the real one
+     */
+    private boolean injectFault(ChannelHandlerContext ctx, boolean keepAlive, MockScript.Profile profile,
+                                SplittableRandom random, String forcedFault) {
+        int status = 0;
+        if (forcedFault != null) {
+            if (forcedFault.matches("\\d{3}")) {
+                status = Integer.parseInt(forcedFault);
+            }
+        } else {
+            double roll = random.nextDouble();
+            if (roll < profile.rateLimitRatio) {
+                status = 429;
+            } else if (roll < profile.rateLimitRatio + profile.serverErrorRatio) {
+                status = profile.serverErrorStatus;
+            }
+        }
+
+        if (status == 429) {
+            sendRateLimited(ctx, keepAlive, profile, "Rate limit reached. Please try again later.");
+            return true;
+        }
+        if (status >= 500) {
+            serverErrors.increment();
+            sendError(ctx, keepAlive, HttpResponseStatus.valueOf(status),
+                    "The server had an error while processing your request.", "api_error", null);
+            return true;
+        }
+        return false;
+    }
+
+    private void sendRateLimited(ChannelHandlerContext ctx, boolean keepAlive, MockScript.Profile profile,
+                                 String message) {
+        rateLimited.increment();
+        FullHttpResponse response = errorResponse(HttpResponseStatus.TOO_MANY_REQUESTS,
+                message, "rate_limit_error", "rate_limit_exceeded");
+        response.headers().set(HttpHeaderNames.RETRY_AFTER, profile.retryAfterSeconds);
+        write(ctx, keepAlive, response);
+    }
+
+    // ------------------------------------------------------------- helpers
+
+    private JsonObject parseBody(ChannelHandlerContext ctx, boolean keepAlive, FullHttpRequest request) {
+        try {
+            JsonElement parsed = JsonParser.parseString(request.content().toString(StandardCharsets.UTF_8));
+            if (parsed.isJsonObject()) {
+                return parsed.getAsJsonObject();
+            }
+        } catch (JsonParseException e) {
+            // fall through to the error response
+        }
+        sendError(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST,
+                "We could not parse the JSON body of your request.", "invalid_request_error", null);
+        return null;
+    }
+
+    private JsonObject modelList() {
+        JsonArray data = new JsonArray();
+        for (String id : script.models().keySet()) {
+            data.add(model(id));
+        }
+        JsonObject list = new JsonObject();
+        list.addProperty("object", "list");
+        list.add("data", data);
+        return list;
+    }
+
+    private JsonObject model(String id) {
+        JsonObject model = new JsonObject();
+        model.addProperty("id", id);
+        model.addProperty("object", "model");
+        model.addProperty("created", startedAt);
+        model.addProperty("owned_by", "hibana-mock");
+        return model;
+    }
+
+    private void sendModelNotFound(ChannelHandlerContext ctx, boolean keepAlive, String model) {
+        sendError(ctx, keepAlive, HttpResponseStatus.NOT_FOUND,
+                "The model `" + model + "` does not exist or you do not have access to it.",
+                "invalid_request_error", "model_not_found");
+    }
+
+    private void sendStats(ChannelHandlerContext ctx, boolean keepAlive) {
+        JsonObject stats = new JsonObject();
+        stats.addProperty("requests", requests.sum());
+        stats.addProperty("rate_limited", rateLimited.sum());
+        stats.addProperty("server_errors", serverErrors.sum());
+        stats.addProperty("aborted_streams", abortedStreams.sum());
+        stats.addProperty("cancelled_streams", cancelledStreams.sum());
+        stats.addProperty("streamed_tokens", streamedTokens.sum());
+        JsonObject models = new JsonObject();
+        for (Map.Entry<String, MockScript.Profile> entry : script.models().entrySet()) {
+            models.addProperty(entry.getKey(), entry.getValue().toString());
+        }
+        stats.add("models", models);
+        sendJson(ctx, keepAlive, HttpResponseStatus.OK, stats);
+    }
+
+    private static JsonArray single(JsonObject element) {
+        JsonArray array = new JsonArray();
+        array.add(element);
+        return array;
+    }
+
+    private void sendError(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status,
+                           String message, String type, String code) {
+        write(ctx, keepAlive, errorResponse(status, message, type, code));
+    }
+
+    private FullHttpResponse errorResponse(HttpResponseStatus status, String message, String type, String code) {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty("type", type);
+        error.addProperty("code", code);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        return jsonResponse(status, body);
+    }
+
+    private void sendJson(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status, JsonObject body) {
+        write(ctx, keepAlive, jsonResponse(status, body));
+    }
+
+    private FullHttpResponse jsonResponse(HttpResponseStatus status, JsonObject body) {
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+                Unpooled.wrappedBuffer(gson.toJson(body).getBytes(StandardCharsets.UTF_8)));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+        return response;
+    }
+
+    private static void write(ChannelHandlerContext ctx, boolean keepAlive, FullHttpResponse response) {
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        HttpUtil.setContentLength(response, response.content().readableBytes());
+        HttpUtil.setKeepAlive(response, keepAlive);
+        ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        ctx.close();
+    }
+}
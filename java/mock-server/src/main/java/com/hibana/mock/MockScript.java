@@ -0,0 +1,164 @@
+package com.hibana.mock;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Behaviour of the mock server, loaded from JSON. The bundled
+ * {@code default-script.json} shows every field; a custom script only needs
+ * the fields it changes, since each model entry is layered over
+ * {@code defaults}.
+ *
+ * <pre>
+ * {
+ *   "seed": 42,
+ *   "balance": 1000000,
+ *   "defaults": {
+ *     "ttft": {"type": "lognormal", "median_ms": 400, "p99_ms": 2000},
+ *     "tokens_per_second": 60,
+ *     "output_tokens": {"min": 40, "max": 200},
+ *     "rate_limit_ratio": 0.02, "retry_after_seconds": 1,
+ *     "server_error_ratio": 0.01, "server_error_status": 503,
+ *     "stream_abort_ratio": 0.0,
+ *     "capacity": 0
+ *   },
+ *   "models": {
+ *     "gpt-5-nano": {"tokens_per_second": 120},
+ *     "dall-e-3": {"ttft": {"type": "normal", "mean_ms": 6000, "stddev_ms": 1500}}
+ *   }
+ * }
+ * </pre>
+ *
+ * {@code capacity} is how many chat completions a model serves at once at
+ * full speed (0 means unlimited). Above it, new requests are slowed down in
+ * proportion to the load, and above twice the capacity they get 429.
+ */
+public final class MockScript {
+
+    private static final Gson gson = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    /**
+     * How one model behaves. For image models {@code ttft} is the generation time.
+     */
+    public static final class Profile {
+        LatencyDistribution ttft = LatencyDistribution.fixed(0);
+        double tokensPerSecond = 60;
+        Range outputTokens = new Range();
+        double rateLimitRatio;
+        int retryAfterSeconds = 1;
+        double serverErrorRatio;
+        int serverErrorStatus = 503;
+        double streamAbortRatio;
+        int capacity;
+
+        @Override
+        public String toString() {
+            return String.format("ttft %s, %.0f tok/s, %d-%d tokens, 429 %.1f%%, %d %.1f%%, abort %.1f%%%s",
+                    ttft, tokensPerSecond, outputTokens.min, outputTokens.max,
+                    rateLimitRatio * 100, serverErrorStatus, serverErrorRatio * 100, streamAbortRatio * 100,
+                    capacity > 0 ? ", capacity " + capacity : "");
+        }
+    }
+
+    static final class Range {
+        int min = 40;
+        int max = 200;
+    }
+
+    private final long seed;
+    private final long balance;
+    private final String currency;
+    private final int imageBytes;
+    private final Profile defaults;
+    private final Map<String, Profile> models;
+
+    private MockScript(JsonObject root) {
+        this.seed = root.has("seed") ? root.get("seed").getAsLong() : 42L;
+        this.balance = root.has("balance") ? root.get("balance").getAsLong() : 1_000_000L;
+        this.currency = root.has("currency") ? root.get("currency").getAsString() : "IRR";
+        this.imageBytes = root.has("image_bytes") ? root.get("image_bytes").getAsInt() : 64 * 1024;
+
+        JsonObject defaultsJson = root.has("defaults") ? root.getAsJsonObject("defaults") : new JsonObject();
+        this.defaults = gson.fromJson(defaultsJson, Profile.class);
+
+        Map<String, Profile> profiles = new LinkedHashMap<>();
+        if (root.has("models")) {
+            for (Map.Entry<String, JsonElement> model : root.getAsJsonObject("models").entrySet()) {
+                JsonObject merged = defaultsJson.deepCopy();
+                for (Map.Entry<String, JsonElement> field : model.getValue().getAsJsonObject().entrySet()) {
+                    merged.add(field.getKey(), field.getValue());
+                }
+                profiles.put(model.getKey(), gson.fromJson(merged, Profile.class));
+            }
+        }
+        this.models = Collections.unmodifiableMap(profiles);
+    }
+
+    public static MockScript load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new MockScript(JsonParser.parseReader(reader).getAsJsonObject());
+        }
+    }
+
+    /**
+     * The bundled script: the sample models with realistic latencies and no faults.
+     */
+    public static MockScript defaults() {
+        try (InputStream in = MockScript.class.getResourceAsStream("/default-script.json")) {
+            if (in == null) {
+                throw new IllegalStateException("default-script.json missing from classpath");
+            }
+            return new MockScript(JsonParser.parseReader(new InputStreamReader(in, StandardCharsets.UTF_8)).getAsJsonObject());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read default-script.json", e);
+        }
+    }
+
+    public static MockScript parse(String json) {
+        return new MockScript(JsonParser.parseString(json).getAsJsonObject());
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public long balance() {
+        return balance;
+    }
+
+    public String currency() {
+        return currency;
+    }
+
+    public int imageBytes() {
+        return imageBytes;
+    }
+
+    public Map<String, Profile> models() {
+        return models;
+    }
+
+    /**
+     * Profile for a model; null if the script does not know it.
+     */
+    public Profile profile(String model) {
+        return models.isEmpty() ? defaults : models.get(model);
+    }
+}
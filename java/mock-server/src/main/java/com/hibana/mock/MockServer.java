@@ -0,0 +1,255 @@
+package com.hibana.mock;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpContentDecompressor;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.util.AsciiString;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deterministic stand-in for the Hibana API, for offline load and latency
+ * testing. Implements chat completions (streaming and non-streaming),
+ * models list/retrieve, image generation and {@code /user/balance}, with
+ * latencies, token rates and injected faults taken from a {@link MockScript}.
+ *
+ * <pre>
+ * ./gradlew :mock-server:run --args="--port 8090 --script my-script.json"
+ * </pre>
+ *
+ * Any key is accepted, but an Authorization header is required.
+ * {@code GET /mock/stats} reports request and fault counters, and the
+ * streamed tokens and streams the client cancelled part way.
+ *
+ * Speaks HTTP/1.1 and cleartext HTTP/2 (prior knowledge or h2c upgrade) on
+ * the same port. The HTTP/2 concurrent stream limit is configurable, so
+ * clients can be tested against servers that cap streams per connection.
+ * gzip and deflate request bodies are accepted unless
+ * {@link #acceptCompressedRequests} turns them off, in which case they get
+ * {@code 415 Unsupported Media Type}.
+ *
+ * Models can be given a capacity in the script or with {@link #capacity},
+ * beyond which they slow down and then answer 429, so client-side
+ * concurrency limits can be tested.
+ */
+public final class MockServer implements AutoCloseable {
+
+    private static final int MAX_REQUEST_BYTES = 16 * 1024 * 1024;
+
+    private final MockScript script;
+    private final EventLoopGroup boss = new NioEventLoopGroup(1);
+    private final EventLoopGroup workers = new NioEventLoopGroup();
+    private final LongAdder connections = new LongAdder();
+    private long maxConcurrentStreams = 100;
+    private boolean acceptCompressedRequests = true;
+    private final Map<String, Integer> capacities = new ConcurrentHashMap<>();
+    private Channel channel;
+
+    public MockServer(MockScript script) {
+        this.script = script;
+    }
+
+    /**
+     * HTTP/2 concurrent streams allowed per connection (default 100). Call before {@link #start}.
+     */
+    public MockServer maxConcurrentStreams(long maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    /**
+     * Whether gzip/deflate request bodies are inflated (default) or rejected
+     * with 415. Call before {@link #start}.
+     */
+    public MockServer acceptCompressedRequests(boolean acceptCompressedRequests) {
+        this.acceptCompressedRequests = acceptCompressedRequests;
+        return this;
+    }
+
+    /**
+     * Concurrent chat completions {@code model} serves at full speed,
+     * overriding the script's {@code capacity}. Can be changed while the
+     * server runs, to simulate capacity shifting during the day.
+     */
+    public MockServer capacity(String model, int capacity) {
+        capacities.put(model, capacity);
+        return this;
+    }
+
+    /**
+     * Bind the port; 0 picks a free one.
+     */
+    public MockServer start(int port) throws InterruptedException {
+        MockHandler handler = new MockHandler(script, capacities);
+        ChannelInitializer<Http2StreamChannel> http2Stream = new ChannelInitializer<Http2StreamChannel>() {
+            @Override
+            protected void initChannel(Http2StreamChannel ch) {
+                // Each stream looks like an HTTP/1.1 exchange to the handler
+                ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+                addRequestHandlers(ch, handler);
+            }
+        };
+
+        ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(boss, workers)
+                .channel(NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, 4096)
+                .childOption(ChannelOption.TCP_NODELAY, true)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        HttpServerCodec http1 = new HttpServerCodec();
+                        HttpServerUpgradeHandler upgrade = new HttpServerUpgradeHandler(http1, protocol ->
+                                AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)
+                                        ? new Http2ServerUpgradeCodec(http2Codec(), new Http2MultiplexHandler(http2Stream))
+                                        : null);
+
+                        ch.pipeline()
+                                .addLast(new ConnectionCounter())
+                                .addLast(new CleartextHttp2ServerUpgradeHandler(http1, upgrade,
+                                        new ChannelInitializer<Channel>() {
+                                            @Override
+                                            protected void initChannel(Channel ch) {
+                                                ch.pipeline()
+                                                        .addLast(http2Codec())
+                                                        .addLast(new Http2MultiplexHandler(http2Stream))
+                                                        .addLast(new CloseOnError());
+                                            }
+                                        }));
+                        addRequestHandlers(ch, handler);
+                    }
+                });
+
+        channel = bootstrap.bind(port).sync().channel();
+        return this;
+    }
+
+    private void addRequestHandlers(Channel ch, MockHandler handler) {
+        if (acceptCompressedRequests) {
+            ch.pipeline().addLast(new HttpContentDecompressor());
+        }
+        ch.pipeline()
+                .addLast(new HttpObjectAggregator(MAX_REQUEST_BYTES))
+                .addLast(handler);
+    }
+
+    private Http2FrameCodec http2Codec() {
+        return Http2FrameCodecBuilder.forServer()
+                .initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(maxConcurrentStreams))
+                .build();
+    }
+
+    /**
+     * TCP connections accepted since start.
+     */
+    public long connectionsAccepted() {
+        return connections.sum();
+    }
+
+    public int port() {
+        return ((InetSocketAddress) channel.localAddress()).getPort();
+    }
+
+    /**
+     * Base URL to hand to a client, e.g. {@code http://localhost:8090/v1}.
+     */
+    public String baseUrl() {
+        return "http://localhost:" + port() + "/v1";
+    }
+
+    public void awaitShutdown() throws InterruptedException {
+        channel.closeFuture().sync();
+    }
+
+    @Override
+    public void close() {
+        if (channel != null) {
+            channel.close().syncUninterruptibly();
+        }
+        boss.shutdownGracefully();
+        workers.shutdownGracefully();
+    }
+
+    private final class ConnectionCounter extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            connections.increment();
+            ctx.fireChannelActive();
+        }
+    }
+
+    /**
+     * Connection errors (e.g. a client exceeding the stream limit) have
+     * already been answered with GOAWAY by the codec; just close.
+     */
+    private static final class CloseOnError extends ChannelInboundHandlerAdapter {
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 8090;
+        MockScript script = MockScript.defaults();
+        long maxStreams = 100;
+        boolean acceptCompressed = true;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--script":
+                    script = MockScript.load(Paths.get(args[++i]));
+                    break;
+                case "--h2-max-streams":
+                    maxStreams = Long.parseLong(args[++i]);
+                    break;
+                case "--reject-compressed-requests":
+                    acceptCompressed = false;
+                    break;
+                default:
+                    System.err.println("Usage: MockServer [--port N] [--script file.json] [--h2-max-streams N]"
+                            + " [--reject-compressed-requests]");
+                    System.exit(2);
+            }
+        }
+
+        MockServer server = new MockServer(script)
+                .maxConcurrentStreams(maxStreams)
+                .acceptCompressedRequests(acceptCompressed)
+                .start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+
+        System.out.println("Hibana mock server listening on " + server.baseUrl() + " (seed " + script.seed() + ")");
+        for (Map.Entry<String, MockScript.Profile> model : script.models().entrySet()) {
+            System.out.println("  " + model.getKey() + ": " + model.getValue());
+        }
+        server.awaitShutdown();
+    }
+}
@@ -1 +1,5 @@
 rootProject.name = "hibana-api-java-samples"
+
+include("gateway")
+include("mock-server")
+include("loadgen")
@@ -2,6 +2,11 @@ package com.hibana.samples;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.hibana.samples.json.JsonStreamListener;
+import com.hibana.samples.json.OptionalField;
+import com.hibana.samples.json.StreamingJsonCompletion;
+import com.hibana.samples.json.StructuredOutput;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.ChatCompletion;
@@ -9,12 +14,16 @@ import com.openai.models.ChatCompletionCreateParams;
 import com.openai.models.ChatCompletionMessage;
 import com.openai.models.ResponseFormatJsonObject;
 
+import java.util.List;
+
 /**
  * 05 - JSON Mode
  *
  * This example demonstrates how to request structured JSON responses
  * from the API. JSON mode ensures the model outputs valid JSON,
  * making it perfect for applications that need parseable data.
+ * The last sections bind the JSON to typed Java classes and stream a
+ * JSON response, handling each array element as soon as it is complete.
  *
  * Model used: gpt-5-nano (with JSON mode support)
  */
@@ -31,6 +40,10 @@ public class Example05_JsonMode {
             structuredDataExtraction();
             System.out.println("\n");
             jsonArrayResponse();
+            System.out.println("\n");
+            typedStructuredOutput();
+            System.out.println("\n");
+            streamingJsonArray();
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -170,6 +183,103 @@ public class Example05_JsonMode {
         System.out.println("=".repeat(60));
     }
 
+    private static void typedStructuredOutput() {
+        /**
+         * Bind the JSON response directly to a Java class
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Typed Structured Output");
+        System.out.println("=".repeat(60));
+
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey(API_KEY)
+                .baseUrl(BASE_URL)
+                .build();
+
+        String text = "John Smith ordered 2 laptops and 1 mouse on January 15, 2025. "
+                + "Total cost was $2,500. Shipping address: 123 Main St, Boston, MA.";
+
+        // The schema and binder for Order are built once and reused for every call
+        Order order = StructuredOutput.of(Order.class)
+                .maxRepairAttempts(2)
+                .create(client, "gpt-5-nano", "Extract the order from this text: " + text);
+
+        System.out.println("\nCustomer: " + order.customerName);
+        System.out.println("Date: " + order.orderDate);
+        System.out.println("Items:");
+        for (OrderItem item : order.items) {
+            System.out.println("  - " + item.quantity + " x " + item.name);
+        }
+        System.out.println("Total: " + order.totalCost);
+        System.out.println("Ship to: " + order.shippingAddress);
+        if (order.notes != null) {
+            System.out.println("Notes: " + order.notes);
+        }
+    }
+
+    private static void streamingJsonArray() {
+        /**
+         * Stream a JSON response and handle array elements as they close
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Streaming JSON Mode");
+        System.out.println("=".repeat(60));
+
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey(API_KEY)
+                .baseUrl(BASE_URL)
+                .build();
+
+        String userMessage = """
+                Create a JSON object with a "languages" array containing 5 programming languages.
+                Each language should have: name, year_created, paradigm (e.g., OOP, functional).
+                Add a "summary" string field after the array.
+                """;
+
+        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                .model("gpt-5-nano")
+                .addMessage(ChatCompletionMessage.ofChatCompletionSystemMessageParam(
+                        ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
+                                .content("Return structured JSON data as requested.")
+                                .build()
+                ))
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content(userMessage)
+                                .build()
+                ))
+                .responseFormat(ResponseFormatJsonObject.builder().type(ResponseFormatJsonObject.Type.JSON_OBJECT).build())
+                .temperature(0.7)
+                .maxTokens(10000L)
+                .stream(true)
+                .build();
+
+        long start = System.currentTimeMillis();
+
+        System.out.println("\nLanguages (as they arrive):");
+
+        JsonElement result = StreamingJsonCompletion.stream(client, params, new JsonStreamListener() {
+            @Override
+            public void onArrayElement(String field, int index, JsonElement element) {
+                // Each language can be processed before the rest of the response arrives
+                String name = element.isJsonObject() && element.getAsJsonObject().has("name")
+                        ? element.getAsJsonObject().get("name").getAsString()
+                        : element.toString();
+                System.out.printf("  [%5d ms] %s[%d]: %s%n", System.currentTimeMillis() - start, field, index, name);
+            }
+
+            @Override
+            public void onField(String name, JsonElement value) {
+                System.out.printf("  [%5d ms] field complete: %s%n", System.currentTimeMillis() - start, name);
+            }
+        });
+
+        System.out.printf("%nFull document received after %d ms:%n", System.currentTimeMillis() - start);
+        System.out.println(gson.toJson(result));
+    }
+
     private static String prettyPrintJson(String jsonString) {
         try {
             Object json = gson.fromJson(jsonString, Object.class);
@@ -178,4 +288,19 @@ public class Example05_JsonMode {
             return jsonString;
         }
     }
+
+    private static class Order {
+        String customerName;
+        List<OrderItem> items;
+        String orderDate;
+        Double totalCost;
+        String shippingAddress;
+        @OptionalField
+        String notes;
+    }
+
+    private static class OrderItem {
+        String name;
+        Integer quantity;
+    }
 }
@@ -1,17 +1,31 @@
 package com.hibana.samples;
 
+import com.hibana.samples.client.HibanaClients;
+import com.hibana.samples.images.CachedImageGenerator;
+import com.hibana.samples.images.DownloadReport;
+import com.hibana.samples.images.DownloadResult;
+import com.hibana.samples.images.ImageCache;
+import com.hibana.samples.images.ImageDownloader;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.Image;
 import com.openai.models.ImageGenerateParams;
 import com.openai.models.ImagesResponse;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 07 - Image Generation
  *
  * This example demonstrates how to generate images using AI models
  * like DALL-E. The API accepts text prompts and returns image URLs
- * that can be downloaded or displayed.
+ * that can be downloaded or displayed. The last sections download
+ * all variations in parallel and serve repeated prompts from a local
+ * cache instead of paying for a new image.
  *
  * Model used: dall-e-3
  */
@@ -19,6 +33,8 @@ public class Example07_ImageGeneration {
 
     private static final String API_KEY = "YOUR_API_KEY";
     private static final String BASE_URL = "https://api-ai.hibanacloud.com/v1";
+    private static final Path OUTPUT_DIR = Paths.get("generated-images");
+    private static final Path CACHE_DIR = Paths.get("generated-images", ".cache");
 
     public static void main(String[] args) {
         try {
@@ -27,6 +43,8 @@ public class Example07_ImageGeneration {
             imageGenerationWithOptions();
             System.out.println("\n");
             multipleImages();
+            System.out.println("\n");
+            cachedImageGeneration();
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -120,7 +138,7 @@ public class Example07_ImageGeneration {
         });
     }
 
-    private static void multipleImages() {
+    private static void multipleImages() throws IOException, InterruptedException {
         /**
          * Generate multiple image variations
          */
@@ -152,14 +170,73 @@ public class Example07_ImageGeneration {
         System.out.println("Generated " + response.data().size() + " variations:");
         System.out.println("-".repeat(60));
 
+        List<String> urls = new ArrayList<>();
         for (int i = 0; i < response.data().size(); i++) {
             Image image = response.data().get(i);
             System.out.println("\nVariation " + (i + 1) + ":");
-            image.url().ifPresent(url -> System.out.println("  " + url));
+            image.url().ifPresent(url -> {
+                System.out.println("  " + url);
+                urls.add(url);
+            });
+        }
+
+        // Download all variations in parallel, streaming each one straight to disk
+        System.out.println("\nDownloading " + urls.size() + " images to " + OUTPUT_DIR + "...");
+
+        ImageDownloader downloader = new ImageDownloader(HibanaClients.http(), OUTPUT_DIR, 4);
+        DownloadReport report = downloader.downloadAll(urls, "robot-library");
+
+        for (DownloadResult result : report.results()) {
+            if (result.isSuccess()) {
+                System.out.printf("  ✓ %s (%,d bytes, %.1f KB/s)%n",
+                        result.path(), result.bytes(), result.bytesPerSecond() / 1024);
+            } else {
+                System.out.println("  ✗ " + result.url() + ": " + result.error());
+            }
+        }
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("Download summary: " + report);
+        System.out.println("=".repeat(60));
+    }
+
+    private static void cachedImageGeneration() throws IOException {
+        /**
+         * Serve repeated prompts from a local image cache
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Cached Image Generation");
+        System.out.println("=".repeat(60));
+
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey(API_KEY)
+                .baseUrl(BASE_URL)
+                .build();
+
+        // Keep at most 500 MB of images on disk
+        ImageCache cache = new ImageCache(CACHE_DIR, 500L * 1024 * 1024);
+        ImageDownloader downloader = new ImageDownloader(HibanaClients.http(), OUTPUT_DIR, 4);
+        CachedImageGenerator generator = new CachedImageGenerator(
+                client, cache, downloader, CachedImageGenerator.DALL_E_3_COST);
+
+        // The second and third prompts normalize to the same key as the first
+        String[] prompts = {
+                "A serene Japanese garden with cherry blossoms and a koi pond",
+                "a serene japanese garden with cherry blossoms and a koi pond.",
+                "  A serene Japanese garden   with cherry blossoms and a koi pond  "
+        };
+
+        for (String prompt : prompts) {
+            long start = System.currentTimeMillis();
+            Path image = generator.generate("dall-e-3", prompt, ImageGenerateParams.Size._1024X1024, null, null);
+            System.out.printf("%n\"%s\"%n  -> %s (%d ms)%n", prompt.trim(), image, System.currentTimeMillis() - start);
         }
 
+        cache.flush();
+
         System.out.println("\n" + "=".repeat(60));
-        System.out.println("Tip: Save these URLs to download the images!");
+        System.out.println("Cache: " + generator.summary());
         System.out.println("=".repeat(60));
     }
 }
@@ -1,14 +1,20 @@
 package com.hibana.samples;
 
+import com.hibana.samples.async.AsyncHibanaClient;
+import com.hibana.samples.async.CallScope;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.Model;
 import com.openai.models.ModelListPage;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 08 - List Models
@@ -140,20 +146,30 @@ public class Example08_ListModels {
 
         System.out.println("\nInspecting key models:\n");
 
-        for (String modelId : keyModels) {
-            try {
-                Model model = client.models().retrieve(modelId);
-
-                System.out.println("-".repeat(60));
-                System.out.println("Model: " + model.id());
-                System.out.println("Object: " + model.object());
-                System.out.println("Created: " + model.created());
-                System.out.println("Owned by: " + model.ownedBy());
-                System.out.println("-".repeat(60));
-                System.out.println();
-            } catch (Exception e) {
-                System.out.println("Could not retrieve details for: " + modelId);
-                System.out.println();
+        // Retrieve all models at once; each lookup is independent, so one
+        // failure should not cancel the others
+        AsyncHibanaClient async = new AsyncHibanaClient(client, BASE_URL, API_KEY);
+        try (CallScope scope = CallScope.withTimeout(Duration.ofSeconds(20))) {
+            List<CompletableFuture<Model>> lookups = new ArrayList<>();
+            for (String modelId : keyModels) {
+                lookups.add(async.model(modelId, scope));
+            }
+
+            for (int i = 0; i < keyModels.length; i++) {
+                try {
+                    Model model = lookups.get(i).join();
+
+                    System.out.println("-".repeat(60));
+                    System.out.println("Model: " + model.id());
+                    System.out.println("Object: " + model.object());
+                    System.out.println("Created: " + model.created());
+                    System.out.println("Owned by: " + model.ownedBy());
+                    System.out.println("-".repeat(60));
+                    System.out.println();
+                } catch (CompletionException | CancellationException e) {
+                    System.out.println("Could not retrieve details for: " + keyModels[i]);
+                    System.out.println();
+                }
             }
         }
 
@@ -2,13 +2,23 @@ package com.hibana.samples;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.hibana.samples.async.AsyncHibanaClient;
+import com.hibana.samples.async.CallScope;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.time.Duration;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 09 - Check Balance
@@ -149,48 +159,63 @@ public class Example09_CheckBalance {
         }
     }
 
-    private static void monitorBalanceBeforeRequest() throws IOException {
+    private static void monitorBalanceBeforeRequest() {
         /**
-         * Example: Check balance before making an API call
+         * Example: Check balance alongside the first API call
+         *
+         * Waiting for the balance before every request adds a round trip.
+         * Instead, start the balance check and the first completion together
+         * and only hold back the requests that follow.
          */
 
         System.out.println("=".repeat(60));
-        System.out.println("Pre-Request Balance Check");
+        System.out.println("Balance Check Alongside the First Request");
         System.out.println("=".repeat(60));
 
-        String url = BASE_URL + "/user/balance";
-
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", "Bearer " + API_KEY)
-                .addHeader("Content-Type", "application/json")
-                .get()
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey(API_KEY)
+                .baseUrl(BASE_URL)
+                .build();
+        AsyncHibanaClient async = new AsyncHibanaClient(client, BASE_URL, API_KEY);
+
+        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                .model("gpt-5-nano")
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Say hello in one short sentence.")
+                                .build()
+                ))
+                .maxTokens(1000L)
                 .build();
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                String responseBody = response.body().string();
-                JsonObject data = gson.fromJson(responseBody, JsonObject.class);
+        // Set minimum balance threshold
+        long minimumBalance = 1000;  // 1,000 Rials
+        NumberFormat formatter = NumberFormat.getInstance(Locale.US);
 
-                long balance = data.has("balance") ? data.get("balance").getAsLong() : 0;
+        // Both calls share one 30 second deadline and are cancelled together on exit
+        try (CallScope scope = CallScope.withTimeout(Duration.ofSeconds(30))) {
+            long start = System.currentTimeMillis();
 
-                NumberFormat formatter = NumberFormat.getInstance(Locale.US);
-                System.out.println("\nCurrent balance: " + formatter.format(balance) + " Rials");
+            CompletableFuture<Long> balance = async.balance(scope);
+            CompletableFuture<ChatCompletion> firstAnswer = async.chat(params, scope);
 
-                // Set minimum balance threshold
-                long minimumBalance = 1000;  // 1,000 Rials
+            balance.thenAccept(value -> System.out.printf("%nBalance arrived after %d ms: %s Rials%n",
+                    System.currentTimeMillis() - start, formatter.format(value)));
 
-                if (balance >= minimumBalance) {
-                    System.out.println("✓ Sufficient balance to proceed with API call");
-                    System.out.println("\nProceed with API request...");
-                } else {
-                    System.out.println("✗ Insufficient balance");
-                    System.out.println("Minimum required: " + formatter.format(minimumBalance) + " Rials");
-                    System.out.println("Please recharge your account before making requests.");
-                }
+            String answer = firstAnswer
+                    .thenApply(response -> response.choices().get(0).message().content().orElse(""))
+                    .join();
+            System.out.printf("First answer arrived after %d ms: %s%n", System.currentTimeMillis() - start, answer);
+
+            if (balance.join() >= minimumBalance) {
+                System.out.println("\n✓ Sufficient balance to proceed with further API calls");
+            } else {
+                System.out.println("\n✗ Insufficient balance");
+                System.out.println("Minimum required: " + formatter.format(minimumBalance) + " Rials");
+                System.out.println("Please recharge your account before making more requests.");
             }
-        } catch (IOException e) {
-            System.out.println("Could not check balance: " + e.getMessage());
+        } catch (CompletionException e) {
+            System.out.println("Request failed: " + e.getCause().getMessage());
         }
     }
 
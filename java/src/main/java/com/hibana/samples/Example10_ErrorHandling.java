@@ -1,5 +1,14 @@
 package com.hibana.samples;
 
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.async.Deadline;
+import com.hibana.samples.limits.AdaptiveConcurrencyLimiter;
+import com.hibana.samples.limits.AdmissionRejectedException;
+import com.hibana.samples.limits.DeadlineAwareChatCompletions;
+import com.hibana.samples.limits.DeadlineExceededException;
+import com.hibana.samples.limits.QueueTimeoutException;
+import com.hibana.samples.metrics.MetricsRegistry;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.core.http.StreamResponse;
@@ -8,12 +17,21 @@ import com.openai.models.ChatCompletion;
 import com.openai.models.ChatCompletionCreateParams;
 import com.openai.models.ChatCompletionMessage;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 /**
  * 10 - Error Handling
  *
  * This example demonstrates proper error handling when using the Hibana API.
  * It covers common errors, retry strategies, and best practices for building
- * robust applications.
+ * robust applications. The last section gives every call a deadline and
+ * sheds calls that cannot meet it; it runs against the mock server.
  */
 public class Example10_ErrorHandling {
 
@@ -32,6 +50,8 @@ public class Example10_ErrorHandling {
             comprehensiveErrorHandler();
             System.out.println("\n");
             validateBeforeRequest();
+            System.out.println("\n");
+            shedCallsPastTheirDeadline();
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -414,4 +434,118 @@ public class Example10_ErrorHandling {
             return null;
         }
     }
+
+    private static void shedCallsPastTheirDeadline() throws Exception {
+        /**
+         * Give every call a deadline: calls that cannot meet it are rejected
+         * before they are sent or cancelled while running, so no tokens are
+         * spent on answers nobody waits for
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Deadlines and Load Shedding");
+        System.out.println("=".repeat(60));
+
+        // Calls take ~600 ms while at most 4 run at once, and slow down past that
+        String script = "{"
+                + "\"defaults\": {"
+                + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 400},"
+                + "  \"tokens_per_second\": 100, \"output_tokens\": {\"min\": 20, \"max\": 20},"
+                + "  \"capacity\": 4"
+                + "},"
+                + "\"models\": {\"gpt-5-nano\": {}}"
+                + "}";
+
+        try (MockServer mock = new MockServer(MockScript.parse(script)).start(0)) {
+            OpenAIClient client = OpenAIOkHttpClient.builder()
+                    .apiKey("mock-key")
+                    .baseUrl(mock.baseUrl())
+                    .maxRetries(0)
+                    .build();
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 4, MetricsRegistry.NOOP);
+            DeadlineAwareChatCompletions chat = new DeadlineAwareChatCompletions(client, limiter, MetricsRegistry.NOOP);
+
+            // The estimate starts cautious (the first call also opens the connection)
+            for (int i = 0; i < 10; i++) {
+                chat.create(request("gpt-5-nano", "Warm-up " + i), Deadline.after(Duration.ofSeconds(5)));
+            }
+            System.out.printf("%nExpected latency after 10 calls: %d ms%n",
+                    chat.stats().expectedNanos("gpt-5-nano") / 1_000_000);
+
+            System.out.println("\nBurst of 12 calls with a 2.5 s budget each:");
+            burst(chat, 12, Duration.ofMillis(2500));
+
+            System.out.println("\nThe model slows down (capacity 4 -> 1), 12 calls with a 2 s budget each:");
+            mock.capacity("gpt-5-nano", 1);
+            burst(chat, 12, Duration.ofMillis(2000));
+            System.out.printf("Expected latency now: %d ms%n", chat.stats().expectedNanos("gpt-5-nano") / 1_000_000);
+        }
+    }
+
+    private static void burst(DeadlineAwareChatCompletions chat, int calls, Duration budget) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        try {
+            List<Future<ChatCompletion>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                String message = "Question " + i + ": name a prime number.";
+                Deadline deadline = Deadline.after(budget);
+                results.add(executor.submit(() -> safeApiCall(chat, "gpt-5-nano", message, deadline)));
+            }
+            int answered = 0;
+            for (Future<ChatCompletion> result : results) {
+                answered += result.get() != null ? 1 : 0;
+            }
+            System.out.println("→ " + answered + " of " + calls + " answered in time");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ChatCompletion safeApiCall(DeadlineAwareChatCompletions chat, String model, String userMessage,
+                                              Deadline deadline) {
+        /**
+         * safeApiCall with a deadline: load shedding failures are told apart
+         * from API errors (each message is printed in one piece, since calls
+         * run concurrently)
+         */
+
+        try {
+            ChatCompletion response = chat.create(request(model, userMessage), deadline);
+            System.out.println("✓ Answered with " + deadline.remaining(TimeUnit.MILLISECONDS)
+                    + " ms to spare");
+            return response;
+
+        } catch (AdmissionRejectedException e) {
+            System.out.println("✗ Rejected: " + e.getMessage()
+                    + "\n  Not sent: the model is too slow right now for this deadline.");
+            return null;
+        } catch (QueueTimeoutException e) {
+            System.out.println("✗ Queue Timeout: " + e.getMessage()
+                    + "\n  Not sent: too many calls ahead of this one.");
+            return null;
+        } catch (DeadlineExceededException e) {
+            System.out.println("✗ Deadline Exceeded: " + e.getMessage()
+                    + "\n  Sent but cancelled; the model stops generating when the connection closes.");
+            return null;
+        } catch (RateLimitError e) {
+            System.out.println("✗ Rate Limit: " + e.getMessage()
+                    + "\n  Too many requests. Please wait and try again.");
+            return null;
+        } catch (OpenAIException e) {
+            System.out.println("✗ Unexpected Error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ChatCompletionCreateParams request(String model, String userMessage) {
+        return ChatCompletionCreateParams.builder()
+                .model(model)
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content(userMessage)
+                                .build()
+                ))
+                .maxTokens(100L)
+                .build();
+    }
 }
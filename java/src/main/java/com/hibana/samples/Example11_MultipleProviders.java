@@ -1,13 +1,29 @@
 package com.hibana.samples;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.samples.async.AsyncHibanaClient;
+import com.hibana.samples.async.CallScope;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.client.HibanaClients;
+import com.hibana.samples.client.RequestTemplate;
+import com.hibana.samples.net.ConnectionWarmer;
+import com.hibana.samples.net.NetworkTimingListener;
+import com.hibana.samples.net.NetworkTimings;
+import com.hibana.samples.streaming.BestOfN;
 import com.openai.client.OpenAIClient;
 import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.openai.models.ChatCompletion;
 import com.openai.models.ChatCompletionCreateParams;
 import com.openai.models.ChatCompletionMessage;
 import com.openai.models.ResponseFormatJsonObject;
+import okhttp3.OkHttpClient;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 11 - Multiple Providers Comparison
@@ -38,6 +54,10 @@ public class Example11_MultipleProviders {
             // compareCreativeWriting();  // Uncomment to run
             benchmarkPerformance();
             System.out.println("\n");
+            networkTimingBreakdown();
+            System.out.println("\n");
+            prewarmedConnections();
+            System.out.println("\n");
             providerSpecificFeatures();
             System.out.println("\n");
             chooseBestModelForTask();
@@ -69,13 +89,14 @@ public class Example11_MultipleProviders {
                 .baseUrl(BASE_URL)
                 .build();
 
-        MODELS.forEach((provider, model) -> {
-            System.out.println("\n" + provider + " (" + model + "):");
-            System.out.println("-".repeat(60));
-
-            try {
-                long startTime = System.currentTimeMillis();
+        // Ask all providers at once; the slowest one sets the total time
+        AsyncHibanaClient async = new AsyncHibanaClient(client, BASE_URL, API_KEY);
+        long overallStart = System.currentTimeMillis();
+        Map<String, CompletableFuture<ChatCompletion>> answers = new LinkedHashMap<>();
+        Map<String, Long> elapsed = new ConcurrentHashMap<>();
 
+        try (CallScope scope = CallScope.withTimeout(Duration.ofSeconds(60))) {
+            MODELS.forEach((provider, model) -> {
                 ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
                         .model(model)
                         .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
@@ -87,19 +108,31 @@ public class Example11_MultipleProviders {
                         .maxTokens(8000L)
                         .build();
 
-                ChatCompletion response = client.chat().completions().create(params);
-                long elapsed = System.currentTimeMillis() - startTime;
+                long startTime = System.currentTimeMillis();
+                answers.put(provider, async.chat(params, scope)
+                        .whenComplete((response, error) -> elapsed.put(provider, System.currentTimeMillis() - startTime)));
+            });
 
-                String answer = response.choices().get(0).message().content().orElse("");
-                long tokens = response.usage().map(u -> u.totalTokens()).orElse(0L);
+            answers.forEach((provider, answer) -> {
+                System.out.println("\n" + provider + " (" + MODELS.get(provider) + "):");
+                System.out.println("-".repeat(60));
 
-                System.out.println("Response: " + answer);
-                System.out.printf("\nTime: %.2fs | Tokens: %d%n", elapsed / 1000.0, tokens);
+                try {
+                    ChatCompletion response = answer.join();
 
-            } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
-            }
-        });
+                    String text = response.choices().get(0).message().content().orElse("");
+                    long tokens = response.usage().map(u -> u.totalTokens()).orElse(0L);
+
+                    System.out.println("Response: " + text);
+                    System.out.printf("\nTime: %.2fs | Tokens: %d%n", elapsed.get(provider) / 1000.0, tokens);
+
+                } catch (CompletionException e) {
+                    System.out.println("Error: " + e.getCause().getMessage());
+                }
+            });
+        }
+
+        System.out.printf("%nAll providers answered in %.2fs%n", (System.currentTimeMillis() - overallStart) / 1000.0);
     }
 
     private static void compareCodingTasks() {
@@ -119,26 +152,19 @@ public class Example11_MultipleProviders {
                 .baseUrl(BASE_URL)
                 .build();
 
+        // Same system prompt and settings for every provider; only the model changes
+        RequestTemplate coding = RequestTemplate.builder()
+                .addSystemMessage("You are a Java programming expert.")
+                .temperature(0.3)  // Lower temp for coding
+                .maxTokens(8000L)
+                .build();
+
         MODELS.forEach((provider, model) -> {
             System.out.println("\n" + provider + " (" + model + "):");
             System.out.println("-".repeat(60));
 
             try {
-                ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
-                        .model(model)
-                        .addMessage(ChatCompletionMessage.ofChatCompletionSystemMessageParam(
-                                ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
-                                        .content("You are a Java programming expert.")
-                                        .build()
-                        ))
-                        .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
-                                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
-                                        .content(codingQuestion)
-                                        .build()
-                        ))
-                        .temperature(0.3)  // Lower temp for coding
-                        .maxTokens(8000L)
-                        .build();
+                ChatCompletionCreateParams params = coding.withModel(model).params(codingQuestion);
 
                 ChatCompletion response = client.chat().completions().create(params);
                 System.out.println(response.choices().get(0).message().content().orElse(""));
@@ -161,34 +187,70 @@ public class Example11_MultipleProviders {
         String prompt = "Write a two-line poem about technology and humanity.";
         System.out.println("\nPrompt: " + prompt + "\n");
 
-        OpenAIClient client = OpenAIOkHttpClient.builder()
-                .apiKey(API_KEY)
-                .baseUrl(BASE_URL)
-                .build();
+        ChatHttpClient chat = new ChatHttpClient(HibanaClients.http(), BASE_URL, API_KEY);
+
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+        JsonObject body = new JsonObject();
+        body.add("messages", messages);
+        body.addProperty("temperature", 1.0);  // Higher temp for creativity
+        body.addProperty("max_tokens", 8000);
+
+        // All providers write at once; a clearly good poem wins and the rest are cancelled
+        List<String> providers = new ArrayList<>(MODELS.keySet());
+        BestOfN bestOfN = new BestOfN(chat, Example11_MultipleProviders::scorePoem)
+                .threshold(0.9)
+                .margin(0.3)
+                .patience(Duration.ofSeconds(2));
 
-        MODELS.forEach((provider, model) -> {
-            System.out.println("\n" + provider + " (" + model + "):");
-            System.out.println("-".repeat(60));
+        try {
+            BestOfN.Result result = bestOfN.run(BestOfN.requests(body, new ArrayList<>(MODELS.values())));
+
+            for (BestOfN.Outcome candidate : result.candidates()) {
+                System.out.println("\n" + providers.get(candidate.index()) + " (" + candidate.model() + "):");
+                System.out.println("-".repeat(60));
+                if (candidate.state() == BestOfN.State.COMPLETE) {
+                    System.out.println(candidate.text());
+                    System.out.printf("Score: %.2f | Time: %.2fs%n", candidate.score(), candidate.elapsedNanos() / 1e9);
+                } else if (candidate.state() == BestOfN.State.CANCELLED) {
+                    System.out.printf("Cancelled after %d tokens%n", candidate.tokens());
+                } else {
+                    System.out.println("Error: " + candidate.error().getMessage());
+                }
+            }
 
-            try {
-                ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
-                        .model(model)
-                        .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
-                                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
-                                        .content(prompt)
-                                        .build()
-                        ))
-                        .temperature(1.0)  // Higher temp for creativity
-                        .maxTokens(8000L)
-                        .build();
+            BestOfN.Outcome winner = result.winner();
+            System.out.printf("%nBest poem: %s (%s), ready after %.2fs%n", providers.get(winner.index()),
+                    winner.model(), winner.elapsedNanos() / 1e9);
 
-                ChatCompletion response = client.chat().completions().create(params);
-                System.out.println(response.choices().get(0).message().content().orElse(""));
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
 
-            } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
+    /**
+     * Share of distinct words, halved for a finished poem of a single line;
+     * a third line disqualifies it.
+     */
+    private static double scorePoem(CharSequence text, boolean complete) {
+        long lines = text.toString().lines().filter(line -> !line.isBlank()).count();
+        if (lines > 2) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : text.toString().toLowerCase(Locale.ROOT).split("[^a-z]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
             }
-        });
+        }
+        if (words.isEmpty()) {
+            return 0;
+        }
+        double variety = (double) new HashSet<>(words).size() / words.size();
+        return complete && lines < 2 ? variety / 2 : variety;
     }
 
     private static void benchmarkPerformance() {
@@ -211,21 +273,12 @@ public class Example11_MultipleProviders {
                 .baseUrl(BASE_URL)
                 .build();
 
+        // Open the connection up front (not counted) so the first model doesn't pay for it
+        long warmUpNanos = ConnectionWarmer.warmUp(client);
+        System.out.printf("Connection warmed up in %.0f ms%n%n", warmUpNanos / 1e6);
+
         MODELS.forEach((provider, model) -> {
             try {
-                // Warm-up request (not counted)
-                ChatCompletionCreateParams warmupParams = ChatCompletionCreateParams.builder()
-                        .model(model)
-                        .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
-                                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
-                                        .content("Hi")
-                                        .build()
-                        ))
-                        .maxTokens(8000L)
-                        .build();
-                client.chat().completions().create(warmupParams);
-
-                // Actual benchmark
                 long start = System.currentTimeMillis();
 
                 ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
@@ -278,6 +331,106 @@ public class Example11_MultipleProviders {
         }
     }
 
+    private static void networkTimingBreakdown() {
+        /**
+         * Break each call down into DNS, connect, TLS, waiting for headers and body transfer
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Network Timing Breakdown");
+        System.out.println("=".repeat(60));
+
+        // Same pool as the shared client, plus a listener that times every call
+        NetworkTimings timings = new NetworkTimings();
+        ChatHttpClient chat = new ChatHttpClient(
+                HibanaClients.http().newBuilder()
+                        .eventListenerFactory(NetworkTimingListener.factory(
+                                timings.andThen(timing -> System.out.println("  " + timing))))
+                        .build(),
+                BASE_URL,
+                API_KEY);
+
+        System.out.println("\nTwo calls per model; the first call opens the connection:\n");
+        MODELS.forEach((provider, model) -> {
+            for (int i = 0; i < 2; i++) {
+                JsonObject message = new JsonObject();
+                message.addProperty("role", "user");
+                message.addProperty("content", "Explain quantum computing in one sentence.");
+                JsonArray messages = new JsonArray();
+                messages.add(message);
+                JsonObject body = new JsonObject();
+                body.addProperty("model", model);
+                body.add("messages", messages);
+                body.addProperty("max_tokens", 200);
+
+                try {
+                    chat.complete(body);
+                } catch (Exception e) {
+                    System.out.println("  " + provider + ": Error - " + e.getMessage());
+                }
+            }
+        });
+
+        System.out.println("\nAverages by host and model:");
+        System.out.println(timings.report());
+    }
+
+    private static void prewarmedConnections() throws Exception {
+        /**
+         * Open connections before the first request and keep them alive between bursts
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Pre-warmed Connections");
+        System.out.println("=".repeat(60));
+
+        // A fresh client with an empty pool, so only the warm-up can have opened connections
+        NetworkTimings timings = new NetworkTimings();
+        OkHttpClient http = new OkHttpClient.Builder()
+                .eventListenerFactory(NetworkTimingListener.factory(timings))
+                .build();
+        ChatHttpClient chat = new ChatHttpClient(http, BASE_URL, API_KEY);
+
+        try (ConnectionWarmer warmer = new ConnectionWarmer(http, BASE_URL, API_KEY)) {
+            System.out.println("\nWarm-up: " + warmer.warmUp(MODELS.size()));
+            // Probes every 30 seconds stop the server closing idle connections
+            warmer.startKeepAlive(Duration.ofSeconds(30), MODELS.size());
+            timings.reset();
+
+            System.out.println("\nOne call per model, all at once:");
+            List<Thread> threads = new ArrayList<>();
+            MODELS.values().forEach(model -> {
+                Thread thread = new Thread(() -> {
+                    JsonObject message = new JsonObject();
+                    message.addProperty("role", "user");
+                    message.addProperty("content", "Say hello.");
+                    JsonArray messages = new JsonArray();
+                    messages.add(message);
+                    JsonObject body = new JsonObject();
+                    body.addProperty("model", model);
+                    body.add("messages", messages);
+                    body.addProperty("max_tokens", 50);
+                    try {
+                        chat.complete(body);
+                    } catch (Exception e) {
+                        System.out.println("  " + model + ": Error - " + e.getMessage());
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            });
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            System.out.println(timings.report());
+            long newConnections = timings.aggregates().stream()
+                    .mapToLong(NetworkTimings.Aggregate::newConnections)
+                    .sum();
+            System.out.println("\n✓ " + newConnections + " call(s) had to open a connection");
+        }
+    }
+
     private static void providerSpecificFeatures() {
         /**
          * Demonstrate provider-specific features
@@ -0,0 +1,146 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.BalanceClient;
+import com.hibana.samples.client.HibanaClients;
+import com.hibana.samples.images.DownloadResult;
+import com.hibana.samples.images.ImageDownloader;
+import com.hibana.samples.images.ImageJob;
+import com.hibana.samples.images.ImageJobListener;
+import com.hibana.samples.images.ImageJobQueue;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ImageGenerateParams;
+import com.openai.models.ImagesResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 12 - Bulk Image Queue
+ *
+ * This example demonstrates how to run thousands of image prompts with
+ * a bounded number of concurrent generations, an images-per-minute limit
+ * and a total cost ceiling taken from the wallet balance. Progress is
+ * journaled so an interrupted run resumes where it stopped.
+ *
+ * It runs against the mock server, so it works without an API key. Point
+ * the client at BASE_URL to use it for real.
+ *
+ * Model used: dall-e-3
+ */
+public class Example12_BulkImageQueue {
+
+    private static final Path OUTPUT_DIR = Paths.get("generated-images", "bulk");
+    private static final Path JOURNAL = OUTPUT_DIR.resolve("jobs.journal");
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"balance\": 60000,"
+            + "\"defaults\": {\"ttft\": {\"type\": \"fixed\", \"ms\": 200}},"
+            + "\"models\": {\"dall-e-3\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+            String mockBaseUrl = mock.baseUrl();
+
+            Files.deleteIfExists(JOURNAL);
+            List<ImageJob> jobs = catalogJobs(25);
+
+            runQueue(mockBaseUrl, jobs, "First run (budget covers 10 images)");
+            System.out.println("\n");
+            runQueue(mockBaseUrl, jobs, "Resumed run (finished jobs are not paid for again)");
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void runQueue(String baseUrl, List<ImageJob> jobs, String title) throws Exception {
+        /**
+         * Run the catalog through the queue with concurrency and cost caps
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println(title);
+        System.out.println("=".repeat(60));
+
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey("mock-key")
+                .baseUrl(baseUrl)
+                .build();
+
+        ImageDownloader downloader = new ImageDownloader(HibanaClients.http(), OUTPUT_DIR, 8);
+
+        // Generate one image and stream it to disk
+        ImageJobQueue.Generator generator = job -> {
+            ImagesResponse response = client.images().generate(ImageGenerateParams.builder()
+                    .model("dall-e-3")
+                    .prompt(job.prompt())
+                    .n(1L)
+                    .size(ImageGenerateParams.Size._1024X1024)
+                    .build());
+            String url = response.data().get(0).url()
+                    .orElseThrow(() -> new IOException("No image URL returned"));
+            DownloadResult result = downloader.download(url, job.id());
+            if (!result.isSuccess()) {
+                throw new IOException(result.error());
+            }
+            return result.path();
+        };
+
+        ImageJobQueue queue = ImageJobQueue.builder(generator)
+                .concurrency(4)
+                .imagesPerMinute(120)
+                .costPerImage(5000L)
+                .balance(new BalanceClient(HibanaClients.http(), baseUrl, "mock-key"), 10_000L)
+                .journal(JOURNAL)
+                .listener(new ImageJobListener() {
+                    @Override
+                    public void onJobCompleted(ImageJob job, Path image) {
+                        System.out.println("  ✓ " + job.id() + " -> " + image.getFileName());
+                    }
+
+                    @Override
+                    public void onJobFailed(ImageJob job, Exception error) {
+                        System.out.println("  ✗ " + job.id() + ": " + error.getMessage());
+                    }
+
+                    @Override
+                    public void onJobSkipped(ImageJob job, String reason) {
+                        System.out.println("  - " + job.id() + " skipped: " + reason);
+                    }
+                })
+                .build();
+
+        System.out.println("\nRunning " + jobs.size() + " jobs...\n");
+        ImageJobQueue.Summary summary = queue.run(jobs);
+
+        System.out.println("\n" + "-".repeat(60));
+        System.out.println(summary);
+        System.out.println("-".repeat(60));
+    }
+
+    private static List<ImageJob> catalogJobs(int count) {
+        String[] products = {"ceramic mug", "leather backpack", "desk lamp", "running shoe", "wool scarf"};
+        String[] styles = {"studio lighting", "on a wooden table", "minimalist background", "outdoor scene", "flat lay"};
+
+        List<ImageJob> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String prompt = "Product photo of a " + products[i % products.length] + ", " + styles[(i / products.length) % styles.length];
+            jobs.add(new ImageJob(String.format("sku-%04d", i + 1), prompt));
+        }
+        return jobs;
+    }
+}
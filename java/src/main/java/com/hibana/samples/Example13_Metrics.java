@@ -0,0 +1,290 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.HibanaClients;
+import com.hibana.samples.metrics.ApiMetrics;
+import com.hibana.samples.metrics.InMemoryMetricsRegistry;
+import com.hibana.samples.metrics.InstrumentedChatCompletions;
+import com.hibana.samples.metrics.PrometheusExporter;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 13 - Metrics
+ *
+ * This example demonstrates how to record per-model request counts,
+ * latency histograms, token counters, error counts by exception type and
+ * in-flight gauges for every API call, and expose them to Prometheus.
+ * It also measures the per-call overhead of the instrumentation.
+ *
+ * It runs against the mock server (with some injected 429s and 503s), so
+ * it works without an API key.
+ */
+public class Example13_Metrics {
+
+    private static final String[] MODELS = {"gpt-5-nano", "claude-haiku-4-5", "deepseek-chat"};
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"lognormal\", \"median_ms\": 80, \"p99_ms\": 400},"
+            + "  \"tokens_per_second\": 400, \"output_tokens\": {\"min\": 20, \"max\": 80},"
+            + "  \"rate_limit_ratio\": 0.1, \"server_error_ratio\": 0.05"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}, \"claude-haiku-4-5\": {}, \"deepseek-chat\": {}}"
+            + "}";
+
+    private static final int METRICS_PORT = 9464;
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        HttpServer metricsEndpoint = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+            ApiMetrics metrics = new ApiMetrics(registry);
+
+            instrumentedCalls(mock.baseUrl(), metrics);
+            System.out.println("\n");
+            metricsEndpoint = PrometheusExporter.serve(registry, METRICS_PORT);
+            scrapeMetrics();
+            System.out.println("\n");
+            measureOverhead(mock.baseUrl());
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (metricsEndpoint != null) {
+                metricsEndpoint.stop(0);
+            }
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void instrumentedCalls(String baseUrl, ApiMetrics metrics) {
+        /**
+         * Send a mix of normal and streaming calls through the instrumented client
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Instrumented API Calls");
+        System.out.println("=".repeat(60));
+
+        // No SDK retries, so injected errors show up in the metrics
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey("mock-key")
+                .baseUrl(baseUrl)
+                .maxRetries(0)
+                .build();
+        InstrumentedChatCompletions chat = new InstrumentedChatCompletions(client, metrics);
+
+        int ok = 0;
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            String model = MODELS[i % MODELS.length];
+            boolean stream = i % 5 == 4;
+            ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                    .model(model)
+                    .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                            ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                    .content("Question " + i + ": name a prime number.")
+                                    .build()
+                    ))
+                    .maxTokens(100L)
+                    .build();
+
+            try {
+                if (stream) {
+                    try (Stream<ChatCompletionChunk> chunks = chat.createStreaming(params)) {
+                        chunks.forEach(chunk -> { });
+                    }
+                } else {
+                    chat.create(params);
+                }
+                ok++;
+            } catch (Exception e) {
+                failures.add(model + ": " + e.getClass().getSimpleName());
+            }
+        }
+
+        System.out.println("\n✓ " + ok + " calls succeeded, " + failures.size() + " failed");
+        failures.forEach(f -> System.out.println("  ✗ " + f));
+    }
+
+    private static void scrapeMetrics() throws Exception {
+        /**
+         * Read the Prometheus endpoint the way a scraper would
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Prometheus Endpoint");
+        System.out.println("=".repeat(60));
+
+        String url = "http://localhost:" + METRICS_PORT + "/metrics";
+        System.out.println("\nGET " + url + "\n");
+
+        Request request = new Request.Builder().url(url).get().build();
+        try (Response response = HibanaClients.http().newCall(request).execute()) {
+            String body = response.body().string();
+            // Skip the individual histogram buckets to keep the output short
+            body.lines()
+                    .filter(line -> !line.contains("_bucket{"))
+                    .forEach(System.out::println);
+        }
+    }
+
+    private static void measureOverhead(String baseUrl) throws InterruptedException {
+        /**
+         * Time InstrumentedChatCompletions against a client that replays a
+         * recorded response, so the network is out of the picture but the
+         * model lookup, the JFR event and the stream wrapper are all in it
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Instrumentation Overhead");
+        System.out.println("=".repeat(60));
+
+        OpenAIClient mockClient = OpenAIOkHttpClient.builder()
+                .apiKey("mock-key")
+                .baseUrl(baseUrl)
+                .maxRetries(0)
+                .build();
+        ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                .model(MODELS[0])
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Name a prime number.")
+                                .build()
+                ))
+                .maxTokens(100L)
+                .build();
+        ChatCompletion completion = record(() -> mockClient.chat().completions().create(params));
+        List<ChatCompletionChunk> chunks = record(() -> {
+            try (Stream<ChatCompletionChunk> stream = mockClient.chat().completions().createStreaming(params)) {
+                return stream.collect(Collectors.toList());
+            }
+        });
+
+        OpenAIClient replaying = replayingClient(completion, chunks);
+        InstrumentedChatCompletions chat = new InstrumentedChatCompletions(replaying,
+                new ApiMetrics(new InMemoryMetricsRegistry()));
+        int iterations = 1_000_000;
+
+        System.out.println("\nSingle thread, create (instrumented vs plain client):");
+        for (int round = 1; round <= 5; round++) {
+            double plain = nanosPerCall(iterations, () -> replaying.chat().completions().create(params));
+            double instrumented = nanosPerCall(iterations, () -> chat.create(params));
+            System.out.printf("  Round %d: %.1f ns per call, %.1f ns overhead%n", round, instrumented,
+                    instrumented - plain);
+        }
+
+        int streams = iterations / 10;
+        System.out.println("\nSingle thread, createStreaming with " + chunks.size() + " chunks:");
+        for (int round = 1; round <= 3; round++) {
+            double plain = nanosPerCall(streams, () -> {
+                try (Stream<ChatCompletionChunk> stream = replaying.chat().completions().createStreaming(params)) {
+                    stream.forEach(chunk -> { });
+                }
+            });
+            double instrumented = nanosPerCall(streams, () -> {
+                try (Stream<ChatCompletionChunk> stream = chat.createStreaming(params)) {
+                    stream.forEach(chunk -> { });
+                }
+            });
+            System.out.printf("  Round %d: %.1f ns per stream, %.1f ns overhead%n", round, instrumented,
+                    instrumented - plain);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("\n" + threads + " threads sharing one model (create):");
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    chat.create(params);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double nanosPerCall = (double) (System.nanoTime() - start) / iterations;
+        System.out.printf("  %.1f ns per call (wall time per call on each thread)%n", nanosPerCall);
+
+        System.out.println("\nTarget: below 1,000 ns of overhead per call");
+    }
+
+    private static double nanosPerCall(int iterations, Runnable call) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            call.run();
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+
+    /**
+     * Call the mock until it answers; it injects some 429s and 503s.
+     */
+    private static <T> T record(Supplier<T> call) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt == 10) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * A client whose chat completions return the recorded response and
+     * chunks without any I/O.
+     */
+    private static OpenAIClient replayingClient(ChatCompletion completion, List<ChatCompletionChunk> chunks) {
+        Map<Class<?>, Object> services = new ConcurrentHashMap<>();
+        return replaying(OpenAIClient.class, services, completion, chunks);
+    }
+
+    private static <T> T replaying(Class<T> type, Map<Class<?>, Object> services, ChatCompletion completion,
+                                   List<ChatCompletionChunk> chunks) {
+        return type.cast(services.computeIfAbsent(type, t -> Proxy.newProxyInstance(t.getClassLoader(),
+                new Class<?>[] {t}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "create":
+                            return completion;
+                        case "createStreaming":
+                            return chunks.stream();
+                        default:
+                            // chat(), completions(): the next service down
+                            if (method.getReturnType().isInterface()) {
+                                return replaying(method.getReturnType(), services, completion, chunks);
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                })));
+    }
+}
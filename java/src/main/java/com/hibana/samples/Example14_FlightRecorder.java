@@ -0,0 +1,190 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.metrics.ApiMetrics;
+import com.hibana.samples.metrics.InstrumentedChatCompletions;
+import com.hibana.samples.metrics.MetricsRegistry;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 14 - Flight Recorder
+ *
+ * This example demonstrates the custom Java Flight Recorder events written
+ * by the instrumented client: one event per API call (model, status,
+ * attempts, tokens, time to first chunk), one per retry (covering the
+ * backoff), sampled stream chunk arrivals and cache hits. Because they sit
+ * in the same recording as GC pauses and thread stalls, a slow call can be
+ * lined up against what the JVM was doing at the time.
+ *
+ * The recording is started from code here; in production use
+ * -XX:StartFlightRecording or jcmd and enable the hibana.* events.
+ *
+ * It runs against the mock server (with some injected 429s and 503s), so
+ * it works without an API key.
+ */
+public class Example14_FlightRecorder {
+
+    private static final String[] MODELS = {"gpt-5-nano", "claude-haiku-4-5", "deepseek-chat"};
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"lognormal\", \"median_ms\": 60, \"p99_ms\": 300},"
+            + "  \"tokens_per_second\": 300, \"output_tokens\": {\"min\": 30, \"max\": 120},"
+            + "  \"rate_limit_ratio\": 0.15, \"retry_after_seconds\": 0, \"server_error_ratio\": 0.05"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}, \"claude-haiku-4-5\": {}, \"deepseek-chat\": {}}"
+            + "}";
+
+    private static final Path RECORDING = Paths.get("recordings", "api-calls.jfr");
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            record(mock.baseUrl());
+            System.out.println("\n");
+            summarize();
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void record(String baseUrl) throws Exception {
+        /**
+         * Run a mix of calls while a recording with the hibana.* events is active
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Recording API Calls");
+        System.out.println("=".repeat(60));
+
+        // Retries happen in the instrumented client, not the SDK, so each one is recorded
+        OpenAIClient client = OpenAIOkHttpClient.builder()
+                .apiKey("mock-key")
+                .baseUrl(baseUrl)
+                .maxRetries(0)
+                .build();
+        InstrumentedChatCompletions chat = new InstrumentedChatCompletions(
+                client, new ApiMetrics(MetricsRegistry.NOOP), 3, 8);
+
+        Files.createDirectories(RECORDING.getParent());
+        try (Recording recording = new Recording()) {
+            recording.setName("hibana-api-calls");
+            recording.enable("hibana.ApiCall");
+            recording.enable("hibana.ApiRetry");
+            recording.enable("hibana.StreamChunk");
+            recording.enable("hibana.CacheHit");
+            // JVM events to correlate with
+            recording.enable("jdk.GarbageCollection");
+            recording.enable("jdk.ThreadPark").withThreshold(Duration.ofMillis(10));
+            recording.enable("jdk.SocketRead").withThreshold(Duration.ofMillis(10));
+            recording.start();
+
+            int ok = 0;
+            int failed = 0;
+            for (int i = 0; i < 24; i++) {
+                String model = MODELS[i % MODELS.length];
+                ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                        .model(model)
+                        .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                        .content("Question " + i + ": explain a hash map in one paragraph.")
+                                        .build()
+                        ))
+                        .maxTokens(200L)
+                        .build();
+
+                try {
+                    if (i % 2 == 0) {
+                        try (Stream<ChatCompletionChunk> chunks = chat.createStreaming(params)) {
+                            chunks.forEach(chunk -> { });
+                        }
+                    } else {
+                        chat.create(params);
+                    }
+                    ok++;
+                } catch (Exception e) {
+                    failed++;
+                }
+            }
+
+            recording.stop();
+            recording.dump(RECORDING);
+            System.out.println("\n✓ " + ok + " calls succeeded, " + failed + " failed");
+            System.out.println("✓ Recording written to " + RECORDING.toAbsolutePath());
+        }
+    }
+
+    private static void summarize() throws Exception {
+        /**
+         * Read the recording back, the way JDK Mission Control or `jfr print` would
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Recording Contents");
+        System.out.println("=".repeat(60));
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(RECORDING);
+
+        Map<String, Integer> counts = new TreeMap<>();
+        for (RecordedEvent event : events) {
+            counts.merge(event.getEventType().getName(), 1, Integer::sum);
+        }
+        System.out.println("\nEvents by type:");
+        counts.forEach((type, count) -> System.out.printf("  %-22s %d%n", type, count));
+
+        System.out.println("\nSlowest API calls:");
+        events.stream()
+                .filter(e -> e.getEventType().getName().equals("hibana.ApiCall"))
+                .sorted((a, b) -> b.getDuration().compareTo(a.getDuration()))
+                .limit(5)
+                .forEach(e -> System.out.printf("  %-18s %-6s %5d ms  status %d  attempts %d  ttfc %s  tokens %d%s%n",
+                        e.getString("model"),
+                        e.getString("operation"),
+                        e.getDuration().toMillis(),
+                        e.getInt("status"),
+                        e.getInt("attempts"),
+                        e.getLong("chunks") > 0 ? e.getDuration("timeToFirstChunk").toMillis() + " ms" : "-",
+                        e.getLong("completionTokens"),
+                        e.getString("error") != null ? "  " + e.getString("error") : ""));
+
+        System.out.println("\nRetries:");
+        events.stream()
+                .filter(e -> e.getEventType().getName().equals("hibana.ApiRetry"))
+                .limit(5)
+                .forEach(e -> System.out.printf("  %-18s attempt %d  status %d  %s, backed off %d ms%n",
+                        e.getString("model"),
+                        e.getInt("attempt"),
+                        e.getInt("status"),
+                        e.getString("error"),
+                        e.getDuration().toMillis()));
+
+        System.out.println("\nInspect it further with:");
+        System.out.println("  jfr print --events hibana.ApiCall,hibana.ApiRetry " + RECORDING);
+        System.out.println("  jfr summary " + RECORDING);
+    }
+}
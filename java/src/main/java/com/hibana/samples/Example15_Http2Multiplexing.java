@@ -0,0 +1,211 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.net.HttpProtocolConfig;
+import com.hibana.samples.net.StreamLimitedCallFactory;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 15 - HTTP/2 Multiplexing
+ *
+ * This example demonstrates how concurrent streaming completions map onto
+ * connections. It sends 500 streaming requests at once to the local mock
+ * server, first over HTTP/1.1 (one connection per request) and then over
+ * HTTP/2 with a few connections carrying many streams each, and compares
+ * connections opened, time to first token and total time.
+ *
+ * The mock server allows 100 concurrent streams per HTTP/2 connection. A
+ * single OkHttp client only learns that limit after its first burst has
+ * gone out, so it overshoots and has to retry on extra connections;
+ * StreamLimitedCallFactory keeps each connection within the limit from the
+ * start.
+ */
+public class Example15_Http2Multiplexing {
+
+    private static final int REQUESTS = 500;
+    private static final int SERVER_MAX_STREAMS = 100;
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 150},"
+            + "  \"tokens_per_second\": 100, \"output_tokens\": {\"min\": 40, \"max\": 40}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT))
+                    .maxConcurrentStreams(SERVER_MAX_STREAMS)
+                    .start(0);
+
+            System.out.println("=".repeat(60));
+            System.out.println("HTTP/1.1 Pooling vs HTTP/2 Multiplexing");
+            System.out.println("=".repeat(60));
+            System.out.println("\n" + REQUESTS + " concurrent streaming requests, 40 tokens each at 100 tokens/s\n");
+
+            System.out.printf("%-48s %11s %9s %9s %9s %9s %8s%n",
+                    "Configuration", "Connections", "TTFT p50", "TTFT p99", "Total p50", "Total p99", "Wall");
+            System.out.println("-".repeat(111));
+
+            HttpProtocolConfig http1 = HttpProtocolConfig.http1(REQUESTS);
+            benchmark(mock, http1.toString(), () -> new Calls(http1.apply(new OkHttpClient.Builder())
+                    .readTimeout(60, TimeUnit.SECONDS)
+                    .build()));
+
+            // One OkHttp client: the first burst goes out before the server's stream limit is known
+            HttpProtocolConfig h2 = HttpProtocolConfig.h2PriorKnowledge(REQUESTS / SERVER_MAX_STREAMS, SERVER_MAX_STREAMS);
+            benchmark(mock, h2 + ", one pool", () -> new Calls(h2.apply(new OkHttpClient.Builder())
+                    .readTimeout(60, TimeUnit.SECONDS)
+                    .build()));
+
+            for (int connections : new int[]{REQUESTS / SERVER_MAX_STREAMS, 2 * REQUESTS / SERVER_MAX_STREAMS}) {
+                HttpProtocolConfig limited = HttpProtocolConfig.h2PriorKnowledge(connections, REQUESTS / connections);
+                benchmark(mock, limited + ", stream-limited", () -> new Calls(new StreamLimitedCallFactory(limited,
+                        new OkHttpClient.Builder().readTimeout(60, TimeUnit.SECONDS).build())));
+            }
+
+            System.out.println("\nHTTP/1.1 opens a connection (and on a real endpoint, a TLS handshake) per");
+            System.out.println("concurrent request; HTTP/2 carries them on a handful of connections.");
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void benchmark(MockServer mock, String label, Supplier<Calls> calls) throws InterruptedException {
+        // One untimed round first so both sides have JIT-compiled the hot paths
+        try (Calls warmUp = calls.get()) {
+            run(mock, label, warmUp.factory, false);
+        }
+        try (Calls measured = calls.get()) {
+            run(mock, label, measured.factory, true);
+        }
+    }
+
+    private static void run(MockServer mock, String label, Call.Factory calls, boolean print) throws InterruptedException {
+        // Only used to build the requests; the calls go through calls
+        ChatHttpClient chat = new ChatHttpClient(null, mock.baseUrl(), "mock-key");
+
+        long[] ttft = new long[REQUESTS];
+        long[] total = new long[REQUESTS];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        long connectionsBefore = mock.connectionsAccepted();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            int index = i;
+            long sent = System.nanoTime();
+            calls.newCall(chat.newRequest(streamingRequest(i))).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (response) {
+                        BufferedSource source = response.body().source();
+                        String line;
+                        while ((line = source.readUtf8Line()) != null) {
+                            if (line.startsWith("data: ") && ttft[index] == 0) {
+                                ttft[index] = System.nanoTime() - sent;
+                            }
+                            if (line.equals("data: [DONE]")) {
+                                break;
+                            }
+                        }
+                        total[index] = System.nanoTime() - sent;
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    failures.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long wall = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%-48s %11d %9s %9s %9s %9s %8s%s%n",
+                    label,
+                    mock.connectionsAccepted() - connectionsBefore,
+                    ms(percentile(ttft, 50)), ms(percentile(ttft, 99)),
+                    ms(percentile(total, 50)), ms(percentile(total, 99)),
+                    ms(wall),
+                    failures.get() > 0 ? "  (" + failures.get() + " failed)" : "");
+        }
+    }
+
+    /**
+     * A call factory and how to release its threads and connections.
+     */
+    private static final class Calls implements AutoCloseable {
+        final Call.Factory factory;
+
+        Calls(Call.Factory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public void close() {
+            if (factory instanceof StreamLimitedCallFactory) {
+                ((StreamLimitedCallFactory) factory).close();
+            } else if (factory instanceof OkHttpClient) {
+                ((OkHttpClient) factory).dispatcher().executorService().shutdown();
+                ((OkHttpClient) factory).connectionPool().evictAll();
+            }
+        }
+    }
+
+    private static JsonObject streamingRequest(int i) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", "Request " + i + ": count to forty.");
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", "gpt-5-nano");
+        body.add("messages", messages);
+        body.addProperty("max_tokens", 100);
+        body.addProperty("stream", true);
+        return body;
+    }
+
+    private static long percentile(long[] values, int percentile) {
+        long[] sorted = Arrays.stream(values).filter(v -> v > 0).sorted().toArray();
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%d ms", TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+}
@@ -0,0 +1,166 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.net.HttpProtocolConfig;
+import com.hibana.samples.threads.ThreadMode;
+import okhttp3.OkHttpClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 17 - Virtual Threads
+ *
+ * This example demonstrates how many blocking streaming completions one
+ * JVM can read at once. Every stream is consumed the blocking way, like
+ * {@code createStreaming(params).forEach(...)}, so it holds a thread until
+ * the last chunk arrives. It compares:
+ * - A fixed pool of platform threads, the usual setup
+ * - One platform thread per stream
+ * - One virtual thread per stream (JDK 21 build only)
+ *
+ * Build with {@code ./gradlew build -PvirtualThreads} on a JDK 21 to include
+ * the virtual thread mode. It runs against the mock server, so it works
+ * without an API key.
+ */
+public class Example17_VirtualThreads {
+
+    private static final int[] STREAMS = {1000, 4000};
+    private static final int PLATFORM_POOL_SIZE = 200;
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 1000},"
+            + "  \"tokens_per_second\": 5, \"output_tokens\": {\"min\": 10, \"max\": 10}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            System.out.println("=".repeat(60));
+            System.out.println("Blocking Streams on Platform vs Virtual Threads");
+            System.out.println("=".repeat(60));
+            System.out.println("\nEach stream: 1 s to first token, then 10 tokens at 5 tokens/s (~3 s)");
+            // Client and mock share the CPUs, so few cores cap how fast streams can start
+            System.out.println("CPUs: " + Runtime.getRuntime().availableProcessors());
+            if (!ThreadMode.VIRTUAL.isSupported()) {
+                System.out.println("Virtual threads skipped: build with ./gradlew build -PvirtualThreads on a JDK 21");
+            }
+
+            System.out.printf("%n%-34s %8s %10s %9s %11s %9s%n",
+                    "Mode", "Streams", "In flight", "Wall", "Streams/s", "Threads");
+            System.out.println("-".repeat(86));
+
+            for (int streams : STREAMS) {
+                benchmark(mock, "platform, pool of " + PLATFORM_POOL_SIZE, streams,
+                        () -> Executors.newFixedThreadPool(PLATFORM_POOL_SIZE, ThreadMode.PLATFORM.threadFactory("stream")));
+                benchmark(mock, "platform, thread per stream", streams,
+                        () -> ThreadMode.PLATFORM.newExecutor("stream"));
+                if (ThreadMode.VIRTUAL.isSupported()) {
+                    benchmark(mock, "virtual, thread per stream", streams,
+                            () -> ThreadMode.VIRTUAL.newExecutor("stream"));
+                }
+                System.out.println();
+            }
+
+            System.out.println("In flight: most streams open at the same time");
+            System.out.println("Threads: peak live platform threads in the JVM (virtual threads are not counted)");
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void benchmark(MockServer mock, String label, int streams, Supplier<ExecutorService> executor)
+            throws Exception {
+        // HTTP/1.1 with a pool big enough that every stream can have its own connection
+        OkHttpClient http = HttpProtocolConfig.http1(streams).apply(new OkHttpClient.Builder())
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+        ChatHttpClient chat = new ChatHttpClient(http, mock.baseUrl(), "mock-key");
+
+        // One untimed round first so the JIT has compiled the hot paths
+        run(chat, Math.min(streams, 200), executor, label, false);
+        run(chat, streams, executor, label, true);
+
+        http.dispatcher().executorService().shutdown();
+        http.connectionPool().evictAll();
+    }
+
+    private static void run(ChatHttpClient chat, int streams, Supplier<ExecutorService> executorSupplier,
+                            String label, boolean print) throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        THREADS.resetPeakThreadCount();
+
+        long start = System.nanoTime();
+        ExecutorService executor = executorSupplier.get();
+        try {
+            List<Future<?>> results = new ArrayList<>(streams);
+            for (int i = 0; i < streams; i++) {
+                JsonObject body = streamingRequest(i);
+                results.add(executor.submit(() -> {
+                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        chat.stream(body, chunk -> { });
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+
+        if (print) {
+            System.out.printf("%-34s %,8d %,10d %8.1fs %,11.0f %,9d%s%n",
+                    label, streams, peakInFlight.get(), wallSeconds, streams / wallSeconds,
+                    THREADS.getPeakThreadCount(),
+                    failures.get() > 0 ? "  (" + failures.get() + " failed)" : "");
+        }
+    }
+
+    private static JsonObject streamingRequest(int i) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", "Stream number " + i + ": say hello.");
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", "gpt-5-nano");
+        body.add("messages", messages);
+        body.addProperty("max_tokens", 20);
+        return body;
+    }
+}
@@ -0,0 +1,220 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.limits.AdaptiveConcurrencyLimiter;
+import com.hibana.samples.limits.LimitedChatCompletions;
+import com.hibana.samples.limits.QueueTimeoutException;
+import com.hibana.samples.metrics.InMemoryMetricsRegistry;
+import com.hibana.samples.metrics.MetricsRegistry;
+import com.hibana.samples.metrics.PrometheusExporter;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.errors.RateLimitError;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 18 - Adaptive Concurrency
+ *
+ * This example demonstrates how to keep the number of concurrent calls
+ * close to what the API can handle right now. A fixed limit is either too
+ * low when capacity is plentiful or floods the API with 429s when it
+ * shrinks; the adaptive limiter raises the limit while latency stays flat
+ * and cuts it when latency rises or a 429 comes back.
+ *
+ * It runs against the mock server, whose capacity for the model changes
+ * while the example runs (20, then 5, then 40 concurrent calls), so it
+ * works without an API key.
+ */
+public class Example18_AdaptiveConcurrency {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int[] CAPACITY_PHASES = {20, 5, 40};
+    private static final long PHASE_MILLIS = 6_000;
+    private static final long REPORT_MILLIS = 1_000;
+    private static final int CALLERS = 64;
+    private static final int STATIC_LIMIT = 30;
+
+    // Within capacity a call takes ~300 ms; past it the mock slows every call down and answers 429 at twice capacity
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 200},"
+            + "  \"tokens_per_second\": 200, \"output_tokens\": {\"min\": 20, \"max\": 20}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            // No SDK retries, so every 429 reaches the limiter
+            OpenAIClient client = OpenAIOkHttpClient.builder()
+                    .apiKey("mock-key")
+                    .baseUrl(mock.baseUrl())
+                    .maxRetries(0)
+                    .build();
+
+            InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+            Summary adaptive = run(mock, client, "Adaptive Limit",
+                    new AdaptiveConcurrencyLimiter(10, 1, 200, registry));
+            System.out.println("\n");
+            Summary fixed = run(mock, client, "Static Limit of " + STATIC_LIMIT,
+                    new AdaptiveConcurrencyLimiter(STATIC_LIMIT, STATIC_LIMIT, STATIC_LIMIT, MetricsRegistry.NOOP));
+            System.out.println("\n");
+
+            System.out.println("=".repeat(60));
+            System.out.println("Comparison");
+            System.out.println("=".repeat(60));
+            System.out.printf("%n%-20s %8s %8s %10s %10s %10s%n", "Limit", "OK", "429s", "Timeouts", "p50", "p95");
+            System.out.println("-".repeat(70));
+            adaptive.print("adaptive");
+            fixed.print("static " + STATIC_LIMIT);
+
+            System.out.println("\nLimiter metrics (adaptive run):\n");
+            for (String line : PrometheusExporter.scrape(registry).split("\n")) {
+                if (line.startsWith("hibana_concurrency_limit") || line.startsWith("hibana_limiter_timeouts_total")) {
+                    System.out.println("  " + line);
+                }
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static Summary run(MockServer mock, OpenAIClient client, String title,
+                               AdaptiveConcurrencyLimiter limiter) throws Exception {
+        /**
+         * Keep CALLERS threads calling the model while its capacity shifts,
+         * printing the limit and throughput every second
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println(title);
+        System.out.println("=".repeat(60));
+
+        LimitedChatCompletions chat = new LimitedChatCompletions(client, limiter, Duration.ofSeconds(2));
+        Summary summary = new Summary();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger rateLimited = new AtomicInteger();
+        AtomicInteger timedOut = new AtomicInteger();
+
+        mock.capacity(MODEL, CAPACITY_PHASES[0]);
+        long end = System.currentTimeMillis() + PHASE_MILLIS * CAPACITY_PHASES.length;
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            int caller = i;
+            callers.submit(() -> {
+                int n = 0;
+                while (System.currentTimeMillis() < end) {
+                    long start = System.nanoTime();
+                    try {
+                        chat.create(request(caller, n++));
+                        summary.latency(System.nanoTime() - start);
+                        ok.incrementAndGet();
+                    } catch (RateLimitError e) {
+                        rateLimited.incrementAndGet();
+                        pause(100);
+                    } catch (QueueTimeoutException e) {
+                        timedOut.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        pause(100);
+                    }
+                }
+            });
+        }
+
+        System.out.printf("%n%5s %9s %6s %10s %7s %7s %9s%n", "Time", "Capacity", "Limit", "In flight", "OK/s", "429/s", "Timeouts");
+        System.out.println("-".repeat(60));
+        long started = System.currentTimeMillis();
+        int phase = 0;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(REPORT_MILLIS);
+            long elapsed = System.currentTimeMillis() - started;
+            int current = (int) Math.min(elapsed / PHASE_MILLIS, CAPACITY_PHASES.length - 1);
+            if (current != phase) {
+                phase = current;
+                mock.capacity(MODEL, CAPACITY_PHASES[phase]);
+            }
+            int okNow = ok.getAndSet(0);
+            int limitedNow = rateLimited.getAndSet(0);
+            int timedOutNow = timedOut.getAndSet(0);
+            summary.add(okNow, limitedNow, timedOutNow);
+            System.out.printf("%4ds %9d %6d %10d %7d %7d %9d%n",
+                    elapsed / 1000, CAPACITY_PHASES[phase], limiter.limit(MODEL), limiter.inFlight(MODEL),
+                    okNow, limitedNow, timedOutNow);
+        }
+
+        callers.shutdown();
+        callers.awaitTermination(10, TimeUnit.SECONDS);
+        return summary;
+    }
+
+    private static ChatCompletionCreateParams request(int caller, int n) {
+        return ChatCompletionCreateParams.builder()
+                .model(MODEL)
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Caller " + caller + ", question " + n + ": name a prime number.")
+                                .build()
+                ))
+                .maxTokens(50L)
+                .build();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Summary {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private long ok;
+        private long rateLimited;
+        private long timedOut;
+
+        void latency(long nanos) {
+            latencies.add(nanos);
+        }
+
+        void add(int ok, int rateLimited, int timedOut) {
+            this.ok += ok;
+            this.rateLimited += rateLimited;
+            this.timedOut += timedOut;
+        }
+
+        void print(String label) {
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            System.out.printf("%-20s %,8d %,8d %,10d %8dms %8dms%n", label, ok, rateLimited, timedOut,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95));
+        }
+
+        private static long percentile(List<Long> sorted, double p) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)))) / 1_000_000;
+        }
+    }
+}
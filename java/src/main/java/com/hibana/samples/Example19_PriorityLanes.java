@@ -0,0 +1,239 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.async.Deadline;
+import com.hibana.samples.limits.Lane;
+import com.hibana.samples.limits.PriorityLanes;
+import com.hibana.samples.metrics.InMemoryMetricsRegistry;
+import com.hibana.samples.metrics.PrometheusExporter;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import com.openai.models.ResponseFormatJsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 19 - Priority Lanes
+ *
+ * This example demonstrates how to keep a chat responsive while bulk
+ * extraction jobs share the same client. Without priorities a chat turn
+ * queues behind every bulk job sent before it; with priority lanes some
+ * capacity is reserved for interactive calls and bulk jobs only use what
+ * is left.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example19_PriorityLanes {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int CAPACITY = 16;
+    private static final int INTERACTIVE_RESERVE = 4;
+    private static final int BULK_WORKERS = 48;
+    private static final int BULK_JOBS = 400;
+    private static final int USERS = 4;
+    private static final int TURNS = 6;
+    private static final long THINK_MILLIS = 500;
+
+    // Calls take ~250 ms; the model slows down past CAPACITY concurrent calls
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 150},"
+            + "  \"tokens_per_second\": 200, \"output_tokens\": {\"min\": 20, \"max\": 20},"
+            + "  \"capacity\": " + CAPACITY
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            OpenAIClient client = OpenAIOkHttpClient.builder()
+                    .apiKey("mock-key")
+                    .baseUrl(mock.baseUrl())
+                    .build();
+
+            Result shared = run(client, "One Shared Queue", false);
+            System.out.println("\n");
+            Result prioritized = run(client, "Priority Lanes (" + INTERACTIVE_RESERVE + " of "
+                    + CAPACITY + " slots reserved for chat)", true);
+            System.out.println("\n");
+
+            System.out.println("=".repeat(60));
+            System.out.println("Comparison");
+            System.out.println("=".repeat(60));
+            System.out.printf("%n%-18s %12s %12s %12s %11s%n",
+                    "Scheduling", "Chat p50", "Chat p95", "Bulk jobs/s", "Bulk time");
+            System.out.println("-".repeat(70));
+            shared.print("shared queue");
+            prioritized.print("priority lanes");
+
+            System.out.println("\nLane metrics (priority lanes run):\n");
+            for (String line : PrometheusExporter.scrape(prioritized.registry).split("\n")) {
+                if (line.startsWith("hibana_lane_wait_seconds_count") || line.startsWith("hibana_lane_wait_seconds_sum")) {
+                    System.out.println("  " + line);
+                }
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static Result run(OpenAIClient client, String title, boolean prioritize) throws Exception {
+        /**
+         * Start a backlog of bulk extraction jobs, then hold a few chat
+         * conversations while it drains
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println(title);
+        System.out.println("=".repeat(60));
+
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        PriorityLanes lanes = new PriorityLanes(CAPACITY, registry);
+        if (prioritize) {
+            lanes.reserve(Lane.INTERACTIVE, INTERACTIVE_RESERVE);
+        }
+        // Without priorities, chat turns wait in the same lane as bulk jobs
+        Lane chatLane = prioritize ? Lane.INTERACTIVE : Lane.BULK;
+
+        Result result = new Result(registry);
+        AtomicInteger nextJob = new AtomicInteger();
+        AtomicInteger bulkDone = new AtomicInteger();
+        long start = System.nanoTime();
+
+        ExecutorService bulk = Executors.newFixedThreadPool(BULK_WORKERS);
+        for (int i = 0; i < BULK_WORKERS; i++) {
+            bulk.submit(() -> {
+                int job;
+                while ((job = nextJob.getAndIncrement()) < BULK_JOBS) {
+                    ChatCompletionCreateParams params = extractionRequest(job);
+                    lanes.run(Lane.BULK, Deadline.none(), () -> client.chat().completions().create(params));
+                    bulkDone.incrementAndGet();
+                }
+            });
+        }
+
+        ExecutorService users = Executors.newFixedThreadPool(USERS);
+        for (int u = 0; u < USERS; u++) {
+            int user = u;
+            users.submit(() -> {
+                List<ChatCompletionMessage> messages = new ArrayList<>();
+                for (int turn = 0; turn < TURNS; turn++) {
+                    pause(THINK_MILLIS);
+                    messages.add(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                            ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                    .content("User " + user + ", turn " + turn + ": what should I read next?")
+                                    .build()
+                    ));
+                    ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                            .model(MODEL)
+                            .addAllMessages(messages)
+                            .build();
+
+                    long turnStart = System.nanoTime();
+                    ChatCompletion response = lanes.run(chatLane, Deadline.none(),
+                            () -> client.chat().completions().create(params));
+                    result.chatLatency(System.nanoTime() - turnStart);
+                    messages.add(ChatCompletionMessage.ofChatCompletionAssistantMessageParam(
+                            ChatCompletionMessage.ChatCompletionAssistantMessageParam.builder()
+                                    .content(response.choices().get(0).message().content().orElse(""))
+                                    .build()
+                    ));
+                }
+            });
+        }
+
+        System.out.printf("%n%5s %10s %12s %13s %13s%n", "Time", "Bulk done", "Bulk queued", "Bulk running", "Chat running");
+        System.out.println("-".repeat(57));
+        users.shutdown();
+        while (!users.awaitTermination(1, TimeUnit.SECONDS)) {
+            System.out.printf("%4ds %10d %12d %13d %13d%n",
+                    (System.nanoTime() - start) / 1_000_000_000, bulkDone.get(), lanes.queued(Lane.BULK),
+                    lanes.inFlight(Lane.BULK), lanes.inFlight(Lane.INTERACTIVE));
+        }
+        System.out.println("\n✓ " + USERS + " conversations of " + TURNS + " turns finished");
+
+        bulk.shutdown();
+        bulk.awaitTermination(5, TimeUnit.MINUTES);
+        result.bulkFinished(System.nanoTime() - start);
+        System.out.println("✓ " + BULK_JOBS + " bulk jobs finished");
+        return result;
+    }
+
+    private static ChatCompletionCreateParams extractionRequest(int job) {
+        return ChatCompletionCreateParams.builder()
+                .model(MODEL)
+                .addMessage(ChatCompletionMessage.ofChatCompletionSystemMessageParam(
+                        ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
+                                .content("Extract the company, date and amount from the invoice as JSON.")
+                                .build()
+                ))
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Invoice #" + job + " from Acme Corp, 2024-03-" + (1 + job % 28)
+                                        + ", total $" + (100 + job) + ".00")
+                                .build()
+                ))
+                .responseFormat(ResponseFormatJsonObject.builder().type(ResponseFormatJsonObject.Type.JSON_OBJECT).build())
+                .build();
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Result {
+        private final InMemoryMetricsRegistry registry;
+        private final List<Long> chatLatencies = Collections.synchronizedList(new ArrayList<>());
+        private long bulkNanos;
+
+        Result(InMemoryMetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        void chatLatency(long nanos) {
+            chatLatencies.add(nanos);
+        }
+
+        void bulkFinished(long nanos) {
+            bulkNanos = nanos;
+        }
+
+        void print(String label) {
+            List<Long> sorted = new ArrayList<>(chatLatencies);
+            Collections.sort(sorted);
+            double bulkSeconds = bulkNanos / 1e9;
+            System.out.printf("%-18s %10dms %10dms %12.1f %10.1fs%n", label,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), BULK_JOBS / bulkSeconds, bulkSeconds);
+        }
+
+        private static long percentile(List<Long> sorted, double p) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return sorted.get((int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)))) / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.cache.MinHash;
+import com.hibana.samples.cache.NearDuplicateCache;
+import com.hibana.samples.cache.NearDuplicateChatCache;
+import com.hibana.samples.client.ChatHttpClient;
+import okhttp3.OkHttpClient;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 20 - Near-Duplicate Cache
+ *
+ * This example demonstrates how to reuse answers for reworded questions.
+ * An exact-match cache misses "How do I reverse a list in Python?" after
+ * caching "how do i reverse a list in python"; a near-duplicate cache
+ * compares the prompts' content words and their MinHash signatures and
+ * serves the cached completion when they match. Everything runs locally:
+ * no embedding model is called. Questions that share almost all their
+ * text but differ in one word that matters are checked to miss.
+ *
+ * The second part fills a cache with 1,000,000 prompts and measures
+ * lookup latency, hit rate on reworded prompts and false hits on prompts
+ * with one word replaced and on new ones.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example20_NearDuplicateCache {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int ENTRIES = 1_000_000;
+    private static final int LOOKUPS = 20_000;
+    private static final int VOCABULARY = 20_000;
+    private static final String[] FILLER = {"the", "a", "of", "in", "is", "please", "for", "with"};
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 300},"
+            + "  \"tokens_per_second\": 100, \"output_tokens\": {\"min\": 30, \"max\": 30}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}, \"gpt-4o\": {}}"
+            + "}";
+
+    private static final String[][] QUESTIONS = {
+            {MODEL, "How do I reverse a list in Python?"},
+            {MODEL, "how do i reverse a list in python"},
+            {MODEL, "How do I reverse a list in Python, please?"},
+            {MODEL, "What is the capital of Australia?"},
+            {MODEL, "What's the capital of Australia?"},
+            {MODEL, "How do I reverse a string in Python?"},
+            {"gpt-4o", "How do I reverse a list in Python?"},
+            {MODEL, "Explain the difference between TCP and UDP."},
+            {MODEL, "Explain the difference between TCP and UDP in simple terms."},
+    };
+
+    // Alike as text, different questions: none of these may hit
+    private static final String[][] DIFFERENT_QUESTIONS = {
+            {"What is the capital of France?", "What is the capital of Spain?"},
+            {"Write a function that sorts an array of integers in ascending order",
+                    "Write a function that sorts an array of integers in descending order"},
+            {"How do I reverse a list in Python?", "How do I reverse a string in Python?"},
+            {"Convert 100 Celsius to Fahrenheit", "Convert 100 Fahrenheit to Celsius"},
+            {"Is it safe to retry a POST request?", "Is it not safe to retry a POST request?"},
+    };
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            rewordedQuestions(new ChatHttpClient(new OkHttpClient(), mock.baseUrl(), "mock-key"));
+            System.out.println("\n");
+            benchmark();
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void rewordedQuestions(ChatHttpClient chat) throws Exception {
+        /**
+         * Ask a few questions and rewordings of them; only the first of
+         * each group goes to the API
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Reworded Questions");
+        System.out.println("=".repeat(60));
+
+        NearDuplicateChatCache cached = new NearDuplicateChatCache(chat, new NearDuplicateCache<>(1000));
+        System.out.println("\nThreshold: similarity >= " + cached.cache().threshold()
+                + " with the same model and parameters\n");
+        System.out.printf("%-6s %10s %8s  %-12s %s%n", "Result", "Similarity", "Time", "Model", "Prompt");
+        System.out.println("-".repeat(90));
+
+        for (String[] question : QUESTIONS) {
+            long start = System.nanoTime();
+            NearDuplicateChatCache.CachedCompletion completion = cached.complete(request(question[0], question[1]));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("%-6s %10s %6dms  %-12s %s%n", completion.isHit() ? "HIT" : "MISS",
+                    completion.isHit() ? String.format("%.2f", completion.similarity()) : "-",
+                    millis, question[0], question[1]);
+        }
+
+        NearDuplicateCache<JsonObject> cache = cached.cache();
+        System.out.printf("%n✓ %d of %d answered from the cache, %d API calls%n",
+                cache.hits(), QUESTIONS.length, cache.misses());
+        differentQuestions();
+    }
+
+    private static void differentQuestions() {
+        /**
+         * Pairs that look alike but ask different things. Shingle
+         * similarity of the whole prompts alone would have answered most
+         * of them from the cache
+         */
+
+        System.out.printf("%n%-6s %10s  %s%n", "Result", "Shingles", "Cached prompt / looked up");
+        System.out.println("-".repeat(90));
+        MinHash minHash = new MinHash(1);
+        int falseHits = 0;
+        for (String[] pair : DIFFERENT_QUESTIONS) {
+            NearDuplicateCache<String> cache = new NearDuplicateCache<>(16);
+            cache.put(MODEL, pair[0], pair[0]);
+            boolean hit = cache.lookup(MODEL, pair[1]) != null;
+            falseHits += hit ? 1 : 0;
+            System.out.printf("%-6s %10.2f  %s%n%18s%s%n", hit ? "HIT" : "MISS",
+                    MinHash.similarity(minHash.sign(pair[0]), minHash.sign(pair[1])), pair[0], "", pair[1]);
+        }
+        System.out.printf("%n%s %d of %d different questions answered from the cache%n", falseHits == 0 ? "✓" : "✗",
+                falseHits, DIFFERENT_QUESTIONS.length);
+        System.out.println("\nA hit needs the same content words; only filler such as \"please\", \"the\" or");
+        System.out.println("\"what's\" for \"what is\" may differ.");
+    }
+
+    private static void benchmark() {
+        /**
+         * Fill a cache with a million synthetic prompts, then look up
+         * reworded versions of stored prompts and prompts never stored
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Lookups in a Cache of " + String.format("%,d", ENTRIES) + " Prompts");
+        System.out.println("=".repeat(60));
+
+        String[] words = vocabulary();
+        NearDuplicateCache<Integer> cache = new NearDuplicateCache<>(ENTRIES);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.put(MODEL, prompt(words, i), i);
+        }
+        double insertSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nInserted %,d prompts in %.1f s (%,.0f/s)%n", ENTRIES, insertSeconds, ENTRIES / insertSeconds);
+        System.out.printf("Index and signatures: %,d MB (%d bytes per entry)%n",
+                cache.indexBytes() / (1024 * 1024), cache.indexBytes() / ENTRIES);
+
+        SplittableRandom random = new SplittableRandom(42);
+        long[] rewordedNanos = new long[LOOKUPS];
+        long[] changedNanos = new long[LOOKUPS];
+        long[] freshNanos = new long[LOOKUPS];
+        int hits = 0;
+        int exactHits = 0;
+        int wrongHits = 0;
+        int changedHits = 0;
+        int falseHits = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            int stored = random.nextInt(ENTRIES);
+            String original = prompt(words, stored);
+            String reworded = reword(words, original, random);
+            exactHits += reworded.equals(original) ? 1 : 0;
+
+            long lookupStart = System.nanoTime();
+            NearDuplicateCache.Hit<Integer> hit = cache.lookup(MODEL, reworded);
+            rewordedNanos[i] = System.nanoTime() - lookupStart;
+            if (hit != null) {
+                hits++;
+                wrongHits += hit.value() == stored ? 0 : 1;
+            }
+
+            lookupStart = System.nanoTime();
+            hit = cache.lookup(MODEL, replaceWord(words, original, random));
+            changedNanos[i] = System.nanoTime() - lookupStart;
+            changedHits += hit != null ? 1 : 0;
+
+            lookupStart = System.nanoTime();
+            hit = cache.lookup(MODEL, prompt(words, ENTRIES + i));
+            freshNanos[i] = System.nanoTime() - lookupStart;
+            falseHits += hit != null ? 1 : 0;
+        }
+
+        System.out.printf("%n%-34s %9s %9s %9s%n", "Lookup", "p50", "p99", "Hit rate");
+        System.out.println("-".repeat(64));
+        System.out.printf("%-34s %7.1fµs %7.1fµs %8.1f%%%n", "reworded stored prompt",
+                percentile(rewordedNanos, 0.50), percentile(rewordedNanos, 0.99), 100.0 * hits / LOOKUPS);
+        System.out.printf("%-34s %7.1fµs %7.1fµs %8.1f%%%n", "one word replaced",
+                percentile(changedNanos, 0.50), percentile(changedNanos, 0.99), 100.0 * changedHits / LOOKUPS);
+        System.out.printf("%-34s %7.1fµs %7.1fµs %8.1f%%%n", "new prompt",
+                percentile(freshNanos, 0.50), percentile(freshNanos, 0.99), 100.0 * falseHits / LOOKUPS);
+
+        System.out.printf("%nAn exact-match cache would have answered %.1f%% of the reworded prompts%n",
+                100.0 * exactHits / LOOKUPS);
+        System.out.printf("Hits that returned another prompt's answer: %d of %d%n", wrongHits, hits);
+        System.out.println("\nRewordings: changed case and punctuation, plus one filler word dropped, added or"
+                + " replaced.\nOne word replaced: a word that is not filler, so any hit is a wrong answer.");
+    }
+
+    private static JsonObject request(String model, String question) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", question);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        body.addProperty("temperature", 0);
+        body.add("messages", messages);
+        return body;
+    }
+
+    /**
+     * Made-up words of 2 to 9 letters, so prompts share words the way real
+     * ones do without repeating whole phrases.
+     */
+    private static String[] vocabulary() {
+        SplittableRandom random = new SplittableRandom(7);
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            char[] word = new char[2 + random.nextInt(8)];
+            for (int c = 0; c < word.length; c++) {
+                word[c] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        return words;
+    }
+
+    /**
+     * Prompt number {@code n}: 8 to 16 words, about one in four of them
+     * filler (never the first), the same every time.
+     */
+    private static String prompt(String[] words, int n) {
+        SplittableRandom random = new SplittableRandom(n);
+        int length = 8 + random.nextInt(9);
+        StringBuilder prompt = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            String word = i > 0 && random.nextInt(4) == 0 ? FILLER[random.nextInt(FILLER.length)]
+                    : words[random.nextInt(words.length)];
+            prompt.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : " " + word);
+        }
+        return prompt.append('?').toString();
+    }
+
+    /**
+     * {@code prompt} in lower case without the question mark, with one
+     * filler word dropped, added or replaced by another.
+     */
+    private static String reword(String[] words, String prompt, SplittableRandom random) {
+        String[] tokens = prompt.toLowerCase().replace("?", "").split(" ");
+        int position = random.nextInt(tokens.length);
+        boolean filler = Arrays.asList(FILLER).contains(tokens[position]);
+        String word = FILLER[random.nextInt(FILLER.length)];
+        StringBuilder reworded = new StringBuilder();
+        // Only filler is dropped or replaced; anywhere else, filler is added
+        int change = filler ? random.nextInt(3) : 1;
+        for (int i = 0; i < tokens.length; i++) {
+            if (i == position && change == 0) {
+                continue;
+            }
+            if (i == position && change == 1) {
+                reworded.append(word).append(' ');
+            }
+            reworded.append(i == position && change == 2 ? word : tokens[i]).append(' ');
+        }
+        return reworded.toString().trim();
+    }
+
+    /**
+     * {@code prompt} with one word that is not filler replaced by another.
+     */
+    private static String replaceWord(String[] words, String prompt, SplittableRandom random) {
+        String[] tokens = prompt.split(" ");
+        int position;
+        do {
+            position = random.nextInt(tokens.length);
+        } while (Arrays.asList(FILLER).contains(tokens[position].toLowerCase().replace("?", "")));
+        String word = words[random.nextInt(words.length)];
+        tokens[position] = position == tokens.length - 1 ? word + "?" : word;
+        return String.join(" ", tokens);
+    }
+
+    private static double percentile(long[] nanos, double p) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1000.0;
+    }
+}
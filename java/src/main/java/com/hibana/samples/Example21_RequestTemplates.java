@@ -0,0 +1,215 @@
+package com.hibana.samples;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.client.RequestTemplate;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okio.Buffer;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+/**
+ * 21 - Request Templates
+ *
+ * This example demonstrates how to define a request once and send it many
+ * times with only the user message changing. The usual builder chain
+ * rebuilds the system prompt and few-shot messages on every call; a
+ * RequestTemplate builds them once, and for the raw JSON client keeps
+ * them serialized so each call only adds the escaped user content.
+ *
+ * It compares time and memory allocated per request for both ways, and
+ * runs against the mock server, so it works without an API key.
+ */
+public class Example21_RequestTemplates {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int WARM_UP = 200_000;
+    private static final int CALLS = 1_000_000;
+
+    private static final String SYSTEM_PROMPT = """
+            You are a support assistant for Hibana Cloud. Answer in the language of the question.
+            Keep answers under five sentences. When the question is about billing, mention that
+            balances are shown in Rials and can be checked with GET /v1/user/balance. When the
+            question is about models, list only models available on Hibana. Never invent prices.
+            If you are not sure, say so and point the user to the documentation.
+            """;
+    private static final String EXAMPLE_QUESTION = "How do I check my balance?";
+    private static final String EXAMPLE_ANSWER = "Call GET /v1/user/balance with your API key; the balance is in Rials.";
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 50},"
+            + "  \"tokens_per_second\": 500, \"output_tokens\": {\"min\": 10, \"max\": 10}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    private static final Gson gson = new Gson();
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Keeps results reachable so the JIT cannot skip building them. */
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            RequestTemplate support = RequestTemplate.builder()
+                    .model(MODEL)
+                    .addSystemMessage(SYSTEM_PROMPT)
+                    .addUserMessage(EXAMPLE_QUESTION)
+                    .addAssistantMessage(EXAMPLE_ANSWER)
+                    .temperature(0.3)
+                    .maxTokens(500L)
+                    .build();
+
+            sameRequest(new ChatHttpClient(new OkHttpClient(), mock.baseUrl(), "mock-key"), support);
+            System.out.println("\n");
+            benchmark(support);
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void sameRequest(ChatHttpClient chat, RequestTemplate support) throws Exception {
+        /**
+         * Check that the template sends the same JSON as building the
+         * request per call, then send one
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Template vs Builder: Same Request");
+        System.out.println("=".repeat(60));
+
+        String question = "Which models can I use for \"coding\" tasks?";
+        Buffer fromTemplate = new Buffer();
+        support.body(question).writeTo(fromTemplate);
+        JsonObject built = jsonRequest(question);
+
+        System.out.println("\nTemplate body: " + fromTemplate.size() + " bytes, of which "
+                + (fromTemplate.size() - gson.toJson(question).length() - 3) + " are reused on every call");
+        System.out.println("Same JSON as the builder: "
+                + gson.fromJson(fromTemplate.readUtf8(), JsonObject.class).equals(built));
+
+        JsonObject response = chat.complete(support, question);
+        String answer = response.getAsJsonArray("choices").get(0).getAsJsonObject()
+                .getAsJsonObject("message").get("content").getAsString();
+        System.out.println("\nUser: " + question);
+        System.out.println("Assistant: " + answer);
+    }
+
+    private static void benchmark(RequestTemplate support) {
+        /**
+         * Build a million requests each way and compare time and heap
+         * allocated per request
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Building " + String.format("%,d", CALLS) + " Requests");
+        System.out.println("=".repeat(60));
+
+        String[] questions = new String[1024];
+        for (int i = 0; i < questions.length; i++) {
+            questions[i] = "Question " + i + ": can I use the gpt-5-nano model from two servers with one API key?";
+        }
+
+        System.out.printf("%n%-36s %10s %12s %14s%n", "Request", "ns/call", "calls/s", "bytes/call");
+        System.out.println("-".repeat(75));
+        measure("SDK builder chain", i -> sdkParams(questions[i & 1023]));
+        measure("RequestTemplate.params()", i -> support.params(questions[i & 1023]));
+        measure("JsonObject + Gson (ChatHttpClient)", i -> RequestBody.create(
+                gson.toJson(jsonRequest(questions[i & 1023])), ChatHttpClient.JSON));
+        measure("RequestTemplate.body()", i -> support.body(questions[i & 1023]));
+
+        System.out.println("\nbytes/call: heap allocated per request, including the request body bytes");
+    }
+
+    private static void measure(String label, IntFunction<Object> build) {
+        for (int i = 0; i < WARM_UP; i++) {
+            sink = build.apply(i);
+        }
+
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            sink = build.apply(i);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("%-36s %10.0f %,12.0f %,14d%n", label,
+                (double) nanos / CALLS, CALLS / (nanos / 1e9), allocated / CALLS);
+    }
+
+    /**
+     * The request as the examples build it: the whole builder chain on every call.
+     */
+    private static ChatCompletionCreateParams sdkParams(String question) {
+        return ChatCompletionCreateParams.builder()
+                .model(MODEL)
+                .addMessage(ChatCompletionMessage.ofChatCompletionSystemMessageParam(
+                        ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
+                                .content(SYSTEM_PROMPT)
+                                .build()
+                ))
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content(EXAMPLE_QUESTION)
+                                .build()
+                ))
+                .addMessage(ChatCompletionMessage.ofChatCompletionAssistantMessageParam(
+                        ChatCompletionMessage.ChatCompletionAssistantMessageParam.builder()
+                                .content(EXAMPLE_ANSWER)
+                                .build()
+                ))
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content(question)
+                                .build()
+                ))
+                .temperature(0.3)
+                .maxTokens(500L)
+                .build();
+    }
+
+    /**
+     * The same request as raw JSON, built per call.
+     */
+    private static JsonObject jsonRequest(String question) {
+        JsonArray messages = new JsonArray();
+        messages.add(message("system", SYSTEM_PROMPT));
+        messages.add(message("user", EXAMPLE_QUESTION));
+        messages.add(message("assistant", EXAMPLE_ANSWER));
+        messages.add(message("user", question));
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", MODEL);
+        body.addProperty("temperature", 0.3);
+        body.addProperty("max_tokens", 500L);
+        body.add("messages", messages);
+        return body;
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", role);
+        message.addProperty("content", content);
+        return message;
+    }
+}
@@ -0,0 +1,285 @@
+package com.hibana.samples;
+
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.streaming.StreamConsumer;
+import com.hibana.samples.streaming.StreamTee;
+import com.hibana.samples.threads.ThreadMode;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * 22 - Stream Tee
+ *
+ * This example demonstrates how to send one streamed completion to several
+ * consumers at once: the end user, an audit log on a slow disk and a
+ * response cache. Handled in one forEach, as in Example04, every chunk
+ * waits for the audit write before the user sees it. With a stream tee
+ * each consumer has its own buffer and thread, and a consumer that falls
+ * too far behind is cut off instead of stalling the rest.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example22_StreamTee {
+
+    private static final String MODEL = "gpt-5-nano";
+    /** Simulated slow audit disk: each write takes this long. */
+    private static final long AUDIT_WRITE_MILLIS = 25;
+    /** A consumer that is far too slow, to show detaching. */
+    private static final long ANALYTICS_MILLIS = 400;
+
+    // 80 chunks at 80 tokens/s: the stream takes about 1.2 s
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 200},"
+            + "  \"tokens_per_second\": 80, \"output_tokens\": {\"min\": 80, \"max\": 80}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+
+            OpenAIClient client = OpenAIOkHttpClient.builder()
+                    .apiKey("mock-key")
+                    .baseUrl(mock.baseUrl())
+                    .build();
+            Path auditDir = Files.createTempDirectory("hibana-audit");
+
+            long inline = oneForEach(client, auditDir);
+            System.out.println("\n");
+            long teed = teedStream(client, auditDir);
+            System.out.println("\n");
+
+            System.out.println("=".repeat(60));
+            System.out.println("Comparison");
+            System.out.println("=".repeat(60));
+            System.out.printf("%nUser saw the last token after: one forEach %d ms, stream tee %d ms%n", inline, teed);
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static long oneForEach(OpenAIClient client, Path auditDir) throws IOException {
+        /**
+         * Print, audit and cache in the same forEach lambda
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("One forEach for Everything");
+        System.out.println("=".repeat(60));
+        System.out.print("\nAssistant: ");
+
+        Map<String, String> cache = new ConcurrentHashMap<>();
+        StringBuilder fullResponse = new StringBuilder();
+        long start = System.nanoTime();
+        try (Writer audit = Files.newBufferedWriter(auditDir.resolve("inline.log"), StandardCharsets.UTF_8);
+             Stream<ChatCompletionChunk> stream = client.chat().completions().createStreaming(request())) {
+            stream.forEach(chunk -> {
+                if (chunk.choices() != null && !chunk.choices().isEmpty()) {
+                    chunk.choices().get(0).delta().content().ifPresent(content -> {
+                        System.out.print(content);
+                        System.out.flush();
+                        fullResponse.append(content);
+                        writeAudit(audit, content);
+                    });
+                }
+            });
+        }
+        long userMillis = (System.nanoTime() - start) / 1_000_000;
+        cache.put(MODEL, fullResponse.toString());
+
+        System.out.println("\n\n✓ Last token shown after " + userMillis + " ms (waited on every audit write)");
+        System.out.println("✓ Cached " + cache.get(MODEL).length() + " characters");
+        return userMillis;
+    }
+
+    private static long teedStream(OpenAIClient client, Path auditDir) throws IOException {
+        /**
+         * Give the user, the audit log, the cache and a much slower
+         * analytics consumer their own buffers
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Stream Tee");
+        System.out.println("=".repeat(60));
+        System.out.print("\nAssistant: ");
+
+        long start = System.nanoTime();
+        long[] userDone = {0};
+        Map<String, String> cache = new ConcurrentHashMap<>();
+        Map<String, Set<ChatCompletionChunk>> seen = new ConcurrentHashMap<>();
+
+        StreamConsumer<ChatCompletionChunk> user = recording("user", seen, new StreamConsumer<>() {
+            @Override
+            public void onChunk(ChatCompletionChunk chunk) {
+                content(chunk).ifPresent(content -> {
+                    System.out.print(content);
+                    System.out.flush();
+                });
+            }
+
+            @Override
+            public void onComplete() {
+                userDone[0] = System.nanoTime() - start;
+            }
+        });
+
+        try (Writer audit = Files.newBufferedWriter(auditDir.resolve("teed.log"), StandardCharsets.UTF_8);
+             Stream<ChatCompletionChunk> stream = client.chat().completions().createStreaming(request())) {
+
+            StreamTee<ChatCompletionChunk> tee = new StreamTee<ChatCompletionChunk>(ThreadMode.configured())
+                    // The user must see every chunk, as soon as possible
+                    .add("user", 64, StreamTee.Overflow.BLOCK, user)
+                    .add("audit", 1024, StreamTee.Overflow.DETACH, recording("audit", seen,
+                            chunk -> content(chunk).ifPresent(content -> writeAudit(audit, content))))
+                    .add("cache", 1024, StreamTee.Overflow.DETACH, recording("cache", seen, new CacheWriter(cache)))
+                    .add("analytics", 8, StreamTee.Overflow.DETACH, recording("analytics", seen,
+                            chunk -> pause(ANALYTICS_MILLIS)));
+
+            List<StreamTee.Delivery> deliveries = tee.run(stream);
+            long allDone = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%n%n%-11s %10s %13s %9s%n", "Consumer", "Delivered", "Max buffered", "Result");
+            System.out.println("-".repeat(46));
+            for (StreamTee.Delivery delivery : deliveries) {
+                System.out.printf("%-11s %10d %13d %9s%n", delivery.consumer(), delivery.delivered(),
+                        delivery.maxBuffered(), delivery.isComplete() ? "complete" : delivery.isDetached() ? "detached" : "failed");
+            }
+
+            System.out.println("\n✓ Last token shown after " + userDone[0] / 1_000_000 + " ms; audit log caught up after "
+                    + allDone + " ms");
+            System.out.println("✓ Cached " + (cache.containsKey(MODEL) ? cache.get(MODEL).length() + " characters"
+                    : "nothing (incomplete stream)"));
+            System.out.println("✓ " + sharedWithUser(seen) + " chunks received by the audit log and cache were the"
+                    + " objects shown to the user (no copies)");
+        }
+        return userDone[0] / 1_000_000;
+    }
+
+    private static ChatCompletionCreateParams request() {
+        return ChatCompletionCreateParams.builder()
+                .model(MODEL)
+                .addMessage(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Write a short story about a robot learning to paint. Make it about 80 words.")
+                                .build()
+                ))
+                .maxTokens(10000L)
+                .stream(true)
+                .build();
+    }
+
+    /**
+     * Stores the response once the whole stream has arrived; a detached or
+     * failed stream is never cached.
+     */
+    private static final class CacheWriter implements StreamConsumer<ChatCompletionChunk> {
+        private final Map<String, String> cache;
+        private final StringBuilder text = new StringBuilder();
+
+        CacheWriter(Map<String, String> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public void onChunk(ChatCompletionChunk chunk) {
+            content(chunk).ifPresent(text::append);
+        }
+
+        @Override
+        public void onComplete() {
+            cache.put(MODEL, text.toString());
+        }
+    }
+
+    /**
+     * Wrap {@code consumer} to remember which chunk objects it received.
+     */
+    private static StreamConsumer<ChatCompletionChunk> recording(String name, Map<String, Set<ChatCompletionChunk>> seen,
+                                                                 StreamConsumer<ChatCompletionChunk> consumer) {
+        Set<ChatCompletionChunk> chunks = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        seen.put(name, chunks);
+        return new StreamConsumer<>() {
+            @Override
+            public void onChunk(ChatCompletionChunk chunk) {
+                chunks.add(chunk);
+                consumer.onChunk(chunk);
+            }
+
+            @Override
+            public void onComplete() {
+                consumer.onComplete();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                consumer.onError(error);
+            }
+        };
+    }
+
+    /**
+     * "shared/total": how many chunks the audit log and cache received were
+     * the very objects the user received.
+     */
+    private static String sharedWithUser(Map<String, Set<ChatCompletionChunk>> seen) {
+        Set<ChatCompletionChunk> user = seen.get("user");
+        List<ChatCompletionChunk> others = new ArrayList<>(seen.get("audit"));
+        others.addAll(seen.get("cache"));
+        long shared = others.stream().filter(user::contains).count();
+        return shared + "/" + others.size();
+    }
+
+    private static Optional<String> content(ChatCompletionChunk chunk) {
+        if (chunk.choices() == null || chunk.choices().isEmpty()) {
+            return Optional.empty();
+        }
+        return chunk.choices().get(0).delta().content();
+    }
+
+    private static void writeAudit(Writer audit, String content) {
+        try {
+            audit.write(content);
+            audit.flush();
+            pause(AUDIT_WRITE_MILLIS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.streaming.ResumableStream;
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 23 - Resumable Streaming
+ *
+ * This example demonstrates how to recover a streamed completion whose
+ * connection drops half way. Starting over pays for every token again;
+ * resuming sends the partial answer back and asks the model to continue,
+ * so only the missing part is generated.
+ *
+ * The mock server cuts streams at a random point: the first part forces
+ * one cut, the second cuts 30% of all streams and compares the output
+ * tokens paid for with restarting and with resuming.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example23_ResumableStreaming {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int ANSWER_TOKENS = 120;
+    private static final int STREAMS = 40;
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 100},"
+            + "  \"tokens_per_second\": 200, \"output_tokens\": {\"min\": " + ANSWER_TOKENS + ", \"max\": " + ANSWER_TOKENS + "}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    private static final String FLAKY_SCRIPT = MOCK_SCRIPT.replace("\"defaults\": {", "\"defaults\": {\"stream_abort_ratio\": 0.3,");
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        MockServer flaky = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+            flaky = new MockServer(MockScript.parse(FLAKY_SCRIPT)).start(0);
+
+            oneDroppedStream(mock.baseUrl());
+            System.out.println("\n");
+            restartVsResume(new ChatHttpClient(new OkHttpClient(), flaky.baseUrl(), "mock-key"));
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+            if (flaky != null) {
+                flaky.close();
+            }
+        }
+    }
+
+    private static void oneDroppedStream(String baseUrl) throws IOException {
+        /**
+         * Cut the first connection half way and watch the answer carry on
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("One Dropped Stream");
+        System.out.println("=".repeat(60));
+
+        // Ask the mock to cut the first stream only
+        AtomicBoolean first = new AtomicBoolean(true);
+        OkHttpClient http = new OkHttpClient.Builder()
+                .addInterceptor(chain -> chain.proceed(first.getAndSet(false)
+                        ? chain.request().newBuilder().header("X-Mock-Fault", "abort").build()
+                        : chain.request()))
+                .build();
+        ChatHttpClient chat = new ChatHttpClient(http, baseUrl, "mock-key");
+
+        String question = "Write a short story about a robot learning to paint.";
+        System.out.println("\nUser: " + question);
+        System.out.print("\nAssistant: ");
+
+        String[] streamId = {null};
+        ResumableStream.Result result = new ResumableStream(chat).stream(request(question), chunk -> {
+            String id = chunk.has("id") ? chunk.get("id").getAsString() : "";
+            if (streamId[0] != null && !streamId[0].equals(id)) {
+                System.out.print(" [connection dropped, resumed] ");
+            }
+            streamId[0] = id;
+            JsonArray choices = chunk.getAsJsonArray("choices");
+            if (choices != null && choices.size() > 0) {
+                JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+                if (delta != null && delta.has("content") && !delta.get("content").isJsonNull()) {
+                    System.out.print(delta.get("content").getAsString());
+                    System.out.flush();
+                }
+            }
+        });
+
+        System.out.println("\n\n✓ Resumed " + result.resumes() + " time(s)");
+        System.out.println("✓ " + result.salvagedTokens() + " tokens received before the drop were kept, not generated again");
+        System.out.println("✓ " + result.tokens() + " output tokens in total for a " + ANSWER_TOKENS + "-token answer");
+    }
+
+    private static void restartVsResume(ChatHttpClient chat) throws IOException {
+        /**
+         * Stream the same answers with 30% of connections dropped,
+         * restarting or resuming each time
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Restart vs Resume (30% of streams cut)");
+        System.out.println("=".repeat(60));
+
+        long restartTokens = 0;
+        long restartAttempts = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < STREAMS; i++) {
+            JsonObject body = request("Question " + i + ": explain how HTTP keep-alive works.");
+            // Restart from scratch until one stream finishes
+            while (true) {
+                restartAttempts++;
+                long[] tokens = {0};
+                boolean[] finished = {false};
+                try {
+                    chat.stream(body, chunk -> {
+                        JsonArray choices = chunk.getAsJsonArray("choices");
+                        if (choices == null || choices.size() == 0) {
+                            return;
+                        }
+                        JsonObject choice = choices.get(0).getAsJsonObject();
+                        JsonObject delta = choice.getAsJsonObject("delta");
+                        if (delta != null && delta.has("content") && !delta.get("content").getAsString().isEmpty()) {
+                            tokens[0]++;
+                        }
+                        finished[0] |= choice.has("finish_reason") && !choice.get("finish_reason").isJsonNull();
+                    });
+                } catch (IOException e) {
+                    // Cut off; try again
+                }
+                restartTokens += tokens[0];
+                if (finished[0]) {
+                    break;
+                }
+            }
+        }
+        double restartSeconds = (System.nanoTime() - start) / 1e9;
+
+        ResumableStream resumable = new ResumableStream(chat).maxResumes(10);
+        long resumeTokens = 0;
+        long resumeAttempts = 0;
+        long salvaged = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < STREAMS; i++) {
+            ResumableStream.Result result = resumable.stream(
+                    request("Question " + i + ": explain how HTTP keep-alive works."), chunk -> { });
+            resumeTokens += result.tokens();
+            resumeAttempts += 1 + result.resumes();
+            salvaged += result.salvagedTokens();
+        }
+        double resumeSeconds = (System.nanoTime() - start) / 1e9;
+
+        long needed = (long) STREAMS * ANSWER_TOKENS;
+        System.out.printf("%n%-10s %9s %14s %12s %8s%n", "Strategy", "Requests", "Output tokens", "Wasted", "Time");
+        System.out.println("-".repeat(57));
+        System.out.printf("%-10s %9d %14d %11.0f%% %7.1fs%n", "restart", restartAttempts, restartTokens,
+                100.0 * (restartTokens - needed) / needed, restartSeconds);
+        System.out.printf("%-10s %9d %14d %11.0f%% %7.1fs%n", "resume", resumeAttempts, resumeTokens,
+                100.0 * (resumeTokens - needed) / needed, resumeSeconds);
+        System.out.println("\n✓ " + salvaged + " tokens salvaged from dropped streams");
+        System.out.println("\nWasted: output tokens paid for beyond the " + needed + " the answers needed."
+                + "\nResuming sends the partial answer back as input, which costs input tokens instead.");
+    }
+
+    private static JsonObject request(String question) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", question);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", MODEL);
+        body.addProperty("max_tokens", ANSWER_TOKENS);
+        body.add("messages", messages);
+        return body;
+    }
+}
@@ -0,0 +1,236 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.streaming.EarlyStopStream;
+import com.hibana.samples.streaming.StopCondition;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * 24 - Early Stop
+ *
+ * This example demonstrates how to stop a streamed completion as soon as
+ * the part you need has arrived: the first line, two sentences, a keyword,
+ * a closed JSON object or a byte budget. Waiting for finish_reason pays
+ * for, and waits on, every token after that.
+ *
+ * Each condition is run on the same prompts as the full answers it is
+ * compared with; the mock server answers identical requests identically,
+ * so the difference is exactly what stopping early saved. The mock's own
+ * counter shows that the cancelled streams stopped generating on the
+ * server too.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example24_EarlyStop {
+
+    private static final String MODEL = "gpt-5-nano";
+    private static final int PROMPTS = 4;
+
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {"
+            + "  \"ttft\": {\"type\": \"fixed\", \"ms\": 150},"
+            + "  \"tokens_per_second\": 150, \"output_tokens\": {\"min\": 120, \"max\": 200}"
+            + "},"
+            + "\"models\": {\"gpt-5-nano\": {}}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+            OkHttpClient http = new OkHttpClient();
+            ChatHttpClient chat = new ChatHttpClient(http, mock.baseUrl(), "mock-key");
+
+            firstLine(chat);
+            System.out.println("\n");
+            savedPerCondition(chat, http, "http://localhost:" + mock.port() + "/mock/stats");
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void firstLine(ChatHttpClient chat) throws IOException {
+        /**
+         * Take the first line of an answer and hang up
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("First Line Only");
+        System.out.println("=".repeat(60));
+
+        String question = "Summarize how HTTP keep-alive works. Put the one-line summary first.";
+        System.out.println("\nUser: " + question);
+        System.out.print("\nAssistant: ");
+
+        EarlyStopStream.Result result = new EarlyStopStream(chat).stream(request(question, false),
+                StopCondition.lines(1), chunk -> {
+                    String content = content(chunk);
+                    System.out.print(content);
+                    System.out.flush();
+                });
+
+        Full full = full(chat, request(question, false));
+        System.out.println("\n\n✓ Stopped by: " + result.stoppedBy());
+        System.out.printf("✓ %d of %d tokens received, done after %d of %d ms%n",
+                result.tokens(), full.tokens, result.elapsedNanos() / 1_000_000, full.nanos / 1_000_000);
+    }
+
+    private static void savedPerCondition(ChatHttpClient chat, OkHttpClient http, String statsUrl) throws IOException {
+        /**
+         * Run each condition over the same prompts and compare with the
+         * full answers
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Tokens and Latency Saved per Condition");
+        System.out.println("=".repeat(60));
+
+        StopCondition jsonClosed = StopCondition.jsonClosed();
+        StopCondition[] conditions = {
+                StopCondition.lines(1),
+                StopCondition.sentences(2),
+                StopCondition.matches("\\b(cache|retry)\\b"),
+                StopCondition.maxBytes(280),
+                jsonClosed
+        };
+
+        // The full answers, once per prompt; JSON mode gets different ones
+        Full[] plain = new Full[PROMPTS];
+        Full[] json = new Full[PROMPTS];
+        for (int i = 0; i < PROMPTS; i++) {
+            plain[i] = full(chat, request(prompt(i), false));
+            json[i] = full(chat, request(prompt(i), true));
+        }
+
+        EarlyStopStream early = new EarlyStopStream(chat);
+        System.out.printf("%n%-30s %8s %9s %10s %8s %9s%n", "Condition", "Tokens", "Saved", "Generated", "Time",
+                "Saved");
+        System.out.println("-".repeat(79));
+        for (StopCondition condition : conditions) {
+            boolean jsonMode = condition == jsonClosed;
+            long generatedBefore = streamedTokens(http, statsUrl);
+            long fullTokens = 0;
+            long tokens = 0;
+            long fullNanos = 0;
+            long nanos = 0;
+            for (int i = 0; i < PROMPTS; i++) {
+                EarlyStopStream.Result result = early.stream(request(prompt(i), jsonMode), condition, chunk -> { });
+                Full full = jsonMode ? json[i] : plain[i];
+                fullTokens += full.tokens;
+                fullNanos += full.nanos;
+                tokens += result.tokens();
+                nanos += result.elapsedNanos();
+            }
+            // Give the server a moment to notice the last cancellation
+            pause(50);
+            long generated = streamedTokens(http, statsUrl) - generatedBefore;
+
+            System.out.printf("%-30s %8d %8d%% %10d %6d ms %8d%%%n", condition, tokens / PROMPTS,
+                    Math.round(100.0 * (fullTokens - tokens) / fullTokens), generated / PROMPTS,
+                    nanos / PROMPTS / 1_000_000, Math.round(100.0 * (fullNanos - nanos) / fullNanos));
+        }
+
+        long averageTokens = 0;
+        long averageNanos = 0;
+        for (Full full : plain) {
+            averageTokens += full.tokens;
+            averageNanos += full.nanos;
+        }
+        System.out.printf("%nFull answers: %d tokens and %d ms on average.%n", averageTokens / PROMPTS,
+                averageNanos / PROMPTS / 1_000_000);
+        System.out.println("Tokens: received per answer. Generated: streamed by the server before it saw the"
+                + " cancel.\nJSON mode ends with the closing brace, so jsonClosed only saves tokens when a"
+                + " model adds text after the document.");
+    }
+
+    /**
+     * A full answer's size and time, to compare an early stop with.
+     */
+    private static final class Full {
+        private final long tokens;
+        private final long nanos;
+
+        Full(long tokens, long nanos) {
+            this.tokens = tokens;
+            this.nanos = nanos;
+        }
+    }
+
+    private static Full full(ChatHttpClient chat, JsonObject body) throws IOException {
+        long[] tokens = {0};
+        long start = System.nanoTime();
+        chat.stream(body, chunk -> {
+            if (!content(chunk).isEmpty()) {
+                tokens[0]++;
+            }
+        });
+        return new Full(tokens[0], System.nanoTime() - start);
+    }
+
+    private static long streamedTokens(OkHttpClient http, String statsUrl) throws IOException {
+        Request request = new Request.Builder()
+                .url(statsUrl)
+                .addHeader("Authorization", "Bearer mock-key")
+                .build();
+        try (Response response = http.newCall(request).execute()) {
+            return JsonParser.parseString(response.body().string()).getAsJsonObject()
+                    .get("streamed_tokens").getAsLong();
+        }
+    }
+
+    private static String prompt(int i) {
+        return "Question " + i + ": how should a client handle rate limits?";
+    }
+
+    private static JsonObject request(String question, boolean json) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", question);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("model", MODEL);
+        body.addProperty("max_tokens", 10000);
+        body.add("messages", messages);
+        if (json) {
+            JsonObject format = new JsonObject();
+            format.addProperty("type", "json_object");
+            body.add("response_format", format);
+        }
+        return body;
+    }
+
+    private static String content(JsonObject chunk) {
+        JsonArray choices = chunk.getAsJsonArray("choices");
+        if (choices == null || choices.size() == 0) {
+            return "";
+        }
+        JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+        return delta != null && delta.has("content") && !delta.get("content").isJsonNull()
+                ? delta.get("content").getAsString() : "";
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.hibana.samples;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hibana.mock.MockScript;
+import com.hibana.mock.MockServer;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.streaming.BestOfN;
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 25 - Best of N
+ *
+ * This example demonstrates how to ask several models for the same answer
+ * at once and keep the best one. Asking them one after another, as
+ * Example11 compares providers, takes as long as all the calls together.
+ * Best-of-N streams every candidate at the same time, scores each one as
+ * it streams, and cancels the rest as soon as a winner is clear, so it
+ * takes about as long as one call.
+ *
+ * The task is a two-line poem. The scorer disqualifies a candidate as soon
+ * as it writes a third line and otherwise prefers varied wording; real
+ * scorers might check a format, run tests or ask a judge model.
+ *
+ * It runs against the mock server, so it works without an API key.
+ */
+public class Example25_BestOfN {
+
+    private static final List<String> MODELS = List.of("gpt-5-nano", "claude-haiku-4-5", "deepseek-chat",
+            "gemini-2.5-flash-lite");
+    private static final int PROMPTS = 8;
+
+    // Four models with their own speeds; answers of 16 to 40 tokens
+    private static final String MOCK_SCRIPT = "{"
+            + "\"defaults\": {\"output_tokens\": {\"min\": 16, \"max\": 40}},"
+            + "\"models\": {"
+            + "  \"gpt-5-nano\": {\"ttft\": {\"type\": \"lognormal\", \"median_ms\": 300, \"p99_ms\": 900},"
+            + "                  \"tokens_per_second\": 60},"
+            + "  \"claude-haiku-4-5\": {\"ttft\": {\"type\": \"lognormal\", \"median_ms\": 400, \"p99_ms\": 1200},"
+            + "                        \"tokens_per_second\": 50},"
+            + "  \"deepseek-chat\": {\"ttft\": {\"type\": \"lognormal\", \"median_ms\": 600, \"p99_ms\": 1500},"
+            + "                     \"tokens_per_second\": 30},"
+            + "  \"gemini-2.5-flash-lite\": {\"ttft\": {\"type\": \"lognormal\", \"median_ms\": 250, \"p99_ms\": 800},"
+            + "                             \"tokens_per_second\": 80}"
+            + "}"
+            + "}";
+
+    public static void main(String[] args) {
+        MockServer mock = null;
+        try {
+            mock = new MockServer(MockScript.parse(MOCK_SCRIPT)).start(0);
+            ChatHttpClient chat = new ChatHttpClient(new OkHttpClient(), mock.baseUrl(), "mock-key");
+
+            onePoem(chat);
+            System.out.println("\n");
+            compareStrategies(chat);
+
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (mock != null) {
+                mock.close();
+            }
+        }
+    }
+
+    private static void onePoem(ChatHttpClient chat) throws IOException {
+        /**
+         * Ask all four models at once and watch the losers get cancelled
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("Best of Four Models");
+        System.out.println("=".repeat(60));
+
+        String prompt = "Write a two-line poem about technology and humanity.";
+        System.out.println("\nPrompt: " + prompt);
+
+        BestOfN.Result result = bestOfN(chat).run(BestOfN.requests(request(prompt), MODELS));
+
+        System.out.printf("%n%-24s %-10s %7s %7s %8s%n", "Model", "State", "Score", "Tokens", "Ended");
+        System.out.println("-".repeat(60));
+        for (BestOfN.Outcome candidate : result.candidates()) {
+            System.out.printf("%-24s %-10s %7s %7d %5d ms%n", candidate.model(), candidate.state(),
+                    score(candidate.score()), candidate.tokens(), candidate.elapsedNanos() / 1_000_000);
+        }
+
+        BestOfN.Outcome winner = result.winner();
+        System.out.println("\nWinner (" + winner.model() + "):\n" + winner.text());
+        System.out.printf("%n✓ Winner ready after %d ms; all candidates settled after %d ms%n",
+                winner.elapsedNanos() / 1_000_000, result.elapsedNanos() / 1_000_000);
+    }
+
+    private static void compareStrategies(ChatHttpClient chat) throws IOException {
+        /**
+         * The same prompts with one model, with every model in turn, and
+         * with best-of-N with and without cancelling losers
+         */
+
+        System.out.println("=".repeat(60));
+        System.out.println("One Model vs Every Model vs Best of N (" + PROMPTS + " prompts)");
+        System.out.println("=".repeat(60));
+
+        Totals single = new Totals("one model");
+        Totals sequential = new Totals("every model in turn");
+        Totals waitForAll = new Totals("best of 4, wait for all");
+        Totals bestOfN = new Totals("best of 4, cancel losers");
+        Totals sameModel = new Totals("best of 4 gpt-5-nano");
+
+        for (int i = 0; i < PROMPTS; i++) {
+            JsonObject body = request("Write a two-line poem about technology and humanity, take " + i + ".");
+
+            // One model, as most code does
+            long start = System.nanoTime();
+            Answer answer = answer(chat, BestOfN.requests(body, List.of(MODELS.get(0))).get(0));
+            single.add(System.nanoTime() - start, answer.tokens, quality(answer.text));
+
+            // Every model one after another, then pick the best
+            start = System.nanoTime();
+            long tokens = 0;
+            double best = 0;
+            for (JsonObject candidate : BestOfN.requests(body, MODELS)) {
+                answer = answer(chat, candidate);
+                tokens += answer.tokens;
+                best = Math.max(best, quality(answer.text));
+            }
+            sequential.add(System.nanoTime() - start, tokens, best);
+
+            run(new BestOfN(chat, Example25_BestOfN::score), BestOfN.requests(body, MODELS), waitForAll);
+            run(bestOfN(chat), BestOfN.requests(body, MODELS), bestOfN);
+            run(bestOfN(chat), BestOfN.requests(body, List.of("gpt-5-nano", "gpt-5-nano", "gpt-5-nano",
+                    "gpt-5-nano")), sameModel);
+        }
+
+        System.out.printf("%n%-26s %10s %14s %9s%n", "Strategy", "Latency", "Output tokens", "Quality");
+        System.out.println("-".repeat(62));
+        for (Totals totals : List.of(single, sequential, waitForAll, bestOfN, sameModel)) {
+            System.out.printf("%-26s %7d ms %14d %9.2f%n", totals.name, totals.nanos / PROMPTS / 1_000_000,
+                    totals.tokens / PROMPTS, totals.quality / PROMPTS);
+        }
+        System.out.println("\nLatency: until the answer was ready. Output tokens: paid for per prompt."
+                + "\nQuality: the scorer's score of the answer kept, 0 if it was not a two-line poem.");
+    }
+
+    /**
+     * Winner at 0.9 or better, losers cancelled when 0.15 behind, and half a
+     * second for the others once one has finished.
+     */
+    private static BestOfN bestOfN(ChatHttpClient chat) {
+        return new BestOfN(chat, Example25_BestOfN::score)
+                .threshold(0.9)
+                .margin(0.15)
+                .patience(Duration.ofMillis(500));
+    }
+
+    private static void run(BestOfN bestOfN, List<JsonObject> requests, Totals totals) {
+        long start = System.nanoTime();
+        try {
+            BestOfN.Result result = bestOfN.run(requests);
+            totals.add(result.elapsedNanos(), result.tokens(), quality(result.winner().text()));
+        } catch (IOException e) {
+            // Every candidate was disqualified
+            totals.add(System.nanoTime() - start, 0, 0);
+        }
+    }
+
+    /**
+     * Two-line poem scorer: the share of distinct words, halved for a
+     * finished answer that is a single line; a third line disqualifies.
+     */
+    private static double score(CharSequence text, boolean complete) {
+        int lines = 0;
+        for (String line : text.toString().split("\n")) {
+            if (!line.isBlank()) {
+                lines++;
+            }
+        }
+        if (lines > 2) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        String[] words = text.toString().toLowerCase(Locale.ROOT).split("[^a-z]+");
+        Set<String> distinct = new HashSet<>();
+        int count = 0;
+        for (String word : words) {
+            if (!word.isEmpty()) {
+                distinct.add(word);
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        double variety = (double) distinct.size() / count;
+        return complete && lines < 2 ? variety / 2 : variety;
+    }
+
+    private static double quality(String text) {
+        return Math.max(0, score(text, true));
+    }
+
+    private static String score(double score) {
+        if (Double.isNaN(score)) {
+            return "-";
+        }
+        return score == Double.NEGATIVE_INFINITY ? "out" : String.format("%.2f", score);
+    }
+
+    /**
+     * A completion streamed to the end.
+     */
+    private static final class Answer {
+        private final String text;
+        private final long tokens;
+
+        Answer(String text, long tokens) {
+            this.text = text;
+            this.tokens = tokens;
+        }
+    }
+
+    private static Answer answer(ChatHttpClient chat, JsonObject body) throws IOException {
+        StringBuilder text = new StringBuilder();
+        long[] tokens = {0};
+        chat.stream(body, chunk -> {
+            JsonArray choices = chunk.getAsJsonArray("choices");
+            if (choices == null || choices.size() == 0) {
+                return;
+            }
+            JsonObject delta = choices.get(0).getAsJsonObject().getAsJsonObject("delta");
+            if (delta != null && delta.has("content") && !delta.get("content").getAsString().isEmpty()) {
+                text.append(delta.get("content").getAsString());
+                tokens[0]++;
+            }
+        });
+        return new Answer(text.toString(), tokens[0]);
+    }
+
+    /**
+     * Sums for one strategy over all prompts.
+     */
+    private static final class Totals {
+        private final String name;
+        private long nanos;
+        private long tokens;
+        private double quality;
+
+        Totals(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos, long tokens, double quality) {
+            this.nanos += nanos;
+            this.tokens += tokens;
+            this.quality += quality;
+        }
+    }
+
+    private static JsonObject request(String prompt) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "user");
+        message.addProperty("content", prompt);
+        JsonArray messages = new JsonArray();
+        messages.add(message);
+
+        JsonObject body = new JsonObject();
+        body.addProperty("temperature", 1.0);
+        body.addProperty("max_tokens", 200);
+        body.add("messages", messages);
+        return body;
+    }
+}
@@ -0,0 +1,208 @@
+package com.hibana.samples.async;
+
+import com.hibana.samples.client.BalanceClient;
+import com.hibana.samples.client.HibanaClients;
+import com.hibana.samples.threads.ThreadMode;
+import com.openai.client.OpenAIClient;
+import com.openai.core.RequestOptions;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ImageGenerateParams;
+import com.openai.models.ImagesResponse;
+import com.openai.models.Model;
+import com.openai.models.ModelListPage;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Non-blocking versions of the calls used in the examples: chat
+ * completions, streaming, image generation, models and balance.
+ *
+ * <pre>
+ * AsyncHibanaClient client = AsyncHibanaClient.shared();
+ * try (CallScope scope = CallScope.withTimeout(Duration.ofSeconds(30))) {
+ *     CompletableFuture&lt;Long&gt; balance = client.balance(scope);
+ *     CompletableFuture&lt;ChatCompletion&gt; answer = client.chat(params, scope);
+ *     answer.thenCombine(balance, ...).join();
+ * }
+ * </pre>
+ *
+ * Chat, image and model calls go through the SDK's async client, which
+ * runs them on OkHttp's dispatcher without holding a thread while waiting
+ * for the response. They are sent with the scope's remaining time as
+ * their SDK request timeout, so the HTTP call is abandoned at the
+ * deadline. Cancelling them early only fails the returned future: the
+ * SDK's future is derived from the HTTP call's and never reaches it, so
+ * the request runs on until it completes or times out. The balance call
+ * is enqueued on the shared OkHttp client with its call timeout set to
+ * the scope's remaining time, and cancelling it cancels the HTTP call.
+ * Streaming has no async variant in the SDK, so {@link #stream} reads the
+ * blocking stream on a background thread (a virtual thread in
+ * {@link ThreadMode#VIRTUAL} mode) and closes it when cancelled, which
+ * releases the connection too.
+ *
+ * Every call takes a {@link CallScope} for its deadline and cancellation;
+ * the overloads without one run without a deadline.
+ */
+public class AsyncHibanaClient {
+
+    private final OpenAIClient client;
+    private final BalanceClient balanceClient;
+    private final ExecutorService streamExecutor;
+
+    public AsyncHibanaClient(OpenAIClient client, BalanceClient balanceClient) {
+        this.client = client;
+        this.balanceClient = balanceClient;
+        this.streamExecutor = ThreadMode.configured().newExecutor("hibana-async-stream");
+    }
+
+    /**
+     * Balance calls go through the shared OkHttp client in {@link HibanaClients}.
+     */
+    public AsyncHibanaClient(OpenAIClient client, String baseUrl, String apiKey) {
+        this(client, new BalanceClient(HibanaClients.http(), baseUrl, apiKey));
+    }
+
+    /**
+     * Client for the shared configuration in {@link HibanaClients}.
+     */
+    public static AsyncHibanaClient shared() {
+        return Holder.CLIENT;
+    }
+
+    public CompletableFuture<ChatCompletion> chat(ChatCompletionCreateParams params) {
+        return chat(params, CallScope.unbounded());
+    }
+
+    public CompletableFuture<ChatCompletion> chat(ChatCompletionCreateParams params, CallScope scope) {
+        return scope.track(client.async().chat().completions().create(params, options(scope)),
+                "chat " + params.model());
+    }
+
+    /**
+     * Stream a chat completion, passing each chunk to {@code onChunk} on a
+     * background thread. Completes with the number of chunks received.
+     */
+    public CompletableFuture<Long> stream(ChatCompletionCreateParams params, Consumer<ChatCompletionChunk> onChunk,
+                                          CallScope scope) {
+        CompletableFuture<Long> call = new CompletableFuture<>();
+        AtomicReference<Stream<ChatCompletionChunk>> open = new AtomicReference<>();
+
+        streamExecutor.execute(() -> {
+            if (call.isDone()) {
+                return;
+            }
+            try (Stream<ChatCompletionChunk> chunks = client.chat().completions().createStreaming(params)) {
+                open.set(chunks);
+                long count = 0;
+                Iterator<ChatCompletionChunk> iterator = chunks.iterator();
+                while (!call.isDone() && iterator.hasNext()) {
+                    onChunk.accept(iterator.next());
+                    count++;
+                }
+                call.complete(count);
+            } catch (Throwable e) {
+                call.completeExceptionally(e);
+            }
+        });
+        // Closing the stream releases the connection and unblocks the reading thread
+        call.whenComplete((count, error) -> {
+            Stream<ChatCompletionChunk> chunks = open.get();
+            if (error != null && chunks != null) {
+                chunks.close();
+            }
+        });
+        return scope.track(call, "stream " + params.model());
+    }
+
+    public CompletableFuture<ImagesResponse> image(ImageGenerateParams params, CallScope scope) {
+        return scope.track(client.async().images().generate(params, options(scope)), "image");
+    }
+
+    public CompletableFuture<List<Model>> models() {
+        return models(CallScope.unbounded());
+    }
+
+    public CompletableFuture<List<Model>> models(CallScope scope) {
+        CompletableFuture<ModelListPage> page = client.async().models().list(options(scope));
+        CompletableFuture<List<Model>> models = page.thenApply(ModelListPage::data);
+        models.whenComplete((list, error) -> {
+            if (models.isCancelled()) {
+                page.cancel(true);
+            }
+        });
+        return scope.track(models, "models");
+    }
+
+    public CompletableFuture<Model> model(String id, CallScope scope) {
+        return scope.track(client.async().models().retrieve(id, options(scope)), "model " + id);
+    }
+
+    /**
+     * The scope's remaining time as the SDK request timeout, the only way
+     * to stop an SDK async call at the HTTP level.
+     */
+    private static RequestOptions options(CallScope scope) {
+        if (scope.deadline().isNone()) {
+            return RequestOptions.none();
+        }
+        return RequestOptions.builder()
+                .timeout(Duration.ofNanos(Math.max(1, scope.deadline().remainingNanos())))
+                .build();
+    }
+
+    public CompletableFuture<Long> balance() {
+        return balance(CallScope.unbounded());
+    }
+
+    /**
+     * Current balance in Rials. The HTTP call's own timeout is set to the
+     * scope's remaining time, so it is abandoned at the socket as well.
+     */
+    public CompletableFuture<Long> balance(CallScope scope) {
+        Call httpCall = balanceClient.newCall();
+        if (!scope.deadline().isNone()) {
+            httpCall.timeout().timeout(Math.max(1, scope.deadline().remainingNanos()), TimeUnit.NANOSECONDS);
+        }
+
+        CompletableFuture<Long> call = new CompletableFuture<>();
+        call.whenComplete((balance, error) -> {
+            if (call.isCancelled()) {
+                httpCall.cancel();
+            }
+        });
+        httpCall.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                call.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response) {
+                try (response) {
+                    call.complete(BalanceClient.readBalance(response));
+                } catch (IOException | RuntimeException e) {
+                    call.completeExceptionally(e);
+                }
+            }
+        });
+        return scope.track(call, "balance");
+    }
+
+    private static final class Holder {
+        static final AsyncHibanaClient CLIENT = new AsyncHibanaClient(HibanaClients.openAi(), BalanceClient.shared());
+    }
+}
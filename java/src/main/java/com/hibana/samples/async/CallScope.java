@@ -0,0 +1,189 @@
+package com.hibana.samples.async;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Owns a group of asynchronous calls that share a deadline and are
+ * cancelled together.
+ *
+ * <pre>
+ * try (CallScope scope = CallScope.withTimeout(Duration.ofSeconds(30))) {
+ *     CompletableFuture&lt;Long&gt; balance = client.balance(scope);
+ *     CompletableFuture&lt;ChatCompletion&gt; answer = client.chat(params, scope);
+ *     ...
+ * }   // anything still running is cancelled here
+ * </pre>
+ *
+ * A call that is still running when the deadline passes is cancelled and
+ * its future fails with {@link TimeoutException}. Cancelling a returned
+ * future cancels the future it was made from, which stops the HTTP call
+ * only if that future does so when cancelled: {@link AsyncHibanaClient}'s
+ * balance and stream calls do, the SDK's async calls do not and rely on
+ * their request timeout instead. With {@link #cancelOnFailure()}
+ * the first failed call cancels the rest of the scope, for work that is
+ * useless unless every part succeeds.
+ *
+ * Child scopes ({@link #child(Duration)}) never outlive their parent: they
+ * get the earlier of the two deadlines and are cancelled with it.
+ */
+public final class CallScope implements AutoCloseable {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "call-scope-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Deadline deadline;
+    private final CallScope parent;
+    private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+    private final Set<CallScope> children = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelOnFailure;
+    private volatile boolean cancelled;
+
+    private CallScope(Deadline deadline, CallScope parent) {
+        this.deadline = deadline;
+        this.parent = parent;
+    }
+
+    public static CallScope open(Deadline deadline) {
+        return new CallScope(deadline, null);
+    }
+
+    public static CallScope withTimeout(Duration timeout) {
+        return open(Deadline.after(timeout));
+    }
+
+    /**
+     * A scope without a deadline, for single calls that only need cancellation.
+     */
+    public static CallScope unbounded() {
+        return open(Deadline.none());
+    }
+
+    /**
+     * A nested scope whose deadline is {@code timeout} from now or the
+     * parent's, whichever comes first.
+     */
+    public CallScope child(Duration timeout) {
+        CallScope child = new CallScope(deadline.earliest(Deadline.after(timeout)), this);
+        child.cancelOnFailure = cancelOnFailure;
+        children.add(child);
+        if (cancelled) {
+            child.cancel();
+        }
+        return child;
+    }
+
+    /**
+     * Cancel the remaining calls as soon as one fails.
+     */
+    public CallScope cancelOnFailure() {
+        this.cancelOnFailure = true;
+        return this;
+    }
+
+    public Deadline deadline() {
+        return deadline;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Calls started in this scope that have not finished yet.
+     */
+    public int runningCalls() {
+        return running.size();
+    }
+
+    /**
+     * Bind {@code call} to this scope: the returned future completes with the
+     * call, fails with {@link TimeoutException} if the deadline passes first,
+     * and cancels {@code call} when it is cancelled itself. Give {@code call}
+     * its own timeout too when cancelling it does not stop the work behind it.
+     *
+     * @param operation used in timeout messages, e.g. {@code "chat gpt-5-nano"}
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> call, String operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (cancelled) {
+            call.cancel(true);
+            result.cancel(true);
+            return result;
+        }
+        if (deadline.isExpired()) {
+            call.cancel(true);
+            result.completeExceptionally(new TimeoutException(operation + ": deadline passed before the call started"));
+            return result;
+        }
+
+        running.add(result);
+        ScheduledFuture<?> timer = deadline.isNone() ? null : TIMER.schedule(
+                () -> result.completeExceptionally(new TimeoutException(operation + ": deadline exceeded")),
+                deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+
+        call.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+        result.whenComplete((value, error) -> {
+            running.remove(result);
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            if (error != null) {
+                // Timed out or cancelled by the caller: stop the call too
+                call.cancel(true);
+                if (cancelOnFailure && !(error instanceof CancellationException)) {
+                    cancel();
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cancel every running call in this scope and its children. Calls
+     * started afterwards are cancelled immediately.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> future : running) {
+            future.cancel(true);
+        }
+        for (CallScope child : children) {
+            child.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        if (parent != null) {
+            parent.children.remove(this);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
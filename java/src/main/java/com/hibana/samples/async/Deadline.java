@@ -0,0 +1,76 @@
+package com.hibana.samples.async;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which a call, or a group of calls, must finish.
+ *
+ * Deadlines are absolute, so passing one down to nested calls keeps the
+ * caller's budget: a call started 2 seconds into a 5 second deadline gets
+ * 3 seconds, not another 5.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, true);
+
+    private final long nanoTime;
+    private final boolean none;
+
+    private Deadline(long nanoTime, boolean none) {
+        this.nanoTime = nanoTime;
+        this.none = none;
+    }
+
+    public static Deadline after(Duration timeout) {
+        long nanos = timeout.toNanos();
+        long now = System.nanoTime();
+        // Far-off deadlines would overflow nanoTime arithmetic; treat them as none
+        return nanos > Long.MAX_VALUE / 2 ? NONE : new Deadline(now + nanos, false);
+    }
+
+    /**
+     * No deadline; calls may take as long as their own timeouts allow.
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    public boolean isNone() {
+        return none;
+    }
+
+    /**
+     * Time left, zero once the deadline has passed and {@code Long.MAX_VALUE}
+     * nanoseconds for {@link #none()}.
+     */
+    public long remainingNanos() {
+        return none ? Long.MAX_VALUE : Math.max(0, nanoTime - System.nanoTime());
+    }
+
+    public long remaining(TimeUnit unit) {
+        return none ? Long.MAX_VALUE : unit.convert(remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return !none && nanoTime - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Whichever of the two deadlines comes first.
+     */
+    public Deadline earliest(Deadline other) {
+        if (none) {
+            return other;
+        }
+        if (other.none) {
+            return this;
+        }
+        return nanoTime - other.nanoTime <= 0 ? this : other;
+    }
+
+    @Override
+    public String toString() {
+        return none ? "no deadline" : String.format("deadline in %d ms", remaining(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,115 @@
+package com.hibana.samples.cache;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * MinHash signatures of short texts, for estimating how similar two
+ * prompts are without comparing them.
+ *
+ * A text is normalized (lower case, punctuation and runs of whitespace
+ * collapsed to one space) and cut into overlapping 4-character shingles.
+ * For each of {@link #SIZE} hash functions the signature keeps the
+ * smallest hash of any shingle; the fraction of positions where two
+ * signatures agree estimates the Jaccard similarity of their shingle sets
+ * (shared shingles / all shingles).
+ *
+ * Only the low 16 bits of each minimum are kept (b-bit minwise hashing),
+ * so a signature is 128 bytes. The low bits of a minimum are close to
+ * uniform however long the text is, so two unrelated minimums agree by
+ * chance about once in 65,536 and the estimate barely moves. The high
+ * bits would not do: a minimum over many shingles is a small number, and
+ * for long texts its high bits are all zero.
+ */
+public final class MinHash {
+
+    /** Hash functions per signature. */
+    public static final int SIZE = 64;
+
+    static final int SHINGLE_LENGTH = 4;
+
+    private final long[] multipliers = new long[SIZE];
+    private final long[] offsets = new long[SIZE];
+
+    /**
+     * @param seed signatures are only comparable between instances with the same seed
+     */
+    public MinHash(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < SIZE; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            offsets[i] = random.nextLong();
+        }
+    }
+
+    public short[] sign(String text) {
+        char[] chars = new char[text.length()];
+        int length = normalize(text, chars);
+
+        int[] minimums = new int[SIZE];
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+        int shingles = Math.max(1, length - SHINGLE_LENGTH + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = shingleHash(chars, start, Math.min(SHINGLE_LENGTH, length - start));
+            for (int i = 0; i < SIZE; i++) {
+                // Top 31 bits of a multiply-add hash: non-negative, so a signed compare works
+                int value = (int) ((multipliers[i] * shingle + offsets[i]) >>> 33);
+                if (value < minimums[i]) {
+                    minimums[i] = value;
+                }
+            }
+        }
+
+        short[] signature = new short[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            signature[i] = (short) minimums[i];
+        }
+        return signature;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the texts behind two signatures, 0 to 1.
+     */
+    public static double similarity(short[] a, short[] b) {
+        int equal = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return equal / (double) SIZE;
+    }
+
+    /**
+     * Lower-case letters and digits of {@code text}, with everything else
+     * collapsed to single spaces, written to {@code out}.
+     *
+     * @return number of chars written
+     */
+    static int normalize(String text, char[] out) {
+        int length = 0;
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                out[length++] = Character.toLowerCase(c);
+                space = false;
+            } else if (!space) {
+                out[length++] = ' ';
+                space = true;
+            }
+        }
+        return space && length > 0 ? length - 1 : length;
+    }
+
+    private static long shingleHash(char[] chars, int start, int length) {
+        long hash = 0x9E3779B97F4A7C15L;
+        for (int i = start; i < start + length; i++) {
+            hash = (hash ^ chars[i]) * 0x100000001B3L;
+        }
+        // Finalizer from SplitMix64, so similar shingles get unrelated hashes
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
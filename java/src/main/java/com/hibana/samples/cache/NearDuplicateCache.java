@@ -0,0 +1,363 @@
+package com.hibana.samples.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fixed-size in-memory cache that answers a lookup with the value stored
+ * for the most similar earlier prompt, so "How do I reverse a list in
+ * Python, please?" can be served what was stored for "how do i reverse a
+ * list in python".
+ *
+ * <pre>
+ * NearDuplicateCache&lt;String&gt; cache = new NearDuplicateCache&lt;&gt;(100_000);
+ * cache.put("gpt-5-nano", "How do I reverse a list in Python?", answer);
+ *
+ * NearDuplicateCache.Hit&lt;String&gt; hit = cache.lookup("gpt-5-nano", "how do I reverse a list in python, please");
+ * if (hit != null) {
+ *     // hit.value() is answer, hit.similarity() 1.0: only "please" differs
+ * }
+ * </pre>
+ *
+ * Prompts are reduced to their content words, in order: every word except
+ * stopwords (articles, pronouns, auxiliaries, most prepositions, "please")
+ * and single characters, with a plural "s" dropped. A hit needs the same
+ * scope (model, parameters, anything else that changes the answer), the
+ * same set of content words, and an estimated Jaccard similarity of the
+ * content words' {@link MinHash} signatures of at least the threshold,
+ * which mostly checks their order. So case, punctuation and filler can
+ * change, but any other changed word means a miss: shingle similarity of
+ * the whole prompt cannot tell a rewording from a different question
+ * ("What is the capital of Spain?" is 0.72 similar to "...of France?",
+ * "sorts ... in descending order" 0.875 to "... in ascending order").
+ * Negations, question words, "to" and "from" count as content.
+ *
+ * Wrong answers remain possible where a stopword carries the meaning
+ * ("a list in Python" and "a list of Python"), and a synonym or a
+ * misspelling makes a miss. Scope by anything else the answer depends on.
+ *
+ * Lookups do not scan the cache: the 64 signature values are split into
+ * 16 bands of 4, and each entry is filed under one bucket per band (locality
+ * sensitive hashing). Only entries sharing at least one whole band with the
+ * prompt are compared. A prompt at similarity 0.8 shares a band with
+ * probability 0.9998; one at 0.3 with probability 0.12, and those are then
+ * rejected by the full comparison.
+ *
+ * All storage is allocated up front in flat arrays, about 280 bytes per
+ * entry plus the values. When the cache is full, entries are evicted in
+ * CLOCK order: roughly least recently used, without a linked list.
+ */
+public class NearDuplicateCache<V> {
+
+    public static final double DEFAULT_THRESHOLD = 0.8;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "an", "the", "this", "that", "these", "those", "some", "any",
+            "i", "me", "my", "we", "us", "our", "you", "your", "it", "its",
+            "am", "is", "are", "was", "were", "be", "been", "do", "does", "did",
+            "can", "could", "would", "should", "will", "shall", "may", "might", "must",
+            "of", "in", "on", "at", "for", "with", "by", "about",
+            "and", "or", "so", "then", "just", "please", "kindly", "thanks", "thank",
+            "tell", "explain", "give", "show", "let", "know", "want", "need");
+
+    private static final int BANDS = 16;
+    private static final int ROWS = MinHash.SIZE / BANDS;
+    private static final long SEED = 0x5EED_CAC4EL;
+
+    private final MinHash minHash = new MinHash(SEED);
+    private final int capacity;
+    private final double threshold;
+    private final int bucketMask;
+
+    /** First slot + 1 in each band's bucket, 0 for empty; band b's buckets start at b * buckets. */
+    private final int[] heads;
+    /** Next slot + 1 in the same bucket, per slot and band. */
+    private final int[] next;
+    private final short[] signatures;
+    private final long[] scopes;
+    private final Object[] values;
+    private final boolean[] referenced;
+    /** Lookup number in which each slot was last compared, so it is compared once per lookup. */
+    private final int[] visited;
+
+    private int size;
+    private int hand;
+    private int lookupStamp;
+    private long hits;
+    private long misses;
+
+    public NearDuplicateCache(int capacity) {
+        this(capacity, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold minimum estimated Jaccard similarity of the content
+     *                  words' 4-character shingles for a hit
+     */
+    public NearDuplicateCache(int capacity, double threshold) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("threshold must be in (0, 1]");
+        }
+        this.capacity = capacity;
+        this.threshold = threshold;
+        int buckets = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.bucketMask = buckets - 1;
+        this.heads = new int[BANDS * buckets];
+        this.next = new int[capacity * BANDS];
+        this.signatures = new short[capacity * MinHash.SIZE];
+        this.scopes = new long[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new boolean[capacity];
+        this.visited = new int[capacity];
+    }
+
+    /**
+     * The value stored for the prompt most similar to {@code prompt}, or
+     * {@code null} if none in the same scope reaches the threshold. Counts
+     * as a hit or a miss.
+     */
+    public Hit<V> lookup(String scope, String prompt) {
+        String content = contentWords(prompt);
+        short[] signature = minHash.sign(content);
+        long scopeHash = scopeHash(scope, content);
+        synchronized (this) {
+            int best = -1;
+            double bestSimilarity = 0;
+            int stamp = nextStamp();
+            for (int band = 0; band < BANDS; band++) {
+                int slot = heads[bucket(band, signature, 0, scopeHash)] - 1;
+                while (slot >= 0) {
+                    if (visited[slot] != stamp && scopes[slot] == scopeHash) {
+                        visited[slot] = stamp;
+                        double similarity = similarity(signature, slot);
+                        if (similarity > bestSimilarity) {
+                            best = slot;
+                            bestSimilarity = similarity;
+                        }
+                    }
+                    slot = next[slot * BANDS + band] - 1;
+                }
+            }
+            if (best < 0 || bestSimilarity < threshold) {
+                misses++;
+                return null;
+            }
+            referenced[best] = true;
+            hits++;
+            @SuppressWarnings("unchecked")
+            V value = (V) values[best];
+            return new Hit<>(value, bestSimilarity);
+        }
+    }
+
+    /**
+     * Store {@code value} for {@code prompt}, evicting an entry if the
+     * cache is full. Replaces the value of an identical (after
+     * normalization) prompt in the same scope.
+     */
+    public void put(String scope, String prompt, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        String content = contentWords(prompt);
+        short[] signature = minHash.sign(content);
+        long scopeHash = scopeHash(scope, content);
+        synchronized (this) {
+            // Identical signatures share every band, so checking the first bucket is enough
+            int slot = heads[bucket(0, signature, 0, scopeHash)] - 1;
+            while (slot >= 0) {
+                if (scopes[slot] == scopeHash && similarity(signature, slot) == 1) {
+                    values[slot] = value;
+                    referenced[slot] = true;
+                    return;
+                }
+                slot = next[slot * BANDS] - 1;
+            }
+
+            slot = size < capacity ? size++ : evict();
+            System.arraycopy(signature, 0, signatures, slot * MinHash.SIZE, MinHash.SIZE);
+            scopes[slot] = scopeHash;
+            values[slot] = value;
+            referenced[slot] = false;
+            for (int band = 0; band < BANDS; band++) {
+                int bucket = bucket(band, signatures, slot * MinHash.SIZE, scopeHash);
+                next[slot * BANDS + band] = heads[bucket];
+                heads[bucket] = slot + 1;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public double threshold() {
+        return threshold;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Bytes allocated for signatures and the index, not counting the values.
+     */
+    public long indexBytes() {
+        return 4L * heads.length + 4L * next.length + 2L * signatures.length
+                + 8L * scopes.length + 4L * values.length + referenced.length + 4L * visited.length;
+    }
+
+    /**
+     * Free the next slot in CLOCK order: skip (and clear) slots used since
+     * the hand last passed them. Must hold the lock.
+     */
+    private int evict() {
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % capacity;
+        }
+        int victim = hand;
+        hand = (hand + 1) % capacity;
+
+        for (int band = 0; band < BANDS; band++) {
+            int bucket = bucket(band, signatures, victim * MinHash.SIZE, scopes[victim]);
+            int link = victim * BANDS + band;
+            if (heads[bucket] == victim + 1) {
+                heads[bucket] = next[link];
+                continue;
+            }
+            int slot = heads[bucket] - 1;
+            while (next[slot * BANDS + band] != victim + 1) {
+                slot = next[slot * BANDS + band] - 1;
+            }
+            next[slot * BANDS + band] = next[link];
+        }
+        values[victim] = null;
+        return victim;
+    }
+
+    private double similarity(short[] signature, int slot) {
+        int offset = slot * MinHash.SIZE;
+        int equal = 0;
+        for (int i = 0; i < MinHash.SIZE; i++) {
+            if (signature[i] == signatures[offset + i]) {
+                equal++;
+            }
+        }
+        return equal / (double) MinHash.SIZE;
+    }
+
+    private int bucket(int band, short[] signature, int offset, long scopeHash) {
+        long hash = scopeHash ^ band;
+        for (int i = offset + band * ROWS; i < offset + (band + 1) * ROWS; i++) {
+            hash = (hash ^ (signature[i] & 0xFFFF)) * 0x100000001B3L;
+        }
+        hash = (hash ^ (hash >>> 29)) * 0xBF58476D1CE4E5B9L;
+        return band * (bucketMask + 1) + (int) ((hash ^ (hash >>> 32)) & bucketMask);
+    }
+
+    private int nextStamp() {
+        if (++lookupStamp == 0) {
+            Arrays.fill(visited, 0);
+            lookupStamp = 1;
+        }
+        return lookupStamp;
+    }
+
+    /**
+     * 64-bit hash of the scope and the set of content words: entries only
+     * match, and only share LSH buckets, when both are the same. Two are
+     * treated as the same only if their hashes collide, which is
+     * negligible at this width.
+     */
+    private static long scopeHash(String scope, String content) {
+        // Order-independent, so only the signature sees the word order
+        long words = 0;
+        for (String word : new HashSet<>(Arrays.asList(content.split(" ")))) {
+            words += mix(hash(word));
+        }
+        return mix(hash(scope) + words);
+    }
+
+    /**
+     * The content words of {@code prompt}, normalized as by {@link MinHash}
+     * and separated by single spaces; the whole normalized prompt if it has
+     * none, so "Thanks!" and "Can you?" stay apart.
+     */
+    static String contentWords(String prompt) {
+        char[] chars = new char[prompt.length()];
+        int length = MinHash.normalize(prompt, chars);
+        StringBuilder content = new StringBuilder(length);
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || chars[i] == ' ') {
+                int end = i;
+                if (end - start > 3 && chars[end - 1] == 's' && chars[end - 2] != 's') {
+                    end--;
+                }
+                String word = new String(chars, start, end - start);
+                if (end - start > 1 && !STOPWORDS.contains(word)) {
+                    content.append(content.length() > 0 ? " " : "").append(word);
+                }
+                start = i + 1;
+            }
+        }
+        return content.length() > 0 ? content.toString() : new String(chars, 0, length);
+    }
+
+    private static long hash(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * A cached value and how similar its prompt was to the one looked up.
+     */
+    public static final class Hit<V> {
+        private final V value;
+        private final double similarity;
+
+        Hit(V value, double similarity) {
+            this.value = value;
+            this.similarity = similarity;
+        }
+
+        public V value() {
+            return value;
+        }
+
+        /**
+         * Estimated Jaccard similarity of the two prompts' content words,
+         * from the threshold up to 1.
+         */
+        public double similarity() {
+            return similarity;
+        }
+    }
+}
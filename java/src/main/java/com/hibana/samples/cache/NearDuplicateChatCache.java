@@ -0,0 +1,133 @@
+package com.hibana.samples.cache;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hibana.samples.client.ChatHttpClient;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat completions through a {@link NearDuplicateCache}, so a reworded
+ * question is answered from the completion cached for the original.
+ *
+ * Only deterministic requests ({@code temperature} 0) are cached, the same
+ * rule as the gateway's response cache; others always go to the API. The
+ * last message must be a user message with text content: it is the only
+ * part compared by similarity. The model, every other parameter and all
+ * earlier messages form the scope and must match exactly, so a follow-up
+ * question is never answered from a different conversation.
+ */
+public class NearDuplicateChatCache {
+
+    private static final Gson gson = new Gson();
+
+    private final ChatHttpClient chat;
+    private final NearDuplicateCache<JsonObject> cache;
+    private final AtomicLong bypassed = new AtomicLong();
+
+    public NearDuplicateChatCache(ChatHttpClient chat, NearDuplicateCache<JsonObject> cache) {
+        this.chat = chat;
+        this.cache = cache;
+    }
+
+    /**
+     * Send a non-streaming chat completion request, or answer it from the
+     * cache.
+     *
+     * @param body request JSON, as for {@link ChatHttpClient#complete(JsonObject)}
+     */
+    public CachedCompletion complete(JsonObject body) throws IOException {
+        String prompt = cacheablePrompt(body);
+        if (prompt == null) {
+            bypassed.incrementAndGet();
+            return new CachedCompletion(chat.complete(body), false, 0);
+        }
+
+        String scope = scope(body);
+        NearDuplicateCache.Hit<JsonObject> hit = cache.lookup(scope, prompt);
+        if (hit != null) {
+            // Callers may modify the response; the cached one must stay as it was
+            return new CachedCompletion(hit.value().deepCopy(), true, hit.similarity());
+        }
+
+        JsonObject response = chat.complete(body);
+        cache.put(scope, prompt, response.deepCopy());
+        return new CachedCompletion(response, false, 0);
+    }
+
+    public NearDuplicateCache<JsonObject> cache() {
+        return cache;
+    }
+
+    /**
+     * Requests sent straight to the API because they could not be cached.
+     */
+    public long bypassed() {
+        return bypassed.get();
+    }
+
+    /**
+     * Text of the final user message if {@code body} may be cached, otherwise {@code null}.
+     */
+    private static String cacheablePrompt(JsonObject body) {
+        boolean deterministic = body.has("temperature") && body.get("temperature").getAsDouble() == 0.0;
+        if (!deterministic || !body.has("messages")) {
+            return null;
+        }
+        JsonArray messages = body.getAsJsonArray("messages");
+        if (messages.size() == 0) {
+            return null;
+        }
+        JsonObject last = messages.get(messages.size() - 1).getAsJsonObject();
+        JsonElement content = last.get("content");
+        boolean text = content != null && content.isJsonPrimitive() && content.getAsJsonPrimitive().isString();
+        if (!"user".equals(last.has("role") ? last.get("role").getAsString() : null) || !text) {
+            return null;
+        }
+        return content.getAsString();
+    }
+
+    /**
+     * Everything in the request except the final user message.
+     */
+    private static String scope(JsonObject body) {
+        JsonObject parameters = body.deepCopy();
+        JsonArray context = parameters.remove("messages").getAsJsonArray();
+        parameters.remove("stream");
+        context.remove(context.size() - 1);
+        return gson.toJson(parameters) + "\n" + gson.toJson(context);
+    }
+
+    /**
+     * A chat completion response and whether it came from the cache.
+     */
+    public static final class CachedCompletion {
+        private final JsonObject response;
+        private final boolean hit;
+        private final double similarity;
+
+        CachedCompletion(JsonObject response, boolean hit, double similarity) {
+            this.response = response;
+            this.hit = hit;
+            this.similarity = similarity;
+        }
+
+        public JsonObject response() {
+            return response;
+        }
+
+        public boolean isHit() {
+            return hit;
+        }
+
+        /**
+         * Estimated similarity of the prompt to the cached one, or 0 for a miss.
+         */
+        public double similarity() {
+            return similarity;
+        }
+    }
+}
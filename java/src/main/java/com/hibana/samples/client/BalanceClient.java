@@ -0,0 +1,84 @@
+package com.hibana.samples.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+
+/**
+ * Reads the wallet balance from GET /v1/user/balance, the Hibana-specific
+ * endpoint shown in Example09_CheckBalance.
+ */
+public class BalanceClient {
+
+    private static final Gson gson = new Gson();
+
+    private final OkHttpClient http;
+    private final String baseUrl;
+    private final String apiKey;
+
+    public BalanceClient(OkHttpClient http, String baseUrl, String apiKey) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Client for the shared configuration in {@link HibanaClients}.
+     */
+    public static BalanceClient shared() {
+        return new BalanceClient(HibanaClients.http(), HibanaClients.BASE_URL, HibanaClients.API_KEY);
+    }
+
+    /**
+     * Current balance in the account currency (Rials).
+     */
+    public long fetchBalance() throws IOException {
+        try (Response response = newCall().execute()) {
+            return readBalance(response);
+        }
+    }
+
+    /**
+     * An unstarted call for the balance endpoint, for callers that run it
+     * asynchronously or set their own timeout.
+     */
+    public Call newCall() {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/user/balance")
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .get()
+                .build();
+        return http.newCall(request);
+    }
+
+    /**
+     * Read the balance from a response to {@link #newCall()}.
+     *
+     * @throws IOException if the request failed or the response has no
+     *                     numeric balance; a missing balance is not read as 0
+     */
+    public static long readBalance(Response response) throws IOException {
+        if (!response.isSuccessful() || response.body() == null) {
+            throw new IOException("Balance request failed: HTTP " + response.code());
+        }
+        String body = response.body().string();
+        JsonElement balance;
+        try {
+            JsonObject data = gson.fromJson(body, JsonObject.class);
+            balance = data != null ? data.get("balance") : null;
+        } catch (JsonParseException e) {
+            throw new IOException("Balance response is not a JSON object: " + e.getMessage(), e);
+        }
+        if (balance == null || !balance.isJsonPrimitive() || !balance.getAsJsonPrimitive().isNumber()) {
+            throw new IOException("Balance response has no numeric balance: " + body);
+        }
+        return balance.getAsLong();
+    }
+}
@@ -0,0 +1,213 @@
+package com.hibana.samples.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Chat completions over plain OkHttp.
+ *
+ * The SDK client owns its HTTP stack, so anything that has to see or tune
+ * the connection itself (event listeners, pre-warming, protocols, body
+ * encoding) goes through this client instead. Requests and responses are
+ * the raw JSON of POST /v1/chat/completions.
+ *
+ * Each request is tagged with its model ({@code request.tag(ModelTag.class)})
+ * so listeners and interceptors can group calls by model.
+ */
+public class ChatHttpClient {
+
+    public static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final Gson gson = new Gson();
+
+    private final OkHttpClient http;
+    private final String baseUrl;
+    private final String apiKey;
+
+    public ChatHttpClient(OkHttpClient http, String baseUrl, String apiKey) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Client for the shared configuration in {@link HibanaClients}.
+     */
+    public static ChatHttpClient shared() {
+        return new ChatHttpClient(HibanaClients.http(), HibanaClients.BASE_URL, HibanaClients.API_KEY);
+    }
+
+    public OkHttpClient http() {
+        return http;
+    }
+
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Copy of this client sending through {@code http}, e.g. one derived with
+     * {@code http().newBuilder()...build()} so it keeps the shared pool.
+     */
+    public ChatHttpClient withHttp(OkHttpClient http) {
+        return new ChatHttpClient(http, baseUrl, apiKey);
+    }
+
+    /**
+     * Send a non-streaming chat completion request.
+     *
+     * @param body request JSON; must contain {@code model}
+     * @return the response JSON
+     */
+    public JsonObject complete(JsonObject body) throws IOException {
+        return execute(newRequest(body));
+    }
+
+    /**
+     * Send a non-streaming chat completion request built from a template.
+     *
+     * @return the response JSON
+     */
+    public JsonObject complete(RequestTemplate template, String userContent) throws IOException {
+        return execute(newRequest(template.model(), template.body(userContent)));
+    }
+
+    private JsonObject execute(Request request) throws IOException {
+        try (Response response = http.newCall(request).execute()) {
+            String text = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new IOException("Chat completion failed: HTTP " + response.code() + " " + text);
+            }
+            return gson.fromJson(text, JsonObject.class);
+        }
+    }
+
+    /**
+     * Send a streaming chat completion request and block until the stream
+     * ends, passing each chunk to {@code onChunk}.
+     *
+     * @param body request JSON; {@code stream} is set to {@code true}
+     * @return number of chunks received
+     */
+    public long stream(JsonObject body, Consumer<JsonObject> onChunk) throws IOException {
+        return streamWhile(body, chunk -> {
+            onChunk.accept(chunk);
+            return true;
+        });
+    }
+
+    /**
+     * Like {@link #stream}, but stops as soon as {@code onChunk} returns
+     * {@code false}: the call is cancelled, which closes the connection (or
+     * resets the HTTP/2 stream), so the server stops generating and no more
+     * tokens are paid for.
+     *
+     * @return number of chunks received, including the one that stopped the stream
+     */
+    public long streamWhile(JsonObject body, Predicate<JsonObject> onChunk) throws IOException {
+        return streamWhile(newStreamCall(body), onChunk);
+    }
+
+    /**
+     * Like {@link #streamWhile(JsonObject, Predicate)}, for a call from
+     * {@link #newStreamCall}. Cancelling the call from another thread ends
+     * the stream with an {@link IOException}, even before the first chunk.
+     */
+    public long streamWhile(Call call, Predicate<JsonObject> onChunk) throws IOException {
+        try (Response response = call.execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                String text = response.body() != null ? response.body().string() : "";
+                throw new IOException("Chat completion failed: HTTP " + response.code() + " " + text);
+            }
+            BufferedSource source = response.body().source();
+            long chunks = 0;
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (!line.startsWith("data: ")) {
+                    continue;
+                }
+                String data = line.substring("data: ".length());
+                if (data.equals("[DONE]")) {
+                    break;
+                }
+                chunks++;
+                if (!onChunk.test(gson.fromJson(data, JsonObject.class))) {
+                    call.cancel();
+                    break;
+                }
+            }
+            return chunks;
+        }
+    }
+
+    /**
+     * A streaming call for {@code body}, not yet started, for callers that
+     * may have to cancel it from another thread.
+     */
+    public Call newStreamCall(JsonObject body) {
+        JsonObject streaming = body.deepCopy();
+        streaming.addProperty("stream", true);
+        return http.newCall(newRequest(streaming));
+    }
+
+    /**
+     * Build the POST request for {@code body}, for callers that execute it
+     * themselves (streaming, async).
+     */
+    public Request newRequest(JsonObject body) {
+        return newRequest(body.has("model") ? body.get("model").getAsString() : "",
+                RequestBody.create(gson.toJson(body), JSON));
+    }
+
+    /**
+     * Build the POST request for an already serialized body, e.g. from
+     * {@link RequestTemplate#body(String)}.
+     */
+    public Request newRequest(String model, RequestBody body) {
+        return new Request.Builder()
+                .url(baseUrl + "/chat/completions")
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .tag(ModelTag.class, new ModelTag(model))
+                .post(body)
+                .build();
+    }
+
+    /**
+     * Model of a chat request, attached as an OkHttp request tag.
+     */
+    public static final class ModelTag {
+        private final String model;
+
+        public ModelTag(String model) {
+            this.model = model;
+        }
+
+        public String model() {
+            return model;
+        }
+
+        /**
+         * Model of {@code request}, or {@code null} if it was not sent by this client.
+         */
+        public static String of(Request request) {
+            ModelTag tag = request.tag(ModelTag.class);
+            return tag != null ? tag.model : null;
+        }
+
+        @Override
+        public String toString() {
+            return model;
+        }
+    }
+}
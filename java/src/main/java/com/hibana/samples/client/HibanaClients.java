@@ -0,0 +1,78 @@
+package com.hibana.samples.client;
+
+import com.hibana.samples.net.HttpProtocolConfig;
+import com.openai.client.OpenAIClient;
+import com.openai.client.okhttp.OpenAIOkHttpClient;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared clients for the helper packages.
+ *
+ * The examples each build their own client to stay self-contained; code
+ * that runs many calls should share one connection pool and dispatcher
+ * instead, which is what this class provides.
+ *
+ * The key and base URL default to the same values as the examples and can
+ * be overridden with the HIBANA_API_KEY and HIBANA_BASE_URL environment
+ * variables.
+ *
+ * The OkHttp client negotiates HTTP/2, keeping HIBANA_HTTP_CONNECTIONS
+ * connections per host (default 16). It also serves hosts that only speak
+ * HTTP/1.1, such as image CDNs, so it runs at most that many requests per
+ * host at once. Set HIBANA_HTTP_PROTOCOL to {@code http1}, {@code http2} or
+ * {@code h2c} (cleartext HTTP/2, e.g. for the local gateway) to change the
+ * protocol; with {@code h2c} each connection carries HIBANA_HTTP2_STREAMS
+ * concurrent requests (default 16).
+ */
+public final class HibanaClients {
+
+    public static final String API_KEY = env("HIBANA_API_KEY", "YOUR_API_KEY");
+    public static final String BASE_URL = env("HIBANA_BASE_URL", "https://api-ai.hibanacloud.com/v1");
+
+    public static final HttpProtocolConfig PROTOCOL = HttpProtocolConfig.of(
+            env("HIBANA_HTTP_PROTOCOL", "http2"),
+            Integer.parseInt(env("HIBANA_HTTP_CONNECTIONS", "16")),
+            Integer.parseInt(env("HIBANA_HTTP2_STREAMS", "16")));
+
+    private HibanaClients() {
+    }
+
+    /**
+     * The shared OkHttp client, used for custom endpoints and file downloads.
+     */
+    public static OkHttpClient http() {
+        return HttpHolder.CLIENT;
+    }
+
+    /**
+     * A shared OpenAI client pointed at {@link #BASE_URL}.
+     */
+    public static OpenAIClient openAi() {
+        return OpenAiHolder.CLIENT;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+
+    private static final class HttpHolder {
+        static final OkHttpClient CLIENT = build();
+
+        private static OkHttpClient build() {
+            return PROTOCOL.apply(new OkHttpClient.Builder())
+                    .connectTimeout(10, TimeUnit.SECONDS)
+                    .readTimeout(120, TimeUnit.SECONDS)
+                    .build();
+        }
+    }
+
+    private static final class OpenAiHolder {
+        static final OpenAIClient CLIENT = OpenAIOkHttpClient.builder()
+                .apiKey(API_KEY)
+                .baseUrl(BASE_URL)
+                .build();
+    }
+}
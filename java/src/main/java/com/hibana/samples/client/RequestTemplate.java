@@ -0,0 +1,244 @@
+package com.hibana.samples.client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import okhttp3.RequestBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A chat request defined once and sent many times with a different final
+ * user message.
+ *
+ * <pre>
+ * RequestTemplate extraction = RequestTemplate.builder()
+ *         .model("gpt-5-nano")
+ *         .addSystemMessage("Extract the company, date and amount from the invoice as JSON.")
+ *         .temperature(0)
+ *         .build();
+ *
+ * ChatCompletion response = client.chat().completions().create(extraction.params(invoiceText));
+ * JsonObject raw = chat.complete(extraction, invoiceText);
+ * </pre>
+ *
+ * The prefix messages are built once as SDK message objects, which are
+ * immutable, and shared by every {@link #params(String)} call. For
+ * {@link ChatHttpClient} the whole request up to the user content is also
+ * serialized once: {@link #body(String)} only escapes the user content and
+ * copies it between the stored JSON bytes, instead of building and
+ * serializing a {@code JsonObject} per call.
+ *
+ * Templates are immutable and safe to share between threads.
+ */
+public final class RequestTemplate {
+
+    private static final Gson gson = new Gson();
+    private static final byte[] JSON_TAIL = "}]}".getBytes(StandardCharsets.UTF_8);
+
+    private final String model;
+    private final Double temperature;
+    private final Long maxTokens;
+    private final List<Message> prefix;
+    private final List<ChatCompletionMessage> sdkPrefix;
+    /** Request JSON up to the value of the final message's {@code content}. */
+    private final byte[] jsonHead;
+
+    private RequestTemplate(String model, Double temperature, Long maxTokens,
+                            List<Message> prefix, List<ChatCompletionMessage> sdkPrefix) {
+        this.model = model;
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+        this.prefix = prefix;
+        this.sdkPrefix = sdkPrefix;
+        this.jsonHead = model != null ? jsonHead() : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the model, or {@code null} if it is set per call with {@link #withModel(String)}
+     */
+    public String model() {
+        return model;
+    }
+
+    /**
+     * This template for another model. Shares the prefix messages.
+     */
+    public RequestTemplate withModel(String model) {
+        return new RequestTemplate(model, temperature, maxTokens, prefix, sdkPrefix);
+    }
+
+    /**
+     * SDK parameters for the prefix followed by a user message with {@code userContent}.
+     */
+    public ChatCompletionCreateParams params(String userContent) {
+        ChatCompletionCreateParams.Builder builder = ChatCompletionCreateParams.builder()
+                .model(requireModel())
+                .addAllMessages(sdkPrefix)
+                .addMessage(userMessage(userContent));
+        if (temperature != null) {
+            builder.temperature(temperature);
+        }
+        if (maxTokens != null) {
+            builder.maxTokens(maxTokens);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Serialized request for {@link ChatHttpClient}, with the same fields
+     * as {@link #params(String)}, built from the stored prefix bytes.
+     */
+    public RequestBody body(String userContent) {
+        return RequestBody.create(bytes(userContent), ChatHttpClient.JSON);
+    }
+
+    private byte[] bytes(String userContent) {
+        requireModel();
+        byte[] content = gson.toJson(userContent).getBytes(StandardCharsets.UTF_8);
+        byte[] json = new byte[jsonHead.length + content.length + JSON_TAIL.length];
+        System.arraycopy(jsonHead, 0, json, 0, jsonHead.length);
+        System.arraycopy(content, 0, json, jsonHead.length, content.length);
+        System.arraycopy(JSON_TAIL, 0, json, jsonHead.length + content.length, JSON_TAIL.length);
+        return json;
+    }
+
+    private String requireModel() {
+        if (model == null) {
+            throw new IllegalStateException("Template has no model; use withModel(...)");
+        }
+        return model;
+    }
+
+    private byte[] jsonHead() {
+        JsonObject body = new JsonObject();
+        body.addProperty("model", model);
+        if (temperature != null) {
+            body.addProperty("temperature", temperature);
+        }
+        if (maxTokens != null) {
+            body.addProperty("max_tokens", maxTokens);
+        }
+        JsonArray messages = new JsonArray();
+        for (Message message : prefix) {
+            messages.add(message.json());
+        }
+        body.add("messages", messages);
+
+        // Reopen the messages array for the user message: ...,"messages":[...,{"role":"user","content":
+        String json = gson.toJson(body);
+        String open = json.substring(0, json.length() - "]}".length());
+        return (open + (prefix.isEmpty() ? "" : ",") + "{\"role\":\"user\",\"content\":")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ChatCompletionMessage userMessage(String content) {
+        return ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                        .content(content)
+                        .build()
+        );
+    }
+
+    private static final class Message {
+        private final String role;
+        private final String content;
+
+        Message(String role, String content) {
+            this.role = role;
+            this.content = content;
+        }
+
+        JsonObject json() {
+            JsonObject json = new JsonObject();
+            json.addProperty("role", role);
+            json.addProperty("content", content);
+            return json;
+        }
+
+        ChatCompletionMessage sdk() {
+            switch (role) {
+                case "system":
+                    return ChatCompletionMessage.ofChatCompletionSystemMessageParam(
+                            ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
+                                    .content(content)
+                                    .build()
+                    );
+                case "assistant":
+                    return ChatCompletionMessage.ofChatCompletionAssistantMessageParam(
+                            ChatCompletionMessage.ChatCompletionAssistantMessageParam.builder()
+                                    .content(content)
+                                    .build()
+                    );
+                default:
+                    return userMessage(content);
+            }
+        }
+    }
+
+    public static final class Builder {
+        private String model;
+        private Double temperature;
+        private Long maxTokens;
+        private final List<Message> prefix = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Optional; a template without a model needs {@link RequestTemplate#withModel(String)}
+         * before use, e.g. to send the same prompt to several providers.
+         */
+        public Builder model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        public Builder temperature(double temperature) {
+            this.temperature = temperature;
+            return this;
+        }
+
+        public Builder maxTokens(long maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        public Builder addSystemMessage(String content) {
+            prefix.add(new Message("system", content));
+            return this;
+        }
+
+        /**
+         * Fixed user turn before the per-call one, e.g. a few-shot example.
+         */
+        public Builder addUserMessage(String content) {
+            prefix.add(new Message("user", content));
+            return this;
+        }
+
+        public Builder addAssistantMessage(String content) {
+            prefix.add(new Message("assistant", content));
+            return this;
+        }
+
+        public RequestTemplate build() {
+            List<Message> messages = List.copyOf(prefix);
+            List<ChatCompletionMessage> sdkMessages = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                sdkMessages.add(message.sdk());
+            }
+            return new RequestTemplate(model, temperature, maxTokens, messages,
+                    Collections.unmodifiableList(sdkMessages));
+        }
+    }
+}
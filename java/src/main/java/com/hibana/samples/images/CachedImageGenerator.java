@@ -0,0 +1,182 @@
+package com.hibana.samples.images;
+
+import com.hibana.samples.jfr.CacheHitEvent;
+import com.openai.client.OpenAIClient;
+import com.openai.models.ImageGenerateParams;
+import com.openai.models.ImagesResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates images through an {@link ImageCache}.
+ *
+ * Repeated requests (same model, normalized prompt, size, quality and
+ * style) are served from disk without an API call. Concurrent requests for
+ * the same key are coalesced so only one of them calls the API.
+ */
+public class CachedImageGenerator {
+
+    /** dall-e-3 price per image used in Example09_CheckBalance (Rials). */
+    public static final long DALL_E_3_COST = 5000L;
+
+    private final OpenAIClient client;
+    private final ImageCache cache;
+    private final ImageDownloader downloader;
+    private final long costPerImage;
+    private final Map<ImageCacheKey, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong apiCalls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public CachedImageGenerator(OpenAIClient client, ImageCache cache, ImageDownloader downloader, long costPerImage) {
+        this.client = client;
+        this.cache = cache;
+        this.downloader = downloader;
+        this.costPerImage = costPerImage;
+    }
+
+    /**
+     * Return the cached image for this request, generating and caching it on a miss.
+     *
+     * @param quality may be {@code null} for the model default
+     * @param style   may be {@code null} for the model default
+     */
+    public Path generate(String model, String prompt, ImageGenerateParams.Size size,
+                         ImageGenerateParams.Quality quality, ImageGenerateParams.Style style) throws IOException {
+        ImageCacheKey key = new ImageCacheKey(model, prompt, size, quality, style);
+
+        Optional<Path> cached = cache.lookup(key);
+        if (cached.isPresent()) {
+            recordHit(key, false);
+            return cached.get();
+        }
+
+        CompletableFuture<Path> mine = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            recordHit(key, true);
+            return join(existing);
+        }
+
+        // The request that was in flight may have stored the image between
+        // our lookup and putIfAbsent
+        Optional<Path> stored = cache.find(key);
+        if (stored.isPresent()) {
+            inFlight.remove(key, mine);
+            mine.complete(stored.get());
+            coalesced.incrementAndGet();
+            recordHit(key, true);
+            return stored.get();
+        }
+
+        try {
+            mine.complete(generateAndStore(key, model, prompt, size, quality, style));
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key);
+        }
+        return join(mine);
+    }
+
+    private Path generateAndStore(ImageCacheKey key, String model, String prompt, ImageGenerateParams.Size size,
+                                  ImageGenerateParams.Quality quality, ImageGenerateParams.Style style) throws IOException {
+        var params = ImageGenerateParams.builder()
+                .model(model)
+                .prompt(prompt)
+                .n(1L)
+                .size(size);
+        if (quality != null) {
+            params.quality(quality);
+        }
+        if (style != null) {
+            params.style(style);
+        }
+
+        apiCalls.incrementAndGet();
+        ImagesResponse response = client.images().generate(params.build());
+        String url = response.data().get(0).url()
+                .orElseThrow(() -> new IOException("Image response did not include a URL"));
+
+        ImageDownloader staging = downloader.withDirectory(cache.stagingDirectory());
+        DownloadResult result = staging.download(url, UUID.randomUUID().toString());
+        if (!result.isSuccess()) {
+            throw new IOException("Download failed: " + result.error());
+        }
+        try {
+            return cache.store(key, result.path());
+        } catch (IOException | RuntimeException e) {
+            // Rejected (e.g. larger than the cache) or not moved: nothing else will remove it
+            try {
+                Files.deleteIfExists(result.path());
+            } catch (IOException deleteError) {
+                e.addSuppressed(deleteError);
+            }
+            throw e;
+        }
+    }
+
+    private static void recordHit(ImageCacheKey key, boolean coalesced) {
+        CacheHitEvent event = new CacheHitEvent();
+        if (event.shouldCommit()) {
+            event.cache = "image";
+            event.model = key.model();
+            event.key = key.hash();
+            event.coalesced = coalesced;
+            event.commit();
+        }
+    }
+
+    private static Path join(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public ImageCache cache() {
+        return cache;
+    }
+
+    /**
+     * Number of generate calls actually sent to the API.
+     */
+    public long apiCalls() {
+        return apiCalls.get();
+    }
+
+    /**
+     * Requests that waited on an identical in-flight request instead of calling the API.
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Money saved by cache hits and coalesced requests, at {@code costPerImage} each.
+     */
+    public long moneySaved() {
+        return (cache.hits() + coalesced.get()) * costPerImage;
+    }
+
+    public String summary() {
+        return String.format("hit ratio %.0f%% (%d hits, %d misses), %d coalesced, %d API calls, saved %,d Rials, cache %,d bytes",
+                cache.hitRatio() * 100, cache.hits(), cache.misses(), coalesced(), apiCalls(), moneySaved(), cache.totalBytes());
+    }
+}
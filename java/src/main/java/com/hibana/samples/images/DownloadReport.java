@@ -0,0 +1,53 @@
+package com.hibana.samples.images;
+
+import java.util.List;
+
+/**
+ * Aggregate result of a batch of concurrent downloads.
+ */
+public class DownloadReport {
+
+    private final List<DownloadResult> results;
+    private final long wallNanos;
+
+    DownloadReport(List<DownloadResult> results, long wallNanos) {
+        this.results = List.copyOf(results);
+        this.wallNanos = wallNanos;
+    }
+
+    /**
+     * Results in the same order as the requested URLs.
+     */
+    public List<DownloadResult> results() {
+        return results;
+    }
+
+    public long totalBytes() {
+        return results.stream().mapToLong(DownloadResult::bytes).sum();
+    }
+
+    public long succeeded() {
+        return results.stream().filter(DownloadResult::isSuccess).count();
+    }
+
+    public long failed() {
+        return results.size() - succeeded();
+    }
+
+    public long wallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * Overall throughput of the batch, measured against wall-clock time.
+     */
+    public double bytesPerSecond() {
+        return wallNanos > 0 ? totalBytes() * 1_000_000_000.0 / wallNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d ok, %d failed, %,d bytes in %.2f s (%.1f KB/s)",
+                succeeded(), failed(), totalBytes(), wallNanos / 1e9, bytesPerSecond() / 1024);
+    }
+}
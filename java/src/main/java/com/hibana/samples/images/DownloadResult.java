@@ -0,0 +1,75 @@
+package com.hibana.samples.images;
+
+import java.nio.file.Path;
+
+/**
+ * Outcome of downloading a single image.
+ */
+public class DownloadResult {
+
+    private final String url;
+    private final Path path;
+    private final long bytes;
+    private final long nanos;
+    private final boolean success;
+    private final String error;
+
+    private DownloadResult(String url, Path path, long bytes, long nanos, boolean success, String error) {
+        this.url = url;
+        this.path = path;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.success = success;
+        this.error = error;
+    }
+
+    static DownloadResult success(String url, Path path, long bytes, long nanos) {
+        return new DownloadResult(url, path, bytes, nanos, true, null);
+    }
+
+    static DownloadResult failure(String url, long nanos, String error) {
+        return new DownloadResult(url, null, 0, nanos, false, error);
+    }
+
+    /**
+     * Failure caused by {@code error}, described by its message or, for the
+     * many exceptions without one, its type.
+     */
+    static DownloadResult failure(String url, long nanos, Throwable error) {
+        return failure(url, nanos, error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    /**
+     * Where the image was written, or {@code null} if the download failed.
+     */
+    public Path path() {
+        return path;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Why the download failed, or {@code null} if it succeeded.
+     */
+    public String error() {
+        return error;
+    }
+
+    public double bytesPerSecond() {
+        return nanos > 0 ? bytes * 1_000_000_000.0 / nanos : 0;
+    }
+}
@@ -0,0 +1,313 @@
+package com.hibana.samples.images;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Local on-disk cache of generated images.
+ *
+ * Layout under the root directory:
+ * <pre>
+ * objects/ab/cdef...png   image bytes, named by the SHA-256 of their content
+ * index.json              request key -> object, size and last access time
+ * </pre>
+ *
+ * Objects are content-addressed, so identical images stored under different
+ * keys share one file. When the total size of stored objects exceeds
+ * {@code maxBytes}, the least recently used keys are evicted and objects no
+ * longer referenced by any key are deleted.
+ *
+ * The index is kept in access order with a reference count per object and
+ * a running total, so a store or an eviction costs the same however many
+ * images are cached. The index file is rewritten every
+ * {@value #INDEX_BATCH} stores and on {@link #flush()}, outside the lock
+ * that lookups take; call {@code flush()} before exiting.
+ */
+public class ImageCache {
+
+    private static final Gson GSON = new Gson();
+
+    /** Stores between index writes. */
+    static final int INDEX_BATCH = 32;
+
+    private final Path root;
+    private final Path objects;
+    private final Path indexFile;
+    private final long maxBytes;
+    /** Least recently used first. */
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    /** Keys referring to each object. */
+    private final Map<String, Integer> references = new HashMap<>();
+    private final Object indexWriteLock = new Object();
+
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private int unsavedStores;
+    private long version;
+    private long savedVersion;
+
+    public ImageCache(Path root, long maxBytes) throws IOException {
+        this.root = root;
+        this.objects = root.resolve("objects");
+        this.indexFile = root.resolve("index.json");
+        this.maxBytes = maxBytes;
+        Files.createDirectories(objects);
+        loadIndex();
+    }
+
+    /**
+     * Directory for in-progress downloads; on the same file system as the
+     * objects so stores are a rename rather than a copy.
+     */
+    public Path stagingDirectory() throws IOException {
+        Path staging = root.resolve("staging");
+        Files.createDirectories(staging);
+        return staging;
+    }
+
+    /**
+     * Look up a cached image. Counts as a hit or a miss.
+     */
+    public synchronized Optional<Path> lookup(ImageCacheKey key) {
+        Optional<Path> path = find(key);
+        if (path.isPresent()) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return path;
+    }
+
+    /**
+     * Look up a cached image without counting a hit or a miss.
+     */
+    synchronized Optional<Path> find(ImageCacheKey key) {
+        Entry entry = index.get(key.hash());
+        if (entry == null) {
+            return Optional.empty();
+        }
+        Path path = objects.resolve(entry.object);
+        if (!Files.exists(path)) {
+            index.remove(key.hash());
+            release(entry);
+            return Optional.empty();
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return Optional.of(path);
+    }
+
+    /**
+     * Move a downloaded file into the cache under the given key.
+     *
+     * @return the path of the stored object
+     * @throws IOException if the file is larger than the whole cache; it is
+     *                     then left where it is
+     */
+    public Path store(ImageCacheKey key, Path file) throws IOException {
+        long bytes = Files.size(file);
+        if (bytes > maxBytes) {
+            throw new IOException("Image of " + bytes + " bytes is larger than the cache limit of " + maxBytes
+                    + " bytes; not cached: " + file);
+        }
+
+        // Hash outside the lock; this is the expensive part
+        String contentHash = contentHash(file);
+        String name = fileName(file);
+        String extension = name.contains(".") ? name.substring(name.lastIndexOf('.')) : "";
+        String object = contentHash.substring(0, 2) + "/" + contentHash.substring(2) + extension;
+        Path target = objects.resolve(object);
+
+        IndexSnapshot snapshot = null;
+        synchronized (this) {
+            if (Files.exists(target)) {
+                Files.delete(file);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            Entry entry = new Entry();
+            entry.object = object;
+            entry.bytes = bytes;
+            entry.lastAccess = System.currentTimeMillis();
+            retain(entry);
+            Entry replaced = index.put(key.hash(), entry);
+            if (replaced != null && release(replaced)) {
+                Files.deleteIfExists(objects.resolve(replaced.object));
+            }
+
+            evict();
+            version++;
+            if (++unsavedStores >= INDEX_BATCH) {
+                snapshot = snapshot();
+            }
+        }
+        if (snapshot != null) {
+            writeIndex(snapshot);
+        }
+        return target;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized double hitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Bytes on disk for all stored objects (shared objects counted once).
+     */
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Persist the index, including access times updated by lookups.
+     */
+    public void flush() throws IOException {
+        IndexSnapshot snapshot;
+        synchronized (this) {
+            version++;
+            snapshot = snapshot();
+        }
+        writeIndex(snapshot);
+    }
+
+    /**
+     * Evict least recently used keys until the objects fit. The entry
+     * just stored is the most recent and no larger than the limit, so it
+     * is never evicted.
+     */
+    private void evict() throws IOException {
+        Iterator<Entry> eldest = index.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry removed = eldest.next();
+            eldest.remove();
+            if (release(removed)) {
+                Files.deleteIfExists(objects.resolve(removed.object));
+            }
+        }
+    }
+
+    private void retain(Entry entry) {
+        if (references.merge(entry.object, 1, Integer::sum) == 1) {
+            totalBytes += entry.bytes;
+        }
+    }
+
+    /**
+     * @return whether no key refers to the entry's object any more
+     */
+    private boolean release(Entry entry) {
+        int left = references.merge(entry.object, -1, Integer::sum);
+        if (left > 0) {
+            return false;
+        }
+        references.remove(entry.object);
+        totalBytes -= entry.bytes;
+        return true;
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        Map<String, Entry> loaded;
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            loaded = GSON.fromJson(reader, new TypeToken<HashMap<String, Entry>>() { }.getType());
+        }
+        if (loaded == null) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(loaded.entrySet());
+        entries.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+        for (Map.Entry<String, Entry> entry : entries) {
+            if (Files.exists(objects.resolve(entry.getValue().object))) {
+                index.put(entry.getKey(), entry.getValue());
+                retain(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Serialize the index; called holding the cache lock, which is cheap
+     * next to writing the file.
+     */
+    private IndexSnapshot snapshot() {
+        unsavedStores = 0;
+        return new IndexSnapshot(GSON.toJson(index), version);
+    }
+
+    private void writeIndex(IndexSnapshot snapshot) throws IOException {
+        synchronized (indexWriteLock) {
+            // A later snapshot may have been written while this one waited
+            if (snapshot.version <= savedVersion) {
+                return;
+            }
+            Path temp = root.resolve("index.json.tmp");
+            Files.writeString(temp, snapshot.json, StandardCharsets.UTF_8);
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedVersion = snapshot.version;
+        }
+    }
+
+    private static String contentHash(Path file) throws IOException {
+        MessageDigest digest = ImageCacheKey.digest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return ImageCacheKey.hex(digest.digest());
+    }
+
+    private static String fileName(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".part") ? name.substring(0, name.length() - 5) : name;
+    }
+
+    private static final class Entry {
+        String object;
+        long bytes;
+        long lastAccess;
+    }
+
+    private static final class IndexSnapshot {
+        final String json;
+        final long version;
+
+        IndexSnapshot(String json, long version) {
+            this.json = json;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.hibana.samples.images;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Identifies an image request for caching: model, normalized prompt, size,
+ * quality and style. Prompts that differ only in case, surrounding or
+ * repeated whitespace, or trailing punctuation map to the same key.
+ */
+public final class ImageCacheKey {
+
+    private final String model;
+    private final String prompt;
+    private final String size;
+    private final String quality;
+    private final String style;
+    private final String hash;
+
+    /**
+     * @param quality may be {@code null} for the model default
+     * @param style   may be {@code null} for the model default
+     */
+    public ImageCacheKey(String model, String prompt, Object size, Object quality, Object style) {
+        this.model = model;
+        this.prompt = normalize(prompt);
+        this.size = String.valueOf(size);
+        this.quality = quality == null ? "default" : quality.toString();
+        this.style = style == null ? "default" : style.toString();
+        this.hash = sha256(this.model + '\n' + this.prompt + '\n' + this.size + '\n' + this.quality + '\n' + this.style);
+    }
+
+    static String normalize(String prompt) {
+        String normalized = prompt.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return normalized.replaceAll("[\\s.!?]+$", "");
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public String normalizedPrompt() {
+        return prompt;
+    }
+
+    /**
+     * Stable hex digest of all key fields, used as the index key.
+     */
+    public String hash() {
+        return hash;
+    }
+
+    static String sha256(String value) {
+        return hex(digest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ImageCacheKey && ((ImageCacheKey) o).hash.equals(hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(hash);
+    }
+
+    @Override
+    public String toString() {
+        return model + " " + size + " " + quality + " " + style + " \"" + prompt + "\"";
+    }
+}
@@ -0,0 +1,189 @@
+package com.hibana.samples.images;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Downloads generated images concurrently using a shared OkHttp client.
+ *
+ * Response bodies are transferred straight from the socket into a
+ * {@link FileChannel}, so memory use per download is bounded by the copy
+ * buffer rather than the image size. Each file is written to a temporary
+ * ".part" file, checked against the Content-Length header and only then
+ * moved into place.
+ */
+public class ImageDownloader {
+
+    private static final long TRANSFER_CHUNK = 256 * 1024;
+
+    private final OkHttpClient http;
+    private final Path directory;
+    private final Semaphore permits;
+
+    /**
+     * @param http          shared client; its connection pool is reused across downloads
+     * @param directory     where images are written (created if missing)
+     * @param maxConcurrent upper bound on downloads in flight
+     */
+    public ImageDownloader(OkHttpClient http, Path directory, int maxConcurrent) {
+        this.http = http;
+        this.directory = directory;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    private ImageDownloader(OkHttpClient http, Path directory, Semaphore permits) {
+        this.http = http;
+        this.directory = directory;
+        this.permits = permits;
+    }
+
+    /**
+     * A downloader writing to another directory that shares this one's
+     * client and concurrency limit.
+     */
+    public ImageDownloader withDirectory(Path directory) {
+        return new ImageDownloader(http, directory, permits);
+    }
+
+    /**
+     * Download all URLs concurrently and wait for them to finish.
+     * Files are named {@code <namePrefix>-<index>.<ext>}.
+     */
+    public DownloadReport downloadAll(List<String> urls, String namePrefix) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+
+        DownloadResult[] results = new DownloadResult[urls.size()];
+        CountDownLatch done = new CountDownLatch(urls.size());
+        long start = System.nanoTime();
+
+        for (int i = 0; i < urls.size(); i++) {
+            int index = i;
+            String url = urls.get(i);
+            Request request;
+            try {
+                request = new Request.Builder().url(url).get().build();
+            } catch (IllegalArgumentException e) {
+                // Malformed URL: fail it here, before it holds a permit
+                results[index] = DownloadResult.failure(url, 0, e);
+                done.countDown();
+                continue;
+            }
+            permits.acquire();
+            long callStart = System.nanoTime();
+
+            http.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    finish(DownloadResult.failure(url, System.nanoTime() - callStart, e));
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    DownloadResult result = null;
+                    try (response) {
+                        result = save(url, response, namePrefix + "-" + (index + 1), callStart);
+                    } catch (RuntimeException e) {
+                        result = DownloadResult.failure(url, System.nanoTime() - callStart, e);
+                    } finally {
+                        // Always release the permit and count down, or downloadAll waits forever
+                        finish(result != null ? result
+                                : DownloadResult.failure(url, System.nanoTime() - callStart, "Download failed"));
+                    }
+                }
+
+                private void finish(DownloadResult result) {
+                    results[index] = result;
+                    permits.release();
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        return new DownloadReport(Arrays.asList(results), System.nanoTime() - start);
+    }
+
+    /**
+     * Download a single URL on the calling thread.
+     */
+    public DownloadResult download(String url, String name) throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        try (Response response = http.newCall(new Request.Builder().url(url).get().build()).execute()) {
+            return save(url, response, name, start);
+        }
+    }
+
+    private DownloadResult save(String url, Response response, String name, long start) {
+        ResponseBody body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            return DownloadResult.failure(url, System.nanoTime() - start, "HTTP " + response.code());
+        }
+
+        Path target = directory.resolve(name + extension(body.contentType()));
+        Path partial = directory.resolve(target.getFileName() + ".part");
+        long expected = body.contentLength();
+
+        try {
+            long written = 0;
+            try (FileChannel channel = FileChannel.open(partial,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                BufferedSource source = body.source();
+                long n;
+                while ((n = channel.transferFrom(source, written, TRANSFER_CHUNK)) > 0) {
+                    written += n;
+                }
+
+                if (expected >= 0 && written != expected) {
+                    throw new IOException("Expected " + expected + " bytes but received " + written);
+                }
+                channel.force(false);
+            }
+
+            // Moved only once the channel is closed
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return DownloadResult.success(url, target, written, System.nanoTime() - start);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // best effort cleanup
+            }
+            return DownloadResult.failure(url, System.nanoTime() - start, e);
+        }
+    }
+
+    private static String extension(MediaType type) {
+        if (type == null) {
+            return ".png";
+        }
+        switch (type.subtype()) {
+            case "jpeg":
+            case "jpg":
+                return ".jpg";
+            case "webp":
+                return ".webp";
+            case "gif":
+                return ".gif";
+            default:
+                return ".png";
+        }
+    }
+}
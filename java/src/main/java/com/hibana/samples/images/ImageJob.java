@@ -0,0 +1,29 @@
+package com.hibana.samples.images;
+
+/**
+ * A single prompt in a bulk image run. The id must be stable across runs
+ * so that progress can be resumed.
+ */
+public final class ImageJob {
+
+    private final String id;
+    private final String prompt;
+
+    public ImageJob(String id, String prompt) {
+        this.id = id;
+        this.prompt = prompt;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public String prompt() {
+        return prompt;
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + prompt;
+    }
+}
@@ -0,0 +1,83 @@
+package com.hibana.samples.images;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only progress log for {@link ImageJobQueue}.
+ *
+ * One tab-separated line per finished job: {@code DONE <id> <cost> <path>}
+ * or {@code FAILED <id> <message>}. Jobs recorded as DONE are skipped when
+ * a run is resumed, and their cost is charged to its ceiling; failed jobs
+ * are tried again.
+ */
+class ImageJobJournal implements AutoCloseable {
+
+    private final BufferedWriter writer;
+    private final Set<String> completed = new HashSet<>();
+    private long spent;
+
+    ImageJobJournal(Path file) throws IOException {
+        load(file);
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    boolean isCompleted(String jobId) {
+        return completed.contains(jobId);
+    }
+
+    /**
+     * Total cost of the jobs recorded as DONE by earlier runs.
+     */
+    long spent() {
+        return spent;
+    }
+
+    synchronized void recordDone(String jobId, long cost, Path image) throws IOException {
+        write("DONE\t" + jobId + "\t" + cost + "\t" + image);
+    }
+
+    synchronized void recordFailed(String jobId, String message) throws IOException {
+        write("FAILED\t" + jobId + "\t" + String.valueOf(message).replace('\t', ' ').replace('\n', ' '));
+    }
+
+    private void write(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] parts = line.split("\t", 4);
+            if (parts.length == 4 && parts[0].equals("DONE") && completed.add(parts[1])) {
+                try {
+                    spent += Long.parseLong(parts[2]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Corrupt journal line in " + file + ": " + line, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.hibana.samples.images;
+
+import java.nio.file.Path;
+
+/**
+ * Completion events from an {@link ImageJobQueue}. Called from worker
+ * threads; implementations must be thread-safe.
+ */
+public interface ImageJobListener {
+
+    default void onJobCompleted(ImageJob job, Path image) {
+    }
+
+    default void onJobFailed(ImageJob job, Exception error) {
+    }
+
+    /**
+     * The job was not started because the cost ceiling was reached.
+     */
+    default void onJobSkipped(ImageJob job, String reason) {
+    }
+
+    default void onQueueFinished(ImageJobQueue.Summary summary) {
+    }
+}
@@ -0,0 +1,324 @@
+package com.hibana.samples.images;
+
+import com.hibana.samples.client.BalanceClient;
+import com.hibana.samples.threads.ThreadMode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs large batches of image prompts.
+ *
+ * <ul>
+ *   <li>At most {@code concurrency} generations run at once.</li>
+ *   <li>Starts are spaced to respect an images-per-minute limit.</li>
+ *   <li>Each job reserves {@code costPerImage} from a budget before it starts;
+ *       the budget is the lower of an explicit ceiling and the live balance
+ *       (minus a reserve). A job that does not fit is skipped; a failed
+ *       job's reservation is refunded for the jobs after it.</li>
+ *   <li>Progress is appended to a journal so an interrupted run can be
+ *       resumed without paying for finished images again. The journal
+ *       also keeps what each finished image cost, and a resumed run's
+ *       ceiling is what earlier runs left of it. If a finished image
+ *       cannot be recorded, the run stops with an {@link IOException}
+ *       rather than pay for images a resume would not know about.</li>
+ * </ul>
+ */
+public class ImageJobQueue {
+
+    /**
+     * Produces the image for a job, e.g. {@code CachedImageGenerator} or a
+     * plain generate-and-download call.
+     */
+    public interface Generator {
+        Path generate(ImageJob job) throws IOException;
+    }
+
+    private final Generator generator;
+    private final int concurrency;
+    private final long intervalNanos;
+    private final long costPerImage;
+    private final long costCeiling;
+    private final BalanceClient balanceClient;
+    private final long balanceReserve;
+    private final Path journalFile;
+    private final ImageJobListener listener;
+
+    private long nextStartNanos;
+
+    private ImageJobQueue(Builder builder) {
+        this.generator = builder.generator;
+        this.concurrency = builder.concurrency;
+        this.intervalNanos = builder.imagesPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / builder.imagesPerMinute : 0;
+        this.costPerImage = builder.costPerImage;
+        this.costCeiling = builder.costCeiling;
+        this.balanceClient = builder.balanceClient;
+        this.balanceReserve = builder.balanceReserve;
+        this.journalFile = builder.journalFile;
+        this.listener = builder.listener;
+    }
+
+    public static Builder builder(Generator generator) {
+        return new Builder(generator);
+    }
+
+    /**
+     * Run all jobs and block until every one has completed, failed or been skipped.
+     */
+    public Summary run(List<ImageJob> jobs) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Summary summary;
+
+        try (ImageJobJournal journal = new ImageJobJournal(journalFile)) {
+            // The live balance already reflects earlier runs; the ceiling does not
+            long budget = Math.max(0, costCeiling - journal.spent());
+            if (balanceClient != null) {
+                budget = Math.min(budget, Math.max(0, balanceClient.fetchBalance() - balanceReserve));
+            }
+            summary = new Summary(budget);
+
+            Queue<ImageJob> pending = new ConcurrentLinkedQueue<>();
+            for (ImageJob job : jobs) {
+                if (journal.isCompleted(job.id())) {
+                    summary.alreadyDone.incrementAndGet();
+                } else {
+                    pending.add(job);
+                }
+            }
+
+            ExecutorService workers = Executors.newFixedThreadPool(concurrency, ThreadMode.configured().threadFactory("image-worker"));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < concurrency; i++) {
+                    futures.add(workers.submit(() -> {
+                        work(pending, journal, summary);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IOException("Image worker failed", e.getCause());
+                    }
+                }
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+
+        summary.elapsedNanos = System.nanoTime() - start;
+        listener.onQueueFinished(summary);
+        return summary;
+    }
+
+    private void work(Queue<ImageJob> pending, ImageJobJournal journal, Summary summary)
+            throws IOException, InterruptedException {
+        ImageJob job;
+        while ((job = pending.poll()) != null) {
+            if (!summary.reserve(costPerImage)) {
+                summary.skipped.incrementAndGet();
+                listener.onJobSkipped(job, "cost ceiling of " + summary.budget + " reached");
+                continue;
+            }
+
+            awaitRateSlot();
+
+            Path image;
+            try {
+                image = generator.generate(job);
+            } catch (IOException | RuntimeException e) {
+                summary.refund(costPerImage);
+                summary.failed.incrementAndGet();
+                try {
+                    journal.recordFailed(job.id(), e.getMessage());
+                } catch (IOException journalError) {
+                    // Failed jobs are retried on resume whether recorded or not
+                    e.addSuppressed(journalError);
+                }
+                listener.onJobFailed(job, e);
+                continue;
+            }
+
+            // Generated and paid for, so it is neither refunded nor failed
+            summary.completed.incrementAndGet();
+            try {
+                journal.recordDone(job.id(), costPerImage, image);
+            } finally {
+                listener.onJobCompleted(job, image);
+            }
+        }
+    }
+
+    private void awaitRateSlot() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextStartNanos);
+            nextStartNanos = slot + intervalNanos;
+            wait = slot - now;
+        }
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Counters for a run; also passed to {@link ImageJobListener#onQueueFinished}.
+     */
+    public static class Summary {
+        private final long budget;
+        private final AtomicLong spent = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong alreadyDone = new AtomicLong();
+        private volatile long elapsedNanos;
+
+        Summary(long budget) {
+            this.budget = budget;
+        }
+
+        /**
+         * Reserve {@code cost} if it still fits. Checked for every job, so
+         * the budget refunded by a failed job is used by the jobs after it.
+         */
+        boolean reserve(long cost) {
+            long current;
+            do {
+                current = spent.get();
+                if (current + cost > budget) {
+                    return false;
+                }
+            } while (!spent.compareAndSet(current, current + cost));
+            return true;
+        }
+
+        void refund(long cost) {
+            spent.addAndGet(-cost);
+        }
+
+        /**
+         * What this run could spend: the ceiling less what earlier runs
+         * spent, capped by the balance.
+         */
+        public long budget() {
+            return budget;
+        }
+
+        public long spent() {
+            return spent.get();
+        }
+
+        public long completed() {
+            return completed.get();
+        }
+
+        public long failed() {
+            return failed.get();
+        }
+
+        public long skipped() {
+            return skipped.get();
+        }
+
+        /**
+         * Jobs found as DONE in the journal and not run again.
+         */
+        public long alreadyDone() {
+            return alreadyDone.get();
+        }
+
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d completed, %d failed, %d skipped, %d already done; spent %,d of %,d Rials in %.1f s",
+                    completed(), failed(), skipped(), alreadyDone(), spent(), budget, elapsedNanos / 1e9);
+        }
+    }
+
+    public static class Builder {
+        private final Generator generator;
+        private int concurrency = 4;
+        private int imagesPerMinute;
+        private long costPerImage = CachedImageGenerator.DALL_E_3_COST;
+        private long costCeiling = Long.MAX_VALUE;
+        private BalanceClient balanceClient;
+        private long balanceReserve;
+        private Path journalFile = Path.of("image-jobs.journal");
+        private ImageJobListener listener = new ImageJobListener() { };
+
+        private Builder(Generator generator) {
+            this.generator = generator;
+        }
+
+        public Builder concurrency(int concurrency) {
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Maximum generations started per minute; 0 for no limit.
+         */
+        public Builder imagesPerMinute(int imagesPerMinute) {
+            this.imagesPerMinute = imagesPerMinute;
+            return this;
+        }
+
+        public Builder costPerImage(long costPerImage) {
+            this.costPerImage = costPerImage;
+            return this;
+        }
+
+        /**
+         * Hard limit on the total cost of the jobs, including what earlier
+         * runs with the same journal spent.
+         */
+        public Builder costCeiling(long costCeiling) {
+            this.costCeiling = costCeiling;
+            return this;
+        }
+
+        /**
+         * Also cap the run by the live wallet balance, keeping {@code reserve} untouched.
+         */
+        public Builder balance(BalanceClient balanceClient, long reserve) {
+            this.balanceClient = balanceClient;
+            this.balanceReserve = reserve;
+            return this;
+        }
+
+        public Builder journal(Path journalFile) {
+            this.journalFile = journalFile;
+            return this;
+        }
+
+        public Builder listener(ImageJobListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public ImageJobQueue build() {
+            if (concurrency < 1) {
+                throw new IllegalArgumentException("concurrency must be at least 1");
+            }
+            return new ImageJobQueue(this);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.hibana.samples.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One API call, from the first attempt to the response (or the end of the
+ * stream). The event's start time and duration place the call on the same
+ * timeline as GC pauses, safepoints and thread stalls in the recording.
+ */
+@Name("hibana.ApiCall")
+@Label("API Call")
+@Category({"Hibana", "API"})
+@Description("Chat completion call, including retries and, for streams, reading the whole stream")
+public class ApiCallEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Operation")
+    @Description("create or stream")
+    public String operation;
+
+    @Label("Status")
+    @Description("HTTP status of the last attempt; 0 when no response was received")
+    public int status;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Prompt Tokens")
+    public long promptTokens;
+
+    @Label("Completion Tokens")
+    public long completionTokens;
+
+    @Label("Chunks")
+    @Description("Stream chunks read; 0 for non-streaming calls")
+    public long chunks;
+
+    @Label("Time to First Chunk")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeToFirstChunk;
+
+    @Label("Content Length")
+    @Description("UTF-16 characters of content received")
+    public long contentLength;
+
+    @Label("Error")
+    @Description("Exception type of a failed call; Cancelled for a stream closed before its end")
+    public String error;
+}
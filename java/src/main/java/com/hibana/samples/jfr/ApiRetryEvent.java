@@ -0,0 +1,35 @@
+package com.hibana.samples.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A failed attempt that is about to be retried. The event covers the
+ * backoff sleep, so its duration is the delay added by the retry.
+ */
+@Name("hibana.ApiRetry")
+@Label("API Retry")
+@Category({"Hibana", "API"})
+@Description("Failed attempt followed by a backoff before the next one")
+public class ApiRetryEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Attempt")
+    @Description("Number of the attempt that failed, starting at 1")
+    public int attempt;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Error")
+    public String error;
+
+    @Label("Backoff")
+    @Timespan(Timespan.MILLISECONDS)
+    public long backoff;
+}
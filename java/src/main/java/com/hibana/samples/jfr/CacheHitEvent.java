@@ -0,0 +1,31 @@
+package com.hibana.samples.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A request answered without calling the API.
+ */
+@Name("hibana.CacheHit")
+@Label("Cache Hit")
+@Category({"Hibana", "Cache"})
+@Description("Request served from a local cache or by waiting on an identical in-flight request")
+@StackTrace(false)
+public class CacheHitEvent extends jdk.jfr.Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Model")
+    public String model;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Coalesced")
+    @Description("True when the request waited on an identical in-flight call instead of reading the cache")
+    public boolean coalesced;
+}
@@ -0,0 +1,37 @@
+package com.hibana.samples.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Arrival of a stream chunk. Only the first chunk and every Nth one after
+ * it are recorded, so long streams stay cheap; gaps between the sampled
+ * chunks show where the stream stalled.
+ */
+@Name("hibana.StreamChunk")
+@Label("Stream Chunk")
+@Category({"Hibana", "API"})
+@Description("Sampled chat completion stream chunk")
+@StackTrace(false)
+public class StreamChunkEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Index")
+    @Description("Position of the chunk in the stream, starting at 0")
+    public long index;
+
+    @Label("Since Start")
+    @Description("Time since the call started")
+    @Timespan(Timespan.NANOSECONDS)
+    public long sinceStart;
+
+    @Label("Content Length")
+    @Description("UTF-16 characters of content in this chunk")
+    public int contentLength;
+}
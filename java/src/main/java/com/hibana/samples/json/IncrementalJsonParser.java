@@ -0,0 +1,312 @@
+package com.hibana.samples.json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Incremental parser for JSON documents that arrive in pieces, such as the
+ * content deltas of a streamed JSON-mode completion.
+ *
+ * Every character is scanned exactly once. Each top-level field value and
+ * each element of a top-level array is captured on its own and handed to
+ * Gson only when it closes, so the full document is never re-parsed.
+ * The root may be an object or an array. Parsing is strict: trailing
+ * commas, unquoted strings and other lenient-mode extensions are rejected.
+ *
+ * Instances are not thread-safe; feed them from the thread consuming the stream.
+ */
+public class IncrementalJsonParser {
+
+    private enum State {
+        ROOT,
+        KEY_OR_END,
+        KEY,
+        COLON,
+        VALUE,
+        NESTED,
+        SCALAR,
+        ELEMENT_OR_END,
+        FIELD_COMMA_OR_END,
+        ELEMENT_COMMA_OR_END,
+        DONE
+    }
+
+    private static final TypeAdapter<JsonElement> ELEMENTS = new Gson().getAdapter(JsonElement.class);
+
+    private final JsonStreamListener listener;
+
+    private State state = State.ROOT;
+    private final StringBuilder key = new StringBuilder();
+    private final StringBuilder capture = new StringBuilder();
+    private boolean keyEscaped;
+    private int nesting;
+    private boolean inString;
+    private boolean escaped;
+    /** A comma was just consumed, so a closing bracket would leave a trailing comma. */
+    private boolean afterComma;
+
+    private JsonObject rootObject;
+    private JsonArray currentArray;
+    private String currentField;
+    private boolean inArray;
+    private long position;
+
+    public IncrementalJsonParser(JsonStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feed the next piece of the document.
+     */
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+            position++;
+        }
+    }
+
+    /**
+     * Signal the end of input.
+     *
+     * @return the completed root value
+     * @throws JsonParseException if the document was not closed
+     */
+    public JsonElement finish() {
+        if (state != State.DONE) {
+            throw new JsonParseException("JSON document ended before it was complete (at character " + position + ")");
+        }
+        return rootObject != null ? rootObject : currentArray;
+    }
+
+    public boolean isComplete() {
+        return state == State.DONE;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case ROOT:
+                if (c == '{') {
+                    rootObject = new JsonObject();
+                    state = State.KEY_OR_END;
+                } else if (c == '[') {
+                    startArray(null);
+                } else if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+
+            case KEY_OR_END:
+                if (c == '"') {
+                    afterComma = false;
+                    key.setLength(0);
+                    keyEscaped = false;
+                    escaped = false;
+                    state = State.KEY;
+                } else if (c == '}' && !afterComma) {
+                    complete(rootObject);
+                } else if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+
+            case KEY:
+                if (escaped) {
+                    escaped = false;
+                    key.append(c);
+                } else if (c == '\\') {
+                    escaped = true;
+                    keyEscaped = true;
+                    key.append(c);
+                } else if (c == '"') {
+                    currentField = keyEscaped ? parse("\"" + key + "\"").getAsString() : key.toString();
+                    state = State.COLON;
+                } else {
+                    key.append(c);
+                }
+                break;
+
+            case COLON:
+                if (c == ':') {
+                    state = State.VALUE;
+                } else if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+
+            case VALUE:
+                if (c == '[') {
+                    startArray(currentField);
+                } else if (!Character.isWhitespace(c)) {
+                    startValue(c);
+                }
+                break;
+
+            case ELEMENT_OR_END:
+                if (c == ']' && !afterComma) {
+                    endArray();
+                } else if (!Character.isWhitespace(c)) {
+                    startValue(c);
+                }
+                break;
+
+            case NESTED:
+                capture.append(c);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                        if (nesting == 0) {
+                            completeValue();
+                        }
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    nesting++;
+                } else if (c == '}' || c == ']') {
+                    if (--nesting == 0) {
+                        completeValue();
+                    }
+                }
+                break;
+
+            case SCALAR:
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    completeValue();
+                    accept(c);
+                } else {
+                    capture.append(c);
+                }
+                break;
+
+            case FIELD_COMMA_OR_END:
+                if (c == ',') {
+                    afterComma = true;
+                    state = State.KEY_OR_END;
+                } else if (c == '}') {
+                    complete(rootObject);
+                } else if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+
+            case ELEMENT_COMMA_OR_END:
+                if (c == ',') {
+                    afterComma = true;
+                    state = State.ELEMENT_OR_END;
+                } else if (c == ']') {
+                    endArray();
+                } else if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+
+            case DONE:
+                if (!Character.isWhitespace(c)) {
+                    throw unexpected(c);
+                }
+                break;
+        }
+    }
+
+    private void startArray(String field) {
+        currentField = field;
+        currentArray = new JsonArray();
+        inArray = true;
+        afterComma = false;
+        state = State.ELEMENT_OR_END;
+    }
+
+    private void endArray() {
+        inArray = false;
+        if (rootObject == null) {
+            complete(currentArray);
+            return;
+        }
+        rootObject.add(currentField, currentArray);
+        listener.onField(currentField, currentArray);
+        currentArray = null;
+        state = State.FIELD_COMMA_OR_END;
+    }
+
+    private void startValue(char c) {
+        if (c == ',' || c == '}' || c == ']') {
+            // A missing value, or a trailing comma before a closing bracket
+            throw unexpected(c);
+        }
+        afterComma = false;
+        capture.setLength(0);
+        capture.append(c);
+        escaped = false;
+        if (c == '{' || c == '[') {
+            nesting = 1;
+            inString = false;
+            state = State.NESTED;
+        } else if (c == '"') {
+            nesting = 0;
+            inString = true;
+            state = State.NESTED;
+        } else {
+            state = State.SCALAR;
+        }
+    }
+
+    private void completeValue() {
+        JsonElement value;
+        try {
+            value = parse(capture.toString());
+        } catch (JsonParseException e) {
+            throw new JsonParseException("Invalid JSON value near character " + position + ": " + capture, e);
+        }
+        capture.setLength(0);
+
+        if (inArray) {
+            int index = currentArray.size();
+            currentArray.add(value);
+            listener.onArrayElement(currentField, index, value);
+            state = State.ELEMENT_COMMA_OR_END;
+        } else {
+            rootObject.add(currentField, value);
+            listener.onField(currentField, value);
+            state = State.FIELD_COMMA_OR_END;
+        }
+    }
+
+    private void complete(JsonElement root) {
+        state = State.DONE;
+        listener.onComplete(root);
+    }
+
+    /**
+     * Parse one captured value with a strict reader; JsonParser always
+     * parses leniently, accepting e.g. {@code yes} as the string "yes".
+     */
+    private static JsonElement parse(String json) {
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            JsonElement value = ELEMENTS.read(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("Unexpected content after the value");
+            }
+            return value;
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        }
+    }
+
+    private JsonParseException unexpected(char c) {
+        return new JsonParseException("Unexpected character '" + c + "' at position " + position + " (state " + state + ")");
+    }
+}
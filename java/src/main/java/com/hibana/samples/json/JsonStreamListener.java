@@ -0,0 +1,36 @@
+package com.hibana.samples.json;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Receives events from {@link IncrementalJsonParser} as parts of a
+ * streamed JSON document are completed.
+ *
+ * All methods have empty defaults so callers only implement the events
+ * they care about.
+ */
+public interface JsonStreamListener {
+
+    /**
+     * Called when a top-level field of the root object has been fully received.
+     * For array fields this fires after the closing bracket, with the array
+     * assembled from the elements already reported.
+     */
+    default void onField(String name, JsonElement value) {
+    }
+
+    /**
+     * Called as soon as an element of a top-level array closes.
+     *
+     * @param field the owning field name, or {@code null} when the root itself is an array
+     * @param index zero-based position of the element in the array
+     */
+    default void onArrayElement(String field, int index, JsonElement element) {
+    }
+
+    /**
+     * Called once when the root value has been closed.
+     */
+    default void onComplete(JsonElement root) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.hibana.samples.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a structured-output type as optional.
+ *
+ * Fields without this annotation are listed as required in the generated
+ * schema and must be present and non-null in the model's output; this
+ * holds for primitive fields too.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface OptionalField {
+}
@@ -0,0 +1,42 @@
+package com.hibana.samples.json;
+
+import com.google.gson.JsonElement;
+import com.openai.client.OpenAIClient;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+
+import java.util.stream.Stream;
+
+/**
+ * Streaming JSON mode: runs a streamed chat completion and feeds every
+ * content delta into an {@link IncrementalJsonParser}, so fields and array
+ * elements can be acted on before the completion finishes.
+ *
+ * The params should request JSON output (responseFormat JSON_OBJECT) and
+ * have streaming enabled.
+ */
+public final class StreamingJsonCompletion {
+
+    private StreamingJsonCompletion() {
+    }
+
+    /**
+     * Stream a JSON-mode completion, reporting completed parts to the listener.
+     *
+     * @return the complete JSON document
+     * @throws com.google.gson.JsonParseException if the model produced invalid or truncated JSON
+     */
+    public static JsonElement stream(OpenAIClient client, ChatCompletionCreateParams params, JsonStreamListener listener) {
+        IncrementalJsonParser parser = new IncrementalJsonParser(listener);
+
+        try (Stream<ChatCompletionChunk> stream = client.chat().completions().createStreaming(params)) {
+            stream.forEach(chunk -> {
+                if (chunk.choices() != null && !chunk.choices().isEmpty()) {
+                    chunk.choices().get(0).delta().content().ifPresent(parser::feed);
+                }
+            });
+        }
+
+        return parser.finish();
+    }
+}
@@ -0,0 +1,121 @@
+package com.hibana.samples.json;
+
+import com.openai.client.OpenAIClient;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+import com.openai.models.ChatCompletionMessage;
+import com.openai.models.ResponseFormatJsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Typed JSON mode: asks the model for a JSON object matching a Java type
+ * and returns it bound to that type.
+ *
+ * The schema of the type is sent with the request and the reply is bound
+ * through the cached {@link TypedBinder}. When the reply is invalid, the
+ * model is shown its own output together with the exact problems found and
+ * asked to fix them, up to {@code maxRepairAttempts} times.
+ *
+ * Example:
+ * <pre>
+ * Order order = StructuredOutput.of(Order.class).create(client, "gpt-5-nano", text);
+ * </pre>
+ */
+public final class StructuredOutput<T> {
+
+    private final TypedBinder<T> binder;
+    private final String schemaInstruction;
+    private int maxRepairAttempts = 2;
+    private double temperature = 0.3;
+    private long maxTokens = 10000L;
+
+    private StructuredOutput(TypedBinder<T> binder) {
+        this.binder = binder;
+        this.schemaInstruction = "Respond only with a JSON object that matches this JSON schema exactly. "
+                + "Include every required field and no other fields.\nSchema: " + binder.schema();
+    }
+
+    public static <T> StructuredOutput<T> of(Class<T> type) {
+        return new StructuredOutput<>(TypedBinder.forType(type));
+    }
+
+    public StructuredOutput<T> maxRepairAttempts(int maxRepairAttempts) {
+        this.maxRepairAttempts = maxRepairAttempts;
+        return this;
+    }
+
+    public StructuredOutput<T> temperature(double temperature) {
+        this.temperature = temperature;
+        return this;
+    }
+
+    public StructuredOutput<T> maxTokens(long maxTokens) {
+        this.maxTokens = maxTokens;
+        return this;
+    }
+
+    /**
+     * Request a typed result for a single user message.
+     *
+     * @throws StructuredOutputException if the output is still invalid after all repair attempts
+     */
+    public T create(OpenAIClient client, String model, String userMessage) {
+        List<ChatCompletionMessage> messages = new ArrayList<>();
+        messages.add(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                        .content(userMessage)
+                        .build()
+        ));
+        return create(client, model, messages);
+    }
+
+    /**
+     * Request a typed result for a conversation. The schema instruction is
+     * added as a system message ahead of the given messages.
+     */
+    public T create(OpenAIClient client, String model, List<ChatCompletionMessage> conversation) {
+        List<ChatCompletionMessage> messages = new ArrayList<>();
+        messages.add(ChatCompletionMessage.ofChatCompletionSystemMessageParam(
+                ChatCompletionMessage.ChatCompletionSystemMessageParam.builder()
+                        .content(schemaInstruction)
+                        .build()
+        ));
+        messages.addAll(conversation);
+
+        for (int attempt = 0; ; attempt++) {
+            ChatCompletionCreateParams params = ChatCompletionCreateParams.builder()
+                    .model(model)
+                    .addAllMessages(messages)
+                    .responseFormat(ResponseFormatJsonObject.builder().type(ResponseFormatJsonObject.Type.JSON_OBJECT).build())
+                    .temperature(temperature)
+                    .maxTokens(maxTokens)
+                    .build();
+
+            ChatCompletion response = client.chat().completions().create(params);
+            String output = response.choices().get(0).message().content().orElse("");
+
+            try {
+                return binder.bind(output);
+            } catch (StructuredOutputException e) {
+                if (attempt >= maxRepairAttempts) {
+                    throw e;
+                }
+
+                // Targeted repair: show the model its output and exactly what was wrong with it
+                messages.add(ChatCompletionMessage.ofChatCompletionAssistantMessageParam(
+                        ChatCompletionMessage.ChatCompletionAssistantMessageParam.builder()
+                                .content(output)
+                                .build()
+                ));
+                messages.add(ChatCompletionMessage.ofChatCompletionUserMessageParam(
+                        ChatCompletionMessage.ChatCompletionUserMessageParam.builder()
+                                .content("Your JSON was invalid:\n- " + String.join("\n- ", e.problems())
+                                        + "\nReturn the corrected JSON object only.")
+                                .build()
+                ));
+            }
+        }
+    }
+}
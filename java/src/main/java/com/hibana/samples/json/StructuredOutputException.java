@@ -0,0 +1,37 @@
+package com.hibana.samples.json;
+
+import java.util.List;
+
+/**
+ * Thrown when a JSON-mode response cannot be bound to the requested type,
+ * either because it is not valid JSON or because it does not match the schema.
+ */
+public class StructuredOutputException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // List.copyOf returns a serializable list
+    @SuppressWarnings("serial")
+    private final List<String> problems;
+    private final String rawOutput;
+
+    public StructuredOutputException(List<String> problems, String rawOutput) {
+        super("Structured output did not match schema: " + String.join("; ", problems));
+        this.problems = List.copyOf(problems);
+        this.rawOutput = rawOutput;
+    }
+
+    /**
+     * The individual validation problems, suitable for a repair prompt.
+     */
+    public List<String> problems() {
+        return problems;
+    }
+
+    /**
+     * The text the model returned.
+     */
+    public String rawOutput() {
+        return rawOutput;
+    }
+}
@@ -0,0 +1,495 @@
+package com.hibana.samples.json;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Binds JSON-mode output to a Java type.
+ *
+ * A binder is compiled once per type and cached: the JSON schema sent to
+ * the model and a TypeAdapter with a setter handle and a value reader for
+ * every field are all resolved up front. Binding reads straight from a
+ * JsonReader into the target object without building an intermediate
+ * JSON tree, and validates in the same pass: the adapter notes which
+ * fields it saw, so missing required fields (primitives included) and
+ * fields the schema does not allow are reported without walking the
+ * result again.
+ *
+ * Field names follow Gson's lower_case_with_underscores policy unless a
+ * field carries {@link SerializedName}. Types bound field by field need a
+ * no-argument constructor; other field types are read with Gson's adapters.
+ */
+public final class TypedBinder<T> {
+
+    private static final Gson GSON = new GsonBuilder()
+            .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+            .create();
+
+    private static final Map<Class<?>, TypedBinder<?>> CACHE = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final ObjectAdapter<T> adapter;
+    private final JsonObject schema;
+
+    private TypedBinder(Class<T> type) {
+        this.type = type;
+        this.adapter = new ObjectAdapter<>(type);
+        this.schema = rootSchema(type);
+    }
+
+    /**
+     * Get the compiled binder for a type, compiling it on first use.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TypedBinder<T> forType(Class<T> type) {
+        return (TypedBinder<T>) CACHE.computeIfAbsent(type, TypedBinder::new);
+    }
+
+    public Class<T> type() {
+        return type;
+    }
+
+    /**
+     * JSON schema describing the type, for inclusion in the request.
+     */
+    public JsonObject schema() {
+        return schema.deepCopy();
+    }
+
+    /**
+     * The validating adapter, e.g. to register with a GsonBuilder. Its
+     * {@code read} throws {@link JsonParseException} listing the problems.
+     */
+    public TypeAdapter<T> adapter() {
+        return adapter;
+    }
+
+    /**
+     * Parse and validate a JSON document.
+     *
+     * @throws StructuredOutputException if the text is not valid JSON or fails validation
+     */
+    public T bind(String json) {
+        List<String> problems = new ArrayList<>();
+        T value;
+        try {
+            JsonReader reader = new JsonReader(new StringReader(json));
+            value = adapter.read(reader, "", problems);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonParseException("Unexpected content after the JSON object");
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            String message = String.valueOf(e.getMessage()).replace("Use JsonReader.setLenient(true) to accept ", "");
+            throw new StructuredOutputException(List.of("invalid JSON: " + message), json);
+        }
+
+        if (value == null) {
+            problems.add("expected a JSON object but got null");
+        }
+        if (!problems.isEmpty()) {
+            throw new StructuredOutputException(problems, json);
+        }
+        return value;
+    }
+
+    private static String path(String parent, String name) {
+        return parent.isEmpty() ? name : parent + "." + name;
+    }
+
+    /**
+     * Reads one JSON value, adding what is wrong with it to {@code problems}.
+     */
+    private interface ValueReader {
+        Object read(JsonReader in, String path, List<String> problems) throws IOException;
+    }
+
+    private static ValueReader valueReader(Type type) {
+        if (type instanceof Class && isBindable((Class<?>) type)) {
+            return new NestedReader((Class<?>) type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            Type element = parameterized.getActualTypeArguments()[0];
+            if (Collection.class.isAssignableFrom(raw) && element instanceof Class && isBindable((Class<?>) element)) {
+                if (raw.isAssignableFrom(ArrayList.class)) {
+                    return new CollectionReader(ArrayList::new, new NestedReader((Class<?>) element));
+                }
+                if (raw.isAssignableFrom(LinkedHashSet.class)) {
+                    return new CollectionReader(LinkedHashSet::new, new NestedReader((Class<?>) element));
+                }
+            }
+        }
+        TypeAdapter<?> gsonAdapter = GSON.getAdapter(TypeToken.get(type));
+        return (in, path, problems) -> gsonAdapter.read(in);
+    }
+
+    /**
+     * A field of a bindable type; resolved on first use, since types may
+     * refer to each other (or themselves).
+     */
+    private static final class NestedReader implements ValueReader {
+        private final Class<?> type;
+        private volatile ObjectAdapter<?> adapter;
+
+        NestedReader(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object read(JsonReader in, String path, List<String> problems) throws IOException {
+            ObjectAdapter<?> resolved = adapter;
+            if (resolved == null) {
+                resolved = forType(type).adapter;
+                adapter = resolved;
+            }
+            return resolved.read(in, path, problems);
+        }
+    }
+
+    private static final class CollectionReader implements ValueReader {
+        private final Supplier<Collection<Object>> factory;
+        private final ValueReader elements;
+
+        CollectionReader(Supplier<Collection<Object>> factory, ValueReader elements) {
+            this.factory = factory;
+            this.elements = elements;
+        }
+
+        @Override
+        public Object read(JsonReader in, String path, List<String> problems) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Collection<Object> collection = factory.get();
+            in.beginArray();
+            for (int i = 0; in.hasNext(); i++) {
+                String elementPath = path + "[" + i + "]";
+                Object element = elements.read(in, elementPath, problems);
+                if (element == null) {
+                    problems.add("null element at '" + elementPath + "'");
+                } else {
+                    collection.add(element);
+                }
+            }
+            in.endArray();
+            return collection;
+        }
+    }
+
+    /**
+     * Reads an object of one type field by field, noting which fields it
+     * saw so required and unknown fields are checked in the same pass.
+     */
+    private static final class ObjectAdapter<T> extends TypeAdapter<T> {
+        private final Class<T> type;
+        private final MethodHandle constructor;
+        private final Property[] properties;
+        private final Map<String, Property> byName = new HashMap<>();
+
+        ObjectAdapter(Class<T> type) {
+            this.type = type;
+            try {
+                Constructor<T> noArgs = type.getDeclaredConstructor();
+                noArgs.setAccessible(true);
+                this.constructor = MethodHandles.lookup().unreflectConstructor(noArgs)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException(type.getName() + " needs a no-argument constructor to be bound", e);
+            }
+
+            List<Field> fields = fields(type);
+            this.properties = new Property[fields.size()];
+            for (int i = 0; i < properties.length; i++) {
+                Field field = fields.get(i);
+                properties[i] = new Property(i, field);
+                byName.put(properties[i].jsonName, properties[i]);
+            }
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            List<String> problems = new ArrayList<>();
+            T value = read(in, "", problems);
+            if (!problems.isEmpty()) {
+                throw new JsonParseException(String.join("; ", problems));
+            }
+            return value;
+        }
+
+        T read(JsonReader in, String path, List<String> problems) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Object instance = invoke(constructor, null, null);
+            boolean[] seen = new boolean[properties.length];
+
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                Property property = byName.get(name);
+                if (property == null) {
+                    problems.add("unknown field '" + path(path, name) + "'");
+                    in.skipValue();
+                    continue;
+                }
+                Object value = property.reader.read(in, path(path, name), problems);
+                if (value != null) {
+                    seen[property.index] = true;
+                    invoke(property.setter, instance, value);
+                }
+            }
+            in.endObject();
+
+            for (Property property : properties) {
+                if (property.required && !seen[property.index]) {
+                    problems.add("missing required field '" + path(path, property.jsonName) + "'");
+                }
+            }
+            return type.cast(instance);
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            GSON.getAdapter(type).write(out, value);
+        }
+
+        private static Object invoke(MethodHandle handle, Object target, Object value) {
+            try {
+                if (target == null) {
+                    return (Object) handle.invokeExact();
+                }
+                handle.invokeExact(target, value);
+                return null;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+    }
+
+    private static final class Property {
+        final int index;
+        final String jsonName;
+        final boolean required;
+        final ValueReader reader;
+        /** (Object target, Object value) -> void; unboxes for primitive fields. */
+        final MethodHandle setter;
+
+        Property(int index, Field field) {
+            this.index = index;
+            this.jsonName = jsonName(field);
+            this.required = !field.isAnnotationPresent(OptionalField.class);
+            this.reader = valueReader(field.getGenericType());
+            try {
+                field.setAccessible(true);
+                this.setter = MethodHandles.lookup().unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Cannot bind " + field, e);
+            }
+        }
+    }
+
+    private static boolean isBindable(Class<?> type) {
+        return !type.isPrimitive()
+                && !type.isInterface()
+                && !Modifier.isAbstract(type.getModifiers())
+                && !type.isEnum()
+                && !type.isArray()
+                && !type.getName().startsWith("java.")
+                && !Collection.class.isAssignableFrom(type)
+                && !Map.class.isAssignableFrom(type);
+    }
+
+    private static List<Field> fields(Class<?> type) {
+        List<Field> result = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    result.add(field);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String jsonName(Field field) {
+        SerializedName name = field.getAnnotation(SerializedName.class);
+        return name != null ? name.value() : GSON.fieldNamingStrategy().translateName(field);
+    }
+
+    /**
+     * Schema of {@code type}. Types that refer back to one being expanded
+     * (a tree node's children, two types naming each other) become a
+     * {@code $ref}: to the root as {@code "#"}, to others through an entry
+     * in the root's {@code $defs}.
+     */
+    private static JsonObject rootSchema(Class<?> type) {
+        SchemaContext context = new SchemaContext(type);
+        JsonObject schema = objectSchema(type, context);
+        if (context.defs.size() > 0) {
+            schema.add("$defs", context.defs);
+        }
+        return schema;
+    }
+
+    private static JsonObject objectSchema(Class<?> type, SchemaContext context) {
+        if (type != context.root && context.names.containsKey(type) && !context.expanding.contains(type)) {
+            // Already in $defs
+            return context.ref(type);
+        }
+        if (!context.expanding.add(type)) {
+            return context.ref(type);
+        }
+        JsonObject properties = new JsonObject();
+        JsonArray required = new JsonArray();
+
+        for (Field field : fields(type)) {
+            String name = jsonName(field);
+            properties.add(name, schemaFor(field.getGenericType(), context));
+            if (!field.isAnnotationPresent(OptionalField.class)) {
+                required.add(name);
+            }
+        }
+
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+        schema.add("properties", properties);
+        schema.add("required", required);
+        schema.addProperty("additionalProperties", false);
+        context.expanding.remove(type);
+
+        if (type != context.root && context.names.containsKey(type)) {
+            context.defs.add(context.names.get(type), schema);
+            return context.ref(type);
+        }
+        return schema;
+    }
+
+    private static JsonObject schemaFor(Type type, SchemaContext context) {
+        JsonObject schema = new JsonObject();
+
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            if (Collection.class.isAssignableFrom(raw)) {
+                schema.addProperty("type", "array");
+                schema.add("items", schemaFor(parameterized.getActualTypeArguments()[0], context));
+                return schema;
+            }
+            if (Map.class.isAssignableFrom(raw)) {
+                schema.addProperty("type", "object");
+                schema.add("additionalProperties", schemaFor(parameterized.getActualTypeArguments()[1], context));
+                return schema;
+            }
+            return schemaFor(raw, context);
+        }
+        if (type instanceof GenericArrayType) {
+            schema.addProperty("type", "array");
+            schema.add("items", schemaFor(((GenericArrayType) type).getGenericComponentType(), context));
+            return schema;
+        }
+        if (!(type instanceof Class)) {
+            return schema;
+        }
+
+        Class<?> c = (Class<?>) type;
+        if (c == String.class || c == char.class || c == Character.class) {
+            schema.addProperty("type", "string");
+        } else if (c == boolean.class || c == Boolean.class) {
+            schema.addProperty("type", "boolean");
+        } else if (c == int.class || c == Integer.class || c == long.class || c == Long.class
+                || c == short.class || c == Short.class || c == byte.class || c == Byte.class) {
+            schema.addProperty("type", "integer");
+        } else if (c.isPrimitive() || Number.class.isAssignableFrom(c)) {
+            schema.addProperty("type", "number");
+        } else if (c.isEnum()) {
+            schema.addProperty("type", "string");
+            JsonArray values = new JsonArray();
+            for (Object constant : c.getEnumConstants()) {
+                values.add(GSON.toJson(constant).replace("\"", ""));
+            }
+            schema.add("enum", values);
+        } else if (c.isArray()) {
+            schema.addProperty("type", "array");
+            schema.add("items", schemaFor(c.getComponentType(), context));
+        } else if (Collection.class.isAssignableFrom(c)) {
+            schema.addProperty("type", "array");
+        } else if (Map.class.isAssignableFrom(c)) {
+            schema.addProperty("type", "object");
+        } else {
+            return objectSchema(c, context);
+        }
+        return schema;
+    }
+
+    /**
+     * The object types being expanded while building one schema, and the
+     * {@code $defs} entries made for those referred to recursively.
+     */
+    private static final class SchemaContext {
+        private final Class<?> root;
+        private final Set<Class<?>> expanding = new HashSet<>();
+        private final Map<Class<?>, String> names = new HashMap<>();
+        private final JsonObject defs = new JsonObject();
+
+        SchemaContext(Class<?> root) {
+            this.root = root;
+        }
+
+        JsonObject ref(Class<?> type) {
+            JsonObject ref = new JsonObject();
+            if (type == root) {
+                ref.addProperty("$ref", "#");
+                return ref;
+            }
+            String name = names.get(type);
+            if (name == null) {
+                name = type.getSimpleName();
+                for (int i = 2; names.containsValue(name); i++) {
+                    name = type.getSimpleName() + i;
+                }
+                names.put(type, name);
+            }
+            ref.addProperty("$ref", "#/$defs/" + name);
+            return ref;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.hibana.samples.limits;
+
+import com.hibana.samples.async.Deadline;
+import com.hibana.samples.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-model concurrency limits that follow the capacity the API has right
+ * now instead of a fixed number.
+ *
+ * <pre>
+ * AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire("gpt-5-nano", Deadline.after(Duration.ofSeconds(5)));
+ * try {
+ *     ChatCompletion response = client.chat().completions().create(params);
+ *     permit.success();
+ * } catch (RateLimitError e) {
+ *     permit.rateLimited();
+ *     throw e;
+ * } catch (RuntimeException e) {
+ *     permit.ignore();
+ *     throw e;
+ * }
+ * </pre>
+ *
+ * The limit is adjusted after every call, gradient-style: a fast-moving
+ * average of latency is the current latency, and the baseline is the
+ * lowest it has been, drifting up slowly when calls stay slower.
+ * While the current latency stays within {@code 1.5x} the baseline the
+ * limit grows by about {@code sqrt(limit)} per window of calls; when it
+ * rises further the limit shrinks in proportion, down to half. A 429
+ * halves the limit at once (at most once per round trip, so a burst of
+ * 429s counts as one). The limit only grows while callers are using at
+ * least half of it.
+ *
+ * Callers over the limit queue in arrival order until a permit frees up or
+ * their deadline passes ({@link QueueTimeoutException}).
+ *
+ * <pre>
+ * hibana_concurrency_limit{model}          current limit
+ * hibana_limiter_queued{model}             callers waiting for a permit
+ * hibana_limiter_wait_seconds{model}       time spent waiting for a permit
+ * hibana_limiter_timeouts_total{model}     callers that gave up waiting
+ * </pre>
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /** Current latency may exceed the baseline by this factor before the limit shrinks. */
+    private static final double LATENCY_TOLERANCE = 1.5;
+    /** How fast the baseline drifts up towards slower calls (about the last 500 calls). */
+    private static final double LONG_SMOOTHING = 0.002;
+    /** Weight of each sample in the current latency (about the last 5 calls). */
+    private static final double SHORT_SMOOTHING = 0.2;
+    private static final double RATE_LIMIT_BACKOFF = 0.5;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final MetricsRegistry registry;
+    private final Map<String, ModelLimit> models = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, MetricsRegistry registry) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Need 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.registry = registry;
+    }
+
+    /**
+     * Start at 10 concurrent calls per model, between 1 and 500.
+     */
+    public AdaptiveConcurrencyLimiter(MetricsRegistry registry) {
+        this(10, 1, 500, registry);
+    }
+
+    /**
+     * Wait for a permit to call {@code model}.
+     *
+     * @throws QueueTimeoutException if {@code deadline} passes first
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    public Permit acquire(String model, Deadline deadline) {
+        return forModel(model).acquire(deadline);
+    }
+
+    public int limit(String model) {
+        return forModel(model).limit();
+    }
+
+    public int inFlight(String model) {
+        return forModel(model).inFlight;
+    }
+
+    public int queued(String model) {
+        return forModel(model).queued;
+    }
+
+    private ModelLimit forModel(String model) {
+        ModelLimit limit = models.get(model);
+        return limit != null ? limit : models.computeIfAbsent(model, ModelLimit::new);
+    }
+
+    /**
+     * Permission to make one call. Report how it went with exactly one of
+     * {@link #success()}, {@link #rateLimited()} or {@link #ignore()}.
+     */
+    public final class Permit {
+        private final ModelLimit owner;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ModelLimit owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * The call succeeded; its latency is a sample for the limit.
+         */
+        public void success() {
+            if (released.compareAndSet(false, true)) {
+                owner.release(System.nanoTime() - startNanos, false);
+            }
+        }
+
+        /**
+         * The call was rejected for lack of capacity (429).
+         */
+        public void rateLimited() {
+            if (released.compareAndSet(false, true)) {
+                owner.release(System.nanoTime() - startNanos, true);
+            }
+        }
+
+        /**
+         * The call failed for a reason that says nothing about capacity
+         * (bad request, auth, network); release without a sample.
+         */
+        public void ignore() {
+            if (released.compareAndSet(false, true)) {
+                owner.release(-1, false);
+            }
+        }
+    }
+
+    private final class ModelLimit {
+        private final String model;
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Condition permitFreed = lock.newCondition();
+
+        private final MetricsRegistry.Gauge limitGauge;
+        private final MetricsRegistry.Gauge queuedGauge;
+        private final MetricsRegistry.Timer waitTimer;
+        private final MetricsRegistry.Counter timeouts;
+
+        private double limit = initialLimit;
+        private int reportedLimit;
+        private int inFlight;
+        private int queued;
+        private double longLatency;
+        private double shortLatency;
+        private long lastBackoffNanos;
+
+        ModelLimit(String model) {
+            this.model = model;
+            this.limitGauge = registry.gauge("hibana_concurrency_limit", "Adaptive concurrency limit", "model", model);
+            this.queuedGauge = registry.gauge("hibana_limiter_queued", "Callers waiting for a permit", "model", model);
+            this.waitTimer = registry.timer("hibana_limiter_wait_seconds", "Time spent waiting for a permit", "model", model);
+            this.timeouts = registry.counter("hibana_limiter_timeouts_total", "Callers that gave up waiting", "model", model);
+            reportLimit();
+        }
+
+        int limit() {
+            return (int) limit;
+        }
+
+        Permit acquire(Deadline deadline) {
+            long start = System.nanoTime();
+            lock.lock();
+            try {
+                // Join the queue behind callers already waiting: a permit freed
+                // for a signalled waiter is not free for a newcomer
+                if (queued > 0 || inFlight >= (int) limit) {
+                    queued++;
+                    queuedGauge.add(1);
+                    boolean admitted = false;
+                    try {
+                        do {
+                            long remaining = deadline.remainingNanos();
+                            if (remaining <= 0) {
+                                timeouts.increment();
+                                throw new QueueTimeoutException(model, System.nanoTime() - start, (int) limit);
+                            }
+                            permitFreed.awaitNanos(remaining);
+                        } while (inFlight >= (int) limit);
+                        admitted = true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new CancellationException("Interrupted while waiting for a " + model + " permit");
+                    } finally {
+                        queued--;
+                        queuedGauge.add(-1);
+                        // Pass on a permit this caller did not need, or one left over, to the next in line
+                        if (queued > 0 && inFlight + (admitted ? 1 : 0) < (int) limit) {
+                            permitFreed.signal();
+                        }
+                    }
+                }
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+            waitTimer.record(System.nanoTime() - start);
+            return new Permit(this);
+        }
+
+        void release(long latencyNanos, boolean rateLimited) {
+            lock.lock();
+            try {
+                int before = (int) limit;
+                if (rateLimited) {
+                    backOff();
+                } else if (latencyNanos > 0) {
+                    sample(latencyNanos);
+                }
+                inFlight--;
+                reportLimit();
+                // A larger limit may admit several waiters
+                if ((int) limit > before) {
+                    permitFreed.signalAll();
+                } else {
+                    permitFreed.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void sample(long latencyNanos) {
+            if (longLatency == 0) {
+                longLatency = latencyNanos;
+                shortLatency = latencyNanos;
+                return;
+            }
+            shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+            // The baseline is latency without queueing: it follows faster calls
+            // quickly (the first calls pay for connection setup and warm-up) and
+            // slower ones only gradually, so sustained overload cannot become normal
+            if (shortLatency < longLatency) {
+                longLatency = shortLatency;
+            } else {
+                longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+            }
+            // Nothing learned about capacity if most of the limit is unused
+            if (inFlight < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, LATENCY_TOLERANCE * longLatency / shortLatency));
+            double target = limit * gradient + Math.sqrt(limit);
+            // Each call moves the limit 1/limit of the way, so it reaches the target
+            // about once per round trip: the latency of a change is only seen then
+            limit = clamp(limit + (target - limit) / limit);
+        }
+
+        private void backOff() {
+            long now = System.nanoTime();
+            // One cut per round trip: the other 429s of the same burst were already in flight
+            if (now - lastBackoffNanos < Math.max(shortLatency, TimeUnit.MILLISECONDS.toNanos(100))) {
+                return;
+            }
+            lastBackoffNanos = now;
+            limit = clamp(limit * RATE_LIMIT_BACKOFF);
+        }
+
+        private double clamp(double value) {
+            return Math.max(minLimit, Math.min(maxLimit, value));
+        }
+
+        private void reportLimit() {
+            int current = (int) limit;
+            limitGauge.add(current - reportedLimit);
+            reportedLimit = current;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.hibana.samples.limits;
+
+/**
+ * A call was not sent because it was expected to take longer than the time
+ * left before its deadline.
+ */
+public class AdmissionRejectedException extends LoadSheddingException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String model;
+    private final long expectedNanos;
+    private final long remainingNanos;
+
+    public AdmissionRejectedException(String model, long expectedNanos, long remainingNanos) {
+        super(String.format("Rejected %s call: expected to take %d ms but only %d ms are left",
+                model, expectedNanos / 1_000_000, remainingNanos / 1_000_000));
+        this.model = model;
+        this.expectedNanos = expectedNanos;
+        this.remainingNanos = remainingNanos;
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public long expectedNanos() {
+        return expectedNanos;
+    }
+
+    public long remainingNanos() {
+        return remainingNanos;
+    }
+}
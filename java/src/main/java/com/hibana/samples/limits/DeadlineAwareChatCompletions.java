@@ -0,0 +1,243 @@
+package com.hibana.samples.limits;
+
+import com.hibana.samples.async.Deadline;
+import com.hibana.samples.metrics.MetricsRegistry;
+import com.openai.client.OpenAIClient;
+import com.openai.core.RequestOptions;
+import com.openai.errors.RateLimitError;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chat completions that only spend tokens on answers the caller will still
+ * wait for. Every call carries a {@link Deadline}:
+ *
+ * <pre>
+ * DeadlineAwareChatCompletions chat = new DeadlineAwareChatCompletions(client, limiter, registry);
+ * try {
+ *     ChatCompletion response = chat.create(params, Deadline.after(Duration.ofSeconds(2)));
+ * } catch (AdmissionRejectedException e) {
+ *     // the model is too slow right now to answer within 2 seconds; nothing was sent
+ * } catch (QueueTimeoutException e) {
+ *     // waited for a concurrency permit until the deadline; nothing was sent
+ * } catch (DeadlineExceededException e) {
+ *     // sent, but cancelled when the deadline passed
+ * }
+ * </pre>
+ *
+ * Before queueing for a permit from the {@link AdaptiveConcurrencyLimiter},
+ * the expected wait plus the expected latency (from {@link LatencyStats}
+ * of recent calls to the same model) is compared with the time left, and
+ * calls that would miss their deadline are rejected at once. The check is
+ * repeated once the permit is granted. While nothing is in flight for a
+ * model, one call is let through regardless, so an estimate made while the
+ * model was slow cannot shut it off for good. Each request is sent with
+ * the time left as its SDK request timeout, so OkHttp abandons the HTTP
+ * call at the deadline and the API stops generating (cancelling the SDK's
+ * future would not: it is derived from the HTTP call's and never reaches
+ * it). A call's permit is held until its request has actually ended, so
+ * a slow model is not sent more calls while the late ones still run.
+ * Build the client with {@code maxRetries(0)}: each SDK retry gets the
+ * full remaining time again. All three failures extend
+ * {@link LoadSheddingException}.
+ *
+ * <pre>
+ * hibana_shed_total{model,reason}    calls dropped: rejected, queue_timeout or deadline_exceeded
+ * </pre>
+ */
+public final class DeadlineAwareChatCompletions {
+
+    private final OpenAIClient client;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final LatencyStats stats;
+    private final MetricsRegistry registry;
+    private final Map<String, ShedCounters> counters = new ConcurrentHashMap<>();
+
+    public DeadlineAwareChatCompletions(OpenAIClient client, AdaptiveConcurrencyLimiter limiter,
+                                        MetricsRegistry registry) {
+        this(client, limiter, new LatencyStats(), registry);
+    }
+
+    /**
+     * @param stats latency estimates to admit calls by; shared instances
+     *              pool what several clients have seen
+     */
+    public DeadlineAwareChatCompletions(OpenAIClient client, AdaptiveConcurrencyLimiter limiter,
+                                        LatencyStats stats, MetricsRegistry registry) {
+        this.client = client;
+        this.limiter = limiter;
+        this.stats = stats;
+        this.registry = registry;
+    }
+
+    public LatencyStats stats() {
+        return stats;
+    }
+
+    /**
+     * @throws AdmissionRejectedException if the call is not expected to finish before {@code deadline}
+     * @throws QueueTimeoutException      if no permit freed up before {@code deadline}
+     * @throws DeadlineExceededException  if the call was cancelled at {@code deadline}
+     * @throws CancellationException      if the thread is interrupted
+     */
+    public ChatCompletion create(ChatCompletionCreateParams params, Deadline deadline) {
+        String model = String.valueOf(params.model());
+        ShedCounters shed = counters(model);
+
+        boolean probe = admit(model, deadline, expectedWaitNanos(model) + stats.expectedNanos(model), shed);
+        try {
+            return send(params, model, deadline, probe, shed);
+        } finally {
+            if (probe) {
+                shed.probing.set(false);
+            }
+        }
+    }
+
+    private ChatCompletion send(ChatCompletionCreateParams params, String model, Deadline deadline,
+                                boolean probe, ShedCounters shed) {
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(model, deadline);
+        } catch (QueueTimeoutException e) {
+            shed.queueTimeout.increment();
+            throw e;
+        }
+        if (!probe) {
+            try {
+                // The wait may have used up more of the budget than expected
+                admit(model, deadline, stats.expectedNanos(model), shed);
+            } catch (AdmissionRejectedException e) {
+                permit.ignore();
+                throw e;
+            }
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<ChatCompletion> call = deadline.isNone()
+                ? client.async().chat().completions().create(params)
+                : client.async().chat().completions().create(params, RequestOptions.builder()
+                        .timeout(Duration.ofNanos(Math.max(1, deadline.remainingNanos())))
+                        .build());
+        try {
+            ChatCompletion completion = deadline.isNone()
+                    ? call.get()
+                    : call.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            stats.record(model, System.nanoTime() - start);
+            permit.success();
+            return completion;
+        } catch (TimeoutException e) {
+            // The request timeout ends the HTTP call at about the same moment
+            releaseWhenDone(call, permit);
+            throw deadlineExceeded(model, start, shed);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (deadline.isExpired() && isTimeout(cause)) {
+                // The request timeout fired before the wait did
+                permit.ignore();
+                throw deadlineExceeded(model, start, shed);
+            }
+            if (cause instanceof RateLimitError) {
+                permit.rateLimited();
+            } else {
+                permit.ignore();
+            }
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+        } catch (InterruptedException e) {
+            releaseWhenDone(call, permit);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a " + model + " completion");
+        }
+    }
+
+    private DeadlineExceededException deadlineExceeded(String model, long start, ShedCounters shed) {
+        long elapsed = System.nanoTime() - start;
+        // Only a lower bound, but without it the stats would never see the calls that were too slow
+        stats.record(model, elapsed);
+        shed.deadlineExceeded.increment();
+        return new DeadlineExceededException(model, elapsed);
+    }
+
+    /**
+     * Give the permit back once the abandoned request has ended; until then
+     * it still occupies a slot upstream.
+     */
+    private static void releaseWhenDone(CompletableFuture<ChatCompletion> call,
+                                        AdaptiveConcurrencyLimiter.Permit permit) {
+        call.whenComplete((completion, error) -> permit.ignore());
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the call is let through as a probe despite its estimate
+     */
+    private boolean admit(String model, Deadline deadline, long expectedNanos, ShedCounters shed) {
+        long remaining = deadline.remainingNanos();
+        if (remaining > 0 && expectedNanos <= remaining) {
+            return false;
+        }
+        // Rejected calls leave no samples, so an estimate made while the model
+        // was slow would stand forever; with nothing in flight, one call at a
+        // time goes through to find out whether it has recovered
+        if (remaining > 0 && limiter.inFlight(model) == 0 && shed.probing.compareAndSet(false, true)) {
+            return true;
+        }
+        shed.rejected.increment();
+        throw new AdmissionRejectedException(model, expectedNanos, remaining);
+    }
+
+    /**
+     * Rough time until a permit frees up: callers ahead of this one,
+     * served {@code limit} at a time, each taking the average latency.
+     */
+    private long expectedWaitNanos(String model) {
+        int limit = limiter.limit(model);
+        if (limiter.inFlight(model) < limit) {
+            return 0;
+        }
+        return (limiter.queued(model) + 1) * stats.meanNanos(model) / limit;
+    }
+
+    private ShedCounters counters(String model) {
+        ShedCounters shed = counters.get(model);
+        return shed != null ? shed : counters.computeIfAbsent(model, m -> new ShedCounters(registry, m));
+    }
+
+    private static final class ShedCounters {
+        private final AtomicBoolean probing = new AtomicBoolean();
+        private final MetricsRegistry.Counter rejected;
+        private final MetricsRegistry.Counter queueTimeout;
+        private final MetricsRegistry.Counter deadlineExceeded;
+
+        ShedCounters(MetricsRegistry registry, String model) {
+            this.rejected = counter(registry, model, "rejected");
+            this.queueTimeout = counter(registry, model, "queue_timeout");
+            this.deadlineExceeded = counter(registry, model, "deadline_exceeded");
+        }
+
+        private static MetricsRegistry.Counter counter(MetricsRegistry registry, String model, String reason) {
+            return registry.counter("hibana_shed_total", "Calls dropped to protect their deadline",
+                    "model", model, "reason", reason);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.hibana.samples.limits;
+
+/**
+ * A call was cancelled while in flight because its deadline passed.
+ */
+public class DeadlineExceededException extends LoadSheddingException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String model;
+    private final long elapsedNanos;
+
+    public DeadlineExceededException(String model, long elapsedNanos) {
+        super(String.format("Cancelled %s call after %d ms: deadline exceeded", model, elapsedNanos / 1_000_000));
+        this.model = model;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String model() {
+        return model;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+}
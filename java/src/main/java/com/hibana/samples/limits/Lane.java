@@ -0,0 +1,20 @@
+package com.hibana.samples.limits;
+
+import java.util.Locale;
+
+/**
+ * Priority class of a call, highest first. See {@link PriorityLanes}.
+ */
+public enum Lane {
+    /** A person is waiting for the answer: chat turns, autocomplete. */
+    INTERACTIVE,
+    /** Nobody is waiting on this call in particular: extraction jobs, backfills. */
+    BULK;
+
+    /**
+     * Name used in metric tags and messages.
+     */
+    public String tag() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,68 @@
+package com.hibana.samples.limits;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live per-model call latency, used to predict how long the next call
+ * will take.
+ *
+ * Keeps a moving average of latency and of how far calls stray from it,
+ * the way TCP estimates round-trip times, so the estimate follows the API
+ * within a few dozen calls when it slows down or recovers.
+ */
+public final class LatencyStats {
+
+    private static final double MEAN_SMOOTHING = 0.125;
+    private static final double DEVIATION_SMOOTHING = 0.25;
+    /** Deviations added to the mean for {@link #expectedNanos}: roughly the 75th percentile. */
+    private static final double DEVIATIONS = 1;
+
+    private final Map<String, ModelStats> models = new ConcurrentHashMap<>();
+
+    public void record(String model, long latencyNanos) {
+        models.computeIfAbsent(model, m -> new ModelStats()).record(latencyNanos);
+    }
+
+    /**
+     * Average latency of recent calls, or 0 before the first one.
+     */
+    public long meanNanos(String model) {
+        ModelStats stats = models.get(model);
+        return stats != null ? stats.mean() : 0;
+    }
+
+    /**
+     * Latency most calls finish within (mean plus one deviation), or 0
+     * before the first call.
+     */
+    public long expectedNanos(String model) {
+        ModelStats stats = models.get(model);
+        return stats != null ? stats.expected() : 0;
+    }
+
+    private static final class ModelStats {
+        private double mean;
+        private double deviation;
+        private boolean seeded;
+
+        synchronized void record(long latencyNanos) {
+            if (!seeded) {
+                mean = latencyNanos;
+                deviation = latencyNanos / 2.0;
+                seeded = true;
+                return;
+            }
+            deviation += (Math.abs(latencyNanos - mean) - deviation) * DEVIATION_SMOOTHING;
+            mean += (latencyNanos - mean) * MEAN_SMOOTHING;
+        }
+
+        synchronized long mean() {
+            return (long) mean;
+        }
+
+        synchronized long expected() {
+            return (long) (mean + DEVIATIONS * deviation);
+        }
+    }
+}
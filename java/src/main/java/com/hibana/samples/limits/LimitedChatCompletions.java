@@ -0,0 +1,68 @@
+package com.hibana.samples.limits;
+
+import com.hibana.samples.async.Deadline;
+import com.openai.client.OpenAIClient;
+import com.openai.errors.RateLimitError;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionCreateParams;
+
+import java.time.Duration;
+
+/**
+ * Drop-in for {@code client.chat().completions()} that sends every call
+ * through an {@link AdaptiveConcurrencyLimiter}, one limit per model.
+ *
+ * <pre>
+ * LimitedChatCompletions chat = new LimitedChatCompletions(client, limiter, Duration.ofSeconds(10));
+ * ChatCompletion response = chat.create(params);
+ * </pre>
+ *
+ * A 429 lowers the limit and is rethrown; retrying is up to the caller
+ * (build the client with {@code maxRetries(0)} so SDK retries do not hide
+ * the 429s from the limiter).
+ */
+public final class LimitedChatCompletions {
+
+    private final OpenAIClient client;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Duration maxWait;
+
+    /**
+     * @param maxWait how long {@link #create(ChatCompletionCreateParams)} waits for a permit
+     */
+    public LimitedChatCompletions(OpenAIClient client, AdaptiveConcurrencyLimiter limiter, Duration maxWait) {
+        this.client = client;
+        this.limiter = limiter;
+        this.maxWait = maxWait;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    /**
+     * @throws QueueTimeoutException if no permit freed up within the configured wait
+     */
+    public ChatCompletion create(ChatCompletionCreateParams params) {
+        return create(params, Deadline.after(maxWait));
+    }
+
+    /**
+     * @param deadline how long to wait for a permit; the call itself is not cut short
+     * @throws QueueTimeoutException if no permit freed up before {@code deadline}
+     */
+    public ChatCompletion create(ChatCompletionCreateParams params, Deadline deadline) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(String.valueOf(params.model()), deadline);
+        try {
+            ChatCompletion completion = client.chat().completions().create(params);
+            permit.success();
+            return completion;
+        } catch (RateLimitError e) {
+            permit.rateLimited();
+            throw e;
+        } catch (RuntimeException e) {
+            permit.ignore();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.hibana.samples.limits;
+
+/**
+ * A call was dropped on the client to protect its deadline or the API:
+ * it was never sent ({@link AdmissionRejectedException},
+ * {@link QueueTimeoutException}) or was cancelled while in flight
+ * ({@link DeadlineExceededException}). No answer is coming, but the API
+ * itself did not fail, so retrying the same call right away rarely helps.
+ */
+public abstract class LoadSheddingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    protected LoadSheddingException(String message) {
+        super(message);
+    }
+}
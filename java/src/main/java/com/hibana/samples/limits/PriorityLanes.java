@@ -0,0 +1,269 @@
+package com.hibana.samples.limits;
+
+import com.hibana.samples.async.Deadline;
+import com.hibana.samples.metrics.MetricsRegistry;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Shares a fixed number of concurrent calls between priority lanes, so
+ * bulk work sent through the same client cannot starve interactive calls.
+ *
+ * <pre>
+ * PriorityLanes lanes = new PriorityLanes(16, registry).reserve(Lane.INTERACTIVE, 4);
+ *
+ * ChatCompletion answer = lanes.run(Lane.INTERACTIVE, Deadline.after(Duration.ofSeconds(2)),
+ *         () -> client.chat().completions().create(params));
+ * </pre>
+ *
+ * Slots reserved for a lane are kept free for it: lower lanes only use
+ * the headroom left after every higher lane's unused reservation. A call
+ * in a higher lane is never blocked by a lower one, and when a slot frees
+ * up the highest lane with callers waiting gets it; within a lane callers
+ * are served in arrival order. With 16 slots and 4 reserved for
+ * interactive calls, bulk jobs run at most 12 at a time while no chat is
+ * in progress, and interactive calls can use all 16.
+ *
+ * <pre>
+ * hibana_lane_in_flight{lane}          calls running
+ * hibana_lane_queued{lane}             callers waiting for a slot
+ * hibana_lane_wait_seconds{lane}       time spent waiting for a slot
+ * hibana_lane_timeouts_total{lane}     callers that gave up waiting
+ * </pre>
+ */
+public final class PriorityLanes {
+
+    private static final Lane[] LANES = Lane.values();
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+    private int capacity;
+    private int inFlight;
+
+    public PriorityLanes(int capacity, MetricsRegistry registry) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be >= 1");
+        }
+        this.capacity = capacity;
+        for (Lane lane : LANES) {
+            lanes.put(lane, new LaneState(lane, registry));
+        }
+    }
+
+    /**
+     * Keep {@code slots} of the capacity free for {@code lane}.
+     */
+    public PriorityLanes reserve(Lane lane, int slots) {
+        lock.lock();
+        try {
+            int others = 0;
+            for (LaneState state : lanes.values()) {
+                others += state.lane == lane ? 0 : state.reserved;
+            }
+            if (slots < 0 || others + slots >= capacity) {
+                throw new IllegalArgumentException("Reservations must leave at least one slot for the lowest lane");
+            }
+            lanes.get(lane).reserved = slots;
+            wakeUp();
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+
+    /**
+     * Change the total number of concurrent calls, e.g. from
+     * {@link AdaptiveConcurrencyLimiter#limit(String)}. Calls already
+     * running above a lowered capacity are not interrupted.
+     */
+    public void capacity(int capacity) {
+        lock.lock();
+        try {
+            int reserved = 0;
+            for (LaneState state : lanes.values()) {
+                reserved += state.reserved;
+            }
+            this.capacity = Math.max(capacity, reserved + 1);
+            wakeUp();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queued(Lane lane) {
+        lock.lock();
+        try {
+            return lanes.get(lane).queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for a slot in {@code lane}, make the call, and free the slot.
+     *
+     * @throws QueueTimeoutException if {@code deadline} passes before a slot frees up
+     */
+    public <T> T run(Lane lane, Deadline deadline, Supplier<T> call) {
+        Permit permit = acquire(lane, deadline);
+        try {
+            return call.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Wait for a slot in {@code lane}. Release the returned permit when the
+     * call has finished.
+     *
+     * @throws QueueTimeoutException if {@code deadline} passes first
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    public Permit acquire(Lane lane, Deadline deadline) {
+        LaneState state = lanes.get(lane);
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            // Join the queue behind callers already waiting in this lane
+            if (state.queued > 0 || !admits(lane)) {
+                state.queued++;
+                state.queuedGauge.add(1);
+                try {
+                    do {
+                        long remaining = deadline.remainingNanos();
+                        if (remaining <= 0) {
+                            state.timeouts.increment();
+                            throw new QueueTimeoutException(lane.tag(), System.nanoTime() - start, capacity);
+                        }
+                        state.slotFreed.awaitNanos(remaining);
+                    } while (!admits(lane));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while waiting for a " + lane.tag() + " slot");
+                } finally {
+                    state.queued--;
+                    state.queuedGauge.add(-1);
+                    // Leaving the queue may unblock a lower lane
+                    wakeUp();
+                }
+            }
+            state.inFlight++;
+            state.inFlightGauge.add(1);
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        state.waitTimer.record(System.nanoTime() - start);
+        return new Permit(state);
+    }
+
+    /**
+     * Whether a call in {@code lane} may start now. Must hold the lock.
+     */
+    private boolean admits(Lane lane) {
+        int available = capacity - inFlight;
+        for (Lane higher : LANES) {
+            if (higher == lane) {
+                break;
+            }
+            LaneState state = lanes.get(higher);
+            if (state.queued > 0) {
+                return false;
+            }
+            available -= Math.max(0, state.reserved - state.inFlight);
+        }
+        return available > 0;
+    }
+
+    /**
+     * Wake the waiters of the highest lane that can start a call. Must hold the lock.
+     */
+    private void wakeUp() {
+        for (Lane lane : LANES) {
+            LaneState state = lanes.get(lane);
+            if (state.queued > 0) {
+                if (admits(lane)) {
+                    state.slotFreed.signalAll();
+                }
+                // Lower lanes wait behind this one
+                return;
+            }
+        }
+    }
+
+    /**
+     * A slot in one lane, held for the duration of one call.
+     */
+    public final class Permit {
+        private final LaneState owner;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LaneState owner) {
+            this.owner = owner;
+        }
+
+        public Lane lane() {
+            return owner.lane;
+        }
+
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            lock.lock();
+            try {
+                owner.inFlight--;
+                owner.inFlightGauge.add(-1);
+                inFlight--;
+                wakeUp();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private final class LaneState {
+        private final Lane lane;
+        private final Condition slotFreed = lock.newCondition();
+        private final MetricsRegistry.Gauge inFlightGauge;
+        private final MetricsRegistry.Gauge queuedGauge;
+        private final MetricsRegistry.Timer waitTimer;
+        private final MetricsRegistry.Counter timeouts;
+        private int reserved;
+        private int inFlight;
+        private int queued;
+
+        LaneState(Lane lane, MetricsRegistry registry) {
+            this.lane = lane;
+            this.inFlightGauge = registry.gauge("hibana_lane_in_flight", "Calls running", "lane", lane.tag());
+            this.queuedGauge = registry.gauge("hibana_lane_queued", "Callers waiting for a slot", "lane", lane.tag());
+            this.waitTimer = registry.timer("hibana_lane_wait_seconds", "Time spent waiting for a slot", "lane", lane.tag());
+            this.timeouts = registry.counter("hibana_lane_timeouts_total", "Callers that gave up waiting", "lane", lane.tag());
+        }
+    }
+}
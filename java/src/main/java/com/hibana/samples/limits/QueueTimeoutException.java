@@ -0,0 +1,31 @@
+package com.hibana.samples.limits;
+
+/**
+ * A call waited for a concurrency permit until its deadline and was never
+ * sent.
+ */
+public class QueueTimeoutException extends LoadSheddingException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String queue;
+    private final long waitedNanos;
+
+    /**
+     * @param queue what the call waited for: a model, or a priority lane
+     */
+    public QueueTimeoutException(String queue, long waitedNanos, int limit) {
+        super(String.format("Gave up waiting for a %s permit after %d ms (limit %d)",
+                queue, waitedNanos / 1_000_000, limit));
+        this.queue = queue;
+        this.waitedNanos = waitedNanos;
+    }
+
+    public String queue() {
+        return queue;
+    }
+
+    public long waitedNanos() {
+        return waitedNanos;
+    }
+}
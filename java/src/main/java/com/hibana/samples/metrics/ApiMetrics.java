@@ -0,0 +1,124 @@
+package com.hibana.samples.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-model API call metrics.
+ *
+ * <pre>
+ * hibana_requests_total{model, outcome}        calls, by success/error/cancelled
+ * hibana_request_duration_seconds{model}       latency histogram
+ * hibana_prompt_tokens_total{model}            prompt tokens
+ * hibana_completion_tokens_total{model}        completion tokens
+ * hibana_errors_total{model, type}             failures by exception type (RateLimitError, ...)
+ * hibana_retries_total{model}                  failed attempts that were retried
+ * hibana_requests_in_flight{model}             calls currently running
+ * </pre>
+ *
+ * Meters are resolved once per model, so the hot path is a couple of
+ * {@code nanoTime} calls and adder increments:
+ *
+ * <pre>
+ * ApiMetrics.ModelMetrics m = metrics.forModel("gpt-5-nano");
+ * long start = m.start();
+ * try {
+ *     ChatCompletion c = ...;
+ *     m.success(start, promptTokens, completionTokens);
+ * } catch (RuntimeException e) {
+ *     m.failure(start, e);
+ *     throw e;
+ * }
+ * </pre>
+ */
+public final class ApiMetrics {
+
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<String, ModelMetrics> models = new ConcurrentHashMap<>();
+
+    public ApiMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    public ModelMetrics forModel(String model) {
+        ModelMetrics metrics = models.get(model);
+        return metrics != null ? metrics : models.computeIfAbsent(model, ModelMetrics::new);
+    }
+
+    public final class ModelMetrics {
+        private final String model;
+        private final MetricsRegistry.Counter successes;
+        private final MetricsRegistry.Counter failures;
+        private final MetricsRegistry.Counter cancellations;
+        private final MetricsRegistry.Timer duration;
+        private final MetricsRegistry.Counter promptTokens;
+        private final MetricsRegistry.Counter completionTokens;
+        private final MetricsRegistry.Gauge inFlight;
+        private final MetricsRegistry.Counter retries;
+        private final ConcurrentMap<Class<?>, MetricsRegistry.Counter> errors = new ConcurrentHashMap<>();
+
+        private ModelMetrics(String model) {
+            this.model = model;
+            this.successes = registry.counter("hibana_requests_total", "API calls", "model", model, "outcome", "success");
+            this.failures = registry.counter("hibana_requests_total", "API calls", "model", model, "outcome", "error");
+            this.cancellations = registry.counter("hibana_requests_total", "API calls", "model", model, "outcome", "cancelled");
+            this.duration = registry.timer("hibana_request_duration_seconds", "API call latency", "model", model);
+            this.promptTokens = registry.counter("hibana_prompt_tokens_total", "Prompt tokens sent", "model", model);
+            this.completionTokens = registry.counter("hibana_completion_tokens_total", "Completion tokens received", "model", model);
+            this.inFlight = registry.gauge("hibana_requests_in_flight", "API calls in progress", "model", model);
+            this.retries = registry.counter("hibana_retries_total", "Failed attempts that were retried", "model", model);
+        }
+
+        /**
+         * Mark a call as started.
+         *
+         * @return start time to pass to {@link #success}, {@link #failure} or {@link #cancelled}
+         */
+        public long start() {
+            inFlight.add(1);
+            return System.nanoTime();
+        }
+
+        public void success(long start, long prompt, long completion) {
+            duration.record(System.nanoTime() - start);
+            inFlight.add(-1);
+            successes.increment();
+            promptTokens.increment(prompt);
+            completionTokens.increment(completion);
+        }
+
+        /**
+         * A call the caller abandoned before it finished, e.g. a stream
+         * closed early; the tokens are those received up to then.
+         */
+        public void cancelled(long start, long prompt, long completion) {
+            duration.record(System.nanoTime() - start);
+            inFlight.add(-1);
+            cancellations.increment();
+            promptTokens.increment(prompt);
+            completionTokens.increment(completion);
+        }
+
+        /**
+         * Count a failed attempt that will be retried; the call itself is
+         * still recorded once, by {@link #success}, {@link #failure} or
+         * {@link #cancelled}.
+         */
+        public void retry() {
+            retries.increment();
+        }
+
+        public void failure(long start, Throwable error) {
+            duration.record(System.nanoTime() - start);
+            inFlight.add(-1);
+            failures.increment();
+            errors.computeIfAbsent(error.getClass(), type -> registry.counter("hibana_errors_total",
+                    "Failed API calls by exception type", "model", model, "type", type.getSimpleName()))
+                    .increment();
+        }
+    }
+}
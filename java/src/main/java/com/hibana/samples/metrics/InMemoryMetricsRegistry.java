@@ -0,0 +1,195 @@
+package com.hibana.samples.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default registry: lock-free meters kept in memory.
+ *
+ * Counters and gauges are {@link LongAdder}s. Timers are fixed-bucket
+ * histograms with bounds suited to LLM calls (50 ms to 2 min); recording
+ * is a binary search over the bounds plus two adder increments.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    /** Upper bounds of the timer buckets, in seconds. */
+    static final double[] BUCKET_SECONDS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+
+    private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+            BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    private final ConcurrentMap<MeterId, Meter> meters = new ConcurrentHashMap<>();
+
+    @Override
+    public Counter counter(String name, String help, String... tags) {
+        return (Counter) meters.computeIfAbsent(new MeterId(name, tags), id -> new CounterMeter(id, help));
+    }
+
+    @Override
+    public Timer timer(String name, String help, String... tags) {
+        return (Timer) meters.computeIfAbsent(new MeterId(name, tags), id -> new TimerMeter(id, help));
+    }
+
+    @Override
+    public Gauge gauge(String name, String help, String... tags) {
+        return (Gauge) meters.computeIfAbsent(new MeterId(name, tags), id -> new GaugeMeter(id, help));
+    }
+
+    /**
+     * Snapshot of all meters, sorted by name and tags.
+     */
+    public List<Meter> meters() {
+        List<Meter> list = new ArrayList<>(meters.values());
+        list.sort(Comparator.comparing((Meter m) -> m.id.name).thenComparing(m -> m.id.toString()));
+        return Collections.unmodifiableList(list);
+    }
+
+    static final class MeterId {
+        final String name;
+        final String[] tags;
+
+        MeterId(String name, String[] tags) {
+            if (tags.length % 2 != 0) {
+                throw new IllegalArgumentException("Tags must be key/value pairs: " + Arrays.toString(tags));
+            }
+            this.name = name;
+            this.tags = tags.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof MeterId)) {
+                return false;
+            }
+            MeterId other = (MeterId) o;
+            return name.equals(other.name) && Arrays.equals(tags, other.tags);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, Arrays.hashCode(tags));
+        }
+
+        @Override
+        public String toString() {
+            return name + Arrays.toString(tags);
+        }
+    }
+
+    /**
+     * A registered meter, as seen by exporters.
+     */
+    public abstract static class Meter {
+        final MeterId id;
+        final String help;
+
+        Meter(MeterId id, String help) {
+            this.id = id;
+            this.help = help;
+        }
+
+        public String name() {
+            return id.name;
+        }
+
+        public String help() {
+            return help;
+        }
+
+        /**
+         * Alternating tag keys and values.
+         */
+        public String[] tags() {
+            return id.tags.clone();
+        }
+    }
+
+    public static final class CounterMeter extends Meter implements Counter {
+        private final LongAdder count = new LongAdder();
+
+        CounterMeter(MeterId id, String help) {
+            super(id, help);
+        }
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+    }
+
+    public static final class GaugeMeter extends Meter implements Gauge {
+        private final LongAdder value = new LongAdder();
+
+        GaugeMeter(MeterId id, String help) {
+            super(id, help);
+        }
+
+        @Override
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long value() {
+            return value.sum();
+        }
+    }
+
+    public static final class TimerMeter extends Meter implements Timer {
+        private final LongAdder[] buckets = new LongAdder[BUCKET_NANOS.length + 1];
+        private final LongAdder totalNanos = new LongAdder();
+
+        TimerMeter(MeterId id, String help) {
+            super(id, help);
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void record(long nanos) {
+            int index = Arrays.binarySearch(BUCKET_NANOS, nanos);
+            buckets[index >= 0 ? index : -index - 1].increment();
+            totalNanos.add(nanos);
+        }
+
+        /**
+         * Per-bucket counts (not cumulative); the last entry is the overflow bucket.
+         */
+        public long[] bucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        public long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        public double totalSeconds() {
+            return totalNanos.sum() / 1e9;
+        }
+    }
+}
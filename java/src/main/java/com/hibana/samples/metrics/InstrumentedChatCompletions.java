@@ -0,0 +1,325 @@
+package com.hibana.samples.metrics;
+
+import com.hibana.samples.jfr.ApiCallEvent;
+import com.hibana.samples.jfr.ApiRetryEvent;
+import com.hibana.samples.jfr.StreamChunkEvent;
+import com.openai.client.OpenAIClient;
+import com.openai.errors.OpenAIServiceException;
+import com.openai.errors.RateLimitError;
+import com.openai.models.ChatCompletion;
+import com.openai.models.ChatCompletionChunk;
+import com.openai.models.ChatCompletionCreateParams;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Drop-in for {@code client.chat().completions()} that records every call
+ * in {@link ApiMetrics} and as Java Flight Recorder events.
+ *
+ * <pre>
+ * InstrumentedChatCompletions chat = new InstrumentedChatCompletions(client, metrics);
+ * ChatCompletion response = chat.create(params);
+ * </pre>
+ *
+ * The JFR events ({@code hibana.ApiCall}, {@code hibana.ApiRetry},
+ * {@code hibana.StreamChunk}) are only written while a recording with them
+ * enabled is running, e.g. {@code java -XX:StartFlightRecording ...}.
+ *
+ * Retries are off by default. When enabled, rate limits and 5xx responses
+ * are retried here with exponential backoff, so each attempt is visible;
+ * build the client with {@code maxRetries(0)} so the SDK does not retry
+ * underneath.
+ */
+public final class InstrumentedChatCompletions {
+
+    /** Stream chunks between two sampled {@link StreamChunkEvent}s. */
+    public static final int DEFAULT_CHUNK_SAMPLE_INTERVAL = 16;
+
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 8_000;
+
+    private final OpenAIClient client;
+    private final ApiMetrics metrics;
+    private final int maxRetries;
+    private final int chunkSampleInterval;
+
+    public InstrumentedChatCompletions(OpenAIClient client, ApiMetrics metrics) {
+        this(client, metrics, 0, DEFAULT_CHUNK_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * @param maxRetries          retries after the first attempt for rate limits and 5xx responses
+     * @param chunkSampleInterval record the first stream chunk and every Nth one after it
+     */
+    public InstrumentedChatCompletions(OpenAIClient client, ApiMetrics metrics, int maxRetries, int chunkSampleInterval) {
+        if (maxRetries < 0 || chunkSampleInterval < 1) {
+            throw new IllegalArgumentException("maxRetries must be >= 0 and chunkSampleInterval >= 1");
+        }
+        this.client = client;
+        this.metrics = metrics;
+        this.maxRetries = maxRetries;
+        this.chunkSampleInterval = chunkSampleInterval;
+    }
+
+    public ChatCompletion create(ChatCompletionCreateParams params) {
+        String modelName = String.valueOf(params.model());
+        ApiMetrics.ModelMetrics model = metrics.forModel(modelName);
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        long start = model.start();
+        int[] attempts = {0};
+        try {
+            ChatCompletion completion = withRetries(modelName, model, attempts,
+                    () -> client.chat().completions().create(params));
+            long prompt = completion.usage().map(u -> u.promptTokens()).orElse(0L);
+            long completionTokens = completion.usage().map(u -> u.completionTokens()).orElse(0L);
+            model.success(start, prompt, completionTokens);
+
+            event.end();
+            if (event.shouldCommit()) {
+                describe(event, modelName, "create", attempts[0], 200, null);
+                event.promptTokens = prompt;
+                event.completionTokens = completionTokens;
+                event.contentLength = completion.choices().isEmpty() ? 0
+                        : completion.choices().get(0).message().content().map(String::length).orElse(0);
+                event.commit();
+            }
+            return completion;
+        } catch (RuntimeException e) {
+            model.failure(start, e);
+            commitFailure(event, modelName, "create", attempts[0], e);
+            throw e;
+        }
+    }
+
+    /**
+     * Streaming variant. The call is recorded when the stream is exhausted or
+     * fails, or as cancelled when it is closed before its end; token counts
+     * come from the usage chunk when the request asks for one, otherwise
+     * completion tokens are counted as content chunks. Only opening the
+     * stream is retried; a stream that breaks part-way fails the call.
+     */
+    public Stream<ChatCompletionChunk> createStreaming(ChatCompletionCreateParams params) {
+        String modelName = String.valueOf(params.model());
+        ApiMetrics.ModelMetrics model = metrics.forModel(modelName);
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
+        long start = model.start();
+        int[] attempts = {0};
+        Stream<ChatCompletionChunk> source;
+        try {
+            source = withRetries(modelName, model, attempts,
+                    () -> client.chat().completions().createStreaming(params));
+        } catch (RuntimeException e) {
+            model.failure(start, e);
+            commitFailure(event, modelName, "stream", attempts[0], e);
+            throw e;
+        }
+
+        RecordingIterator iterator = new RecordingIterator(source.iterator(), modelName, model, start,
+                event, attempts[0], chunkSampleInterval);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        source.close();
+                    } finally {
+                        // No-op if the stream already ended or failed
+                        iterator.cancel();
+                    }
+                });
+    }
+
+    private <T> T withRetries(String modelName, ApiMetrics.ModelMetrics model, int[] attempts, Supplier<T> call) {
+        while (true) {
+            attempts[0]++;
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempts[0] > maxRetries || !isRetryable(e)) {
+                    throw e;
+                }
+                model.retry();
+                backOff(modelName, attempts[0], e);
+            }
+        }
+    }
+
+    private static boolean isRetryable(RuntimeException e) {
+        return e instanceof RateLimitError || status(e) >= 500;
+    }
+
+    private static void backOff(String modelName, int attempt, RuntimeException cause) {
+        long delay = Math.min(BASE_BACKOFF_MILLIS << Math.min(attempt - 1, 16), MAX_BACKOFF_MILLIS);
+        ApiRetryEvent event = new ApiRetryEvent();
+        event.begin();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.model = modelName;
+                event.attempt = attempt;
+                event.status = status(cause);
+                event.error = cause.getClass().getSimpleName();
+                event.backoff = delay;
+                event.commit();
+            }
+        }
+    }
+
+    private static int status(Throwable e) {
+        return e instanceof OpenAIServiceException ? ((OpenAIServiceException) e).statusCode() : 0;
+    }
+
+    private static void describe(ApiCallEvent event, String model, String operation, int attempts,
+                                 int status, Throwable error) {
+        event.model = model;
+        event.operation = operation;
+        event.attempts = attempts;
+        event.status = status;
+        event.error = error != null ? error.getClass().getSimpleName() : null;
+    }
+
+    private static void commitFailure(ApiCallEvent event, String model, String operation, int attempts,
+                                      Throwable error) {
+        event.end();
+        if (event.shouldCommit()) {
+            describe(event, model, operation, attempts, status(error), error);
+            event.commit();
+        }
+    }
+
+    private static final class RecordingIterator implements Iterator<ChatCompletionChunk> {
+        private final Iterator<ChatCompletionChunk> delegate;
+        private final String modelName;
+        private final ApiMetrics.ModelMetrics model;
+        private final long start;
+        private final ApiCallEvent event;
+        private final int attempts;
+        private final int sampleInterval;
+        private long promptTokens;
+        private long completionTokens = -1;
+        private long contentChunks;
+        private long contentLength;
+        private long chunks;
+        private long timeToFirstChunk;
+        // The stream may be closed from another thread while it is read
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        RecordingIterator(Iterator<ChatCompletionChunk> delegate, String modelName, ApiMetrics.ModelMetrics model,
+                          long start, ApiCallEvent event, int attempts, int sampleInterval) {
+            this.delegate = delegate;
+            this.modelName = modelName;
+            this.model = model;
+            this.start = start;
+            this.event = event;
+            this.attempts = attempts;
+            this.sampleInterval = sampleInterval;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                boolean hasNext = delegate.hasNext();
+                if (!hasNext) {
+                    finish();
+                }
+                return hasNext;
+            } catch (RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public ChatCompletionChunk next() {
+            try {
+                ChatCompletionChunk chunk = delegate.next();
+                long sinceStart = System.nanoTime() - start;
+                if (chunks == 0) {
+                    timeToFirstChunk = sinceStart;
+                }
+                chunk.usage().ifPresent(usage -> {
+                    promptTokens = usage.promptTokens();
+                    completionTokens = usage.completionTokens();
+                });
+                int length = 0;
+                if (!chunk.choices().isEmpty() && chunk.choices().get(0).delta().content().isPresent()) {
+                    contentChunks++;
+                    length = chunk.choices().get(0).delta().content().get().length();
+                    contentLength += length;
+                }
+                if (chunks % sampleInterval == 0) {
+                    sample(chunks, sinceStart, length);
+                }
+                chunks++;
+                return chunk;
+            } catch (RuntimeException e) {
+                fail(e);
+                throw e;
+            }
+        }
+
+        private void sample(long index, long sinceStart, int length) {
+            StreamChunkEvent chunkEvent = new StreamChunkEvent();
+            if (chunkEvent.shouldCommit()) {
+                chunkEvent.model = modelName;
+                chunkEvent.index = index;
+                chunkEvent.sinceStart = sinceStart;
+                chunkEvent.contentLength = length;
+                chunkEvent.commit();
+            }
+        }
+
+        void finish() {
+            if (recorded.compareAndSet(false, true)) {
+                long completion = completionTokens >= 0 ? completionTokens : contentChunks;
+                model.success(start, promptTokens, completion);
+                commit(completion, null);
+            }
+        }
+
+        /**
+         * The stream was closed before it ended.
+         */
+        void cancel() {
+            if (recorded.compareAndSet(false, true)) {
+                long completion = completionTokens >= 0 ? completionTokens : contentChunks;
+                model.cancelled(start, promptTokens, completion);
+                commit(completion, "Cancelled");
+            }
+        }
+
+        private void commit(long completion, String error) {
+            event.end();
+            if (event.shouldCommit()) {
+                describe(event, modelName, "stream", attempts, 200, null);
+                event.error = error;
+                event.promptTokens = promptTokens;
+                event.completionTokens = completion;
+                event.chunks = chunks;
+                event.timeToFirstChunk = timeToFirstChunk;
+                event.contentLength = contentLength;
+                event.commit();
+            }
+        }
+
+        private void fail(RuntimeException e) {
+            if (recorded.compareAndSet(false, true)) {
+                model.failure(start, e);
+                event.chunks = chunks;
+                event.timeToFirstChunk = timeToFirstChunk;
+                commitFailure(event, modelName, "stream", attempts, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.hibana.samples.metrics;
+
+/**
+ * Where API metrics are recorded. {@link InMemoryMetricsRegistry} is the
+ * default and can be scraped by {@link PrometheusExporter}; implement this
+ * interface to forward into Micrometer, OpenTelemetry or similar.
+ *
+ * Tags are given as alternating key/value pairs. Meters are looked up once
+ * and cached by the caller, so lookups do not need to be fast; recording
+ * into a meter does.
+ */
+public interface MetricsRegistry {
+
+    Counter counter(String name, String help, String... tags);
+
+    Timer timer(String name, String help, String... tags);
+
+    Gauge gauge(String name, String help, String... tags);
+
+    interface Counter {
+        void increment(long amount);
+
+        default void increment() {
+            increment(1);
+        }
+    }
+
+    interface Timer {
+        void record(long nanos);
+    }
+
+    /**
+     * A value that goes up and down, such as requests in flight.
+     */
+    interface Gauge {
+        void add(long delta);
+    }
+
+    /**
+     * Records nothing.
+     */
+    MetricsRegistry NOOP = new MetricsRegistry() {
+        @Override
+        public Counter counter(String name, String help, String... tags) {
+            return amount -> { };
+        }
+
+        @Override
+        public Timer timer(String name, String help, String... tags) {
+            return nanos -> { };
+        }
+
+        @Override
+        public Gauge gauge(String name, String help, String... tags) {
+            return delta -> { };
+        }
+    };
+}
@@ -0,0 +1,115 @@
+package com.hibana.samples.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Renders an {@link InMemoryMetricsRegistry} in the Prometheus text
+ * exposition format, and optionally serves it at {@code /metrics}.
+ */
+public final class PrometheusExporter {
+
+    private PrometheusExporter() {
+    }
+
+    public static String scrape(InMemoryMetricsRegistry registry) {
+        StringBuilder out = new StringBuilder();
+        String previousName = null;
+
+        for (InMemoryMetricsRegistry.Meter meter : registry.meters()) {
+            String name = meter.name();
+            if (!name.equals(previousName)) {
+                out.append("# HELP ").append(name).append(' ').append(meter.help()).append('\n');
+                out.append("# TYPE ").append(name).append(' ').append(type(meter)).append('\n');
+                previousName = name;
+            }
+
+            String[] tags = meter.tags();
+            if (meter instanceof InMemoryMetricsRegistry.CounterMeter) {
+                sample(out, name, tags, null, ((InMemoryMetricsRegistry.CounterMeter) meter).count());
+            } else if (meter instanceof InMemoryMetricsRegistry.GaugeMeter) {
+                sample(out, name, tags, null, ((InMemoryMetricsRegistry.GaugeMeter) meter).value());
+            } else if (meter instanceof InMemoryMetricsRegistry.TimerMeter) {
+                InMemoryMetricsRegistry.TimerMeter timer = (InMemoryMetricsRegistry.TimerMeter) meter;
+                long[] counts = timer.bucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    String le = i < InMemoryMetricsRegistry.BUCKET_SECONDS.length
+                            ? number(InMemoryMetricsRegistry.BUCKET_SECONDS[i]) : "+Inf";
+                    sample(out, name + "_bucket", tags, le, cumulative);
+                }
+                out.append(name).append("_sum").append(labels(tags, null)).append(' ')
+                        .append(number(timer.totalSeconds())).append('\n');
+                sample(out, name + "_count", tags, null, cumulative);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Serve {@code GET /metrics} on the given port; stop the returned server when done.
+     */
+    public static HttpServer serve(InMemoryMetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = scrape(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String type(InMemoryMetricsRegistry.Meter meter) {
+        if (meter instanceof InMemoryMetricsRegistry.CounterMeter) {
+            return "counter";
+        }
+        if (meter instanceof InMemoryMetricsRegistry.TimerMeter) {
+            return "histogram";
+        }
+        return "gauge";
+    }
+
+    private static void sample(StringBuilder out, String name, String[] tags, String le, long value) {
+        out.append(name).append(labels(tags, le)).append(' ').append(value).append('\n');
+    }
+
+    private static String labels(String[] tags, String le) {
+        if (tags.length == 0 && le == null) {
+            return "";
+        }
+        StringBuilder labels = new StringBuilder("{");
+        for (int i = 0; i < tags.length; i += 2) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(tags[i]).append("=\"").append(escape(tags[i + 1])).append('"');
+        }
+        if (le != null) {
+            if (tags.length > 0) {
+                labels.append(',');
+            }
+            labels.append("le=\"").append(le).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? String.format(Locale.ROOT, "%.1f", value)
+                : String.format(Locale.ROOT, "%s", value);
+    }
+}
@@ -0,0 +1,130 @@
+package com.hibana.samples.net;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where the time of one HTTP call went.
+ *
+ * Phases that did not happen are zero: a call on a pooled connection has no
+ * DNS, connect or TLS time. {@code connect} is the TCP handshake only; TLS
+ * is reported separately. {@code waitForHeaders} runs from the end of the
+ * request upload to the first response byte, i.e. server time plus one
+ * round trip.
+ */
+public final class CallTiming {
+
+    private final String host;
+    private final String model;
+    private final String protocol;
+    private final boolean connectionReused;
+    private final boolean failed;
+    private final long dnsNanos;
+    private final long connectNanos;
+    private final long tlsNanos;
+    private final long acquireNanos;
+    private final long requestNanos;
+    private final long waitForHeadersNanos;
+    private final long responseBodyNanos;
+    private final long totalNanos;
+
+    CallTiming(String host, String model, String protocol, boolean connectionReused, boolean failed,
+               long dnsNanos, long connectNanos, long tlsNanos, long acquireNanos, long requestNanos,
+               long waitForHeadersNanos, long responseBodyNanos, long totalNanos) {
+        this.host = host;
+        this.model = model;
+        this.protocol = protocol;
+        this.connectionReused = connectionReused;
+        this.failed = failed;
+        this.dnsNanos = dnsNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.acquireNanos = acquireNanos;
+        this.requestNanos = requestNanos;
+        this.waitForHeadersNanos = waitForHeadersNanos;
+        this.responseBodyNanos = responseBodyNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    /**
+     * Model of the request, or {@code "-"} for calls without a model tag.
+     */
+    public String model() {
+        return model;
+    }
+
+    /**
+     * Negotiated protocol ({@code http/1.1}, {@code h2}), or {@code "-"} if no connection was made.
+     */
+    public String protocol() {
+        return protocol;
+    }
+
+    /**
+     * True if the call ran on a pooled connection rather than opening a new one.
+     */
+    public boolean connectionReused() {
+        return connectionReused;
+    }
+
+    public boolean failed() {
+        return failed;
+    }
+
+    public long dnsNanos() {
+        return dnsNanos;
+    }
+
+    public long connectNanos() {
+        return connectNanos;
+    }
+
+    public long tlsNanos() {
+        return tlsNanos;
+    }
+
+    /**
+     * From the start of the call until it had a connection, including DNS,
+     * connect and TLS for a new one.
+     */
+    public long acquireNanos() {
+        return acquireNanos;
+    }
+
+    /**
+     * Writing the request headers and body.
+     */
+    public long requestNanos() {
+        return requestNanos;
+    }
+
+    public long waitForHeadersNanos() {
+        return waitForHeadersNanos;
+    }
+
+    /**
+     * From the response headers to the end of the body.
+     */
+    public long responseBodyNanos() {
+        return responseBodyNanos;
+    }
+
+    public long totalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s%s: dns %s, connect %s, tls %s, request %s, wait %s, body %s, total %s%s",
+                host, model, protocol, connectionReused ? "" : " NEW CONNECTION",
+                ms(dnsNanos), ms(connectNanos), ms(tlsNanos), ms(requestNanos),
+                ms(waitForHeadersNanos), ms(responseBodyNanos), ms(totalNanos), failed ? " FAILED" : "");
+    }
+
+    static String ms(long nanos) {
+        return String.format("%.1f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,256 @@
+package com.hibana.samples.net;
+
+import com.hibana.samples.client.HibanaClients;
+import com.openai.client.OpenAIClient;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens connections to the API before the first real request and keeps
+ * them from going idle.
+ *
+ * Without it the first call after startup (or after a quiet period long
+ * enough for the server to drop idle connections) pays DNS, TCP and TLS on
+ * top of its own latency.
+ *
+ * <pre>
+ * ConnectionWarmer warmer = ConnectionWarmer.shared();
+ * System.out.println(warmer.warmUp(4));
+ * warmer.startKeepAlive(Duration.ofSeconds(30), 4);
+ * warmer.startKeepAlive(sdkClient, Duration.ofSeconds(30));
+ * ...
+ * warmer.close();
+ * </pre>
+ *
+ * Warming sends concurrent {@code GET /models} requests. Over HTTP/1.1 each
+ * concurrent request needs its own connection, so {@code connections}
+ * requests open that many. Over HTTP/2 OkHttp multiplexes them onto one
+ * connection, which is all HTTP/2 needs.
+ *
+ * An SDK {@link OpenAIClient} has a connection pool of its own, which the
+ * OkHttp probes never touch; warm it with {@link #warmUp(OpenAIClient)} and
+ * keep it alive with {@link #startKeepAlive(OpenAIClient, Duration)}.
+ */
+public class ConnectionWarmer implements AutoCloseable {
+
+    private static final String PROBE_PATH = "/models";
+
+    private final OkHttpClient http;
+    private final String baseUrl;
+    private final String apiKey;
+    private ScheduledExecutorService keepAlive;
+    private ScheduledFuture<?> httpKeepAlive;
+    private ScheduledFuture<?> sdkKeepAlive;
+
+    public ConnectionWarmer(OkHttpClient http, String baseUrl, String apiKey) {
+        this.http = http;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Warmer for the shared configuration in {@link HibanaClients}.
+     */
+    public static ConnectionWarmer shared() {
+        return new ConnectionWarmer(HibanaClients.http(), HibanaClients.BASE_URL, HibanaClients.API_KEY);
+    }
+
+    /**
+     * Resolve the API host and open up to {@code connections} pooled connections.
+     */
+    public WarmUpReport warmUp(int connections) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpUrl url = HttpUrl.get(baseUrl + PROBE_PATH);
+
+        List<InetAddress> addresses = http.dns().lookup(url.host());
+        long dnsNanos = System.nanoTime() - start;
+
+        int pooledBefore = http.connectionPool().connectionCount();
+        Map<String, Integer> protocols = new TreeMap<>();
+        AtomicInteger failures = new AtomicInteger();
+        probe(url, connections, protocols, failures);
+
+        return new WarmUpReport(url.host(), addresses.size(), dnsNanos, connections - failures.get(),
+                failures.get(), http.connectionPool().connectionCount() - pooledBefore, protocols,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Warm the SDK client's own connection pool, which is separate from the
+     * OkHttp client, with a {@code models().list()} call.
+     *
+     * @return time taken by the call, in nanoseconds
+     */
+    public static long warmUp(OpenAIClient client) {
+        long start = System.nanoTime();
+        client.models().list();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Every {@code interval}, send a probe over each idle pooled connection
+     * (up to {@code connections}) so they stay open on both ends. Pick an
+     * interval below the server's idle timeout (often 60 seconds) and the
+     * pool's keep-alive.
+     */
+    public synchronized void startKeepAlive(Duration interval, int connections) {
+        if (httpKeepAlive != null) {
+            throw new IllegalStateException("Keep-alive already running");
+        }
+        HttpUrl url = HttpUrl.get(baseUrl + PROBE_PATH);
+        httpKeepAlive = scheduler().scheduleWithFixedDelay(() -> {
+            // Busy connections are kept alive by the traffic itself; probing them would open extra ones
+            int idle = Math.min(connections, http.connectionPool().idleConnectionCount());
+            try {
+                probe(url, idle, new TreeMap<>(), new AtomicInteger());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // E.g. a dispatcher that was shut down; a throwing task would cancel the schedule
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Every {@code interval}, call {@code models().list()} through the SDK
+     * client so the connection in its own pool stays open too. The SDK
+     * client has no idle-connection count to check, so it is probed every
+     * time; one light request per interval is enough to keep the one
+     * connection an HTTP/2 client needs.
+     */
+    public synchronized void startKeepAlive(OpenAIClient client, Duration interval) {
+        if (sdkKeepAlive != null) {
+            throw new IllegalStateException("SDK keep-alive already running");
+        }
+        sdkKeepAlive = scheduler().scheduleWithFixedDelay(() -> {
+            try {
+                client.models().list();
+            } catch (RuntimeException e) {
+                // A failed probe must not cancel the schedule; the next one may succeed
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (keepAlive != null) {
+            keepAlive.shutdownNow();
+            keepAlive = null;
+            httpKeepAlive = null;
+            sdkKeepAlive = null;
+        }
+    }
+
+    private ScheduledExecutorService scheduler() {
+        if (keepAlive == null) {
+            keepAlive = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-keep-alive");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return keepAlive;
+    }
+
+    private void probe(HttpUrl url, int count, Map<String, Integer> protocols, AtomicInteger failures)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            Request request = new Request.Builder()
+                    .url(url)
+                    .addHeader("Authorization", "Bearer " + apiKey)
+                    .get()
+                    .build();
+            http.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (response) {
+                        // Read the body so the connection goes back to the pool
+                        response.body().string();
+                        if (!response.isSuccessful()) {
+                            // Connected, but the probe was refused (401, 5xx): count it as failed
+                            failures.incrementAndGet();
+                            return;
+                        }
+                        synchronized (protocols) {
+                            protocols.merge(response.protocol().toString(), 1, Integer::sum);
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    failures.incrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    /**
+     * Outcome of {@link #warmUp(int)}.
+     */
+    public static final class WarmUpReport {
+        private final String host;
+        private final int addresses;
+        private final long dnsNanos;
+        private final int probes;
+        private final int failures;
+        private final int connectionsOpened;
+        private final Map<String, Integer> protocols;
+        private final long totalNanos;
+
+        WarmUpReport(String host, int addresses, long dnsNanos, int probes, int failures,
+                     int connectionsOpened, Map<String, Integer> protocols, long totalNanos) {
+            this.host = host;
+            this.addresses = addresses;
+            this.dnsNanos = dnsNanos;
+            this.probes = probes;
+            this.failures = failures;
+            this.connectionsOpened = connectionsOpened;
+            this.protocols = protocols;
+            this.totalNanos = totalNanos;
+        }
+
+        public int connectionsOpened() {
+            return connectionsOpened;
+        }
+
+        public int failures() {
+            return failures;
+        }
+
+        public long totalNanos() {
+            return totalNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d address(es) in %s, %d probe(s) ok, %d failed, %d new connection(s) %s, took %s",
+                    host, addresses, CallTiming.ms(dnsNanos), probes, failures, connectionsOpened, protocols,
+                    CallTiming.ms(totalNanos));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.hibana.samples.net;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How an OkHttp client maps concurrent requests onto connections.
+ *
+ * <ul>
+ *   <li>{@link Mode#HTTP_1_1}: one request per connection, so concurrency
+ *       needs as many connections</li>
+ *   <li>{@link Mode#HTTP_2}: HTTP/2 negotiated over TLS (ALPN), falling back
+ *       to HTTP/1.1 for servers without it</li>
+ *   <li>{@link Mode#H2_PRIOR_KNOWLEDGE}: cleartext HTTP/2 without
+ *       negotiation, for local servers such as the gateway or mock server</li>
+ * </ul>
+ *
+ * The dispatcher is sized to match: with {@link Mode#H2_PRIOR_KNOWLEDGE}
+ * every connection is HTTP/2, so it allows {@code maxConnections} times
+ * {@code maxStreamsPerConnection} requests per host and does not queue
+ * requests that an open connection could carry. {@link Mode#HTTP_2} may
+ * fall back to HTTP/1.1 (image CDNs, file hosts), where every request
+ * needs a connection of its own, so it allows {@code maxConnections}
+ * requests per host like {@link Mode#HTTP_1_1}; a host that negotiates
+ * HTTP/2 then carries them on fewer connections. Use
+ * {@link StreamLimitedCallFactory} to put more requests on a host known
+ * to speak HTTP/2. OkHttp opens another connection when one reaches the server's
+ * {@code MAX_CONCURRENT_STREAMS}, but only once it has received the
+ * server's settings; {@link StreamLimitedCallFactory} enforces
+ * {@code maxStreamsPerConnection} per connection from the first request.
+ * The dispatcher only limits asynchronous ({@code enqueue}) calls.
+ */
+public final class HttpProtocolConfig {
+
+    public enum Mode {
+        HTTP_1_1,
+        HTTP_2,
+        H2_PRIOR_KNOWLEDGE
+    }
+
+    private final Mode mode;
+    private final int maxConnections;
+    private final int maxStreamsPerConnection;
+
+    private HttpProtocolConfig(Mode mode, int maxConnections, int maxStreamsPerConnection) {
+        if (maxConnections < 1 || maxStreamsPerConnection < 1) {
+            throw new IllegalArgumentException("maxConnections and maxStreamsPerConnection must be positive");
+        }
+        this.mode = mode;
+        this.maxConnections = maxConnections;
+        this.maxStreamsPerConnection = mode == Mode.HTTP_1_1 ? 1 : maxStreamsPerConnection;
+    }
+
+    public static HttpProtocolConfig http1(int maxConnections) {
+        return new HttpProtocolConfig(Mode.HTTP_1_1, maxConnections, 1);
+    }
+
+    public static HttpProtocolConfig http2(int maxConnections, int maxStreamsPerConnection) {
+        return new HttpProtocolConfig(Mode.HTTP_2, maxConnections, maxStreamsPerConnection);
+    }
+
+    public static HttpProtocolConfig h2PriorKnowledge(int maxConnections, int maxStreamsPerConnection) {
+        return new HttpProtocolConfig(Mode.H2_PRIOR_KNOWLEDGE, maxConnections, maxStreamsPerConnection);
+    }
+
+    /**
+     * Parse {@code http1}, {@code http2} or {@code h2c} (prior knowledge), as
+     * used by the HIBANA_HTTP_PROTOCOL environment variable.
+     */
+    public static HttpProtocolConfig of(String mode, int maxConnections, int maxStreamsPerConnection) {
+        switch (mode.toLowerCase(Locale.ROOT)) {
+            case "http1":
+            case "http/1.1":
+                return http1(maxConnections);
+            case "http2":
+            case "h2":
+                return http2(maxConnections, maxStreamsPerConnection);
+            case "h2c":
+            case "h2_prior_knowledge":
+                return h2PriorKnowledge(maxConnections, maxStreamsPerConnection);
+            default:
+                throw new IllegalArgumentException("Unknown HTTP protocol mode: " + mode);
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public int maxConnections() {
+        return maxConnections;
+    }
+
+    public int maxStreamsPerConnection() {
+        return maxStreamsPerConnection;
+    }
+
+    /**
+     * Concurrent requests the connections can carry, and so the
+     * dispatcher's per-host limit: only with prior knowledge are they sure
+     * to be HTTP/2.
+     */
+    public int maxRequestsPerHost() {
+        return mode == Mode.H2_PRIOR_KNOWLEDGE ? maxConnections * maxStreamsPerConnection : maxConnections;
+    }
+
+    public List<Protocol> protocols() {
+        switch (mode) {
+            case HTTP_1_1:
+                return Collections.singletonList(Protocol.HTTP_1_1);
+            case H2_PRIOR_KNOWLEDGE:
+                return Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE);
+            default:
+                return List.of(Protocol.HTTP_2, Protocol.HTTP_1_1);
+        }
+    }
+
+    /**
+     * Set protocols, dispatcher and connection pool on {@code builder}.
+     */
+    public OkHttpClient.Builder apply(OkHttpClient.Builder builder) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(64, maxRequestsPerHost()));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost());
+
+        return builder
+                .protocols(protocols())
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(maxConnections, 5, TimeUnit.MINUTES));
+    }
+
+    @Override
+    public String toString() {
+        switch (mode) {
+            case HTTP_1_1:
+                return String.format("HTTP/1.1, %d connections", maxConnections);
+            case H2_PRIOR_KNOWLEDGE:
+                return String.format("h2c, %d connections x %d streams", maxConnections, maxStreamsPerConnection);
+            default:
+                return String.format("HTTP/2, %d connections x %d streams", maxConnections, maxStreamsPerConnection);
+        }
+    }
+}
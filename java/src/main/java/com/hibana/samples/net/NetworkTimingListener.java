@@ -0,0 +1,192 @@
+package com.hibana.samples.net;
+
+import com.hibana.samples.client.ChatHttpClient;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * OkHttp {@link EventListener} that times each phase of a call and hands a
+ * {@link CallTiming} to a sink when the call ends.
+ *
+ * <pre>
+ * NetworkTimings timings = new NetworkTimings();
+ * OkHttpClient http = HibanaClients.http().newBuilder()
+ *         .eventListenerFactory(NetworkTimingListener.factory(timings))
+ *         .build();
+ * </pre>
+ *
+ * The model comes from the {@link ChatHttpClient.ModelTag} on the request.
+ * Phases that repeat within a call (retries, redirects) are summed. The
+ * call ends when the response body has been read or the call fails, so
+ * streaming calls are timed until the end of the stream.
+ *
+ * Every event but {@code canceled} arrives on the thread running the call.
+ * {@code canceled} comes from whichever thread cancels it, so it only marks
+ * the call; the timing is reported from the call's own {@code callFailed}
+ * (or {@code callEnd}, if it had already finished), which sees all the
+ * phases it recorded.
+ */
+public class NetworkTimingListener extends EventListener {
+
+    private final Consumer<CallTiming> sink;
+
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long requestStart;
+    private long requestEnd;
+    private long responseHeadersStart;
+
+    private long dnsNanos;
+    private long connectNanos;
+    private long tlsNanos;
+    private long acquireNanos;
+    private long requestNanos;
+    private long waitForHeadersNanos;
+    private long responseBodyNanos;
+    private boolean acquired;
+    private boolean connected;
+    private String protocol = "-";
+    private volatile boolean canceled;
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    public NetworkTimingListener(Consumer<CallTiming> sink) {
+        this.sink = sink;
+    }
+
+    public static EventListener.Factory factory(Consumer<CallTiming> sink) {
+        return call -> new NetworkTimingListener(sink);
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+        dnsNanos += System.nanoTime() - dnsStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+        connectStart = System.nanoTime();
+        secureConnectStart = 0;
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        tlsNanos += System.nanoTime() - secureConnectStart;
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+        endConnect();
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol, IOException e) {
+        endConnect();
+    }
+
+    private void endConnect() {
+        // TCP only: stop at the start of the TLS handshake when there was one
+        long end = secureConnectStart != 0 ? secureConnectStart : System.nanoTime();
+        connectNanos += end - connectStart;
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        acquireNanos = System.nanoTime() - callStart;
+        acquired = true;
+        protocol = connection.protocol().toString();
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEnd = System.nanoTime();
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEnd = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        responseHeadersStart = System.nanoTime();
+        requestNanos += requestEnd - requestStart;
+        waitForHeadersNanos += responseHeadersStart - requestEnd;
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        responseBodyNanos += System.nanoTime() - responseHeadersStart;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        report(call, false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        report(call, true);
+    }
+
+    @Override
+    public void canceled(Call call) {
+        canceled = true;
+    }
+
+    private void report(Call call, boolean failed) {
+        if (!reported.compareAndSet(false, true)) {
+            return;
+        }
+        Request request = call.request();
+        String model = ChatHttpClient.ModelTag.of(request);
+        sink.accept(new CallTiming(
+                request.url().host(),
+                model != null ? model : "-",
+                protocol,
+                acquired && !connected,
+                failed || canceled,
+                dnsNanos,
+                connectNanos,
+                tlsNanos,
+                acquireNanos,
+                requestNanos,
+                waitForHeadersNanos,
+                responseBodyNanos,
+                System.nanoTime() - callStart));
+    }
+}
@@ -0,0 +1,145 @@
+package com.hibana.samples.net;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Aggregates {@link CallTiming}s by host and model.
+ *
+ * The share of calls that opened a new connection, next to the DNS,
+ * connect and TLS time they paid, shows whether the pool is too small or
+ * idle connections are closed too early.
+ */
+public class NetworkTimings implements Consumer<CallTiming> {
+
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    @Override
+    public void accept(CallTiming timing) {
+        aggregates.computeIfAbsent(timing.host() + " " + timing.model(),
+                key -> new Aggregate(timing.host(), timing.model())).add(timing);
+    }
+
+    /**
+     * Snapshot of the aggregates, sorted by host and model.
+     */
+    public List<Aggregate> aggregates() {
+        List<Aggregate> list = new ArrayList<>(aggregates.values());
+        list.sort(Comparator.comparing(Aggregate::host).thenComparing(Aggregate::model));
+        return list;
+    }
+
+    public void reset() {
+        aggregates.clear();
+    }
+
+    /**
+     * Table of average phase times per host and model.
+     */
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-28s %-22s %6s %6s %9s %9s %9s %9s %9s %9s%n",
+                "Host", "Model", "Calls", "New", "DNS", "Connect", "TLS", "Wait", "Body", "Total"));
+        for (Aggregate a : aggregates()) {
+            out.append(String.format("%-28s %-22s %6d %6d %9s %9s %9s %9s %9s %9s%n",
+                    a.host(), a.model(), a.calls(), a.newConnections(),
+                    CallTiming.ms(a.averageDnsNanos()), CallTiming.ms(a.averageConnectNanos()),
+                    CallTiming.ms(a.averageTlsNanos()), CallTiming.ms(a.averageWaitForHeadersNanos()),
+                    CallTiming.ms(a.averageResponseBodyNanos()), CallTiming.ms(a.averageTotalNanos())));
+        }
+        out.append("(DNS, connect and TLS are averaged over the calls that opened a new connection)");
+        return out.toString();
+    }
+
+    public static final class Aggregate {
+        private final String host;
+        private final String model;
+        private long calls;
+        private long failures;
+        private long newConnections;
+        private long dnsNanos;
+        private long connectNanos;
+        private long tlsNanos;
+        private long waitForHeadersNanos;
+        private long responseBodyNanos;
+        private long totalNanos;
+        private long maxTotalNanos;
+
+        Aggregate(String host, String model) {
+            this.host = host;
+            this.model = model;
+        }
+
+        synchronized void add(CallTiming timing) {
+            calls++;
+            if (timing.failed()) {
+                failures++;
+            }
+            if (!timing.connectionReused()) {
+                newConnections++;
+            }
+            dnsNanos += timing.dnsNanos();
+            connectNanos += timing.connectNanos();
+            tlsNanos += timing.tlsNanos();
+            waitForHeadersNanos += timing.waitForHeadersNanos();
+            responseBodyNanos += timing.responseBodyNanos();
+            totalNanos += timing.totalNanos();
+            maxTotalNanos = Math.max(maxTotalNanos, timing.totalNanos());
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public String model() {
+            return model;
+        }
+
+        public synchronized long calls() {
+            return calls;
+        }
+
+        public synchronized long failures() {
+            return failures;
+        }
+
+        /**
+         * Calls that did not get a pooled connection.
+         */
+        public synchronized long newConnections() {
+            return newConnections;
+        }
+
+        public synchronized long averageDnsNanos() {
+            return newConnections == 0 ? 0 : dnsNanos / newConnections;
+        }
+
+        public synchronized long averageConnectNanos() {
+            return newConnections == 0 ? 0 : connectNanos / newConnections;
+        }
+
+        public synchronized long averageTlsNanos() {
+            return newConnections == 0 ? 0 : tlsNanos / newConnections;
+        }
+
+        public synchronized long averageWaitForHeadersNanos() {
+            return calls == 0 ? 0 : waitForHeadersNanos / calls;
+        }
+
+        public synchronized long averageResponseBodyNanos() {
+            return calls == 0 ? 0 : responseBodyNanos / calls;
+        }
+
+        public synchronized long averageTotalNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+
+        public synchronized long maxTotalNanos() {
+            return maxTotalNanos;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.hibana.samples.net;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses request bodies above a size threshold, for long-context
+ * prompts sent over slow links.
+ *
+ * <pre>
+ * RequestCompressionInterceptor compression = RequestCompressionInterceptor.gzip(8 * 1024);
+ * OkHttpClient http = HibanaClients.http().newBuilder()
+ *         .addInterceptor(compression)
+ *         .build();
+ * </pre>
+ *
+ * Not every server accepts compressed request bodies. The first compressed
+ * request to a host finds out: if it is answered with
+ * {@code 415 Unsupported Media Type} the request is sent again uncompressed
+ * and that host is not compressed for again. Add it with
+ * {@code addInterceptor}, not {@code addNetworkInterceptor}, so the retry
+ * is allowed.
+ *
+ * Prompts are mostly text and JSON, which usually shrink to a fraction of
+ * their size; {@link #summary()} reports the bytes saved and the CPU time
+ * spent compressing them.
+ */
+public class RequestCompressionInterceptor implements Interceptor {
+
+    public enum Encoding {
+        GZIP,
+        DEFLATE;
+
+        String headerValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private enum Support {
+        UNKNOWN,
+        SUPPORTED,
+        UNSUPPORTED
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Encoding encoding;
+    private final int minBytes;
+    private final int level;
+    private final Map<String, Support> hosts = new ConcurrentHashMap<>();
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder originalBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+
+    /**
+     * @param minBytes bodies smaller than this are sent as they are
+     * @param level    {@link Deflater} level, 1 (fastest) to 9 (smallest)
+     */
+    public RequestCompressionInterceptor(Encoding encoding, int minBytes, int level) {
+        this.encoding = encoding;
+        this.minBytes = minBytes;
+        this.level = level;
+    }
+
+    public static RequestCompressionInterceptor gzip(int minBytes) {
+        return new RequestCompressionInterceptor(Encoding.GZIP, minBytes, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public static RequestCompressionInterceptor deflate(int minBytes) {
+        return new RequestCompressionInterceptor(Encoding.DEFLATE, minBytes, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        RequestBody body = request.body();
+        String host = request.url().host();
+        if (body == null
+                || request.header("Content-Encoding") != null
+                || hosts.getOrDefault(host, Support.UNKNOWN) == Support.UNSUPPORTED
+                || body.contentLength() < minBytes) {
+            return chain.proceed(request);
+        }
+
+        Buffer original = new Buffer();
+        body.writeTo(original);
+        byte[] plain = original.readByteArray();
+        Request uncompressed = request.newBuilder()
+                .method(request.method(), RequestBody.create(plain, body.contentType()))
+                .build();
+
+        long cpuStart = THREADS.getCurrentThreadCpuTime();
+        byte[] packed = compress(plain);
+        cpuNanos.add(THREADS.getCurrentThreadCpuTime() - cpuStart);
+
+        if (packed.length >= plain.length) {
+            // Already compressed or random data; not worth it
+            skipped.increment();
+            return chain.proceed(uncompressed);
+        }
+
+        Request compressedRequest = uncompressed.newBuilder()
+                .header("Content-Encoding", encoding.headerValue())
+                .method(request.method(), RequestBody.create(packed, body.contentType()))
+                .build();
+        Response response = chain.proceed(compressedRequest);
+
+        if (response.code() == 415) {
+            hosts.put(host, Support.UNSUPPORTED);
+            fallbacks.increment();
+            response.close();
+            return chain.proceed(uncompressed);
+        }
+
+        hosts.putIfAbsent(host, Support.SUPPORTED);
+        compressed.increment();
+        originalBytes.add(plain.length);
+        compressedBytes.add(packed.length);
+        return response;
+    }
+
+    private byte[] compress(byte[] plain) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(plain.length / 4 + 64);
+        if (encoding == Encoding.GZIP) {
+            try (OutputStream gzip = new LeveledGzipOutputStream(out, level)) {
+                gzip.write(plain);
+            }
+        } else {
+            Deflater deflater = new Deflater(level);
+            try (OutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+                deflate.write(plain);
+            } finally {
+                deflater.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Whether {@code host} has accepted compressed bodies; {@code null} until
+     * a compressed request has been sent to it.
+     */
+    public Boolean supports(String host) {
+        Support support = hosts.get(host);
+        return support == null || support == Support.UNKNOWN ? null : support == Support.SUPPORTED;
+    }
+
+    public long compressedRequests() {
+        return compressed.sum();
+    }
+
+    /**
+     * Requests that were rejected with 415 and sent again uncompressed.
+     */
+    public long fallbacks() {
+        return fallbacks.sum();
+    }
+
+    public long originalBytes() {
+        return originalBytes.sum();
+    }
+
+    public long compressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    public long bytesSaved() {
+        return originalBytes.sum() - compressedBytes.sum();
+    }
+
+    /**
+     * CPU time spent compressing, including bodies that were later sent uncompressed.
+     */
+    public long cpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    public String summary() {
+        long original = originalBytes.sum();
+        long packed = compressedBytes.sum();
+        return String.format("%s: %d compressed, %d skipped, %d fallback(s); %,d -> %,d bytes (%.0f%% saved), %.1f ms CPU",
+                encoding.headerValue(), compressed.sum(), skipped.sum(), fallbacks.sum(), original, packed,
+                original == 0 ? 0 : 100.0 * (original - packed) / original, cpuNanos.sum() / 1e6);
+    }
+
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+        LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+            super(out, 8192);
+            def.setLevel(level);
+        }
+    }
+}
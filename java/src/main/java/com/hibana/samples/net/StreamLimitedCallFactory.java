@@ -0,0 +1,104 @@
+package com.hibana.samples.net;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads HTTP/2 calls over a fixed set of connections, never putting more
+ * than {@code maxStreamsPerConnection} concurrent streams on one.
+ *
+ * A single OkHttp client learns the server's stream limit from its SETTINGS
+ * frame, which arrives after the first requests have already gone out. A
+ * burst on a fresh connection can therefore exceed the limit; the server
+ * refuses the extra streams (or drops the connection) and OkHttp retries
+ * them on new connections. Here each connection belongs to its own client
+ * whose dispatcher admits at most {@code maxStreamsPerConnection} calls,
+ * and new calls go to the least loaded one, so the limit holds from the
+ * first request.
+ *
+ * <pre>
+ * StreamLimitedCallFactory calls = new StreamLimitedCallFactory(
+ *         HttpProtocolConfig.http2(4, 100), HibanaClients.http());
+ * calls.newCall(request).enqueue(callback);
+ * </pre>
+ *
+ * Only asynchronous ({@code enqueue}) calls are held back by the stream
+ * limit; synchronous calls are still spread over the connections.
+ */
+public final class StreamLimitedCallFactory implements Call.Factory, AutoCloseable {
+
+    private final OkHttpClient[] clients;
+    private final ExecutorService executor;
+
+    /**
+     * @param base client whose timeouts, interceptors and listeners are kept;
+     *             its protocols, dispatcher and pool are replaced
+     */
+    public StreamLimitedCallFactory(HttpProtocolConfig config, OkHttpClient base) {
+        if (config.mode() == HttpProtocolConfig.Mode.HTTP_1_1) {
+            throw new IllegalArgumentException("HTTP/1.1 carries one request per connection; use HttpProtocolConfig.apply");
+        }
+        // One thread pool for all dispatchers, like a single OkHttpClient would have
+        executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stream-limited-dispatcher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        clients = new OkHttpClient[config.maxConnections()];
+        for (int i = 0; i < clients.length; i++) {
+            Dispatcher dispatcher = new Dispatcher(executor);
+            dispatcher.setMaxRequests(config.maxStreamsPerConnection());
+            dispatcher.setMaxRequestsPerHost(config.maxStreamsPerConnection());
+            clients[i] = base.newBuilder()
+                    .protocols(config.protocols())
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(1, 5, TimeUnit.MINUTES))
+                    .build();
+        }
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        OkHttpClient least = clients[0];
+        int leastLoad = Integer.MAX_VALUE;
+        for (OkHttpClient client : clients) {
+            Dispatcher dispatcher = client.dispatcher();
+            int load = dispatcher.runningCallsCount() + dispatcher.queuedCallsCount();
+            if (load < leastLoad) {
+                least = client;
+                leastLoad = load;
+            }
+        }
+        return least.newCall(request);
+    }
+
+    /**
+     * Open connections across all clients.
+     */
+    public int connectionCount() {
+        int count = 0;
+        for (OkHttpClient client : clients) {
+            count += client.connectionPool().connectionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        for (OkHttpClient client : clients) {
+            client.dispatcher().cancelAll();
+            client.connectionPool().evictAll();
+        }
+        executor.shutdown();
+    }
+}
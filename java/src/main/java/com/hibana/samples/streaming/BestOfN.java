@@ -0,0 +1,505 @@
+package com.hibana.samples.streaming;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hibana.samples.client.ChatHttpClient;
+import com.hibana.samples.threads.ThreadMode;
+import okhttp3.Call;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Streams several candidate completions of one prompt at once, on the same
+ * or different models, and keeps the best one.
+ *
+ * <pre>
+ * BestOfN.Result result = new BestOfN(chat, scorer)
+ *         .threshold(0.9)
+ *         .margin(0.2)
+ *         .patience(Duration.ofMillis(500))
+ *         .run(BestOfN.requests(body, List.of("gpt-5-nano", "claude-haiku-4-5", "deepseek-chat")));
+ * System.out.println(result.winner().text());
+ * </pre>
+ *
+ * Each candidate streams on its own thread (a virtual thread in
+ * {@link ThreadMode#VIRTUAL} mode) and is scored on every content chunk,
+ * so a candidate can be given up long before it finishes. A candidate is
+ * cancelled, which closes its connection so the server stops generating:
+ * <ul>
+ *   <li>when another candidate finishes with a score of at least
+ *       {@link #threshold} — that one wins at once;</li>
+ *   <li>when a finished candidate's score leads its own by at least
+ *       {@link #margin};</li>
+ *   <li>when its score is {@code -Infinity}, i.e. it broke a hard rule;</li>
+ *   <li>when it is still running {@link #patience} after the first
+ *       candidate finished.</li>
+ * </ul>
+ * The winner is the finished candidate with the highest score. With the
+ * defaults (no threshold, margin or patience) every candidate runs to the
+ * end, and the call takes as long as the slowest one.
+ */
+public final class BestOfN {
+
+    /**
+     * Scores a candidate's answer; higher is better.
+     *
+     * Called on the candidate's thread for every content chunk, so it should
+     * be cheap. For an unfinished answer it should return the score the
+     * answer is on course for, since that is what decides whether it is
+     * worth waiting for.
+     */
+    @FunctionalInterface
+    public interface Scorer {
+        /**
+         * @param text     the answer so far
+         * @param complete whether the model has finished it
+         * @return the score; {@link Double#NEGATIVE_INFINITY} disqualifies the candidate
+         */
+        double score(CharSequence text, boolean complete);
+    }
+
+    /**
+     * How a candidate ended.
+     */
+    public enum State {
+        /** The model finished the answer. */
+        COMPLETE,
+        /** Given up in favour of a better candidate. */
+        CANCELLED,
+        /** The request or the stream failed. */
+        FAILED
+    }
+
+    private final ChatHttpClient chat;
+    private final Scorer scorer;
+    private final ThreadFactory threads;
+    private double threshold = Double.POSITIVE_INFINITY;
+    private double margin = Double.POSITIVE_INFINITY;
+    private Duration patience;
+
+    /**
+     * Candidate threads of the {@link ThreadMode#configured()} mode.
+     */
+    public BestOfN(ChatHttpClient chat, Scorer scorer) {
+        this(chat, scorer, ThreadMode.configured());
+    }
+
+    public BestOfN(ChatHttpClient chat, Scorer scorer, ThreadMode mode) {
+        this.chat = chat;
+        this.scorer = scorer;
+        this.threads = mode.threadFactory("best-of-n");
+    }
+
+    /**
+     * A finished candidate with at least this score wins at once (default:
+     * none).
+     */
+    public BestOfN threshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    /**
+     * Cancel a running candidate once a finished one leads it by at least
+     * this much (default: never).
+     */
+    public BestOfN margin(double margin) {
+        this.margin = margin;
+        return this;
+    }
+
+    /**
+     * How long the other candidates may keep running after the first one
+     * finished (default: until they finish).
+     */
+    public BestOfN patience(Duration patience) {
+        this.patience = patience;
+        return this;
+    }
+
+    /**
+     * Copies of {@code body}, one per entry of {@code models}, which may
+     * repeat a model. Each copy gets its own {@code seed} (counting up from
+     * the body's), so samples of the same model differ.
+     */
+    public static List<JsonObject> requests(JsonObject body, List<String> models) {
+        long seed = body.has("seed") ? body.get("seed").getAsLong() : 0;
+        List<JsonObject> requests = new ArrayList<>(models.size());
+        for (int i = 0; i < models.size(); i++) {
+            JsonObject request = body.deepCopy();
+            request.addProperty("model", models.get(i));
+            request.addProperty("seed", seed + i);
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * Stream every request at once and wait for the winner.
+     *
+     * @param requests request JSON, as for {@link ChatHttpClient#stream};
+     *                 one candidate each
+     * @throws IOException           if no candidate finished with a score
+     *                               above {@code -Infinity}; the failures
+     *                               are attached
+     * @throws CancellationException if the thread is interrupted; all
+     *                               candidates are cancelled
+     */
+    public Result run(List<JsonObject> requests) throws IOException {
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("No candidates");
+        }
+        long start = System.nanoTime();
+        Race race = new Race();
+        List<Candidate> candidates = new ArrayList<>(requests.size());
+        List<Thread> running = new ArrayList<>(requests.size());
+        for (JsonObject request : requests) {
+            Candidate candidate = new Candidate(candidates.size(), request, chat.newStreamCall(request), start);
+            candidates.add(candidate);
+            race.running.add(candidate);
+        }
+        for (Candidate candidate : candidates) {
+            Thread thread = threads.newThread(() -> stream(candidate, race));
+            thread.start();
+            running.add(thread);
+        }
+
+        boolean interrupted = false;
+        try {
+            race.await();
+        } catch (InterruptedException e) {
+            interrupted = true;
+            race.cancelAll();
+        }
+        for (Thread thread : running) {
+            join(thread);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while running " + candidates.size() + " candidates");
+        }
+
+        List<Outcome> outcomes = new ArrayList<>(candidates.size());
+        Outcome winner = null;
+        for (Candidate candidate : candidates) {
+            Outcome outcome = candidate.outcome();
+            outcomes.add(outcome);
+            if (candidate == race.best) {
+                winner = outcome;
+            }
+        }
+        if (winner == null) {
+            IOException failure = new IOException("None of " + candidates.size() + " candidates finished with a valid score");
+            for (Outcome outcome : outcomes) {
+                if (outcome.error() != null) {
+                    failure.addSuppressed(outcome.error());
+                }
+            }
+            throw failure;
+        }
+        return new Result(winner, outcomes, System.nanoTime() - start);
+    }
+
+    /**
+     * Candidate thread: stream, score every chunk, report the end.
+     */
+    private void stream(Candidate candidate, Race race) {
+        try {
+            chat.streamWhile(candidate.call, chunk -> {
+                if (candidate.cancelled) {
+                    return false;
+                }
+                JsonObject choice = firstChoice(chunk);
+                JsonObject delta = choice != null && choice.has("delta") ? choice.getAsJsonObject("delta") : null;
+                JsonElement content = delta != null ? delta.get("content") : null;
+                if (content != null && !content.isJsonNull() && !content.getAsString().isEmpty()) {
+                    candidate.tokens++;
+                    candidate.text.append(content.getAsString());
+                    race.scored(candidate, scorer.score(candidate.text, false));
+                }
+                JsonElement reason = choice != null ? choice.get("finish_reason") : null;
+                if (reason != null && !reason.isJsonNull()) {
+                    candidate.finishReason = reason.getAsString();
+                }
+                return !candidate.cancelled;
+            });
+            if (candidate.cancelled) {
+                race.ended(candidate, State.CANCELLED, null);
+            } else if (candidate.finishReason == null) {
+                race.ended(candidate, State.FAILED, new IOException("Stream ended without a finish_reason"));
+            } else {
+                race.finished(candidate, scorer.score(candidate.text, true));
+            }
+        } catch (IOException | RuntimeException e) {
+            race.ended(candidate, candidate.cancelled ? State.CANCELLED : State.FAILED, candidate.cancelled ? null : e);
+        }
+    }
+
+    private static JsonObject firstChoice(JsonObject chunk) {
+        JsonArray choices = chunk.has("choices") ? chunk.getAsJsonArray("choices") : null;
+        return choices != null && choices.size() > 0 ? choices.get(0).getAsJsonObject() : null;
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                // Candidates were already cancelled; wait for them to notice
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The candidates still running and the best finished one; decides who
+     * gets cancelled. All state changes happen under its lock.
+     */
+    private final class Race {
+        private final List<Candidate> running = new ArrayList<>();
+        private Candidate best;
+        private long firstFinishedNanos;
+        private boolean decided;
+
+        synchronized void scored(Candidate candidate, double score) {
+            candidate.score = score;
+            if (score == Double.NEGATIVE_INFINITY || (best != null && best.score - score >= margin)) {
+                candidate.cancel();
+            }
+        }
+
+        synchronized void finished(Candidate candidate, double score) {
+            candidate.score = score;
+            end(candidate, State.COMPLETE, null);
+            if (firstFinishedNanos == 0) {
+                firstFinishedNanos = System.nanoTime();
+            }
+            if (score == Double.NEGATIVE_INFINITY || (best != null && score <= best.score)) {
+                return;
+            }
+            best = candidate;
+            if (score >= threshold) {
+                decided = true;
+                cancelAll();
+                return;
+            }
+            for (Candidate other : running) {
+                if (best.score - other.score >= margin) {
+                    other.cancel();
+                }
+            }
+        }
+
+        synchronized void ended(Candidate candidate, State state, Throwable error) {
+            end(candidate, state, error);
+        }
+
+        private void end(Candidate candidate, State state, Throwable error) {
+            candidate.state = state;
+            candidate.error = error;
+            candidate.elapsedNanos = System.nanoTime() - candidate.startNanos;
+            running.remove(candidate);
+            notifyAll();
+        }
+
+        synchronized void cancelAll() {
+            for (Candidate candidate : running) {
+                candidate.cancel();
+            }
+        }
+
+        /**
+         * Wait until every candidate has ended, cancelling the stragglers
+         * once patience runs out.
+         */
+        synchronized void await() throws InterruptedException {
+            while (!running.isEmpty()) {
+                if (decided || firstFinishedNanos == 0 || patience == null) {
+                    wait();
+                    continue;
+                }
+                long remaining = firstFinishedNanos + patience.toNanos() - System.nanoTime();
+                if (remaining <= 0) {
+                    decided = true;
+                    cancelAll();
+                } else {
+                    wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                }
+            }
+        }
+    }
+
+    /**
+     * One candidate's stream. Its text and token count belong to its
+     * thread until the thread has been joined.
+     */
+    private static final class Candidate {
+        private final int index;
+        private final String model;
+        private final Call call;
+        private final long startNanos;
+        private final StringBuilder text = new StringBuilder();
+        private volatile boolean cancelled;
+        private long tokens;
+        private String finishReason;
+        // Guarded by the race
+        private double score = Double.NaN;
+        private State state;
+        private Throwable error;
+        private long elapsedNanos;
+
+        Candidate(int index, JsonObject request, Call call, long startNanos) {
+            this.index = index;
+            this.model = request.has("model") ? request.get("model").getAsString() : "";
+            this.call = call;
+            this.startNanos = startNanos;
+        }
+
+        void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                // Also ends a call still waiting for its first byte
+                call.cancel();
+            }
+        }
+
+        Outcome outcome() {
+            return new Outcome(index, model, text.toString(), score, state, finishReason, tokens, elapsedNanos, error);
+        }
+    }
+
+    /**
+     * How one candidate did.
+     */
+    public static final class Outcome {
+        private final int index;
+        private final String model;
+        private final String text;
+        private final double score;
+        private final State state;
+        private final String finishReason;
+        private final long tokens;
+        private final long elapsedNanos;
+        private final Throwable error;
+
+        Outcome(int index, String model, String text, double score, State state, String finishReason, long tokens,
+                long elapsedNanos, Throwable error) {
+            this.index = index;
+            this.model = model;
+            this.text = text;
+            this.score = score;
+            this.state = state;
+            this.finishReason = finishReason;
+            this.tokens = tokens;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        /**
+         * Position in the list of requests.
+         */
+        public int index() {
+            return index;
+        }
+
+        public String model() {
+            return model;
+        }
+
+        /**
+         * The answer, or as much of it as arrived before it was cancelled.
+         */
+        public String text() {
+            return text;
+        }
+
+        /**
+         * The last score; {@code NaN} if no content arrived.
+         */
+        public double score() {
+            return score;
+        }
+
+        public State state() {
+            return state;
+        }
+
+        public String finishReason() {
+            return finishReason;
+        }
+
+        /**
+         * Output tokens received, counted as content chunks.
+         */
+        public long tokens() {
+            return tokens;
+        }
+
+        /**
+         * From the start of the run to when this candidate ended.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Why the candidate failed; {@code null} unless {@link State#FAILED}.
+         */
+        public Throwable error() {
+            return error;
+        }
+    }
+
+    /**
+     * The winner and how every candidate did.
+     */
+    public static final class Result {
+        private final Outcome winner;
+        private final List<Outcome> candidates;
+        private final long elapsedNanos;
+
+        Result(Outcome winner, List<Outcome> candidates, long elapsedNanos) {
+            this.winner = winner;
+            this.candidates = Collections.unmodifiableList(candidates);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Outcome winner() {
+            return winner;
+        }
+
+        /**
+         * Every candidate, in the order of the requests.
+         */
+        public List<Outcome> candidates() {
+            return candidates;
+        }
+
+        /**
+         * Output tokens received over all candidates.
+         */
+        public long tokens() {
+            return candidates.stream().mapToLong(Outcome::tokens).sum();
+        }
+
+        /**
+         * Until the last candidate ended; the winner's answer was ready at
+         * {@code winner().elapsedNanos()}.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.hibana.samples.streaming;
+
+/**
+ * A {@link StreamTee} consumer fell so far behind that its buffer filled
+ * up, and was cut off so the stream and the other consumers could go on.
+ * It missed the rest of the stream.
+ */
+public class ConsumerDetachedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String consumer;
+    private final long delivered;
+
+    public ConsumerDetachedException(String consumer, int bufferSize, long delivered) {
+        super(String.format("Consumer %s detached: buffer of %d chunks full after %d chunks delivered",
+                consumer, bufferSize, delivered));
+        this.consumer = consumer;
+        this.delivered = delivered;
+    }
+
+    public String consumer() {
+        return consumer;
+    }
+
+    /**
+     * Chunks the consumer received before it was detached.
+     */
+    public long delivered() {
+        return delivered;
+    }
+}
@@ -0,0 +1,146 @@
+package com.hibana.samples.streaming;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hibana.samples.client.ChatHttpClient;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Streams a chat completion and cancels it as soon as a
+ * {@link StopCondition} is met, instead of waiting for the model to finish.
+ *
+ * <pre>
+ * EarlyStopStream.Result result = new EarlyStopStream(chat)
+ *         .stream(body, StopCondition.lines(1), chunk -> print(chunk));
+ * System.out.println(result.text() + (result.isStopped() ? " (stopped early)" : ""));
+ * </pre>
+ *
+ * Cancelling closes the connection (or resets the HTTP/2 stream), so the
+ * server stops generating: the tokens after the stop are neither waited
+ * for nor paid for. They are counted as content chunks of the first
+ * choice, which is about one token each; the usage chunk never arrives
+ * for a cancelled stream.
+ *
+ * The consumer gets every chunk up to the one that met the condition,
+ * with that chunk's content cut where the condition says the answer ends,
+ * so it sees exactly {@link Result#text()}.
+ */
+public final class EarlyStopStream {
+
+    private final ChatHttpClient chat;
+
+    public EarlyStopStream(ChatHttpClient chat) {
+        this.chat = chat;
+    }
+
+    /**
+     * Stream {@code body} until it finishes or {@code condition} is met.
+     *
+     * @param body    request JSON, as for {@link ChatHttpClient#stream}
+     * @param onChunk receives the chunks up to the stop
+     */
+    public Result stream(JsonObject body, StopCondition condition, Consumer<JsonObject> onChunk) throws IOException {
+        StopCondition.Detector detector = condition.newDetector();
+        StringBuilder text = new StringBuilder();
+        long[] tokens = {0};
+        String[] finishReason = {null};
+        boolean[] stopped = {false};
+        long start = System.nanoTime();
+
+        chat.streamWhile(body, chunk -> {
+            JsonObject choice = firstChoice(chunk);
+            JsonObject delta = choice != null && choice.has("delta") ? choice.getAsJsonObject("delta") : null;
+            JsonElement content = delta != null ? delta.get("content") : null;
+            if (content != null && !content.isJsonNull() && !content.getAsString().isEmpty()) {
+                tokens[0]++;
+                int from = text.length();
+                text.append(content.getAsString());
+                int end = detector.accept(text, from);
+                if (end >= 0) {
+                    text.setLength(end);
+                    delta.addProperty("content", text.substring(Math.min(from, end)));
+                    onChunk.accept(chunk);
+                    stopped[0] = true;
+                    return false;
+                }
+            }
+            JsonElement reason = choice != null ? choice.get("finish_reason") : null;
+            if (reason != null && !reason.isJsonNull()) {
+                finishReason[0] = reason.getAsString();
+            }
+            onChunk.accept(chunk);
+            return true;
+        });
+
+        return new Result(text.toString(), stopped[0] ? condition : null, finishReason[0], tokens[0],
+                System.nanoTime() - start);
+    }
+
+    private static JsonObject firstChoice(JsonObject chunk) {
+        JsonArray choices = chunk.has("choices") ? chunk.getAsJsonArray("choices") : null;
+        return choices != null && choices.size() > 0 ? choices.get(0).getAsJsonObject() : null;
+    }
+
+    /**
+     * The answer as far as it was streamed, and whether a condition cut it short.
+     */
+    public static final class Result {
+        private final String text;
+        private final StopCondition stoppedBy;
+        private final String finishReason;
+        private final long tokens;
+        private final long elapsedNanos;
+
+        Result(String text, StopCondition stoppedBy, String finishReason, long tokens, long elapsedNanos) {
+            this.text = text;
+            this.stoppedBy = stoppedBy;
+            this.finishReason = finishReason;
+            this.tokens = tokens;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * The answer up to where the condition says it ends, or in full if
+         * the stream finished first.
+         */
+        public String text() {
+            return text;
+        }
+
+        public boolean isStopped() {
+            return stoppedBy != null;
+        }
+
+        /**
+         * The condition that stopped the stream, or {@code null} if it ran to the end.
+         */
+        public StopCondition stoppedBy() {
+            return stoppedBy;
+        }
+
+        /**
+         * The model's finish reason, or {@code null} if the stream was stopped.
+         */
+        public String finishReason() {
+            return finishReason;
+        }
+
+        /**
+         * Output tokens received, including any cut off after the stop point
+         * in the last chunk.
+         */
+        public long tokens() {
+            return tokens;
+        }
+
+        /**
+         * From sending the request to the stop or the end of the stream.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.hibana.samples.streaming;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hibana.samples.client.ChatHttpClient;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Streams a chat completion and, if the connection drops before the end,
+ * asks the model to continue from where it stopped instead of starting
+ * over.
+ *
+ * <pre>
+ * ResumableStream.Result result = new ResumableStream(chat).stream(body, chunk -> print(chunk));
+ * System.out.println(result.resumes() + " resumes, " + result.salvagedTokens() + " tokens salvaged");
+ * </pre>
+ *
+ * A stream ended abnormally if reading it failed or it closed without a
+ * {@code finish_reason}. The text received so far is then sent back as an
+ * assistant message, followed (in {@link Continuation#INSTRUCTION} mode)
+ * by a user message asking to continue, and the new stream's chunks go to
+ * the same consumer. If the continuation repeats the last words received,
+ * the repeated part is cut off first, so the consumer sees one unbroken
+ * text. {@code max_tokens} is reduced by the tokens already received.
+ *
+ * Only streams that already produced content are resumed: a first request
+ * that fails before its first token is rethrown, since retrying it is a
+ * retry policy's job (see Example10_ErrorHandling). A continuation that
+ * fails that way counts as one of the {@code maxResumes}, so the text
+ * already received is not thrown away. Tokens are counted as content
+ * chunks, which is about one token each.
+ */
+public final class ResumableStream {
+
+    /**
+     * How the partial answer is handed back to the model.
+     */
+    public enum Continuation {
+        /**
+         * The partial answer as the final assistant message, for providers
+         * that continue a trailing assistant message (prefill).
+         */
+        ASSISTANT_PREFIX,
+        /**
+         * The partial answer as an assistant message followed by a user
+         * message asking to continue; works with every provider.
+         */
+        INSTRUCTION
+    }
+
+    public static final String CONTINUE_INSTRUCTION = "Your previous answer was cut off. Continue it exactly"
+            + " where it stopped, without repeating anything and without any introduction.";
+
+    /** Characters of a continuation held back to check whether it repeats the end of the partial answer. */
+    private static final int OVERLAP_WINDOW = 64;
+    /** Shorter overlaps are kept: they are as likely to be a coincidence as a repeat. */
+    private static final int MIN_OVERLAP = 12;
+
+    private final ChatHttpClient chat;
+    private int maxResumes = 3;
+    private Continuation continuation = Continuation.INSTRUCTION;
+
+    public ResumableStream(ChatHttpClient chat) {
+        this.chat = chat;
+    }
+
+    /**
+     * Give up after this many resumes of one completion (default 3).
+     */
+    public ResumableStream maxResumes(int maxResumes) {
+        this.maxResumes = maxResumes;
+        return this;
+    }
+
+    public ResumableStream continuation(Continuation continuation) {
+        this.continuation = continuation;
+        return this;
+    }
+
+    /**
+     * Stream {@code body}, resuming it when it is cut off.
+     *
+     * @param body    request JSON, as for {@link ChatHttpClient#stream}
+     * @param onChunk receives the chunks of the first stream and then of
+     *                each continuation
+     * @throws IOException if the request fails before any content arrives,
+     *                     or is still cut off after {@code maxResumes} resumes
+     */
+    public Result stream(JsonObject body, Consumer<JsonObject> onChunk) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int resumes = 0;
+        long salvaged = 0;
+        while (true) {
+            JsonObject request = resumes == 0 ? body : continuationRequest(body, text, salvaged);
+            Attempt attempt = new Attempt(text, resumes > 0, onChunk);
+            IOException failure = null;
+            try {
+                chat.stream(request, attempt::accept);
+            } catch (IOException e) {
+                failure = e;
+            }
+            attempt.flush();
+
+            if (attempt.finishReason != null) {
+                return new Result(text.toString(), attempt.finishReason, resumes, salvaged,
+                        attempt.tokens + salvaged);
+            }
+            if (resumes == 0 && attempt.tokens == 0 && failure != null) {
+                throw failure;
+            }
+            if (resumes == maxResumes) {
+                throw new IOException("Stream still cut off after " + resumes + " resumes", failure);
+            }
+            salvaged += attempt.tokens;
+            resumes++;
+        }
+    }
+
+    private JsonObject continuationRequest(JsonObject body, StringBuilder text, long receivedTokens) {
+        JsonObject request = body.deepCopy();
+        JsonArray messages = request.getAsJsonArray("messages");
+        messages.add(message("assistant", text.toString()));
+        if (continuation == Continuation.INSTRUCTION) {
+            messages.add(message("user", CONTINUE_INSTRUCTION));
+        }
+        for (String limit : new String[]{"max_tokens", "max_completion_tokens"}) {
+            if (request.has(limit)) {
+                // The continuation only needs the rest
+                request.addProperty(limit, Math.max(1, request.get(limit).getAsLong() - receivedTokens));
+            }
+        }
+        return request;
+    }
+
+    private static JsonObject message(String role, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", role);
+        message.addProperty("content", content);
+        return message;
+    }
+
+    /**
+     * Length of the longest end of {@code text} that {@code continuation}
+     * starts with, if at least {@link #MIN_OVERLAP} characters.
+     */
+    static int overlap(CharSequence text, String continuation) {
+        String tail = text.subSequence(Math.max(0, text.length() - continuation.length()), text.length()).toString();
+        for (int length = tail.length(); length >= MIN_OVERLAP; length--) {
+            if (continuation.regionMatches(0, tail, tail.length() - length, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private static JsonObject delta(JsonObject chunk) {
+        JsonArray choices = chunk.has("choices") ? chunk.getAsJsonArray("choices") : null;
+        if (choices == null || choices.size() == 0) {
+            return null;
+        }
+        JsonObject choice = choices.get(0).getAsJsonObject();
+        return choice.has("delta") ? choice.getAsJsonObject("delta") : null;
+    }
+
+    private static String content(JsonObject chunk) {
+        JsonObject delta = delta(chunk);
+        JsonElement content = delta != null ? delta.get("content") : null;
+        return content != null && !content.isJsonNull() ? content.getAsString() : "";
+    }
+
+    private static String finishReason(JsonObject chunk) {
+        JsonArray choices = chunk.has("choices") ? chunk.getAsJsonArray("choices") : null;
+        if (choices == null || choices.size() == 0) {
+            return null;
+        }
+        JsonElement reason = choices.get(0).getAsJsonObject().get("finish_reason");
+        return reason != null && !reason.isJsonNull() ? reason.getAsString() : null;
+    }
+
+    /**
+     * One request's stream: forwards chunks, holding back the start of a
+     * continuation until any repeated text can be cut off.
+     */
+    private static final class Attempt {
+        private final StringBuilder text;
+        private final Consumer<JsonObject> onChunk;
+        private boolean holding;
+        private final StringBuilder held = new StringBuilder();
+        private JsonObject lastHeld;
+        private String finishReason;
+        private long tokens;
+
+        Attempt(StringBuilder text, boolean continuation, Consumer<JsonObject> onChunk) {
+            this.text = text;
+            this.holding = continuation;
+            this.onChunk = onChunk;
+        }
+
+        void accept(JsonObject chunk) {
+            String content = content(chunk);
+            if (!content.isEmpty()) {
+                tokens++;
+            }
+            String reason = finishReason(chunk);
+            if (reason != null) {
+                finishReason = reason;
+            }
+            if (!holding) {
+                text.append(content);
+                onChunk.accept(chunk);
+                return;
+            }
+            if (content.isEmpty() && reason == null) {
+                // The continuation's opening role chunk; the consumer already had one
+                return;
+            }
+            held.append(content);
+            lastHeld = chunk;
+            if (held.length() >= OVERLAP_WINDOW || reason != null) {
+                flush();
+            }
+        }
+
+        /**
+         * Forward held-back continuation text as one chunk, minus any repeat.
+         */
+        void flush() {
+            if (!holding || lastHeld == null) {
+                holding = false;
+                return;
+            }
+            holding = false;
+            String fresh = held.substring(overlap(text, held.toString()));
+            JsonObject delta = delta(lastHeld);
+            if (delta == null) {
+                // E.g. a finish chunk without a delta; held chunks always have a choice
+                delta = new JsonObject();
+                lastHeld.getAsJsonArray("choices").get(0).getAsJsonObject().add("delta", delta);
+            }
+            delta.addProperty("content", fresh);
+            text.append(fresh);
+            onChunk.accept(lastHeld);
+        }
+    }
+
+    /**
+     * A completed stream and how much of it was saved from dropped connections.
+     */
+    public static final class Result {
+        private final String text;
+        private final String finishReason;
+        private final int resumes;
+        private final long salvagedTokens;
+        private final long tokens;
+
+        Result(String text, String finishReason, int resumes, long salvagedTokens, long tokens) {
+            this.text = text;
+            this.finishReason = finishReason;
+            this.resumes = resumes;
+            this.salvagedTokens = salvagedTokens;
+            this.tokens = tokens;
+        }
+
+        /**
+         * The full answer, as delivered to the consumer.
+         */
+        public String text() {
+            return text;
+        }
+
+        public String finishReason() {
+            return finishReason;
+        }
+
+        /**
+         * Continuation requests sent after the connection dropped.
+         */
+        public int resumes() {
+            return resumes;
+        }
+
+        /**
+         * Tokens received before connections dropped that did not have to
+         * be generated again; a restart would have paid for them twice.
+         */
+        public long salvagedTokens() {
+            return salvagedTokens;
+        }
+
+        /**
+         * Output tokens received over all attempts.
+         */
+        public long tokens() {
+            return tokens;
+        }
+    }
+}
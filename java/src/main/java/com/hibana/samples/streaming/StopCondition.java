@@ -0,0 +1,268 @@
+package com.hibana.samples.streaming;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * When an {@link EarlyStopStream} has received enough of an answer to stop
+ * the stream, e.g. after the first line or once a JSON object has closed.
+ *
+ * <pre>
+ * StopCondition firstLine = StopCondition.lines(1);
+ * StopCondition label = StopCondition.anyOf(StopCondition.matches("\\b(positive|negative)\\b"),
+ *         StopCondition.maxBytes(200));
+ * </pre>
+ *
+ * A condition also says where the answer ends: text that arrived in the
+ * same chunk after that point (the rest of the line, anything after the
+ * closing brace) is cut off. Conditions are immutable and can be shared;
+ * the state of a scan lives in a {@link Detector} made for each stream, so
+ * each received character is looked at once (except by {@link #matches},
+ * which searches the whole text again on every chunk, and {@link #when}).
+ */
+public final class StopCondition {
+
+    private final String description;
+    private final Supplier<Detector> detectors;
+
+    private StopCondition(String description, Supplier<Detector> detectors) {
+        this.description = description;
+        this.detectors = detectors;
+    }
+
+    /**
+     * Stop at the end of the first match of {@code regex}.
+     */
+    public static StopCondition matches(String regex) {
+        return matches(Pattern.compile(regex));
+    }
+
+    public static StopCondition matches(Pattern pattern) {
+        return new StopCondition("matches /" + pattern.pattern() + "/", () -> (text, from) -> {
+            Matcher matcher = pattern.matcher(text);
+            return matcher.find() ? matcher.end() : -1;
+        });
+    }
+
+    /**
+     * Stop after {@code count} sentences. A sentence ends at {@code .},
+     * {@code !} or {@code ?} (and any closing quotes or brackets) followed
+     * by whitespace, so the point in "3.14" does not end one.
+     */
+    public static StopCondition sentences(int count) {
+        positive(count, "count");
+        return new StopCondition(count + (count == 1 ? " sentence" : " sentences"), () -> new Sentences(count));
+    }
+
+    /**
+     * Stop after {@code count} non-blank lines, at the end of the last one
+     * (without its line break).
+     */
+    public static StopCondition lines(int count) {
+        positive(count, "count");
+        return new StopCondition(count == 1 ? "first line" : count + " lines", () -> new Lines(count));
+    }
+
+    /**
+     * Stop when the first JSON object or array has closed. Text before it,
+     * such as a Markdown code fence, is skipped; brackets inside strings are
+     * ignored. The document is not validated, parse it afterwards.
+     */
+    public static StopCondition jsonClosed() {
+        return new StopCondition("JSON closed", JsonClosed::new);
+    }
+
+    /**
+     * Stop once the answer reaches {@code maxBytes} bytes of UTF-8. The text
+     * kept is at most that long and never ends inside a character.
+     */
+    public static StopCondition maxBytes(int maxBytes) {
+        positive(maxBytes, "maxBytes");
+        return new StopCondition(maxBytes + " bytes", () -> new MaxBytes(maxBytes));
+    }
+
+    /**
+     * Stop at whichever of {@code conditions} is met first.
+     */
+    public static StopCondition anyOf(StopCondition... conditions) {
+        StopCondition[] all = conditions.clone();
+        String description = Arrays.stream(all).map(StopCondition::toString).collect(Collectors.joining(" or "));
+        return new StopCondition(description, () -> {
+            Detector[] detectors = Arrays.stream(all).map(StopCondition::newDetector).toArray(Detector[]::new);
+            return (text, from) -> {
+                int end = -1;
+                for (Detector detector : detectors) {
+                    int stop = detector.accept(text, from);
+                    if (stop >= 0 && (end < 0 || stop < end)) {
+                        end = stop;
+                    }
+                }
+                return end;
+            };
+        });
+    }
+
+    /**
+     * Stop as soon as {@code predicate} holds for the text received so far,
+     * keeping all of it. The predicate sees the whole text on every chunk.
+     */
+    public static StopCondition when(String description, Predicate<String> predicate) {
+        return new StopCondition(description, () -> (text, from) ->
+                predicate.test(text.toString()) ? text.length() : -1);
+    }
+
+    Detector newDetector() {
+        return detectors.get();
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private static void positive(int value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be >= 1");
+        }
+    }
+
+    /**
+     * The scan of one stream.
+     */
+    interface Detector {
+        /**
+         * Look at the text received so far, of which {@code text[from..]}
+         * is new.
+         *
+         * @return where the answer ends if the condition is now met, else -1
+         */
+        int accept(CharSequence text, int from);
+    }
+
+    private static final class Sentences implements Detector {
+        private final int count;
+        private int sentences;
+        /** Index just after a terminator that may end a sentence, or -1. */
+        private int pending = -1;
+
+        Sentences(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int accept(CharSequence text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '.' || c == '!' || c == '?') {
+                    pending = i + 1;
+                } else if (pending == i && (c == '"' || c == '\'' || c == ')' || c == ']' || c == '”')) {
+                    pending = i + 1;
+                } else if (pending == i && Character.isWhitespace(c)) {
+                    if (++sentences == count) {
+                        return pending;
+                    }
+                    pending = -1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Lines implements Detector {
+        private final int count;
+        private int lines;
+        private boolean blank = true;
+
+        Lines(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int accept(CharSequence text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    if (!blank && ++lines == count) {
+                        return i > 0 && text.charAt(i - 1) == '\r' ? i - 1 : i;
+                    }
+                    blank = true;
+                } else if (!Character.isWhitespace(c)) {
+                    blank = false;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class JsonClosed implements Detector {
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+
+        @Override
+        public int accept(CharSequence text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (depth > 0 && c == '"') {
+                    inString = true;
+                } else if (depth > 0 && (c == '}' || c == ']')) {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class MaxBytes implements Detector {
+        private final int maxBytes;
+        private int bytes;
+
+        MaxBytes(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int accept(CharSequence text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int size;
+                if (c < 0x80) {
+                    size = 1;
+                } else if (c < 0x800) {
+                    size = 2;
+                } else if (Character.isHighSurrogate(c)) {
+                    size = 4;
+                } else if (Character.isLowSurrogate(c)) {
+                    // Counted with its high surrogate
+                    size = 0;
+                } else {
+                    size = 3;
+                }
+                if (bytes + size > maxBytes) {
+                    return i;
+                }
+                bytes += size;
+                if (bytes == maxBytes && !Character.isHighSurrogate(c)) {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+}
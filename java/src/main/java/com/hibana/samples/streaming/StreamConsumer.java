@@ -0,0 +1,25 @@
+package com.hibana.samples.streaming;
+
+/**
+ * Receives the chunks of one streamed completion.
+ *
+ * {@link #onComplete()} and {@link #onError(Throwable)} have empty
+ * defaults; exactly one of them is called last, after the final chunk.
+ */
+public interface StreamConsumer<T> {
+
+    void onChunk(T chunk);
+
+    /**
+     * Called once when the stream ended normally and every chunk was delivered.
+     */
+    default void onComplete() {
+    }
+
+    /**
+     * Called once when the stream failed, or when this consumer will get no
+     * more chunks for another reason (e.g. {@link ConsumerDetachedException}).
+     */
+    default void onError(Throwable error) {
+    }
+}
@@ -0,0 +1,385 @@
+package com.hibana.samples.streaming;
+
+import com.hibana.samples.threads.ThreadMode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Delivers one stream of chunks to several consumers at once, e.g. the end
+ * user, an audit log and a response cache.
+ *
+ * <pre>
+ * StreamTee&lt;ChatCompletionChunk&gt; tee = new StreamTee&lt;ChatCompletionChunk&gt;()
+ *         .add("user", 64, StreamTee.Overflow.BLOCK, printer)
+ *         .add("audit", 1024, StreamTee.Overflow.DETACH, auditLog)
+ *         .add("cache", 1024, StreamTee.Overflow.DETACH, cacheWriter);
+ *
+ * try (Stream&lt;ChatCompletionChunk&gt; chunks = client.chat().completions().createStreaming(params)) {
+ *     List&lt;StreamTee.Delivery&gt; report = tee.run(chunks);
+ * }
+ * </pre>
+ *
+ * The calling thread reads the stream and hands every chunk to each
+ * consumer's own bounded buffer; each consumer runs on its own thread
+ * (a virtual thread in {@link ThreadMode#VIRTUAL} mode), so a consumer
+ * that is busy writing to disk does not hold up the others. Chunks are
+ * not copied: every consumer gets the same chunk object, so the content
+ * strings exist once however many consumers there are. SDK chunks are
+ * immutable; consumers must not modify mutable ones such as
+ * {@code JsonObject}.
+ *
+ * When a consumer's buffer is full, its {@link Overflow} policy decides:
+ * {@link Overflow#BLOCK} waits for room, which slows the whole stream down
+ * to that consumer's pace, and suits the one consumer that must see every
+ * chunk in time; {@link Overflow#DETACH} cuts the consumer off with a
+ * {@link ConsumerDetachedException} and carries on without it.
+ *
+ * A tee can run any number of streams, one at a time per call to
+ * {@link #run(Stream)}; the consumers are shared by all of them.
+ */
+public final class StreamTee<T> {
+
+    /**
+     * What to do when a consumer's buffer is full.
+     */
+    public enum Overflow {
+        /** Wait for the consumer; the stream and the other consumers wait too. */
+        BLOCK,
+        /** Stop delivering to the consumer and end it with {@link ConsumerDetachedException}. */
+        DETACH
+    }
+
+    /** Queued after the last chunk: the stream ended normally. */
+    private static final Object END = new Object();
+    /** Queued in place of the rest of the stream for a detached consumer. */
+    private static final Object DETACHED = new Object();
+
+    private final ThreadFactory threads;
+    private final List<Spec<T>> specs = new ArrayList<>();
+
+    /**
+     * Consumer threads of the {@link ThreadMode#configured()} mode.
+     */
+    public StreamTee() {
+        this(ThreadMode.configured());
+    }
+
+    public StreamTee(ThreadMode mode) {
+        this.threads = mode.threadFactory("stream-tee");
+    }
+
+    /**
+     * Add a consumer.
+     *
+     * @param bufferSize chunks that may wait for this consumer before {@code overflow} applies
+     */
+    public StreamTee<T> add(String name, int bufferSize, Overflow overflow, StreamConsumer<T> consumer) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be >= 1");
+        }
+        specs.add(new Spec<>(name, bufferSize, overflow, consumer));
+        return this;
+    }
+
+    /**
+     * Read {@code source} to the end, delivering every chunk to every
+     * consumer, and wait until all consumers have finished.
+     *
+     * @return what each consumer received, in the order they were added
+     * @throws CancellationException if the thread is interrupted; consumers
+     *                               get {@link StreamConsumer#onError}
+     */
+    public List<Delivery> run(Stream<T> source) {
+        List<Branch<T>> branches = new ArrayList<>(specs.size());
+        for (Spec<T> spec : specs) {
+            Branch<T> branch = new Branch<>(spec);
+            branch.thread = threads.newThread(branch::drain);
+            branch.thread.start();
+            branches.add(branch);
+        }
+
+        Throwable failure = null;
+        try {
+            Iterator<T> chunks = source.iterator();
+            while (chunks.hasNext()) {
+                T chunk = chunks.next();
+                for (Branch<T> branch : branches) {
+                    branch.offer(chunk);
+                }
+            }
+            for (Branch<T> branch : branches) {
+                branch.end();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new CancellationException("Interrupted while teeing a stream");
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+
+        if (failure != null) {
+            for (Branch<T> branch : branches) {
+                branch.fail(failure);
+            }
+        }
+        List<Delivery> deliveries = new ArrayList<>(branches.size());
+        for (Branch<T> branch : branches) {
+            join(branch.thread);
+            deliveries.add(branch.delivery());
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        return Collections.unmodifiableList(deliveries);
+    }
+
+    private static void join(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                // Consumers were already told to stop; wait for them to do so
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * What one consumer received from one stream.
+     */
+    public static final class Delivery {
+        private final String consumer;
+        private final long delivered;
+        private final int maxBuffered;
+        private final Throwable error;
+
+        Delivery(String consumer, long delivered, int maxBuffered, Throwable error) {
+            this.consumer = consumer;
+            this.delivered = delivered;
+            this.maxBuffered = maxBuffered;
+            this.error = error;
+        }
+
+        public String consumer() {
+            return consumer;
+        }
+
+        public long delivered() {
+            return delivered;
+        }
+
+        /**
+         * Most chunks that were waiting for this consumer at once.
+         */
+        public int maxBuffered() {
+            return maxBuffered;
+        }
+
+        /**
+         * Whether the consumer saw the whole stream and finished without throwing.
+         */
+        public boolean isComplete() {
+            return error == null;
+        }
+
+        public boolean isDetached() {
+            return error instanceof ConsumerDetachedException;
+        }
+
+        /**
+         * Why the consumer stopped early: the stream's failure, a
+         * {@link ConsumerDetachedException}, or what the consumer threw;
+         * {@code null} if it completed.
+         */
+        public Throwable error() {
+            return error;
+        }
+    }
+
+    private static final class Spec<T> {
+        private final String name;
+        private final int bufferSize;
+        private final Overflow overflow;
+        private final StreamConsumer<T> consumer;
+
+        Spec(String name, int bufferSize, Overflow overflow, StreamConsumer<T> consumer) {
+            this.name = name;
+            this.bufferSize = bufferSize;
+            this.overflow = overflow;
+            this.consumer = consumer;
+        }
+    }
+
+    /**
+     * One consumer's buffer and thread for the duration of one stream.
+     *
+     * The end marker (END, DETACHED or the stream's failure) is kept apart
+     * from the buffered chunks, so setting it never waits for room and a
+     * chunk can never take its place.
+     */
+    private static final class Branch<T> {
+        private final Spec<T> spec;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final ArrayDeque<T> queue = new ArrayDeque<>();
+        private Thread thread;
+        /** Delivered once the queued chunks are; set once, by the reading thread. */
+        private Object marker;
+        /** Set by the consumer thread when the consumer threw; the reading thread skips it from then on. */
+        private boolean stopped;
+        private int maxBuffered;
+        private long delivered;
+        private Throwable error;
+
+        Branch(Spec<T> spec) {
+            this.spec = spec;
+        }
+
+        void offer(T chunk) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (marker == null && !stopped && queue.size() >= spec.bufferSize) {
+                    if (spec.overflow == Overflow.DETACH) {
+                        // Drops the queued chunks, freeing their memory at once
+                        close(DETACHED);
+                        return;
+                    }
+                    notFull.await();
+                }
+                if (marker != null || stopped) {
+                    return;
+                }
+                queue.add(chunk);
+                maxBuffered = Math.max(maxBuffered, queue.size());
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * No more chunks: the consumer gets those already queued, then completes.
+         */
+        void end() {
+            lock.lock();
+            try {
+                if (marker == null) {
+                    marker = END;
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * The stream failed: unless already ended or detached, drop the
+         * queued chunks and hand the consumer the failure.
+         */
+        void fail(Throwable failure) {
+            lock.lock();
+            try {
+                if (marker == null) {
+                    close(failure);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void close(Object endMarker) {
+            queue.clear();
+            marker = endMarker;
+            notEmpty.signal();
+        }
+
+        /**
+         * Consumer thread: deliver queued chunks until an end marker.
+         */
+        void drain() {
+            try {
+                while (true) {
+                    T chunk;
+                    Object end = null;
+                    lock.lockInterruptibly();
+                    try {
+                        while (queue.isEmpty() && marker == null) {
+                            notEmpty.await();
+                        }
+                        chunk = queue.poll();
+                        if (chunk != null) {
+                            notFull.signal();
+                        } else {
+                            end = marker;
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+
+                    if (end == END) {
+                        spec.consumer.onComplete();
+                        return;
+                    }
+                    if (end == DETACHED) {
+                        error = new ConsumerDetachedException(spec.name, spec.bufferSize, delivered);
+                        spec.consumer.onError(error);
+                        return;
+                    }
+                    if (end != null) {
+                        error = (Throwable) end;
+                        spec.consumer.onError(error);
+                        return;
+                    }
+                    spec.consumer.onChunk(chunk);
+                    delivered++;
+                }
+            } catch (InterruptedException e) {
+                error = new CancellationException("Interrupted while delivering to " + spec.name);
+                stop();
+            } catch (RuntimeException | Error e) {
+                error = e;
+                stop();
+            }
+        }
+
+        /**
+         * The consumer will take no more chunks; release a reading thread
+         * waiting for room.
+         */
+        private void stop() {
+            lock.lock();
+            try {
+                stopped = true;
+                queue.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Only valid once the consumer thread has finished.
+         */
+        Delivery delivery() {
+            return new Delivery(spec.name, delivered, maxBuffered, error);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.hibana.samples.threads;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Which threads run blocking API calls: {@code create()}, and the loops
+ * that read {@code createStreaming()} until the stream ends.
+ *
+ * Each blocking call holds its thread for the whole response, so with
+ * platform threads the number of calls in flight is bounded by how many
+ * threads the JVM can afford. Virtual threads release their carrier while
+ * waiting on the socket, so thousands of streams can be read at once.
+ *
+ * Virtual threads need the JDK 21 build ({@code ./gradlew build
+ * -PvirtualThreads}). The mode is opt-in: set the {@code hibana.threads}
+ * system property or the HIBANA_THREADS environment variable to
+ * {@code virtual}; the default is {@code platform}.
+ */
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL;
+
+    /**
+     * The mode selected by {@code -Dhibana.threads} or HIBANA_THREADS.
+     *
+     * @throws IllegalStateException if virtual threads are selected but this
+     *                               is not the JDK 21 build
+     */
+    public static ThreadMode configured() {
+        String value = System.getProperty("hibana.threads", System.getenv("HIBANA_THREADS"));
+        if (value == null || value.isEmpty()) {
+            return PLATFORM;
+        }
+        ThreadMode mode;
+        try {
+            mode = valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown thread mode: " + value + " (expected platform or virtual)");
+        }
+        mode.requireSupported();
+        return mode;
+    }
+
+    public boolean isSupported() {
+        return this == PLATFORM || VirtualThreads.SUPPORTED;
+    }
+
+    private void requireSupported() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads need the JDK 21 build: ./gradlew build -PvirtualThreads");
+        }
+    }
+
+    /**
+     * Threads named {@code name-0}, {@code name-1}, ...; platform threads are
+     * daemons, as virtual threads always are.
+     *
+     * @throws IllegalStateException as {@link #configured()} does, for
+     *                               {@code VIRTUAL} outside the JDK 21 build
+     */
+    public ThreadFactory threadFactory(String name) {
+        requireSupported();
+        if (this == VIRTUAL) {
+            return VirtualThreads.factory(name);
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An executor that starts a thread for each task: a cached pool of
+     * platform threads, or a new virtual thread per task.
+     *
+     * @throws IllegalStateException as {@link #configured()} does, for
+     *                               {@code VIRTUAL} outside the JDK 21 build
+     */
+    public ExecutorService newExecutor(String name) {
+        requireSupported();
+        if (this == VIRTUAL) {
+            return VirtualThreads.newExecutor(name);
+        }
+        return Executors.newCachedThreadPool(threadFactory(name));
+    }
+}
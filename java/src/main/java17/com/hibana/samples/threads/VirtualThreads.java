@@ -0,0 +1,25 @@
+package com.hibana.samples.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread support in the default build, which has none. The JDK 21
+ * build replaces this class with the one in {@code src/main/java21}.
+ * {@link ThreadMode} checks {@link #SUPPORTED} before calling in here.
+ */
+final class VirtualThreads {
+
+    static final boolean SUPPORTED = false;
+
+    private VirtualThreads() {
+    }
+
+    static ThreadFactory factory(String name) {
+        throw new IllegalStateException("Virtual threads need the JDK 21 build: ./gradlew build -PvirtualThreads");
+    }
+
+    static ExecutorService newExecutor(String name) {
+        throw new IllegalStateException("Virtual threads need the JDK 21 build: ./gradlew build -PvirtualThreads");
+    }
+}
@@ -0,0 +1,24 @@
+package com.hibana.samples.threads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread support in the JDK 21 build ({@code -PvirtualThreads}).
+ */
+final class VirtualThreads {
+
+    static final boolean SUPPORTED = true;
+
+    private VirtualThreads() {
+    }
+
+    static ThreadFactory factory(String name) {
+        return Thread.ofVirtual().name(name + "-", 0).factory();
+    }
+
+    static ExecutorService newExecutor(String name) {
+        return Executors.newThreadPerTaskExecutor(factory(name));
+    }
+}